@@ -96,6 +96,8 @@ public class Grammar {
 
         NonTerminal AlterStmt = new NonTerminal("AlterStmt");
         NonTerminal AlterAction = new NonTerminal("AlterAction");
+        NonTerminal AddColumnTail = new NonTerminal("AddColumnTail");
+        NonTerminal DefaultClause = new NonTerminal("DefaultClause");
 
         NonTerminal InsertTail = new NonTerminal("InsertTail");
         NonTerminal DropTail = new NonTerminal("DropTail");
@@ -105,18 +107,21 @@ public class Grammar {
         NonTerminal PermissionList = new NonTerminal("PermissionList");
         NonTerminal PermissionListTail = new NonTerminal("PermissionListTail");
         NonTerminal Permission = new NonTerminal("Permission");
+        NonTerminal IncludeClause = new NonTerminal("IncludeClause");
+        NonTerminal AccessMethodClause = new NonTerminal("AccessMethodClause");
         // 注册非终结符（确保包含上面所有新声明的）
         nonTerminals.addAll(Arrays.asList(
                 Program, StatementList, Statement,
                 CreateStmt, CreateTail, CreateDBStmt, CreateTableStmt,
-                ColumnDefList, ColumnDefListTail, ColumnDef, TypeDef, ColumnConstraint,
+                ColumnDefList, ColumnDefListTail, ColumnDef, TypeDef, ColumnConstraint, DefaultClause,
                 InsertStmt, ColumnList, ColumnListTail, ValueList, ValueListTail, Value,
                 SelectStmt, WhereClause, Condition, ConditionTerm, ConditionTail, Operator, LogicOp,
                 UpdateStmt, AssignList, Assign,
                 DeleteStmt, DropStmt, UseStmt,
-                AlterStmt, AlterAction,
+                AlterStmt, AlterAction, AddColumnTail,
                 InsertTail, DropTail, AssignListTail,
-                GrantStmt, PermissionList, PermissionListTail, Permission
+                GrantStmt, PermissionList, PermissionListTail, Permission,
+                IncludeClause, AccessMethodClause
         ));
         // ---------------- 终结符（确保包含 EVERYTHING） ----------------
         String[] kw = {"SELECT","FROM","WHERE","CREATE","TABLE","INSERT","INTO","VALUES",
@@ -172,9 +177,21 @@ public class Grammar {
 
         // CreateTail -> DATABASE IDENTIFIER ;   (建库，示例带 ;)
         addProduction(CreateTail, Arrays.asList(new Terminal("DATABASE"), new Terminal("IDENTIFIER"), new Terminal(";")));
-        // CreateTail -> TABLE IDENTIFIER ( ColumnDefList )   (建表，示例没有分号)
+        // CreateTail -> TABLE IDENTIFIER ( ColumnDefList ) AccessMethodClause   (建表，示例没有分号)
         // 如果你也想允许在末尾加分号，再添加一个以 ";" 结尾的产生式（注意：会有 FIRST 冲突；建议仅保留一种风格或用 OptSemicolon）
-        addProduction(CreateTail, Arrays.asList(new Terminal("TABLE"), new Terminal("IDENTIFIER"), new Terminal("("), ColumnDefList, new Terminal(")")));
+        addProduction(CreateTail, Arrays.asList(new Terminal("TABLE"), new Terminal("IDENTIFIER"), new Terminal("("), ColumnDefList, new Terminal(")"), AccessMethodClause));
+        // AccessMethodClause -> USING IDENTIFIER | ENGINE = IDENTIFIER | ROW_FORMAT = IDENTIFIER | ε
+        // (主存取方式 HASH / BTREE / LSM，默认 B+ 树；行格式 PAX / VARINT / ROW，默认行格式)
+        addProduction(AccessMethodClause, Arrays.asList(new Terminal("USING"), new Terminal("IDENTIFIER")));
+        addProduction(AccessMethodClause, Arrays.asList(new Terminal("ENGINE"), new Terminal("="), new Terminal("IDENTIFIER")));
+        addProduction(AccessMethodClause, Arrays.asList(new Terminal("ROW_FORMAT"), new Terminal("="), new Terminal("IDENTIFIER")));
+        addProduction(AccessMethodClause, Arrays.asList(EPSILON));
+        // CreateTail -> INDEX IDENTIFIER ON IDENTIFIER ( ColumnList ) IncludeClause ;   (建二级索引)
+        addProduction(CreateTail, Arrays.asList(new Terminal("INDEX"), new Terminal("IDENTIFIER"), new Terminal("ON"),
+                new Terminal("IDENTIFIER"), new Terminal("("), ColumnList, new Terminal(")"), IncludeClause, new Terminal(";")));
+        // IncludeClause -> INCLUDE ( ColumnList ) | ε   (覆盖索引额外存的列)
+        addProduction(IncludeClause, Arrays.asList(new Terminal("INCLUDE"), new Terminal("("), ColumnList, new Terminal(")")));
+        addProduction(IncludeClause, Arrays.asList(EPSILON));
 
         // UseStmt -> USE IDENTIFIER ;
         addProduction(UseStmt, Arrays.asList(new Terminal("USE"), new Terminal("IDENTIFIER"), new Terminal(";")));
@@ -189,15 +206,21 @@ public class Grammar {
         // ColumnDef -> IDENTIFIER TypeDef ColumnConstraint
         addProduction(ColumnDef, Arrays.asList(new Terminal("IDENTIFIER"), TypeDef, ColumnConstraint));
 
-        // TypeDef -> INT | VARCHAR ( CONSTANT ) | CHAR ( CONSTANT )
+        // TypeDef -> INT | BIGINT | DOUBLE | DECIMAL | BOOLEAN | DATE | TIMESTAMP | VARCHAR ( CONSTANT ) | CHAR ( CONSTANT )
         addProduction(TypeDef, Arrays.asList(new Terminal("INT")));
+        for (String fixedType : new String[]{"BIGINT", "DOUBLE", "DECIMAL", "BOOLEAN", "DATE", "TIMESTAMP"}) {
+            addProduction(TypeDef, Arrays.asList(new Terminal(fixedType)));
+        }
         addProduction(TypeDef, Arrays.asList(new Terminal("VARCHAR"), new Terminal("("), new Terminal("CONSTANT"), new Terminal(")")));
         addProduction(TypeDef, Arrays.asList(new Terminal("CHAR"), new Terminal("("), new Terminal("CONSTANT"), new Terminal(")")));
 
-        // ColumnConstraint -> PRIMARY KEY | NOT NULL | ε
+        // ColumnConstraint -> PRIMARY KEY | NOT NULL DefaultClause | DefaultClause
         addProduction(ColumnConstraint, Arrays.asList(new Terminal("PRIMARY"), new Terminal("KEY")));
-        addProduction(ColumnConstraint, Arrays.asList(new Terminal("NOT"), new Terminal("NULL")));
-        addProduction(ColumnConstraint, Arrays.asList(EPSILON));
+        addProduction(ColumnConstraint, Arrays.asList(new Terminal("NOT"), new Terminal("NULL"), DefaultClause));
+        addProduction(ColumnConstraint, Arrays.asList(DefaultClause));
+        // DefaultClause -> DEFAULT Value | ε
+        addProduction(DefaultClause, Arrays.asList(new Terminal("DEFAULT"), Value));
+        addProduction(DefaultClause, Arrays.asList(EPSILON));
 
         // ---------------- Insert ----------------
         // 两种形式：1) INSERT INTO id VALUES (...) ;   2) INSERT INTO id (col,...) VALUES (...) ;
@@ -282,7 +305,10 @@ public class Grammar {
 
         // ---------------- Alter (简单支持) ----------------
         addProduction(AlterStmt, Arrays.asList(new Terminal("ALTER"), new Terminal("TABLE"), new Terminal("IDENTIFIER"), AlterAction, new Terminal(";")));
-        addProduction(AlterAction, Arrays.asList(new Terminal("ADD"), ColumnDef));
+        // AlterAction -> ADD AddColumnTail | DROP COLUMN IDENTIFIER；AddColumnTail -> COLUMN ColumnDef | ColumnDef
+        addProduction(AlterAction, Arrays.asList(new Terminal("ADD"), AddColumnTail));
+        addProduction(AddColumnTail, Arrays.asList(new Terminal("COLUMN"), ColumnDef));
+        addProduction(AddColumnTail, Arrays.asList(ColumnDef));
         addProduction(AlterAction, Arrays.asList(new Terminal("DROP"), new Terminal("COLUMN"), new Terminal("IDENTIFIER")));
     }
 
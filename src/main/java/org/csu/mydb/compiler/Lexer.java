@@ -24,8 +24,9 @@ public class Lexer {
             "SELECT","FROM","WHERE","CREATE","TABLE","INSERT","INTO","VALUES",
             "UPDATE","SET","DELETE","DROP","DATABASE","USE",
             "AND","NOT","PRIMARY","KEY","INT","VARCHAR","CHAR","EVERYTHING","NULL",
-            "JOIN","ON",
-            "GRANT", "TO"
+            "BIGINT","DOUBLE","DECIMAL","BOOLEAN","DATE","TIMESTAMP",
+            "JOIN","ON","INDEX","INCLUDE","USING","ENGINE","ROW_FORMAT",
+            "GRANT", "TO", "ALTER", "ADD", "COLUMN", "DEFAULT"
     ));
 
     // 两字符运算符优先表
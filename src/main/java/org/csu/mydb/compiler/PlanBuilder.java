@@ -2,6 +2,7 @@ package org.csu.mydb.compiler;
 
 import org.csu.mydb.executor.ExecutionPlan;
 import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.util.TypeHandler.TypeHandlerFactory;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -157,11 +158,41 @@ public class PlanBuilder {
                 expectDelimiter("(");
                 List<String> cols = parseColumnDefList();
                 expectDelimiter(")");
+                // 可选 USING HASH | BTREE、ENGINE = LSM | BTREE 或 ROW_FORMAT = PAX | VARINT | ROW
+                String accessMethod = null;
+                String rowFormat = null;
+                if (peek() != null && peek().type == Lexer.KEYWORD && peek().lexeme.equalsIgnoreCase("USING")) {
+                    consume(); // USING
+                    Lexer.Token method = peek();
+                    if (method == null || !(method.lexeme.equalsIgnoreCase("HASH") || method.lexeme.equalsIgnoreCase("BTREE"))) {
+                        throw error("USING 后面必须跟 HASH 或 BTREE", method);
+                    }
+                    accessMethod = method.lexeme.toUpperCase(); consume();
+                } else if (peek() != null && peek().type == Lexer.KEYWORD && peek().lexeme.equalsIgnoreCase("ENGINE")) {
+                    consume(); // ENGINE
+                    expectOperator("=");
+                    Lexer.Token engine = peek();
+                    if (engine == null || !(engine.lexeme.equalsIgnoreCase("LSM") || engine.lexeme.equalsIgnoreCase("BTREE"))) {
+                        throw error("ENGINE 后面必须跟 LSM 或 BTREE", engine);
+                    }
+                    accessMethod = engine.lexeme.toUpperCase(); consume();
+                } else if (peek() != null && peek().type == Lexer.KEYWORD && peek().lexeme.equalsIgnoreCase("ROW_FORMAT")) {
+                    consume(); // ROW_FORMAT
+                    expectOperator("=");
+                    Lexer.Token format = peek();
+                    if (format == null || !(format.lexeme.equalsIgnoreCase("PAX") || format.lexeme.equalsIgnoreCase("VARINT")
+                            || format.lexeme.equalsIgnoreCase("ROW"))) {
+                        throw error("ROW_FORMAT 后面必须跟 PAX、VARINT 或 ROW", format);
+                    }
+                    rowFormat = format.lexeme.toUpperCase(); consume();
+                }
                 // Create table in your examples sometimes lacks semicolon; accept optional ;
                 if (peek() != null && peek().type == Lexer.DELIMITER && peek().lexeme.equals(";")) consume();
 
                 ExecutionPlan p = new ExecutionPlan(ExecutionPlan.OperationType.CREATE_TABLE);
                 p.setTableName(tableName);
+                p.setAccessMethod(accessMethod);
+                p.setRowFormat(rowFormat);
 
                 List<Column> columns = new ArrayList<>();
                 for (int i = 0; i < cols.size(); i++) {
@@ -169,8 +200,36 @@ public class PlanBuilder {
                 }
                 p.setColumns(columns);
                 return p;
+            } else if (next.type == Lexer.KEYWORD && next.lexeme.equalsIgnoreCase("INDEX")) {
+                // CREATE INDEX idx ON t ( col, ... ) [INCLUDE ( col, ... )] ;
+                consume(); // INDEX
+                Lexer.Token iname = peek();
+                if (iname == null || iname.type != Lexer.IDENTIFIER) throw error("期望索引名", iname);
+                String indexName = iname.lexeme; consume();
+                expectKeyword("ON");
+                Lexer.Token tname = peek();
+                if (tname == null || tname.type != Lexer.IDENTIFIER) throw error("期望表名", tname);
+                String tableName = tname.lexeme; consume();
+                expectDelimiter("(");
+                List<String> cols = parseColumnList();
+                expectDelimiter(")");
+                List<String> includeCols = new ArrayList<>();
+                if (peek() != null && peek().type == Lexer.KEYWORD && peek().lexeme.equalsIgnoreCase("INCLUDE")) {
+                    consume(); // INCLUDE
+                    expectDelimiter("(");
+                    includeCols = parseColumnList();
+                    expectDelimiter(")");
+                }
+                expectDelimiter(";");
+
+                ExecutionPlan p = new ExecutionPlan(ExecutionPlan.OperationType.CREATE_INDEX);
+                p.setIndexName(indexName);
+                p.setTableName(tableName);
+                p.setIndexColumns(cols);
+                p.setIncludeColumns(includeCols);
+                return p;
             } else {
-                throw error("CREATE 后面必须跟 DATABASE 或 TABLE", next);
+                throw error("CREATE 后面必须跟 DATABASE、TABLE 或 INDEX", next);
             }
         }
 
@@ -193,12 +252,10 @@ public class PlanBuilder {
 
             // TypeDef
             Lexer.Token tk = peek();
-            if (tk == null || tk.type != Lexer.KEYWORD) throw error("期望类型 (INT | VARCHAR(...))", tk);
+            if (tk == null || tk.type != Lexer.KEYWORD) throw error("期望类型 (INT | BIGINT | DOUBLE | DECIMAL | BOOLEAN | DATE | TIMESTAMP | VARCHAR(...))", tk);
             String typeKw = tk.lexeme.toUpperCase(); consume();
             String typeStr;
-            if ("INT".equals(typeKw)) {
-                typeStr = "INT";
-            } else if ("VARCHAR".equals(typeKw) || "CHAR".equals(typeKw)) {
+            if ("VARCHAR".equals(typeKw) || "CHAR".equals(typeKw)) {
                 // expect ( CONSTANT )
                 expectDelimiter("(");
                 Lexer.Token lenTk = peek();
@@ -206,6 +263,9 @@ public class PlanBuilder {
                 String len = lenTk.lexeme; consume();
                 expectDelimiter(")");
                 typeStr = typeKw + "(" + len + ")";
+            } else if (TypeHandlerFactory.isSupported(typeKw)) {
+                // 定长类型没有长度参数
+                typeStr = typeKw;
             } else {
                 throw error("不支持的类型: " + typeKw, tk);
             }
@@ -225,6 +285,17 @@ public class PlanBuilder {
                     constraint = "NOT NULL";
                 }
             }
+            // 可选 DEFAULT 常量（ALTER TABLE ADD 时给已有的行补的值）
+            Lexer.Token def = peek();
+            if (def != null && def.type == Lexer.KEYWORD && def.lexeme.equalsIgnoreCase("DEFAULT")) {
+                consume(); // DEFAULT
+                Lexer.Token val = peek();
+                if (val == null || !(val.type == Lexer.CONSTANT || val.type == Lexer.STRING || val.type == Lexer.IDENTIFIER)) {
+                    throw error("DEFAULT 后面期望常量", val);
+                }
+                constraint = (constraint + " DEFAULT " + val.lexeme).trim();
+                consume();
+            }
 
             String colDesc = colName + " " + typeStr + (constraint.isEmpty() ? "" : " " + constraint);
             return colDesc;
@@ -639,7 +710,7 @@ public class PlanBuilder {
 
         // ---------- ALTER (简单版) ----------
         private ExecutionPlan parseAlter() throws SemanticException {
-            // 支持 ALTER TABLE name ADD columnDef ;  或 ALTER TABLE name DROP COLUMN col ;
+            // 支持 ALTER TABLE name ADD [COLUMN] columnDef ;  DROP COLUMN 还不支持
             expectKeyword("ALTER");
             expectKeyword("TABLE");
             Lexer.Token t = peek();
@@ -648,26 +719,25 @@ public class PlanBuilder {
             Lexer.Token action = peek();
             if (action == null || action.type != Lexer.KEYWORD) throw error("期望 ADD 或 DROP", action);
 
-            ExecutionPlan p = new ExecutionPlan(ExecutionPlan.OperationType.UPDATE);
+            ExecutionPlan p = new ExecutionPlan(ExecutionPlan.OperationType.ADD_COLUMN);
             p.setTableName(tableName);
 
             List<Column> columns = new ArrayList<>();
             if (action.lexeme.equalsIgnoreCase("ADD")) {
                 consume(); // ADD
-                String colDef = parseSingleColumnDef();
-                // 你可以把这个信息放到 columns 字段里做新增
-
-                // TODO: column
-                // p.setColumns(colDef);
+                if (peek() != null && peek().type == Lexer.KEYWORD && peek().lexeme.equalsIgnoreCase("COLUMN")) {
+                    consume(); // COLUMN
+                }
+                Lexer.Token colStart = peek();
+                try {
+                    // 位置和表结构版本由存储引擎定
+                    columns.add(Column.parseColumn(parseSingleColumnDef(), -1));
+                } catch (IllegalArgumentException e) {
+                    throw error(e.getMessage(), colStart);
+                }
+                p.setColumns(columns);
             } else if (action.lexeme.equalsIgnoreCase("DROP")) {
-                consume(); // DROP
-                expectKeyword("COLUMN");
-                Lexer.Token col = peek();
-                if (col == null || col.type != Lexer.IDENTIFIER) throw error("期望列名", col);
-
-                // TODO
-                // p.setColumns(col.lexeme);
-                consume();
+                throw error("暂不支持 DROP COLUMN", action);
             } else {
                 throw error("不支持的 ALTER 操作", action);
             }
@@ -18,6 +18,8 @@ public class ExecutionPlan {
         OPEN_DATABASE,
         CLOSE_DATABASE,
         CREATE_TABLE,
+        CREATE_INDEX,
+        ADD_COLUMN,
         DROP_TABLE,
         INSERT,
         DELETE,
@@ -42,6 +44,17 @@ public class ExecutionPlan {
     private String joinTableAlias;
     private String joinCondition;
 
+    // CREATE INDEX 的索引名、索引列和 INCLUDE 列
+    private String indexName;
+    private List<String> indexColumns;
+    private List<String> includeColumns;
+
+    // CREATE TABLE ... USING / ENGINE= 的主存取方式（HASH / LSM / BTREE），没写为 null
+    private String accessMethod;
+
+    // CREATE TABLE ... ROW_FORMAT= 的行格式（PAX / VARINT / ROW），没写为 null
+    private String rowFormat;
+
     // 新增：grants 与 grantee（用于 GRANT 操作）
     private List<String> grants;
     private String grantee;
@@ -137,6 +150,21 @@ public class ExecutionPlan {
     public String getJoinCondition() { return joinCondition; }
     public void setJoinCondition(String c) { this.joinCondition = c; }
 
+    public String getIndexName() { return indexName; }
+    public void setIndexName(String indexName) { this.indexName = indexName; }
+
+    public List<String> getIndexColumns() { return indexColumns; }
+    public void setIndexColumns(List<String> indexColumns) { this.indexColumns = indexColumns; }
+
+    public List<String> getIncludeColumns() { return includeColumns; }
+    public void setIncludeColumns(List<String> includeColumns) { this.includeColumns = includeColumns; }
+
+    public String getAccessMethod() { return accessMethod; }
+    public void setAccessMethod(String accessMethod) { this.accessMethod = accessMethod; }
+
+    public String getRowFormat() { return rowFormat; }
+    public void setRowFormat(String rowFormat) { this.rowFormat = rowFormat; }
+
     public List<String> getGrants() { return grants; }
     public void setGrants(List<String> grants) { this.grants = grants; }
 
@@ -159,6 +187,11 @@ public class ExecutionPlan {
                 ", joinTableName='" + joinTableName + '\'' +
                 ", joinTableAlias='" + joinTableAlias + '\'' +
                 ", joinCondition='" + joinCondition + '\'' +
+                ", indexName='" + indexName + '\'' +
+                ", indexColumns=" + indexColumns +
+                ", includeColumns=" + includeColumns +
+                ", accessMethod='" + accessMethod + '\'' +
+                ", rowFormat='" + rowFormat + '\'' +
                 '}';
     }
 }
\ No newline at end of file
@@ -46,6 +46,10 @@ public class Executor {
                     return executeCloseDatabase(plan);
                 case CREATE_TABLE:
                     return executeCreateTable(plan);
+                case CREATE_INDEX:
+                    return executeCreateIndex(plan);
+                case ADD_COLUMN:
+                    return executeAddColumn(plan);
                 case DROP_TABLE:
                     return executeDropTable(plan);
                 case INSERT:
@@ -109,10 +113,55 @@ public class Executor {
             return new ExecutionResult(false, "列定义不能为空");
         }
 
-        storageEngine.myCreateTable(plan.getTableName(), plan.getColumns());
+        if ("HASH".equals(plan.getAccessMethod())) {
+            storageEngine.myCreateHashTable(plan.getTableName(), plan.getColumns());
+        } else if ("LSM".equals(plan.getAccessMethod())) {
+            storageEngine.myCreateLsmTable(plan.getTableName(), plan.getColumns());
+        } else if ("PAX".equals(plan.getRowFormat())) {
+            storageEngine.myCreatePaxTable(plan.getTableName(), plan.getColumns());
+        } else if ("VARINT".equals(plan.getRowFormat())) {
+            storageEngine.myCreateVarintTable(plan.getTableName(), plan.getColumns());
+        } else {
+            storageEngine.myCreateTable(plan.getTableName(), plan.getColumns());
+        }
         return new ExecutionResult(true, "表创建成功: " + plan.getTableName());
     }
 
+    private ExecutionResult executeCreateIndex(ExecutionPlan plan) {
+        if (plan.getIndexName() == null || plan.getIndexName().isEmpty()) {
+            return new ExecutionResult(false, "索引名不能为空");
+        }
+
+        if (plan.getTableName() == null || plan.getTableName().isEmpty()) {
+            return new ExecutionResult(false, "表名不能为空");
+        }
+
+        if (plan.getIndexColumns() == null || plan.getIndexColumns().isEmpty()) {
+            return new ExecutionResult(false, "索引列不能为空");
+        }
+
+        List<String> includeColumns = plan.getIncludeColumns();
+        if (includeColumns == null) {
+            includeColumns = new ArrayList<>();
+        }
+
+        storageEngine.myCreateIndex(plan.getIndexName(), plan.getTableName(), plan.getIndexColumns(), includeColumns);
+        return new ExecutionResult(true, "索引创建成功: " + plan.getIndexName());
+    }
+
+    private ExecutionResult executeAddColumn(ExecutionPlan plan) {
+        if (plan.getTableName() == null || plan.getTableName().isEmpty()) {
+            return new ExecutionResult(false, "表名不能为空");
+        }
+
+        if (plan.getColumns() == null || plan.getColumns().size() != 1) {
+            return new ExecutionResult(false, "列定义不能为空");
+        }
+
+        storageEngine.myAddColumn(plan.getTableName(), plan.getColumns().get(0));
+        return new ExecutionResult(true, "列添加成功: " + plan.getColumns().get(0).getName());
+    }
+
     private ExecutionResult executeDropTable(ExecutionPlan plan) {
         if (plan.getTableName() == null || plan.getTableName().isEmpty()) {
             return new ExecutionResult(false, "表名不能为空");
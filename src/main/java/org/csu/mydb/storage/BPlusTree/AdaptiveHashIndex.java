@@ -0,0 +1,182 @@
+package org.csu.mydb.storage.BPlusTree;
+
+import org.csu.mydb.storage.PageManager;
+import org.csu.mydb.storage.StorageSystem;
+import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.Column.PaxSerializer;
+import org.csu.mydb.storage.Table.Column.RecordCodec;
+import org.csu.mydb.storage.Table.Key;
+import org.csu.mydb.storage.Table.KeyEncoder;
+import org.csu.mydb.storage.bufferPool.BufferPool;
+import org.csu.mydb.storage.storageFiles.page.PageType;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 自适应哈希索引（只在内存里）：同一个完整主键被等值查找多次后，记下它在叶子里的位置（页号, 槽位），
+ * 之后的查找直接读那一页的那条记录，不下降、不解码整个叶子
+ * - 条目带着建立时叶子页的版本（BufferPool.pageVersion），叶子被改写或分裂后版本变化，条目作废
+ * - 只是加速用的提示：查不到、版本不对或记录对不上都退回正常查找
+ * - 候选计数和条目数都有上限，超了整体清掉重新积累
+ */
+public class AdaptiveHashIndex {
+    // 同一个 key 查到第几次时建条目
+    static final int HOT_THRESHOLD = 3;
+    private static final int MAX_CANDIDATES = 1 << 14;
+    private static final int MAX_ENTRIES = 1 << 16;
+
+    private static final class Entry {
+        final PageManager.GlobalPageId leaf;
+        final int slot;
+        final long pageVersion;
+
+        Entry(PageManager.GlobalPageId leaf, int slot, long pageVersion) {
+            this.leaf = leaf;
+            this.slot = slot;
+            this.pageVersion = pageVersion;
+        }
+    }
+
+    private final ConcurrentHashMap<ByteBuffer, AtomicInteger> candidates = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ByteBuffer, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+
+    private final String filePath;
+    private final List<Column> tableColumns;
+    private final int[] keyPositions;
+    private volatile int[] allPositions; // 表加列后重算
+    private final BufferPool bufferPool;
+
+    AdaptiveHashIndex(String filePath, List<Column> tableColumns, BufferPool bufferPool) {
+        this.filePath = filePath;
+        this.tableColumns = tableColumns;
+        this.bufferPool = bufferPool;
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < tableColumns.size(); i++) {
+            if (tableColumns.get(i).isPrimaryKey()) positions.add(i);
+        }
+        this.keyPositions = positions.stream().mapToInt(Integer::intValue).toArray();
+        this.allPositions = allPositions(tableColumns.size());
+    }
+
+    /**
+     * 表加了列（tableColumns 变长了）；已有的条目仍然指向原来的页和槽位，不用清
+     */
+    void columnsChanged() {
+        this.allPositions = allPositions(tableColumns.size());
+    }
+
+    private static int[] allPositions(int columnCount) {
+        int[] all = new int[columnCount];
+        for (int i = 0; i < all.length; i++) all[i] = i;
+        return all;
+    }
+
+    /**
+     * 按条目直接读行
+     * @return 行；没有条目或条目已失效返回 null，调用方走正常查找
+     */
+    List<Object> lookup(Key key) {
+        return lookup(key, null);
+    }
+
+    /**
+     * 按条目直接读那条记录的部分列（连同主键列一起解码，用来核对记录），其余列不解码
+     * @param positions 要的列在表里的下标，结果按这个顺序排列；null 为整行
+     * @return 值；没有条目或条目已失效返回 null，调用方走正常查找
+     */
+    List<Object> lookup(Key key, int[] positions) {
+        byte[] encoded = key.getNormalized();
+        ByteBuffer hashKey = ByteBuffer.wrap(encoded);
+        Entry entry = entries.get(hashKey);
+        if (entry == null) {
+            return null;
+        }
+        if (bufferPool.pageVersion(entry.leaf) != entry.pageVersion) {
+            entries.remove(hashKey, entry);
+            return null;
+        }
+        PageManager.Page page = StorageSystem.readPage(filePath, entry.leaf.spaceId, entry.leaf.pageNo);
+        int[] wanted = positions == null ? allPositions : withKeyPositions(positions);
+        List<Object> values = readColumns(page, entry.slot, wanted);
+        // 读完再校验一次：读的过程中叶子被改写了就不算
+        if (values == null || bufferPool.pageVersion(entry.leaf) != entry.pageVersion) {
+            entries.remove(hashKey, entry);
+            return null;
+        }
+        List<Object> keyValues = positions == null ? keyOf(values) : values.subList(0, keyPositions.length);
+        if (!Arrays.equals(KeyEncoder.encode(keyValues), encoded)) {
+            entries.remove(hashKey, entry);
+            return null;
+        }
+        hits.incrementAndGet();
+        return positions == null ? values : new ArrayList<>(values.subList(keyPositions.length, values.size()));
+    }
+
+    /**
+     * 记一次正常查找命中
+     * @return 这个 key 够热了，调用方应定位后调用 put
+     */
+    boolean recordLookup(Key key) {
+        ByteBuffer hashKey = ByteBuffer.wrap(key.getNormalized());
+        if (candidates.size() >= MAX_CANDIDATES) {
+            candidates.clear();
+        }
+        int count = candidates.computeIfAbsent(hashKey, k -> new AtomicInteger()).incrementAndGet();
+        if (count < HOT_THRESHOLD) {
+            return false;
+        }
+        candidates.remove(hashKey);
+        return true;
+    }
+
+    /**
+     * @param pageVersion 读叶子之前记下的页版本
+     */
+    void put(Key key, PageManager.GlobalPageId leaf, int slot, long pageVersion) {
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+        entries.put(ByteBuffer.wrap(key.getNormalized()), new Entry(leaf, slot, pageVersion));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 直接从条目读到行的次数
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * 读叶子页第 slot 行的给定列，行格式页按偏移直接读那几列，PAX 页从这几列的 minipage 取第 slot 个值
+     */
+    private List<Object> readColumns(PageManager.Page page, int slot, int[] positions) {
+        if (page.getHeader().pageType == PageType.PAX_DATA_PAGE) {
+            return PaxSerializer.decodeRow(page, tableColumns, slot, positions);
+        }
+        return slot < page.getRecordCount() ? RecordCodec.of(tableColumns).decodeColumns(page.getRecord(slot), positions) : null;
+    }
+
+    // 主键列在前，要的列在后
+    private int[] withKeyPositions(int[] positions) {
+        int[] wanted = Arrays.copyOf(keyPositions, keyPositions.length + positions.length);
+        System.arraycopy(positions, 0, wanted, keyPositions.length, positions.length);
+        return wanted;
+    }
+
+    private List<Object> keyOf(List<Object> row) {
+        List<Object> values = new ArrayList<>(keyPositions.length);
+        for (int position : keyPositions) values.add(row.get(position));
+        return values;
+    }
+}
@@ -35,6 +35,93 @@ public abstract class BPlusNode<Key extends Comparable<Key>> {
         keys = Collections.synchronizedList(new ArrayList<>());
     }
 
+    /**
+     * 一页里可以放记录（含槽位）的字节数
+     */
+    public static int pageCapacity() {
+        return PageManager.PAGE_SIZE - PageManager.PAGE_HEADER_SIZE;
+    }
+
+    /**
+     * 节点所在页已用的字节数（刚从页加载或刚写回页时准确，内存里改过之后要重新算）
+     */
+    public int usedBytes() {
+        return pageCapacity() - header.freeSpace;
+    }
+
+    /**
+     * 按序列化后的字节数和条目数决定分裂点
+     * - 顺序追加（append）：左页的字节数和条目数都按同一填充率填（fillBytes / 页容量），剩下的放右页
+     * - 其他：按字节平均切成最少的份数，每份不超过一页、不超过 maxEntries
+     * @param sizes      每个条目序列化后的字节数（含槽位）
+     * @param maxEntries 每页最多条目数
+     * @param fillBytes  追加分裂时左页的目标字节数
+     * @param minPiece   每份最少条目数（内部节点至少要两个孩子）
+     * @return 第二份起每一份的起始下标
+     * @throws IllegalArgumentException 有一个条目自己就放不下一页（调用方应在改节点之前拦住）
+     */
+    static List<Integer> splitPoints(int[] sizes, int maxEntries, int fillBytes, boolean append, int minPiece) {
+        int n = sizes.length;
+        int capacity = pageCapacity();
+        for (int size : sizes) {
+            if (size > capacity) {
+                throw new IllegalArgumentException("Entry too large for a page: " + size + " bytes");
+            }
+        }
+        long[] prefix = new long[n + 1];
+        for (int i = 0; i < n; i++) prefix[i + 1] = prefix[i] + sizes[i];
+        long total = prefix[n];
+
+        // 1. 顺序追加：只切一刀
+        if (append) {
+            int fillEntries = (int) ((long) maxEntries * fillBytes / capacity);
+            int cut = 0;
+            while (cut < n && cut < fillEntries && prefix[cut + 1] <= fillBytes) cut++;
+            cut = Math.min(Math.max(cut, minPiece), n - minPiece);
+            if (fits(prefix, 0, cut, capacity, maxEntries) && fits(prefix, cut, n, capacity, maxEntries)) {
+                return List.of(cut);
+            }
+        }
+
+        // 2. 按字节平均切，切不下就多切一份
+        int k = (int) Math.max(2, Math.max((total + capacity - 1) / capacity, (n + maxEntries - 1) / maxEntries));
+        for (; k <= n / minPiece; k++) {
+            List<Integer> cuts = new ArrayList<>(k - 1);
+            int start = 0;
+            boolean ok = true;
+            for (int j = 1; j < k && ok; j++) {
+                long target = total * j / k;
+                int cut = start + minPiece;
+                int last = n - (k - j) * minPiece;
+                while (cut < last && prefix[cut] < target) cut++;
+                ok = fits(prefix, start, cut, capacity, maxEntries);
+                cuts.add(cut);
+                start = cut;
+            }
+            if (ok && fits(prefix, start, n, capacity, maxEntries)) {
+                return cuts;
+            }
+        }
+
+        // 3. 兜底：贪心装满每一页
+        List<Integer> cuts = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < n; i++) {
+            if (i - start >= minPiece && !fits(prefix, start, i + 1, capacity, maxEntries)) {
+                cuts.add(i);
+                start = i;
+            }
+        }
+        if (!cuts.isEmpty() && n - start < minPiece) {
+            cuts.set(cuts.size() - 1, n - minPiece);
+        }
+        return cuts;
+    }
+
+    private static boolean fits(long[] prefix, int from, int to, int capacity, int maxEntries) {
+        return to - from <= maxEntries && prefix[to] - prefix[from] <= capacity;
+    }
+
     // 查找键对应的位置（二分查找）
     protected int findKeyIndex(Key key) {
         return Collections.binarySearch(keys, key);
@@ -3,25 +3,86 @@ package org.csu.mydb.storage.BPlusTree;
 import org.csu.mydb.storage.PageManager;
 import org.csu.mydb.storage.StorageSystem;
 import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.Column.PaxSerializer;
+import org.csu.mydb.storage.Table.Column.RecordCodec;
+import org.csu.mydb.storage.Table.Column.RecordFilter;
+import org.csu.mydb.storage.Table.Column.RecordSerializer;
 import org.csu.mydb.storage.Table.Key;
+import org.csu.mydb.storage.Table.PrimaryIndex;
 import org.csu.mydb.storage.storageFiles.page.PageType;
+import org.csu.mydb.util.Pair.Pair;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
-public class BPlusTree {
-    private BPlusNode<Key> root;
-    private final int order;
+/**
+ * 聚簇 B+ 树（支持多线程并发读写，latch crabbing）
+ * - 查找：乐观锁耦合，不加任何 latch，逐层记下版本号、读完校验，冲突就从 root 重来；
+ *   连续冲突多次后退回持读 latch 自上而下逐层交接
+ * - 插入/更新/删除：先乐观下降，只对叶子加写 latch；叶子可能分裂时再悲观重来，
+ *   自上而下加写 latch，遇到不会分裂的"安全"节点就放掉它上面的所有 latch
+ * - root 指针由 Page2 的 latch 保护
+ * - 下降途经的内部节点常驻内存（InternalNodeCache），点查只解码最后的叶子
+ * - 反复点查的主键由自适应哈希索引（AdaptiveHashIndex）记下叶子位置，之后直接读那条记录
+ */
+public class BPlusTree implements PrimaryIndex {
+    private static final int ROOT_META_PAGE_NO = 2;
+    // 乐观查找最多重试次数，超过后改为加读 latch
+    private static final int OPTIMISTIC_RETRIES = 8;
+    // 乐观查找需要重来的标记
+    private static final List<Object> RESTART = new ArrayList<>();
+
+    private volatile BPlusNode<Key> root;
+    private final PageManager.GlobalPageId rootMetaId;
+    private final int order;       // 每页最多条目数（内部节点为 key 数）
+    private final int fillFactor;  // 页填充率（百分比），顺序追加分裂和批量装载时每页填到这个比例
+    private final int fillBytes;
+    private volatile int maxRowBytes;    // 一行最多占的字节数（含槽位）
+    private volatile int maxKeyPtrBytes; // 一条内部节点条目最多占的字节数（含槽位）
     private final StorageSystem storageSystem;
     private final List<Column> tableColumns; // 主键列
+    private final int keyColumnCount;
+    private final boolean intKeyed; // 单列 INT 主键：查找时内部节点用 IntInternalNode
+    private volatile BloomFilter bloomFilter; // 可选：主键 Bloom filter，点查前先查它，说不在就不下降
+    private final AdaptiveHashIndex adaptiveHashIndex;
     private final String filePath;
 
     public BPlusTree(int order, int spaceId, StorageSystem storageSystem, List<Column> tableColumns, String filePath) throws IOException {
-        this.order = 100;
+        this(order, 100, spaceId, storageSystem, tableColumns, filePath);
+    }
+
+    /**
+     * @param order      每页最多条目数；真正决定分裂的是序列化后的字节数能否放进一页，order 只是上限
+     * @param fillFactor 页填充率（百分比，1~100）
+     */
+    public BPlusTree(int order, int fillFactor, int spaceId, StorageSystem storageSystem, List<Column> tableColumns, String filePath) throws IOException {
+        if (order < 2) {
+            throw new IllegalArgumentException("order must be >= 2, but got " + order);
+        }
+        if (fillFactor <= 0 || fillFactor > 100) {
+            throw new IllegalArgumentException("fillFactor must be in (0, 100], but got " + fillFactor);
+        }
+        this.order = order;
+        this.fillFactor = fillFactor;
+        this.fillBytes = BPlusNode.pageCapacity() * fillFactor / 100;
+        this.maxRowBytes = RecordSerializer.maxDataRowSize(tableColumns) + PageManager.SLOT_SIZE;
+        this.maxKeyPtrBytes = RecordSerializer.maxKeyPtrSize(keyColumns(tableColumns)) + PageManager.SLOT_SIZE;
         this.storageSystem = storageSystem;
         this.tableColumns = tableColumns;
         this.filePath = filePath;
+        List<Column> pkColumns = keyColumns(tableColumns);
+        this.keyColumnCount = pkColumns.size();
+        this.intKeyed = pkColumns.size() == 1 && "INT".equalsIgnoreCase(pkColumns.get(0).getType());
+        this.rootMetaId = new PageManager.GlobalPageId(spaceId, ROOT_META_PAGE_NO);
+        this.adaptiveHashIndex = new AdaptiveHashIndex(filePath, tableColumns, storageSystem.getBufferPool());
+        // 默认行格式，PAX / 变长整数格式的表打开后再调用 enablePaxLayout / enableVarintFormat
+        StorageSystem.setPaxLayout(spaceId, null);
+        StorageSystem.setVarintFormat(spaceId, false);
 
         // 从 Page2 读取 root 页号
         int rootPageNo = storageSystem.getRootPageNo(spaceId);
@@ -46,30 +107,313 @@ public class BPlusTree {
         }
     }
 
+    @Override
     public List<Column> getColumns() {
         return tableColumns;
     }
 
+    public int getOrder() {
+        return order;
+    }
+
+    public int getFillFactor() {
+        return fillFactor;
+    }
+
+    public AdaptiveHashIndex getAdaptiveHashIndex() {
+        return adaptiveHashIndex;
+    }
+
     // ======================== 查找 ========================
     /**
      * 根据主键查找
      * @param key 主键
      * @return 行
      */
+    @Override
     public List<Object> search(Key key) throws IOException {
-        return search(root, key);
+        return search(key, null);
     }
 
-    private List<Object> search(BPlusNode<Key> node, Key key) throws IOException {
-        if (node.isLeaf) {
+    /**
+     * 根据主键查找，只取部分列：自适应哈希索引命中时只解码要的列，否则从叶子里的整行取列
+     * @param positions 要的列在表里的下标，结果按这个顺序排列；null 为整行
+     */
+    @Override
+    public List<Object> search(Key key, int[] positions) throws IOException {
+        BloomFilter filter = bloomFilter;
+        // 只给了主键前缀的查不了 Bloom filter
+        boolean fullKey = key.getValues().size() == keyColumnCount;
+        if (filter != null && fullKey && !filter.mightContain(key)) {
+            return null;
+        }
+        if (fullKey) {
+            List<Object> row = adaptiveHashIndex.lookup(key, positions);
+            if (row != null) {
+                return row;
+            }
+        }
+        List<Object> row = RESTART;
+        for (int attempt = 0; attempt < OPTIMISTIC_RETRIES && row == RESTART; attempt++) {
+            row = searchOptimistic(key);
+            if (row == RESTART) {
+                Thread.yield();
+            }
+        }
+        if (row == RESTART) {
+            row = searchLatched(key);
+        }
+        if (fullKey && row != null && adaptiveHashIndex.recordLookup(key)) {
+            buildHashEntry(key);
+        }
+        return row == null || positions == null ? row : PrimaryIndex.project(row, positions);
+    }
+
+    /**
+     * 给热 key 建自适应哈希条目：持读 latch 下降到叶子，在叶子 latch 下记页版本、找槽位，
+     * 写者改叶子要拿写 latch，所以记下的版本和槽位是一致的
+     */
+    private void buildHashEntry(Key key) throws IOException {
+        NodeLatch rootLatch = NodeLatch.of(rootMetaId);
+        rootLatch.readLock();
+        BPlusNode<Key> node = root;
+        NodeLatch latch = NodeLatch.of(node.gid);
+        latch.readLock();
+        rootLatch.unlock();
+
+        try {
+            long pageVersion = storageSystem.getBufferPool().pageVersion(node.gid);
+            while (!node.isLeaf) {
+                int childPageNo = childPageNo(node, key);
+                NodeLatch childLatch = NodeLatch.of(node.gid.spaceId, childPageNo);
+                childLatch.readLock();
+                latch.unlock();
+                latch = childLatch;
+                PageManager.GlobalPageId childId = new PageManager.GlobalPageId(node.gid.spaceId, childPageNo);
+                pageVersion = storageSystem.getBufferPool().pageVersion(childId);
+                node = storageSystem.loadSearchNode(filePath, childId, tableColumns, intKeyed);
+            }
+            int slot = ((LeafNode) node).indexOf(key);
+            if (slot >= 0) {
+                adaptiveHashIndex.put(key, node.gid, slot, pageVersion);
+            }
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * 乐观查找：先读子节点的版本，再校验父节点版本没变（保证走到的 child 指针有效），
+     * 读完节点内容后再校验一次该节点自己的版本
+     * @return 查找结果；遇到写冲突返回 RESTART
+     */
+    private List<Object> searchOptimistic(Key key) throws IOException {
+        NodeLatch rootLatch = NodeLatch.of(rootMetaId);
+        long rootVersion = rootLatch.readVersion();
+        if (rootVersion < 0) return RESTART;
+        BPlusNode<Key> node = root;
+        NodeLatch latch = NodeLatch.of(node.gid);
+        long version = latch.readVersion();
+        if (version < 0 || !rootLatch.validate(rootVersion)) return RESTART;
+
+        try {
+            while (!node.isLeaf) {
+                int childPageNo = childPageNo(node, key);
+                NodeLatch childLatch = NodeLatch.of(node.gid.spaceId, childPageNo);
+                long childVersion = childLatch.readVersion();
+                if (childVersion < 0 || !latch.validate(version)) return RESTART;
+
+                node = storageSystem.loadSearchNode(filePath,
+                        new PageManager.GlobalPageId(node.gid.spaceId, childPageNo), tableColumns, intKeyed);
+                latch = childLatch;
+                version = childVersion;
+            }
+            List<Object> row = ((LeafNode) node).search(key);
+            return latch.validate(version) ? row : RESTART;
+        } catch (IOException | RuntimeException e) {
+            // 读到了写了一半的节点（比如 root 正被原地修改），校验失败就重来，否则是真错误
+            if (!latch.validate(version)) return RESTART;
+            throw e;
+        }
+    }
+
+    /**
+     * 加读 latch 的查找：先锁子节点再放父节点
+     */
+    private List<Object> searchLatched(Key key) throws IOException {
+        NodeLatch rootLatch = NodeLatch.of(rootMetaId);
+        rootLatch.readLock();
+        BPlusNode<Key> node = root;
+        NodeLatch latch = NodeLatch.of(node.gid);
+        latch.readLock();
+        rootLatch.unlock();
+
+        try {
+            while (!node.isLeaf) {
+                int childPageNo = childPageNo(node, key);
+                NodeLatch childLatch = NodeLatch.of(node.gid.spaceId, childPageNo);
+                childLatch.readLock();
+                latch.unlock();
+                latch = childLatch;
+                node = storageSystem.loadSearchNode(filePath,
+                        new PageManager.GlobalPageId(node.gid.spaceId, childPageNo), tableColumns, intKeyed);
+            }
             return ((LeafNode) node).search(key);
-        } else {
-            InternalNode in = (InternalNode) node;
-            int pos = 0;
-            while (pos < in.keys.size() && key.compareTo(in.keys.get(pos)) >= 0) pos++;
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * 查找下降时 key 所在孩子的页号，node 是 InternalNode 或 IntInternalNode
+     */
+    private static int childPageNo(BPlusNode<Key> node, Key key) {
+        if (node instanceof IntInternalNode) {
+            return ((IntInternalNode) node).childPageNo(key);
+        }
+        InternalNode in = (InternalNode) node;
+        return in.children.get(childIndex(in, key));
+    }
+
+    /**
+     * 范围查找下降时下界所在孩子的页号，low 为 null 时走最左边
+     */
+    private static int lowerBoundChildPageNo(BPlusNode<Key> node, Key low) {
+        if (node instanceof IntInternalNode) {
+            IntInternalNode in = (IntInternalNode) node;
+            return low == null ? in.childPages[0] : in.lowerBoundChildPageNo(low);
+        }
+        InternalNode in = (InternalNode) node;
+        return in.children.get(low == null ? 0 : lowerBoundChildIndex(in, low));
+    }
+
+    private static int childIndex(InternalNode in, Key key) {
+        int pos = 0;
+        while (pos < in.keys.size() && key.compareTo(in.keys.get(pos)) >= 0) pos++;
+        return pos;
+    }
+
+    /**
+     * 第一个可能含有 >= key 的条目的孩子。key 可以只是前缀（如二级索引只给索引列），
+     * 与 key 前缀相同的条目可能跨在分隔键两边，所以遇到相等的分隔键要走左边
+     */
+    private static int lowerBoundChildIndex(InternalNode in, Key key) {
+        int pos = 0;
+        while (pos < in.keys.size() && key.compareTo(in.keys.get(pos)) > 0) pos++;
+        return pos;
+    }
+
+    // ======================== 范围查找 ========================
+    /**
+     * 范围查找：返回 low <= key <= high 的所有行（按主键升序）
+     * 比较只看双方都有的键值，所以 low/high 可以只给前缀，如 low = high = 索引列的值
+     * @param low  下界，null 表示从最小开始
+     * @param high 上界，null 表示到最大为止
+     */
+    public List<List<Object>> rangeSearch(Key low, Key high) throws IOException {
+        NodeLatch rootLatch = NodeLatch.of(rootMetaId);
+        rootLatch.readLock();
+        BPlusNode<Key> node = root;
+        NodeLatch latch = NodeLatch.of(node.gid);
+        latch.readLock();
+        rootLatch.unlock();
+
+        List<List<Object>> result = new ArrayList<>();
+        try {
+            // 1. 下降到下界所在的叶子
+            while (!node.isLeaf) {
+                int childPageNo = lowerBoundChildPageNo(node, low);
+                NodeLatch childLatch = NodeLatch.of(node.gid.spaceId, childPageNo);
+                childLatch.readLock();
+                latch.unlock();
+                latch = childLatch;
+                node = storageSystem.loadSearchNode(filePath,
+                        new PageManager.GlobalPageId(node.gid.spaceId, childPageNo), tableColumns, intKeyed);
+            }
+
+            // 2. 沿叶子链表向右扫，先锁右边的叶子再放当前叶子
+            LeafNode leaf = (LeafNode) node;
+            while (true) {
+                for (int i = 0; i < leaf.keys.size(); i++) {
+                    Key k = leaf.keys.get(i);
+                    if (low != null && k.compareTo(low) < 0) continue;
+                    if (high != null && k.compareTo(high) > 0) return result;
+                    result.add(leaf.records.get(i));
+                }
+                int nextPageNo = leaf.header.nextPage;
+                if (nextPageNo == -1) return result;
+                NodeLatch nextLatch = NodeLatch.of(leaf.gid.spaceId, nextPageNo);
+                nextLatch.readLock();
+                latch.unlock();
+                latch = nextLatch;
+                leaf = (LeafNode) storageSystem.loadNode(filePath,
+                        new PageManager.GlobalPageId(leaf.gid.spaceId, nextPageNo), null, tableColumns);
+            }
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    @Override
+    public List<List<Object>> scan() throws IOException {
+        return rangeSearch(null, null);
+    }
+
+    /**
+     * 带过滤条件、只取部分列的全表扫描：直接读叶子页，
+     * 行格式页在记录的字节上求过滤条件，满足的按偏移只读要的列；
+     * PAX 页先在条件涉及的列上求值（字典编码的列在字典项上求），再只解码满足条件的行里要的列
+     * @param positions 要的列在表里的下标，结果每行的值按这个顺序排列；null 为整行
+     * @param filter    过滤条件，null 为不过滤
+     */
+    @Override
+    public List<List<Object>> scan(int[] positions, RecordFilter filter) throws IOException {
+        NodeLatch rootLatch = NodeLatch.of(rootMetaId);
+        rootLatch.readLock();
+        BPlusNode<Key> node = root;
+        NodeLatch latch = NodeLatch.of(node.gid);
+        latch.readLock();
+        rootLatch.unlock();
 
-            BPlusNode<Key> child = in.getChildAt(filePath, pos, tableColumns);
-            return search(child, key);
+        List<List<Object>> result = new ArrayList<>();
+        try {
+            // 1. 下降到最左边的叶子
+            while (!node.isLeaf) {
+                int childPageNo = lowerBoundChildPageNo(node, null);
+                NodeLatch childLatch = NodeLatch.of(node.gid.spaceId, childPageNo);
+                childLatch.readLock();
+                latch.unlock();
+                latch = childLatch;
+                node = storageSystem.loadSearchNode(filePath,
+                        new PageManager.GlobalPageId(node.gid.spaceId, childPageNo), tableColumns, intKeyed);
+            }
+
+            // 2. 沿叶子链表向右逐页解码，先锁右边的叶子再放当前叶子
+            int spaceId = node.gid.spaceId;
+            int pageNo = node.gid.pageNo;
+            while (true) {
+                PageManager.Page page = StorageSystem.readPage(filePath, spaceId, pageNo);
+                if (page.getHeader().pageType == PageType.PAX_DATA_PAGE) {
+                    result.addAll(PaxSerializer.decodeColumns(page, tableColumns, positions, filter));
+                } else {
+                    RecordCodec codec = RecordCodec.of(tableColumns);
+                    for (int i = 0; i < page.getRecordCount(); i++) {
+                        byte[] record = page.getRecord(i);
+                        if (filter == null || filter.test(record)) {
+                            result.add(positions == null ? codec.decode(record) : codec.decodeColumns(record, positions));
+                        }
+                    }
+                }
+                int nextPageNo = page.getHeader().nextPage;
+                if (nextPageNo == -1) return result;
+                NodeLatch nextLatch = NodeLatch.of(spaceId, nextPageNo);
+                nextLatch.readLock();
+                latch.unlock();
+                latch = nextLatch;
+                pageNo = nextPageNo;
+            }
+        } finally {
+            latch.unlock();
         }
     }
 
@@ -78,118 +422,726 @@ public class BPlusTree {
      * 按照主键插入
      * @param rowValues 行
      */
+    @Override
     public void insert(List<Column> cols, List<Object> rowValues) throws IOException {
-        // 1. 构造 Key
-        List<Object> keyValues = new ArrayList<>();
-        List<Column> pkColumns = new ArrayList<>();
-        for (int j = 0; j < cols.size(); j++) {
-            Column col = cols.get(j);
-            if (col.isPrimaryKey()) {
-                keyValues.add(rowValues.get(j));
-                pkColumns.add(col);
+        // 1. 按表的列顺序排好整行（没给的列取 DEFAULT），再取出 Key
+        List<Object> row = PrimaryIndex.rowOf(tableColumns, cols, rowValues);
+        Key key = buildKey(row, getKeyColumns());
+        int rowBytes = checkedRowBytes(row);
+
+        // 先进 Bloom filter 再写叶子，行一旦可见 filter 就不会说它不在
+        addToBloomFilter(key);
+
+        // 2. 乐观插入：叶子的条目数和字节数都装得下就不会分裂，只锁叶子
+        LeafNode leaf = lockLeafForWrite(key);
+        try {
+            // 下降时过了 Page2 的 latch，这之前并发加了列就按新的列重排一次
+            if (row.size() != tableColumns.size()) {
+                row = PrimaryIndex.rowOf(tableColumns, cols, rowValues);
+                rowBytes = checkedRowBytes(row);
             }
+            if (leaf.keys.size() < order && leaf.usedBytes() + rowBytes <= BPlusNode.pageCapacity()) {
+                leaf.insert(filePath, key, row, tableColumns, order, fillBytes);
+                return;
+            }
+        } finally {
+            NodeLatch.of(leaf.gid).unlock();
         }
-        Key key = new Key(keyValues, pkColumns);
-        int j = 0;
-        List<Object> values = new ArrayList<>();
-        for (int i = 0; i < tableColumns.size(); i++) {
-            if (tableColumns.get(i).getName().equals(cols.get(j).getName())) {
-                values.add(rowValues.get(j));
-                j++;
-            } else {
-                values.add(tableColumns.get(i).getDefaultValue());
+
+        // 3. 叶子会分裂：悲观重来，锁住可能被修改的整段路径
+        List<NodeLatch> held = new ArrayList<>();
+        try {
+            List<InternalNode> path = new ArrayList<>();
+            leaf = lockPathForWrite(key, 1, rowBytes, held, path);
+            if (row.size() != tableColumns.size()) {
+                row = PrimaryIndex.rowOf(tableColumns, cols, rowValues);
             }
+            List<SplitResult<Key>> splits = leaf.insert(filePath, key, row, tableColumns, order, fillBytes);
+            propagateSplits(path, splits);
+        } finally {
+            unlockAll(held);
         }
+    }
 
-        // 2. 递归插入
-        BPlusNode<Key> newRoot = insertRecursive(filePath, root, key, rowValues);
+    /**
+     * 乐观下降：内部节点持读 latch 逐层交接，只对叶子加写 latch
+     * @return 目标叶子，返回时调用方持有它的写 latch
+     */
+    private LeafNode lockLeafForWrite(Key key) throws IOException {
+        NodeLatch rootLatch = NodeLatch.of(rootMetaId);
+        rootLatch.readLock();
+        BPlusNode<Key> node = root;
+        NodeLatch latch = NodeLatch.of(node.gid);
+        if (node.isLeaf) latch.writeLock(); else latch.readLock();
+        rootLatch.unlock();
 
-        // 3. 如果返回了新的 root，更新树和系统 root 页号
-        if (newRoot != null) {
-            this.root = newRoot;
-            storageSystem.updateRootPageNo(filePath, root.gid.spaceId, root.gid.pageNo);
+        try {
+            while (!node.isLeaf) {
+                PageManager.GlobalPageId childId = new PageManager.GlobalPageId(node.gid.spaceId, childPageNo(node, key));
+                NodeLatch childLatch = NodeLatch.of(childId);
+                // 父节点的读 latch 还在，子页的类型不会变
+                if (isLeafPage(childId)) childLatch.writeLock(); else childLatch.readLock();
+                latch.unlock();
+                latch = childLatch;
+                // 途经的内部节点只读，走常驻缓存；叶子要改，现解码
+                node = storageSystem.loadSearchNode(filePath, childId, tableColumns, intKeyed);
+            }
+            return (LeafNode) node;
+        } catch (IOException | RuntimeException e) {
+            latch.unlock();
+            throw e;
         }
     }
 
-    private BPlusNode<Key> insertRecursive(String filePath,BPlusNode<Key> node, Key key, List<Object> rowValues) throws IOException {
-        if (node.isLeaf) {
-            LeafNode leaf = (LeafNode) node;
-            BPlusNode<Key> newRoot = leaf.insert(filePath, key, rowValues, tableColumns, order);
-            return newRoot;
-        } else {
+    /**
+     * 悲观下降：自上而下加写 latch，节点再收 incoming 个条目也不会分裂时，放掉它上面的所有 latch
+     * @param incoming  该节点最多还会收到的条目数
+     * @param leafBytes 叶子最多还会收到的字节数
+     * @param held      已持有的 latch（由调用方释放）
+     * @param path     root 到叶子父节点的内部节点
+     * @return 目标叶子
+     */
+    private LeafNode lockPathForWrite(Key key, int incoming, long leafBytes, List<NodeLatch> held, List<InternalNode> path) throws IOException {
+        NodeLatch rootLatch = NodeLatch.of(rootMetaId);
+        rootLatch.writeLock();
+        held.add(rootLatch);
+
+        BPlusNode<Key> node = root;
+        NodeLatch latch = NodeLatch.of(node.gid);
+        latch.writeLock();
+        held.add(latch);
+        if (canAbsorb(node, incoming, leafBytes)) releaseAncestors(held);
+
+        while (!node.isLeaf) {
             InternalNode in = (InternalNode) node;
+            path.add(in);
+            PageManager.GlobalPageId childId = new PageManager.GlobalPageId(in.gid.spaceId, in.children.get(childIndex(in, key)));
+            NodeLatch childLatch = NodeLatch.of(childId);
+            childLatch.writeLock();
+            held.add(childLatch);
+            node = storageSystem.loadNode(filePath, childId, in, tableColumns);
+            if (canAbsorb(node, incoming, leafBytes)) releaseAncestors(held);
+        }
+        return (LeafNode) node;
+    }
 
-            // 找到子节点位置
-            int pos = 0;
-            while (pos < in.keys.size() && key.compareTo(in.keys.get(pos)) >= 0) pos++;
-            BPlusNode<Key> child = storageSystem.loadNode(filePath,
-                    new PageManager.GlobalPageId(in.gid.spaceId, in.children.get(pos)), in, tableColumns);
-
-            // 递归插入
-            BPlusNode<Key> maybeNewRoot = insertRecursive(filePath, child, key, rowValues);
-
-            // 回溯：内部节点分裂
-            if (in.keys.size() > order) {
-                InternalNode splitRoot = in.split(filePath, order, tableColumns);
-                if (splitRoot != null) {
-                    // 更新 Page2
-                    storageSystem.updateRootPageNo(filePath, splitRoot.gid.spaceId, splitRoot.gid.pageNo);
-                    return splitRoot;
+    /**
+     * 节点再收 incoming 个条目是否一定不会分裂（内部节点按每条最大字节数估算）
+     */
+    private boolean canAbsorb(BPlusNode<Key> node, int incoming, long leafBytes) {
+        if (node.keys.size() + incoming > order) {
+            return false;
+        }
+        long bytes = node.isLeaf ? leafBytes : (long) incoming * maxKeyPtrBytes;
+        return node.usedBytes() + bytes <= BPlusNode.pageCapacity();
+    }
+
+    private boolean isLeafPage(PageManager.GlobalPageId gid) throws IOException {
+        PageManager.Page page = storageSystem.getPageManager().getPage(gid.spaceId, gid.pageNo);
+        return page != null && PageType.isLeaf(page.getHeader().pageType);
+    }
+
+    private static void releaseAncestors(List<NodeLatch> held) {
+        while (held.size() > 1) {
+            held.remove(0).unlock();
+        }
+    }
+
+    private static void unlockAll(List<NodeLatch> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+        held.clear();
+    }
+
+    /**
+     * 分裂沿路径向上传播，到 root 还有分裂就长出新的 root
+     * 传播只会停在已锁住的安全节点上，所以改到的节点都持有写 latch
+     */
+    private void propagateSplits(List<InternalNode> path, List<SplitResult<Key>> splits) throws IOException {
+        for (int level = path.size() - 1; level >= 0 && !splits.isEmpty(); level--) {
+            splits = path.get(level).insertEntries(filePath, splits, order, fillBytes, tableColumns);
+        }
+        if (!splits.isEmpty()) {
+            growRoot(splits);
+        }
+    }
+
+    /**
+     * root 分裂后长出新的 root：[旧 root, 各个分裂出来的节点] 作为新 root 的孩子，新 root 放不下就继续分裂
+     * 调用方持有 Page2 的写 latch
+     */
+    private void growRoot(List<SplitResult<Key>> splits) throws IOException {
+        int spaceId = root.gid.spaceId;
+        BPlusNode<Key> top = root;
+        while (!splits.isEmpty()) {
+            int newRootPage = storageSystem.getPageManager().allocatePage(spaceId);
+            InternalNode newRoot = new InternalNode(new PageManager.GlobalPageId(spaceId, newRootPage),
+                    new PageManager.PageHeader(newRootPage, PageType.INDEX_PAGE), storageSystem);
+            newRoot.header.prevPage = -1;
+            newRoot.header.nextPage = -1;
+            newRoot.children.add(top.gid.pageNo);
+            top.parent = newRoot;
+
+            splits = newRoot.insertEntries(filePath, splits, order, fillBytes, tableColumns);
+            top = newRoot;
+        }
+        storageSystem.updateRootPageNo(filePath, spaceId, top.gid.pageNo);
+        this.root = top;
+    }
+
+    // ======================== 批量插入 ========================
+    /**
+     * 多行插入：先按主键排序，再把落在同一个叶子里的行合并成一次叶子写入，分裂向上传播时每个内部节点也只写一次
+     * 同一批里主键重复的行以后出现的为准（与逐行 insert 的覆盖语义一致）
+     * @param rows     整行数据（列顺序同 tableColumns），不要求有序
+     * @param replaced 不为 null 时收集被覆盖的旧行
+     * @return 实际写入的行数（去重后）
+     */
+    @Override
+    public int insertBatch(List<List<Object>> rows, List<List<Object>> replaced) throws IOException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        List<Column> pkColumns = getKeyColumns();
+
+        // 1. 排序（稳定排序，重复 key 保留最后一行）
+        List<Pair<Key, List<Object>>> sorted = new ArrayList<>(rows.size());
+        for (List<Object> row : rows) {
+            sorted.add(new Pair<>(buildKey(row, pkColumns), row));
+        }
+        sorted.sort((a, b) -> a.getFirst().compareTo(b.getFirst()));
+        List<Key> keys = new ArrayList<>(sorted.size());
+        List<List<Object>> values = new ArrayList<>(sorted.size());
+        for (Pair<Key, List<Object>> entry : sorted) {
+            if (!keys.isEmpty() && keys.get(keys.size() - 1).compareTo(entry.getFirst()) == 0) {
+                values.set(values.size() - 1, entry.getSecond());
+                continue;
+            }
+            keys.add(entry.getFirst());
+            values.add(entry.getSecond());
+        }
+        // 剩余行的字节数后缀和，判断叶子是否装得下；有一行放不下一页就整批不写
+        long[] bytesFrom = new long[keys.size() + 1];
+        for (int k = keys.size() - 1; k >= 0; k--) {
+            bytesFrom[k] = bytesFrom[k + 1] + checkedRowBytes(values.get(k));
+        }
+        for (Key key : keys) {
+            addToBloomFilter(key);
+        }
+
+        // 2. 每次从 root 下降到一个叶子，把这个叶子范围内的行一次性合并进去
+        int i = 0;
+        while (i < keys.size()) {
+            Key first = keys.get(i);
+            List<NodeLatch> held = new ArrayList<>();
+            try {
+                // 这一组最多 keys.size() - i 行，按这个上限判断节点是否安全
+                List<InternalNode> path = new ArrayList<>();
+                LeafNode leaf = lockPathForWrite(first, keys.size() - i, bytesFrom[i], held, path);
+
+                // 叶子范围的上界（不含）取路径上最紧的分隔 key，null 表示无穷大
+                Key upperBound = null;
+                for (InternalNode in : path) {
+                    int pos = childIndex(in, first);
+                    if (pos < in.keys.size()) {
+                        upperBound = in.keys.get(pos);
+                    }
                 }
+                int end = i + 1;
+                while (end < keys.size() && (upperBound == null || keys.get(end).compareTo(upperBound) < 0)) end++;
+
+                List<SplitResult<Key>> splits = leaf.insertAll(filePath,
+                        keys.subList(i, end), values.subList(i, end), tableColumns, order, fillBytes, replaced);
+                propagateSplits(path, splits);
+                i = end;
+            } finally {
+                unlockAll(held);
             }
+        }
+        return keys.size();
+    }
 
-            // 持久化 internal node
-            storageSystem.writeInternalNode(filePath, in, tableColumns);
-            return maybeNewRoot;
+    // ======================== 批量装载 ========================
+    /**
+     * 按表的填充率批量装载
+     */
+    @Override
+    public int bulkLoad(Iterator<List<Object>> sortedRows) throws IOException {
+        return bulkLoad(sortedRows, fillFactor / 100.0);
+    }
+
+    /**
+     * 自底向上批量装载：按主键有序的行从左到右填满叶子，再逐层构建内部节点，每一页只写一次
+     * 只能用于空树（建表后的第一次装载）
+     * @param sortedRows 按主键升序的整行数据（列顺序同 tableColumns），外部排好序后逐行给出即可
+     * @param fillFactor 每页目标填充率 (0, 1]，给后续插入预留空间
+     * @return 装载的行数
+     */
+    public int bulkLoad(Iterator<List<Object>> sortedRows, double fillFactor) throws IOException {
+        if (fillFactor <= 0 || fillFactor > 1) {
+            throw new IllegalArgumentException("fillFactor must be in (0, 1], but got " + fillFactor);
+        }
+        // 装载期间独占整棵树
+        NodeLatch rootLatch = NodeLatch.of(rootMetaId);
+        rootLatch.writeLock();
+        try {
+            return bulkLoadLocked(sortedRows, fillFactor);
+        } catch (IllegalArgumentException e) {
+            // 输入不合法（无序、行放不下一页）：root 里可能已经收了还没落盘的行，按页重读和盘上一致
+            this.root = storageSystem.loadNode(filePath, root.gid, null, tableColumns);
+            throw e;
+        } finally {
+            rootLatch.unlock();
+        }
+    }
+
+    private int bulkLoadLocked(Iterator<List<Object>> sortedRows, double fillFactor) throws IOException {
+        if (!root.isLeaf || !root.keys.isEmpty()) {
+            throw new IllegalStateException("bulkLoad requires an empty tree");
+        }
+
+        int spaceId = root.gid.spaceId;
+        int pageCapacity = (int) ((PageManager.PAGE_SIZE - PageManager.PAGE_HEADER_SIZE) * fillFactor);
+        int maxEntries = Math.max(2, (int) (order * fillFactor));
+        List<Column> pkColumns = getKeyColumns();
+        boolean varint = isVarintFormat();
+
+        // 1. 叶子层：第一个叶子复用空 root 的页
+        List<Pair<Key, Integer>> level = new ArrayList<>();
+        LeafNode leaf = (LeafNode) root;
+        List<byte[]> leafBytes = new ArrayList<>();
+        int used = 0;
+        int count = 0;
+        Key lastKey = null;
+        Key leafSeparator = null; // 当前叶子在父节点里的分隔 key（第一个叶子没有）
+
+        while (sortedRows.hasNext()) {
+            List<Object> row = sortedRows.next();
+            Key key = buildKey(row, pkColumns);
+            if (lastKey != null && key.compareTo(lastKey) <= 0) {
+                throw new IllegalArgumentException("bulkLoad input is not strictly ascending at key " + key);
+            }
+            lastKey = key;
+
+            byte[] rowData = RecordSerializer.serializeDataRow(row, tableColumns, varint);
+            int size = rowData.length + PageManager.SLOT_SIZE;
+            if (size > BPlusNode.pageCapacity()) {
+                throw new IllegalArgumentException("Row too large for a page: " + rowData.length + " bytes");
+            }
+            addToBloomFilter(key);
+
+            // 当前叶子已满：先分配下一页，串好链表后把当前叶子写出去
+            if (!leaf.keys.isEmpty() && (used + size > pageCapacity || leaf.keys.size() >= maxEntries)) {
+                int nextPageNo = storageSystem.getPageManager().allocatePage(spaceId);
+                leaf.header.nextPage = nextPageNo;
+                storageSystem.writeLeafPage(leaf, leafBytes);
+                level.add(new Pair<>(leafSeparator, leaf.gid.pageNo));
+
+                LeafNode next = new LeafNode(new PageManager.GlobalPageId(spaceId, nextPageNo),
+                        new PageManager.PageHeader(nextPageNo, PageType.DATA_PAGE), storageSystem);
+                next.header.prevPage = leaf.gid.pageNo;
+                next.header.nextPage = -1;
+                // 下一个叶子的分隔 key：当前叶子最后一个 key 与新叶子第一个 key 之间最短的那个
+                leafSeparator = InternalNode.separator(leaf.keys.get(leaf.keys.size() - 1), key);
+                leaf = next;
+                leafBytes = new ArrayList<>();
+                used = 0;
+            }
+
+            leaf.keys.add(key);
+            leaf.records.add(row);
+            leafBytes.add(rowData);
+            used += size;
+            count++;
+        }
+
+        storageSystem.writeLeafPage(leaf, leafBytes);
+        if (level.isEmpty()) {
+            // 只有一个叶子，root 不变
+            return count;
+        }
+        level.add(new Pair<>(leafSeparator, leaf.gid.pageNo));
+
+        // 2. 内部层：逐层向上，直到只剩一个节点
+        InternalNode top = null;
+        while (level.size() > 1) {
+            List<List<Pair<Key, Integer>>> groups = groupChildren(level, pageCapacity, maxEntries);
+            List<Pair<Key, Integer>> upper = new ArrayList<>();
+            for (List<Pair<Key, Integer>> group : groups) {
+                int pageNo = storageSystem.getPageManager().allocatePage(spaceId);
+                InternalNode in = new InternalNode(new PageManager.GlobalPageId(spaceId, pageNo),
+                        new PageManager.PageHeader(pageNo, PageType.INDEX_PAGE), storageSystem);
+                in.header.prevPage = -1;
+                in.header.nextPage = -1;
+                in.children.add(group.get(0).getSecond());
+                for (int i = 1; i < group.size(); i++) {
+                    in.keys.add(group.get(i).getFirst());
+                    in.children.add(group.get(i).getSecond());
+                }
+                storageSystem.writeInternalNode(filePath, in, tableColumns);
+                upper.add(new Pair<>(group.get(0).getFirst(), pageNo));
+                top = in;
+            }
+            level = upper;
+        }
+
+        // 3. 切换 root
+        this.root = top;
+        storageSystem.updateRootPageNo(filePath, spaceId, top.gid.pageNo);
+        return count;
+    }
+
+    /**
+     * 把下一层的 (分隔 key, 页号) 按页容量分组，每组成为一个内部节点；避免最后一组只剩一个孩子
+     * 最左边的孩子没有分隔 key（为 null）
+     */
+    private List<List<Pair<Key, Integer>>> groupChildren(List<Pair<Key, Integer>> level,
+                                                        int pageCapacity, int maxEntries) {
+        // 最左 child 只存页号
+        boolean varint = isVarintFormat();
+        int leftOnlySize = RecordSerializer.serializeKeyPtr(Collections.emptyList(), Collections.emptyList(), 0, varint).length
+                + PageManager.SLOT_SIZE;
+
+        List<List<Pair<Key, Integer>>> groups = new ArrayList<>();
+        List<Pair<Key, Integer>> group = new ArrayList<>();
+        int used = 0;
+        for (Pair<Key, Integer> child : level) {
+            Key key = child.getFirst();
+            int size = key == null ? leftOnlySize
+                    : RecordSerializer.serializeKeyPtr(key.getValues(), key.getKeyColumns(), child.getSecond(), varint).length
+                    + PageManager.SLOT_SIZE;
+            if (group.size() >= 2 && (used + size > pageCapacity || group.size() > maxEntries)) {
+                groups.add(group);
+                group = new ArrayList<>();
+            }
+            used = group.isEmpty() ? leftOnlySize : used + size;
+            group.add(child);
+        }
+        groups.add(group);
+
+        // 最后一组只有一个孩子时，从前一组借一个
+        if (groups.size() > 1 && group.size() == 1) {
+            List<Pair<Key, Integer>> prev = groups.get(groups.size() - 2);
+            group.add(0, prev.remove(prev.size() - 1));
         }
+        return groups;
     }
 
+    // ======================== 存储格式 / 表结构 ========================
+    /**
+     * 之后写的叶子按 PAX 格式（按列分 minipage）存放；已有的行格式叶子下次改写时转过去，两种叶子可以混在一棵树里
+     */
+    public void enablePaxLayout() {
+        StorageSystem.setPaxLayout(rootMetaId.spaceId, tableColumns);
+    }
+
+    public boolean isPaxLayout() {
+        return StorageSystem.isPaxLayout(rootMetaId.spaceId);
+    }
+
+    /**
+     * 之后写的行和内部节点条目按变长整数格式（INT/BIGINT 存 zigzag 变长整数，VARCHAR 长度前缀也变长），
+     * 小的 id、计数让行更短、内部节点扇出更大；已有的页下次改写时转过去，新旧格式的记录可以混在一页里
+     */
+    public void enableVarintFormat() {
+        StorageSystem.setVarintFormat(rootMetaId.spaceId, true);
+        this.maxRowBytes = RecordSerializer.maxDataRowSize(tableColumns, true) + PageManager.SLOT_SIZE;
+        this.maxKeyPtrBytes = RecordSerializer.maxKeyPtrSize(keyColumns(tableColumns), true) + PageManager.SLOT_SIZE;
+    }
+
+    public boolean isVarintFormat() {
+        return StorageSystem.isVarintFormat(rootMetaId.spaceId);
+    }
+
+    /**
+     * 加列只改表结构：重算一行最多的字节数，AHI 的整行列下标跟着变；
+     * root 是叶子时里面是按原来的列解码好的行，从页重新读一遍
+     * 持 Page2 的写 latch，加锁下降的读写都要先过它
+     */
+    @Override
+    public void addColumn(Column column) throws IOException {
+        NodeLatch rootLatch = NodeLatch.of(rootMetaId);
+        rootLatch.writeLock();
+        try {
+            tableColumns.add(column);
+            this.maxRowBytes = RecordSerializer.maxDataRowSize(tableColumns, isVarintFormat()) + PageManager.SLOT_SIZE;
+            adaptiveHashIndex.columnsChanged();
+            this.root = storageSystem.loadNode(filePath, root.gid, null, tableColumns);
+        } finally {
+            rootLatch.unlock();
+        }
+    }
+
+    // ======================== Bloom filter ========================
+    /**
+     * 打开主键 Bloom filter：有上次正常关闭时存下的文件就读它，没有就扫一遍叶子重建
+     * 读完即删掉文件，saveBloomFilter 时再写回；异常退出后文件不在，下次打开重建，不会漏掉之后插入的 key
+     */
+    public void enableBloomFilter() throws IOException {
+        File file = bloomFilterFile();
+        BloomFilter filter = file.exists() ? BloomFilter.load(file) : null;
+        if (filter == null) {
+            filter = new BloomFilter();
+            List<Column> pkColumns = getKeyColumns();
+            for (List<Object> row : rangeSearch(null, null)) {
+                filter.add(buildKey(row, pkColumns));
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+        bloomFilter = filter;
+    }
+
+    /**
+     * 把 Bloom filter 存到表文件旁边（关闭数据库时调用），没开 Bloom filter 时什么也不做
+     */
+    public void saveBloomFilter() throws IOException {
+        BloomFilter filter = bloomFilter;
+        if (filter != null) {
+            filter.save(bloomFilterFile());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        saveBloomFilter();
+        NodeLatch.release(rootMetaId.spaceId);
+    }
+
+    public boolean hasBloomFilter() {
+        return bloomFilter != null;
+    }
+
+    private File bloomFilterFile() {
+        return new File(filePath + ".bloom");
+    }
+
+    private void addToBloomFilter(Key key) {
+        BloomFilter filter = bloomFilter;
+        if (filter != null) {
+            filter.add(key);
+        }
+    }
+
+    private List<Column> getKeyColumns() {
+        return keyColumns(tableColumns);
+    }
+
+    private static List<Column> keyColumns(List<Column> tableColumns) {
+        List<Column> pkColumns = new ArrayList<>();
+        for (Column col : tableColumns) {
+            if (col.isPrimaryKey()) {
+                pkColumns.add(col);
+            }
+        }
+        return pkColumns;
+    }
+
+    /**
+     * 叶子不跨页存行：一行（含槽位）放不下一页就在加 latch、改页之前拒绝
+     * @return 行序列化后的字节数，含槽位
+     */
+    private int checkedRowBytes(List<Object> row) {
+        int bytes = RecordSerializer.dataRowSize(row, tableColumns, isVarintFormat());
+        if (bytes + PageManager.SLOT_SIZE > BPlusNode.pageCapacity()) {
+            throw new IllegalArgumentException("Row too large for a page: " + bytes + " bytes");
+        }
+        return bytes + PageManager.SLOT_SIZE;
+    }
+
+    private Key buildKey(List<Object> row, List<Column> pkColumns) {
+        List<Object> keyValues = new ArrayList<>();
+        for (int i = 0; i < tableColumns.size(); i++) {
+            if (tableColumns.get(i).isPrimaryKey()) {
+                keyValues.add(row.get(i));
+            }
+        }
+        return new Key(keyValues, pkColumns);
+    }
 
     // ======================== 删除 ========================
+    /**
+     * 按主键删除；节点低于半满时向兄弟借或与兄弟合并，root 只剩一个孩子时降低树高，合并掉的页还给空闲链表
+     */
+    @Override
     public boolean delete(Key key) throws IOException {
-        return delete(root, key);
+        // 1. 乐观删除：删完不会低于半满（或者叶子就是 root），只锁叶子
+        LeafNode leaf = lockLeafForWrite(key);
+        try {
+            if (leaf.search(key) == null) {
+                return false;
+            }
+            if (staysHalfFull(leaf) || leaf.gid.equals(root.gid)) {
+                return leaf.delete(filePath, key, tableColumns);
+            }
+        } finally {
+            NodeLatch.of(leaf.gid).unlock();
+        }
+
+        // 2. 需要再平衡：悲观重来，兄弟没锁到就放掉全部 latch 再试
+        while (true) {
+            List<NodeLatch> held = new ArrayList<>();
+            try {
+                List<BPlusNode<Key>> path = new ArrayList<>();
+                List<BPlusNode<Key>> siblings = new ArrayList<>();
+                if (lockPathForDelete(key, held, path, siblings)) {
+                    return deleteAndRebalance(key, path, siblings);
+                }
+            } finally {
+                unlockAll(held);
+            }
+            Thread.yield();
+        }
     }
 
-    private boolean delete(BPlusNode<Key> node, Key key) throws IOException {
-        if (node.isLeaf) {
-            LeafNode leaf = (LeafNode) node;
-            boolean removed = leaf.delete(filePath, key, tableColumns);
+    /**
+     * 删除的悲观下降：自上而下加写 latch，节点少一个条目仍不低于半满就是安全的，放掉它上面的 latch；
+     * 不安全的节点顺带锁住用来借/合并的兄弟。左兄弟逆着加锁顺序，所以用 tryLock，拿不到返回 false
+     * @param path     root 到叶子
+     * @param siblings 与 path 一一对应的兄弟，安全节点和 root 为 null
+     */
+    private boolean lockPathForDelete(Key key, List<NodeLatch> held, List<BPlusNode<Key>> path,
+                                      List<BPlusNode<Key>> siblings) throws IOException {
+        NodeLatch rootLatch = NodeLatch.of(rootMetaId);
+        rootLatch.writeLock();
+        held.add(rootLatch);
 
-            if (removed) storageSystem.writeLeafNode(filePath, leaf, tableColumns);
-            return removed;
-        } else {
+        BPlusNode<Key> node = root;
+        NodeLatch latch = NodeLatch.of(node.gid);
+        latch.writeLock();
+        held.add(latch);
+        path.add(node);
+        siblings.add(null);
+        // root 不受半满限制，内部 root 至少留一个 key
+        if (node.isLeaf || node.keys.size() > 1) releaseAncestors(held);
+
+        while (!node.isLeaf) {
             InternalNode in = (InternalNode) node;
-            int pos = 0;
-            while (pos < in.keys.size() && key.compareTo(in.keys.get(pos)) >= 0) pos++;
-            BPlusNode<Key> child = in.getChildAt(filePath, pos, tableColumns);
-            boolean removed = delete(child, key);
+            int idx = childIndex(in, key);
+            PageManager.GlobalPageId childId = new PageManager.GlobalPageId(in.gid.spaceId, in.children.get(idx));
+            NodeLatch childLatch = NodeLatch.of(childId);
+            childLatch.writeLock();
+            held.add(childLatch);
+            BPlusNode<Key> child = storageSystem.loadNode(filePath, childId, in, tableColumns);
+
+            BPlusNode<Key> sibling = null;
+            if (staysHalfFull(child)) {
+                releaseAncestors(held);
+            } else {
+                PageManager.GlobalPageId siblingId = new PageManager.GlobalPageId(in.gid.spaceId,
+                        in.children.get(idx > 0 ? idx - 1 : idx + 1));
+                NodeLatch siblingLatch = NodeLatch.of(siblingId);
+                if (!siblingLatch.tryWriteLock()) {
+                    return false;
+                }
+                held.add(siblingLatch);
+                sibling = storageSystem.loadNode(filePath, siblingId, in, tableColumns);
+            }
+            path.add(child);
+            siblings.add(sibling);
+            node = child;
+        }
+        return true;
+    }
+
+    /**
+     * 删掉叶子里的行，自下而上处理低于半满的节点，最后写回第一个不需要再平衡的节点
+     */
+    private boolean deleteAndRebalance(Key key, List<BPlusNode<Key>> path, List<BPlusNode<Key>> siblings) throws IOException {
+        LeafNode leaf = (LeafNode) path.get(path.size() - 1);
+        if (!leaf.remove(key)) {
+            return false;
+        }
+
+        BPlusNode<Key> node = leaf;
+        int level = path.size() - 1;
+        while (level > 0 && isUnderfull(node)) {
+            InternalNode parent = (InternalNode) path.get(level - 1);
+            if (node.isLeaf) {
+                ((LeafNode) node).rebalance(filePath, parent, (LeafNode) siblings.get(level), order, tableColumns);
+            } else {
+                ((InternalNode) node).rebalance(filePath, parent, (InternalNode) siblings.get(level), order, tableColumns);
+            }
+            node = parent;
+            level--;
+        }
 
-            if (removed) storageSystem.writeInternalNode(filePath, in, tableColumns);
-            return removed;
+        if (level == 0 && !node.isLeaf && node.keys.isEmpty()) {
+            // root 只剩一个孩子：孩子成为新的 root
+            shrinkRoot((InternalNode) node, path, siblings);
+        } else if (node.isLeaf) {
+            storageSystem.writeLeafNode(filePath, (LeafNode) node, tableColumns);
+        } else {
+            storageSystem.writeInternalNode(filePath, (InternalNode) node, tableColumns);
         }
+        return true;
     }
 
-    // ======================== 更新 ========================
-    public boolean update(Key key, List<Object> newRow) throws IOException {
-        return update(root, key, newRow);
+    /**
+     * 降低树高：此时 root 和它仅剩的孩子都持有写 latch（孩子刚合并过，一定不安全）
+     */
+    private void shrinkRoot(InternalNode oldRoot, List<BPlusNode<Key>> path, List<BPlusNode<Key>> siblings) throws IOException {
+        int onlyChild = oldRoot.children.get(0);
+        BPlusNode<Key> newRoot = path.get(1).gid.pageNo == onlyChild ? path.get(1) : siblings.get(1);
+        newRoot.parent = null;
+
+        storageSystem.updateRootPageNo(filePath, oldRoot.gid.spaceId, newRoot.gid.pageNo);
+        this.root = newRoot;
+        storageSystem.getPageManager().freePage(oldRoot.gid.spaceId, oldRoot.gid.pageNo);
     }
 
-    private boolean update(BPlusNode<Key> node, Key key, List<Object> newRow) throws IOException {
-        if (node.isLeaf) {
-            LeafNode leaf = (LeafNode) node;
-            boolean updated = leaf.update(filePath, key, newRow, tableColumns);
+    /**
+     * 非 root 节点低于半满：条目数和字节数都不到一半（行很宽时条目数少也可能已经够满）
+     */
+    private boolean isUnderfull(BPlusNode<Key> node) {
+        int bytes = node.isLeaf ? ((LeafNode) node).byteSize(tableColumns) : ((InternalNode) node).byteSize();
+        return node.keys.size() < order / 2 && bytes < BPlusNode.pageCapacity() / 2;
+    }
 
-            if (updated) storageSystem.writeLeafNode(filePath, leaf, tableColumns);
-            return updated;
-        } else {
-            InternalNode in = (InternalNode) node;
-            int pos = 0;
-            while (pos < in.keys.size() && key.compareTo(in.keys.get(pos)) >= 0) pos++;
-            BPlusNode<Key> child = in.getChildAt(filePath, pos, tableColumns);
-            boolean updated = update(child, key, newRow);
+    /**
+     * 刚从页加载的节点再删掉一个条目后是否一定不会低于半满
+     */
+    private boolean staysHalfFull(BPlusNode<Key> node) {
+        int maxEntryBytes = node.isLeaf ? maxRowBytes : maxKeyPtrBytes;
+        return node.keys.size() - 1 >= order / 2
+                || node.usedBytes() - maxEntryBytes >= BPlusNode.pageCapacity() / 2;
+    }
 
-            if (updated) storageSystem.writeInternalNode(filePath, in, tableColumns);
-            return updated;
+    // ======================== 更新 ========================
+    /**
+     * 按主键更新整行；新行变长放不下当前页时叶子分裂
+     */
+    @Override
+    public boolean update(Key key, List<Object> newRow) throws IOException {
+        boolean varint = isVarintFormat();
+        int newBytes = checkedRowBytes(newRow) - PageManager.SLOT_SIZE;
+        LeafNode leaf = lockLeafForWrite(key);
+        try {
+            List<Object> oldRow = leaf.search(key);
+            if (oldRow == null) {
+                return false;
+            }
+            int oldBytes = RecordSerializer.dataRowSize(oldRow, tableColumns, varint);
+            if (leaf.usedBytes() - oldBytes + newBytes <= BPlusNode.pageCapacity()) {
+                return leaf.update(filePath, key, newRow, tableColumns);
+            }
+        } finally {
+            NodeLatch.of(leaf.gid).unlock();
+        }
+
+        // 变长后放不下：悲观重来，按覆盖插入处理
+        List<NodeLatch> held = new ArrayList<>();
+        try {
+            List<InternalNode> path = new ArrayList<>();
+            leaf = lockPathForWrite(key, 1, newBytes + PageManager.SLOT_SIZE, held, path);
+            if (leaf.search(key) == null) {
+                return false;
+            }
+            List<SplitResult<Key>> splits = leaf.insert(filePath, key, newRow, tableColumns, order, fillBytes);
+            propagateSplits(path, splits);
+            return true;
+        } finally {
+            unlockAll(held);
         }
     }
 }
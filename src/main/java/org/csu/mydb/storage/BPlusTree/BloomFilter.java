@@ -0,0 +1,196 @@
+package org.csu.mydb.storage.BPlusTree;
+
+import org.csu.mydb.storage.Table.Key;
+import org.csu.mydb.storage.Table.KeyEncoder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 主键的分块 Bloom filter（blocked Bloom filter）：每个 key 的所有位都落在同一个 512 位（一个 cache line）的块里，
+ * 一次判断只碰一个块。说"不在"时 key 一定不在，查找可以不下降；说"在"时仍要去树里查
+ * - 按 Key 的保序编码哈希，只认完整主键（前缀查不了）
+ * - 只增不删：删掉的 key 仍会被判为"可能在"，多走一次查找而已
+ * - 分层扩容：当前层装满（每 key 约 10 位）后加一层两倍大的，查时任一层命中即"可能在"，不用重建
+ * - 多线程并发 add/mightContain 安全（按位 CAS 置位）
+ */
+public class BloomFilter {
+    private static final int MAGIC = 0x4D59_4246; // "MYBF"
+    private static final int BLOCK_WORDS = 8;     // 512 位一块
+    private static final int BITS_PER_KEY = 10;
+    private static final int PROBES = 7;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final class Layer {
+        final int capacity;
+        final AtomicInteger count;
+        final AtomicLongArray words;
+
+        Layer(int capacity, int count, AtomicLongArray words) {
+            this.capacity = capacity;
+            this.count = new AtomicInteger(count);
+            this.words = words;
+        }
+
+        Layer(int capacity) {
+            this(capacity, 0, new AtomicLongArray(blocksFor(capacity) * BLOCK_WORDS));
+        }
+
+        private static int blocksFor(int capacity) {
+            long bits = (long) capacity * BITS_PER_KEY;
+            return (int) Math.max(1, (bits + BLOCK_WORDS * 64 - 1) / (BLOCK_WORDS * 64));
+        }
+
+        void add(long hash) {
+            int base = block(hash) * BLOCK_WORDS;
+            int h1 = (int) hash;
+            int h2 = secondHash(hash);
+            for (int i = 0; i < PROBES; i++) {
+                int bit = (h1 + i * h2) & (BLOCK_WORDS * 64 - 1);
+                long mask = 1L << (bit & 63);
+                int word = base + (bit >>> 6);
+                if ((words.get(word) & mask) == 0) {
+                    words.getAndAccumulate(word, mask, (a, b) -> a | b);
+                }
+            }
+        }
+
+        boolean mightContain(long hash) {
+            int base = block(hash) * BLOCK_WORDS;
+            int h1 = (int) hash;
+            int h2 = secondHash(hash);
+            for (int i = 0; i < PROBES; i++) {
+                int bit = (h1 + i * h2) & (BLOCK_WORDS * 64 - 1);
+                if ((words.get(base + (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int block(long hash) {
+            // 块号用高 32 位，块内位置用低 32 位
+            return (int) ((hash >>> 32) % (words.length() / BLOCK_WORDS));
+        }
+
+        private static int secondHash(long hash) {
+            return (int) ((hash * 0x9E3779B97F4A7C15L) >>> 32) | 1;
+        }
+    }
+
+    private volatile List<Layer> layers;
+
+    public BloomFilter() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param expectedKeys 预计的 key 数，第一层按它分配，装满后照常加层
+     */
+    public BloomFilter(int expectedKeys) {
+        List<Layer> initial = new ArrayList<>();
+        initial.add(new Layer(Math.max(1, expectedKeys)));
+        layers = initial;
+    }
+
+    private BloomFilter(List<Layer> layers) {
+        this.layers = layers;
+    }
+
+    public void add(Key key) {
+        add(key.getNormalized());
+    }
+
+    /**
+     * @param encoded Key 的保序编码（KeyEncoder.encode）
+     */
+    public void add(byte[] encoded) {
+        long hash = KeyEncoder.hash(encoded);
+        List<Layer> current = layers;
+        Layer last = current.get(current.size() - 1);
+        last.add(hash);
+        if (last.count.incrementAndGet() >= last.capacity) {
+            grow(last);
+        }
+    }
+
+    /**
+     * @return false 表示 key 一定不存在
+     */
+    public boolean mightContain(Key key) {
+        return mightContain(key.getNormalized());
+    }
+
+    public boolean mightContain(byte[] encoded) {
+        long hash = KeyEncoder.hash(encoded);
+        for (Layer layer : layers) {
+            if (layer.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void grow(Layer full) {
+        List<Layer> current = layers;
+        if (current.get(current.size() - 1) != full) {
+            return; // 别的线程已经加过一层
+        }
+        List<Layer> next = new ArrayList<>(current);
+        next.add(new Layer((int) Math.min(Integer.MAX_VALUE / BITS_PER_KEY, full.capacity * 2L)));
+        layers = next;
+    }
+
+    // ======================== 持久化 ========================
+    /**
+     * 文件格式：magic, 层数, 每层 [capacity, count, 字数, 字...]
+     */
+    public void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            List<Layer> current = layers;
+            out.writeInt(MAGIC);
+            out.writeInt(current.size());
+            for (Layer layer : current) {
+                out.writeInt(layer.capacity);
+                out.writeInt(layer.count.get());
+                out.writeInt(layer.words.length());
+                for (int i = 0; i < layer.words.length(); i++) {
+                    out.writeLong(layer.words.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 文件不是 Bloom filter 格式时返回 null
+     */
+    public static BloomFilter load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            int layerCount = in.readInt();
+            List<Layer> layers = new ArrayList<>(layerCount);
+            for (int l = 0; l < layerCount; l++) {
+                int capacity = in.readInt();
+                int count = in.readInt();
+                AtomicLongArray words = new AtomicLongArray(in.readInt());
+                for (int i = 0; i < words.length(); i++) {
+                    words.set(i, in.readLong());
+                }
+                layers.add(new Layer(capacity, count, words));
+            }
+            return layers.isEmpty() ? null : new BloomFilter(layers);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.csu.mydb.storage.BPlusTree;
+
+import org.csu.mydb.storage.PageManager;
+import org.csu.mydb.storage.StorageSystem;
+import org.csu.mydb.storage.Table.Column.RecordSerializer;
+import org.csu.mydb.storage.Table.Key;
+import org.csu.mydb.storage.storageFiles.page.record.RecordHead;
+import org.csu.mydb.util.TypeHandler.VarInt;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 单列 INT 主键的内部节点（只读）：分隔 key 和孩子页号直接从页里解析成 int 数组，
+ * 查找时对 int[] 二分，不装箱、不建 Key 对象
+ * 只在查找/范围查找下降时使用，插入、删除、分裂仍然走 InternalNode
+ */
+public class IntInternalNode extends BPlusNode<Key> {
+    // 一条 key + child 记录的数据部分：非空标记(1) + key(4) + 子页号(4)
+    private static final int ENTRY_DATA_SIZE = 1 + 4 + 4;
+
+    final int[] intKeys;    // 分隔 key，升序
+    final int[] childPages; // 孩子页号，比 intKeys 多一个
+
+    private IntInternalNode(PageManager.GlobalPageId gid, PageManager.PageHeader header, StorageSystem storageSystem,
+                            int[] intKeys, int[] childPages) {
+        super(gid, header, false, storageSystem);
+        this.intKeys = intKeys;
+        this.childPages = childPages;
+    }
+
+    /**
+     * 从索引页解析（格式见 StorageSystem.serializeInternalEntries），两种条目格式都认：
+     * 定长的 非空标记 + INT + 子页号，变长整数格式的 列数 1 + 非空标记 + zigzag INT + 子页号
+     * @return 页里有不是 非空 INT + 子页号 的条目时返回 null，由调用方退回 InternalNode
+     */
+    public static IntInternalNode fromPage(PageManager.GlobalPageId gid, PageManager.Page page, StorageSystem storageSystem) {
+        int count = page.getRecordCount();
+        if (count == 0) {
+            return null;
+        }
+        int[] intKeys = new int[count - 1];
+        int[] childPages = new int[count];
+        for (int i = 0; i < count; i++) {
+            byte[] record = page.getRecord(i);
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            buffer.position(RecordHead.RECORD_HEADER_SIZE);
+            if (record[1] == RecordSerializer.VARINT_INDEX_RECORD) {
+                int columns = VarInt.getInt(buffer);
+                if (i > 0) {
+                    if (columns != 1 || buffer.get() == 0) {
+                        return null;
+                    }
+                    intKeys[i - 1] = VarInt.unzigzag(VarInt.getInt(buffer));
+                }
+                if (buffer.remaining() != 4) {
+                    return null;
+                }
+                childPages[i] = buffer.getInt();
+                continue;
+            }
+            if (i > 0) {
+                if (buffer.remaining() != ENTRY_DATA_SIZE || buffer.get() == 0) {
+                    return null;
+                }
+                intKeys[i - 1] = buffer.getInt();
+            }
+            childPages[i] = buffer.getInt();
+        }
+        return new IntInternalNode(gid, page.getHeader(), storageSystem, intKeys, childPages);
+    }
+
+    /**
+     * key 所在孩子的页号：第一个大于 key 的分隔 key 左边的孩子（与 BPlusTree.childIndex 一致）
+     */
+    int childPageNo(Key key) {
+        List<Object> values = key.getValues();
+        if (values.isEmpty()) {
+            return childPages[intKeys.length];
+        }
+        Object value = values.get(0);
+        // NULL 排在所有 INT 之前
+        return value == null ? childPages[0] : childPages[upperBound((Integer) value)];
+    }
+
+    /**
+     * 第一个可能含有 >= key 的条目的孩子的页号（与 BPlusTree.lowerBoundChildIndex 一致）
+     */
+    int lowerBoundChildPageNo(Key key) {
+        List<Object> values = key.getValues();
+        if (values.isEmpty() || values.get(0) == null) {
+            return childPages[0];
+        }
+        return childPages[upperBound((Integer) values.get(0) - 1L)];
+    }
+
+    /**
+     * 分隔 key 中 <= key 的个数
+     */
+    private int upperBound(long key) {
+        int lo = 0, hi = intKeys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (intKeys[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
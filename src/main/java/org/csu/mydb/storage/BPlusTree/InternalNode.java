@@ -6,12 +6,12 @@ import org.csu.mydb.storage.Table.Column.Column;
 import org.csu.mydb.storage.Table.Column.RecordSerializer;
 import org.csu.mydb.storage.Table.Key;
 import org.csu.mydb.storage.storageFiles.page.PageType;
-import org.csu.mydb.util.Pair.Pair;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * 内部节点（children 存储为 pageNo）：当需要访问子节点时，通过 pageManager.loadNode(...) 动态加载
@@ -28,70 +28,203 @@ public class InternalNode extends BPlusNode<Key> {
 
     private int findInsertPosition(Key key) {
         int i = 0;
-        while (i < keys.size() && keys.get(i).compareTo(key) < 0) {
+        while (i < keys.size() && keys.get(i).compareExact(key) < 0) {
             i++;
         }
         return i;
     }
 
     /**
-     * 插入 key + child (child 为 BPlusNode)
-     * 返回值：
-     *   - 如果向上冒泡并产生新的 root（root-special-case）会返回 new root (InternalNode)
-     *   - 否则返回 null
+     * 最短分隔 key：满足 lastLeft < s <= firstRight 的最短前缀（后缀截断）
+     * - 只保留 firstRight 到第一个与 lastLeft 不同的列为止
+     * - 该列是字符串时再截成比 lastLeft 那一列大的最短前缀，如 "apple" | "apricot" -> "apr"
+     * 分隔 key 越短，内部页放的孩子越多，树越矮
      */
-    public BPlusNode<Key> insertKey(String filePath, Key key, BPlusNode<Key> child, int order, List<Column> tableColumns) throws IOException {
-        // 找到 key 插入位置
-        int pos = findInsertPosition(key);
-        keys.add(pos, key);
-        children.add(pos + 1, child.gid.pageNo);
-        child.parent = this;
-
-        // 持久化当前 internal node
-        storageSystem.writeInternalNode(filePath,this, tableColumns);
+    static Key separator(Key lastLeft, Key firstRight) {
+        List<Object> left = lastLeft.getValues();
+        List<Object> right = firstRight.getValues();
+        int i = 0;
+        while (i < left.size() && i < right.size() && Objects.equals(left.get(i), right.get(i))) i++;
+        if (i >= right.size()) {
+            return firstRight;
+        }
 
-        // 超过阶数 -> split
-        if (keys.size() > order) {
-            return split(filePath, order, tableColumns);
+        List<Object> values = new ArrayList<>(right.subList(0, i));
+        Object lv = i < left.size() ? left.get(i) : null;
+        Object rv = right.get(i);
+        if (rv instanceof String) {
+            values.add(lv == null ? "" : shortestGreaterPrefix((String) lv, (String) rv));
+        } else {
+            values.add(rv);
         }
+        return new Key(values, firstRight.getKeyColumns().subList(0, values.size()));
+    }
 
-        return null;
+    /**
+     * right 的最短前缀 p，满足 left < p（已知 left < right）
+     */
+    private static String shortestGreaterPrefix(String left, String right) {
+        Key leftKey = new Key(Collections.singletonList(left), Collections.emptyList());
+        for (int end = 0; end < right.length(); end = right.offsetByCodePoints(end, 1)) {
+            String prefix = right.substring(0, end);
+            if (new Key(Collections.singletonList(prefix), Collections.emptyList()).compareExact(leftKey) > 0) {
+                return prefix;
+            }
+        }
+        return right;
     }
 
     /**
-     * 内部节点分裂
+     * 插入子节点分裂上来的若干 (key, 右孩子页号)，插完后只落盘/分裂一次
+     * @param fillBytes 顺序追加分裂时左页填到的字节数
+     * @return 本节点分裂后需要继续插入父节点的 SplitResult 列表；未分裂返回空列表
      */
-    public InternalNode split(String filePath, int order, List<Column> tableColumns) throws IOException {
-        int mid = keys.size() / 2;
-        Key promoteKey = keys.get(mid);
+    public List<SplitResult<Key>> insertEntries(String filePath, List<SplitResult<Key>> entries, int order, int fillBytes,
+                                                List<Column> tableColumns) throws IOException {
+        boolean append = true;
+        for (SplitResult<Key> entry : entries) {
+            int pos = findInsertPosition(entry.newKey);
+            append &= pos == keys.size();
+            keys.add(pos, entry.newKey);
+            children.add(pos + 1, entry.newPageNo);
+        }
 
+        List<byte[]> serialized = StorageSystem.serializeInternalEntries(this);
+        int[] sizes = entrySizes(serialized);
+        int total = 0;
+        for (int size : sizes) total += size;
+        if (keys.size() <= order && total <= pageCapacity()) {
+            storageSystem.writeInternalPage(this, serialized);
+            return Collections.emptyList();
+        }
+        // 每份至少两个孩子
+        return split(filePath, splitPoints(sizes, order + 1, fillBytes, append, 2), tableColumns);
+    }
+
+    /**
+     * 内部节点分裂：按孩子下标切开，每份之间的 key 上提到父节点
+     * @param cuts 第二份起每一份第一个孩子的下标
+     */
+    private List<SplitResult<Key>> split(String filePath, List<Integer> cuts, List<Column> tableColumns) throws IOException {
+        List<Key> allKeys = keys;
+        List<Integer> allChildren = children;
         int space = gid.spaceId;
-        int newPageNo = storageSystem.getPageManager().allocatePage(space);
 
-        PageManager.PageHeader header = new PageManager.PageHeader();
-        header.pageType = PageType.INDEX_PAGE;
-        header.pageNo = newPageNo;
+        // 左边保留第一份
+        int first = cuts.get(0);
+        keys = new ArrayList<>(allKeys.subList(0, first - 1));
+        children = new ArrayList<>(allChildren.subList(0, first));
+        storageSystem.writeInternalNode(filePath, this, tableColumns);
+
+        List<SplitResult<Key>> results = new ArrayList<>(cuts.size());
+        for (int p = 0; p < cuts.size(); p++) {
+            int start = cuts.get(p);
+            int end = p + 1 < cuts.size() ? cuts.get(p + 1) : allChildren.size();
+
+            int newPageNo = storageSystem.getPageManager().allocatePage(space);
+            InternalNode rightNode = new InternalNode(
+                    new PageManager.GlobalPageId(space, newPageNo),
+                    new PageManager.PageHeader(newPageNo, PageType.INDEX_PAGE),
+                    storageSystem
+            );
+            rightNode.header.prevPage = -1;
+            rightNode.header.nextPage = -1;
+            // 孩子 start 左边的 key 上提，其余 key 留在本份
+            rightNode.keys.addAll(allKeys.subList(start, end - 1));
+            rightNode.children.addAll(allChildren.subList(start, end));
+            storageSystem.writeInternalNode(filePath, rightNode, tableColumns);
+
+            results.add(new SplitResult<>(allKeys.get(start - 1), newPageNo));
+        }
+        return results;
+    }
+
+    /**
+     * 序列化后占用的字节数（含槽位），内存中改过之后用它代替 usedBytes
+     */
+    public int byteSize() {
+        int total = 0;
+        for (int size : entrySizes(StorageSystem.serializeInternalEntries(this))) total += size;
+        return total;
+    }
+
+    /**
+     * 把第 sepIdx 个分隔 key 换成 newKey 之后本页是否还放得下
+     */
+    public boolean fitsSeparator(int sepIdx, Key newKey) {
+        Key oldKey = keys.get(sepIdx);
+        int delta = entrySize(newKey) - entrySize(oldKey);
+        return byteSize() + delta <= pageCapacity();
+    }
+
+    private int entrySize(Key key) {
+        return RecordSerializer.serializeKeyPtr(key.getValues(), key.getKeyColumns(), 0,
+                StorageSystem.isVarintFormat(gid.spaceId)).length + PageManager.SLOT_SIZE;
+    }
+
+    private static int[] entrySizes(List<byte[]> serialized) {
+        int[] sizes = new int[serialized.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = serialized.get(i).length + PageManager.SLOT_SIZE;
+        }
+        return sizes;
+    }
 
-        InternalNode rightNode = new InternalNode(
-                new PageManager.GlobalPageId(space, newPageNo),
-                header,
-                storageSystem
-        );
+    /**
+     * 删除后低于半满的内部节点：把父节点的分隔 key 拉下来与兄弟合起来放得下一页就合并，
+     * 否则经由父节点从兄弟转一个孩子过来（新分隔 key 让父节点放不下时不转）
+     * 只改 parent 的内存内容，parent 由调用方落盘
+     * @param parent  父节点
+     * @param sibling 相邻兄弟，本节点不是父节点的第一个孩子时为左兄弟，否则为右兄弟
+     */
+    public void rebalance(String filePath, InternalNode parent, InternalNode sibling, int order, List<Column> tableColumns) throws IOException {
+        int idx = parent.children.indexOf(gid.pageNo);
+        boolean leftSibling = idx > 0;
+        int sepIdx = leftSibling ? idx - 1 : idx;
+        Key separator = parent.keys.get(sepIdx);
 
-        // 左边保留 [0, mid)
-        // 右边保留 [mid+1, end)
-        rightNode.keys.addAll(keys.subList(mid + 1, keys.size()));
-        rightNode.children.addAll(children.subList(mid + 1, children.size()));
+        // 1. 合并：右边的最左 child 变成 分隔 key + child
+        int leftOnlySize = RecordSerializer.serializeKeyPtr(Collections.emptyList(), Collections.emptyList(), 0,
+                StorageSystem.isVarintFormat(gid.spaceId)).length
+                + PageManager.SLOT_SIZE;
+        int mergedBytes = byteSize() + sibling.byteSize() - leftOnlySize + entrySize(separator);
+        if (keys.size() + sibling.keys.size() + 1 <= order && mergedBytes <= pageCapacity()) {
+            InternalNode left = leftSibling ? sibling : this;
+            InternalNode right = leftSibling ? this : sibling;
+            int rightIdx = leftSibling ? idx : idx + 1;
+            left.keys.add(separator);
+            left.keys.addAll(right.keys);
+            left.children.addAll(right.children);
 
-        // 截断左边
-        keys = new ArrayList<>(keys.subList(0, mid));
-        children = new ArrayList<>(children.subList(0, mid + 1));
+            parent.keys.remove(rightIdx - 1);
+            parent.children.remove(rightIdx);
 
-        // 写磁盘
-        storageSystem.writeInternalNode(filePath,this, tableColumns);
-        storageSystem.writeInternalNode(filePath, rightNode, tableColumns);
+            storageSystem.writeInternalNode(filePath, left, tableColumns);
+            storageSystem.getPageManager().freePage(gid.spaceId, right.gid.pageNo);
+            return;
+        }
 
-        return rightNode;  // 保证 rightNode 有 key
+        // 2. 借：兄弟的边界 key 上到父节点，父节点的分隔 key 下到本节点
+        Key newSeparator = leftSibling ? sibling.keys.get(sibling.keys.size() - 1) : sibling.keys.get(0);
+        if (sibling.keys.size() < 2
+                || byteSize() + entrySize(separator) > pageCapacity()
+                || !parent.fitsSeparator(sepIdx, newSeparator)) {
+            storageSystem.writeInternalNode(filePath, this, tableColumns);
+            return;
+        }
+        if (leftSibling) {
+            int last = sibling.keys.size() - 1;
+            keys.add(0, separator);
+            children.add(0, sibling.children.remove(last + 1));
+            sibling.keys.remove(last);
+        } else {
+            keys.add(separator);
+            children.add(sibling.children.remove(0));
+            sibling.keys.remove(0);
+        }
+        parent.keys.set(sepIdx, newSeparator);
+        storageSystem.writeInternalNode(filePath, this, tableColumns);
+        storageSystem.writeInternalNode(filePath, sibling, tableColumns);
     }
 
     /**
@@ -142,28 +275,24 @@ public class InternalNode extends BPlusNode<Key> {
 
     /**
      * 从 page 的二进制数据重建 children 列表（解析序列化格式）
-     * 假设 internal node page 格式类似：
-     *   [childPageId:int][keyLen:short][keyBytes][childPageId:int]...[keyLen:short][keyBytes][childPageId:int]
-     * 注意：根据你实际的 serializeToPage 实现可能需要调整字节序或字段顺序。
+     * internal node page 格式（见 StorageSystem.writeInternalNode）：
+     *   [childPageId:int] [key][childPageId:int] ... [key][childPageId:int]
      */
     private void rebuildChildrenFromPage(PageManager.Page page, List<Column> keyColumns) throws IOException {
         this.children.clear();
         this.keys.clear();
-        List<byte[]> records = new ArrayList<>();
-        for (int i = 0; i < page.header.recordCount; i++) {
-            records.add(page.getRecord(i));
-        }
 
-        if (records.isEmpty()) {
+        if (page.header.recordCount == 0) {
             throw new IOException("Internal node page has no records: " + gid.pageNo);
         }
 
-        // 后续 record = (key, child)
-        for (byte[] record : records) {
-            Pair<Key, Integer> pair = RecordSerializer.deserializeKeyPtr(record, keyColumns);
-            this.keys.add(pair.getFirst());
-            this.children.add(pair.getSecond());
+        List<Column> pkColumns = new ArrayList<>();
+        for (Column column : keyColumns) {
+            if (column.isPrimaryKey()) {
+                pkColumns.add(column);
+            }
         }
+        StorageSystem.readInternalEntries(page, pkColumns, this.keys, this.children);
     }
 
     private Key checkKey(Key key) {
@@ -3,11 +3,13 @@ package org.csu.mydb.storage.BPlusTree;
 import org.csu.mydb.storage.PageManager;
 import org.csu.mydb.storage.StorageSystem;
 import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.Column.RecordSerializer;
 import org.csu.mydb.storage.Table.Key;
 import org.csu.mydb.storage.storageFiles.page.PageType;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -15,8 +17,8 @@ import java.util.List;
  * - records: 每条记录是 List<Object>（整行列值）
  * - keys: 在父类 BPlusNode 中声明（List<Key>）
  * insert(...) 返回值：
- *   - 如果分裂导致 root 更改（root-special-case），返回新的 root（InternalNode）
- *   - 否则返回 null
+ *   - 如果发生分裂，返回需要插入父节点的 SplitResult 列表（由调用方向上传播，必要时长出新 root）
+ *   - 否则返回空列表
  */
 public class LeafNode extends BPlusNode<Key> {
     // 每条记录是表列的值列表
@@ -43,114 +45,231 @@ public class LeafNode extends BPlusNode<Key> {
         return i;
     }
 
-    public BPlusNode<Key> insert(String filePath, Key key, List<Object> rowData, List<Column> tableColumns, int order) throws IOException {
+    public List<SplitResult<Key>> insert(String filePath, Key key, List<Object> rowData, List<Column> tableColumns,
+                                         int order, int fillBytes) throws IOException {
         int pos = 0;
         while (pos < keys.size() && key.compareTo(keys.get(pos)) > 0) pos++;
 
-        // 覆盖已存在 key
+        // 覆盖已存在 key（新行可能更长，同样要检查是否放得下）
         if (pos < keys.size() && keys.get(pos).compareTo(key) == 0) {
             records.set(pos, rowData);
-            storageSystem.writeLeafNode(filePath, this, tableColumns);
-            return null;
+            return splitIfNeeded(filePath, order, fillBytes, false, tableColumns);
         }
 
         keys.add(pos, key);
         records.add(pos, rowData);
-        storageSystem.writeLeafNode(filePath, this, tableColumns);
-
-        if (keys.size() > order) return split(filePath, order, tableColumns);
-        return null;
+        boolean append = pos == keys.size() - 1 && header.nextPage == -1;
+        return splitIfNeeded(filePath, order, fillBytes, append, tableColumns);
     }
 
     /**
-     * 叶子节点分裂
+     * 把一组按 key 升序的行合并进本叶子（已存在的 key 被覆盖），只落盘/分裂一次
+     * 调用方保证这些 key 都落在本叶子的范围内
+     * @param replaced 不为 null 时收集被覆盖的旧行
      */
-    public InternalNode split(String filePath, int order, List<Column> tableColumns) throws IOException {
-        // 1. 分裂位置
-        int mid = keys.size() / 2;
-
-        // 2. 新的右兄弟
-        int newPageNo = storageSystem.getPageManager().allocatePage(gid.spaceId);
-        LeafNode right = new LeafNode(
-                new PageManager.GlobalPageId(gid.spaceId, newPageNo),
-                new PageManager.PageHeader(newPageNo, PageType.DATA_PAGE),
-                storageSystem
-        );
-
-        // 3. 拷贝右半部分
-        right.keys.addAll(keys.subList(mid, keys.size()));
-        right.records.addAll(records.subList(mid, records.size()));
-
-        // 4. 保留左半部分
-        this.keys = new ArrayList<>(keys.subList(0, mid));
-        this.records = new ArrayList<>(records.subList(0, mid));
-
-        // 5. 双向链表维护
-        right.header.nextPage = this.header.nextPage;
-        if (this.header.nextPage != -1) {
-            PageManager.Page nextPage = storageSystem.getPageManager().getPage(gid.spaceId, this.header.nextPage);
-            nextPage.getHeader().prevPage = right.gid.pageNo;
-            storageSystem.getBufferPool().putPage(nextPage, gid.spaceId);
+    public List<SplitResult<Key>> insertAll(String filePath, List<Key> newKeys, List<List<Object>> newRows,
+                                            List<Column> tableColumns, int order, int fillBytes,
+                                            List<List<Object>> replaced) throws IOException {
+        boolean append = header.nextPage == -1
+                && (keys.isEmpty() || newKeys.get(0).compareTo(keys.get(keys.size() - 1)) > 0);
+
+        List<Key> mergedKeys = new ArrayList<>(keys.size() + newKeys.size());
+        List<List<Object>> mergedRecords = new ArrayList<>(keys.size() + newKeys.size());
+        int i = 0, j = 0;
+        while (i < keys.size() || j < newKeys.size()) {
+            int cmp = i == keys.size() ? 1 : j == newKeys.size() ? -1 : keys.get(i).compareTo(newKeys.get(j));
+            if (cmp < 0) {
+                mergedKeys.add(keys.get(i));
+                mergedRecords.add(records.get(i++));
+            } else {
+                if (cmp == 0) {
+                    List<Object> old = records.get(i++);
+                    if (replaced != null) replaced.add(old);
+                }
+                mergedKeys.add(newKeys.get(j));
+                mergedRecords.add(newRows.get(j++));
+            }
         }
-        right.header.prevPage = this.gid.pageNo;
-        this.header.nextPage = right.gid.pageNo;
-
-        // 6. 持久化左右节点
-        storageSystem.writeLeafNode(filePath,this, tableColumns);
-        storageSystem.writeLeafNode(filePath, right, tableColumns);
-
-        // 7. 返回要上提的 key（右兄弟的第一个 key）
-        Key upKey = right.keys.get(0);
-
-        InternalNode parent = new InternalNode(
-                new PageManager.GlobalPageId(gid.spaceId, storageSystem.getPageManager().allocatePage(gid.spaceId)),
-                new PageManager.PageHeader(-1, PageType.INDEX_PAGE),
-                storageSystem
-        );
-        parent.header.pageNo = parent.gid.pageNo;
-        parent.keys.add(upKey);
-        parent.children.add(this.gid.pageNo);
-        parent.children.add(right.gid.pageNo);
-
-        storageSystem.writeInternalNode(filePath, parent, tableColumns);
-
-        return parent;
+        this.keys = mergedKeys;
+        this.records = mergedRecords;
+        return splitIfNeeded(filePath, order, fillBytes, append, tableColumns);
     }
 
-    public SplitResult<Key> insertAndMaybeSplit(String pathFile, Key key, List<Object> rowValues, List<Column> tableColumns, int order) throws IOException {
-        int pos = 0;
-        while (pos < keys.size() && key.compareTo(keys.get(pos)) > 0) pos++;
-
-        if (pos < keys.size() && key.compareTo(keys.get(pos)) == 0) {
-            records.set(pos, rowValues);
-            storageSystem.writeLeafNode(pathFile, this, tableColumns);
-            return null;
+    /**
+     * 行数不超过阶数且整页字节放得下就直接落盘；否则按字节分裂成若干个叶子（批量插入时可能一次多出好几页）
+     * @param fillBytes 顺序追加分裂时左页填到的字节数
+     * @param append    新行是否追加在整棵树的最右边
+     * @return 需要插入父节点的 (分隔 key, 右兄弟页号)，按 key 升序；未分裂返回空列表
+     */
+    public List<SplitResult<Key>> splitIfNeeded(String filePath, int order, int fillBytes, boolean append,
+                                                List<Column> tableColumns) throws IOException {
+        List<byte[]> rows = StorageSystem.serializeLeafRows(this, tableColumns);
+        int[] sizes = new int[rows.size()];
+        int total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = rows.get(i).length + PageManager.SLOT_SIZE;
+            total += sizes[i];
         }
 
-        keys.add(pos, key);
-        records.add(pos, rowValues);
-        storageSystem.writeLeafNode(pathFile, this, tableColumns);
-
-        if (keys.size() <= order) return null;
+        if (keys.size() <= order && total <= pageCapacity()) {
+            storageSystem.writeLeafPage(this, rows);
+            return Collections.emptyList();
+        }
+        // 行格式放不下，PAX 表按列编码可能还放得下（乐观插入按页上实际用掉的字节判断，这里要一致）
+        if (keys.size() <= order && storageSystem.writePaxLeafPage(this)) {
+            return Collections.emptyList();
+        }
+        return split(rows, splitPoints(sizes, order, fillBytes, append, 1));
+    }
 
-        // 分裂
-        int mid = keys.size() / 2;
-        LeafNode right = new LeafNode(new PageManager.GlobalPageId(gid.spaceId, storageSystem.getPageManager().allocatePage(gid.spaceId)),new PageManager.PageHeader(),storageSystem);
-        right.keys.addAll(keys.subList(mid, keys.size()));
-        right.records.addAll(records.subList(mid, records.size()));
-        keys = new ArrayList<>(keys.subList(0, mid));
-        records = new ArrayList<>(records.subList(0, mid));
+    /**
+     * 叶子节点分裂：按分裂点切开，第一份留在本页，其余各占一个新页
+     * @param rows 已序列化好的行，直接写页
+     * @param cuts 第二份起每一份的起始下标
+     */
+    private List<SplitResult<Key>> split(List<byte[]> rows, List<Integer> cuts) throws IOException {
+        List<Key> allKeys = keys;
+        List<List<Object>> allRecords = records;
+        int oldNext = this.header.nextPage;
+
+        // 1. 第一份留在本页
+        int end = cuts.get(0);
+        this.keys = new ArrayList<>(allKeys.subList(0, end));
+        this.records = new ArrayList<>(allRecords.subList(0, end));
+
+        // 2. 其余各份放到新的右兄弟，并维护双向链表
+        List<SplitResult<Key>> results = new ArrayList<>(cuts.size());
+        List<LeafNode> rights = new ArrayList<>(cuts.size());
+        List<Integer> starts = new ArrayList<>(cuts.size());
+        LeafNode prev = this;
+        for (int p = 0; p < cuts.size(); p++) {
+            int start = cuts.get(p);
+            end = p + 1 < cuts.size() ? cuts.get(p + 1) : allKeys.size();
+
+            int newPageNo = storageSystem.getPageManager().allocatePage(gid.spaceId);
+            LeafNode right = new LeafNode(
+                    new PageManager.GlobalPageId(gid.spaceId, newPageNo),
+                    new PageManager.PageHeader(newPageNo, PageType.DATA_PAGE),
+                    storageSystem
+            );
+            right.keys.addAll(allKeys.subList(start, end));
+            right.records.addAll(allRecords.subList(start, end));
+
+            right.header.prevPage = prev.gid.pageNo;
+            prev.header.nextPage = right.gid.pageNo;
+            rights.add(right);
+            starts.add(start);
+            // 上提能分开左右两边的最短 key，而不是右兄弟完整的第一个 key
+            results.add(new SplitResult<>(InternalNode.separator(allKeys.get(start - 1), right.keys.get(0)), right.gid.pageNo));
+            prev = right;
+        }
+        prev.header.nextPage = oldNext;
+        setPrevOfNext(oldNext, prev.gid.pageNo);
+
+        // 3. 持久化所有分出来的节点
+        storageSystem.writeLeafPage(this, rows.subList(0, cuts.get(0)));
+        for (int p = 0; p < rights.size(); p++) {
+            int start = starts.get(p);
+            storageSystem.writeLeafPage(rights.get(p), rows.subList(start, start + rights.get(p).keys.size()));
+        }
 
-        right.next = this.next;
-        this.next = right;
+        // 4. 返回要上提的 key（各右兄弟的第一个 key）
+        return results;
+    }
 
-        storageSystem.writeLeafNode(pathFile, this, tableColumns);
-        storageSystem.writeLeafNode(pathFile, right, tableColumns);
+    /**
+     * 序列化后占用的字节数（含槽位），内存中改过之后用它代替 usedBytes
+     */
+    public int byteSize(List<Column> tableColumns) {
+        int size = 0;
+        boolean varint = StorageSystem.isVarintFormat(gid.spaceId);
+        for (List<Object> row : records) {
+            size += RecordSerializer.dataRowSize(row, tableColumns, varint) + PageManager.SLOT_SIZE;
+        }
+        return size;
+    }
 
-        return new SplitResult<Key>(right.keys.get(0), right.gid.pageNo);
+    /**
+     * 修改右邻居页的 prevPage
+     * 右邻居不在本次下降的路径上，单独加写 latch（叶子层只会从左往右加锁）
+     */
+    private void setPrevOfNext(int nextPageNo, int prevPageNo) throws IOException {
+        if (nextPageNo == -1) {
+            return;
+        }
+        NodeLatch nextLatch = NodeLatch.of(gid.spaceId, nextPageNo);
+        nextLatch.writeLock();
+        try {
+            PageManager.Page nextPage = storageSystem.getPageManager().getPage(gid.spaceId, nextPageNo);
+            nextPage.getHeader().prevPage = prevPageNo;
+            nextPage.getHeader().isDirty = true;
+            storageSystem.getBufferPool().putPage(nextPage, gid.spaceId);
+        } finally {
+            nextLatch.unlock();
+        }
     }
 
+    /**
+     * 删除后低于半满的叶子：与兄弟合起来放得下一页就合并（右边并入左边，释放右边的页），否则向兄弟借一条
+     * 借完分隔 key 会变，新 key 让父节点放不下时就不借，宁可留着不满的叶子也不能溢出
+     * 只改 parent 的内存内容，parent 由调用方落盘
+     * @param parent  父节点
+     * @param sibling 相邻兄弟，本叶子不是父节点的第一个孩子时为左兄弟，否则为右兄弟
+     */
+    public void rebalance(String filePath, InternalNode parent, LeafNode sibling, int order, List<Column> tableColumns) throws IOException {
+        int idx = parent.children.indexOf(gid.pageNo);
+        boolean leftSibling = idx > 0;
+        int myBytes = byteSize(tableColumns);
+        int siblingBytes = sibling.byteSize(tableColumns);
+
+        // 1. 合并：右边并入左边，摘掉链表和父节点里的右边
+        if (keys.size() + sibling.keys.size() <= order && myBytes + siblingBytes <= pageCapacity()) {
+            LeafNode left = leftSibling ? sibling : this;
+            LeafNode right = leftSibling ? this : sibling;
+            int rightIdx = leftSibling ? idx : idx + 1;
+            left.keys.addAll(right.keys);
+            left.records.addAll(right.records);
+            left.header.nextPage = right.header.nextPage;
+            setPrevOfNext(right.header.nextPage, left.gid.pageNo);
+
+            parent.keys.remove(rightIdx - 1);
+            parent.children.remove(rightIdx);
+
+            storageSystem.writeLeafNode(filePath, left, tableColumns);
+            storageSystem.getPageManager().freePage(gid.spaceId, right.gid.pageNo);
+            return;
+        }
 
+        // 2. 借：分隔 key 改成借完之后左右两个叶子之间的最短分隔 key
+        if (sibling.keys.size() < 2) {
+            storageSystem.writeLeafNode(filePath, this, tableColumns);
+            return;
+        }
+        int sepIdx = leftSibling ? idx - 1 : idx;
+        int borrowIdx = leftSibling ? sibling.keys.size() - 1 : 0;
+        Key newSeparator = leftSibling
+                ? InternalNode.separator(sibling.keys.get(borrowIdx - 1), sibling.keys.get(borrowIdx))
+                : InternalNode.separator(sibling.keys.get(0), sibling.keys.get(1));
+        int rowBytes = RecordSerializer.dataRowSize(sibling.records.get(borrowIdx), tableColumns,
+                StorageSystem.isVarintFormat(gid.spaceId)) + PageManager.SLOT_SIZE;
+        if (myBytes + rowBytes > pageCapacity()
+                || !parent.fitsSeparator(sepIdx, newSeparator)) {
+            storageSystem.writeLeafNode(filePath, this, tableColumns);
+            return;
+        }
+        Key borrowedKey = sibling.keys.remove(borrowIdx);
+        List<Object> borrowedRow = sibling.records.remove(borrowIdx);
+        if (leftSibling) {
+            keys.add(0, borrowedKey);
+            records.add(0, borrowedRow);
+        } else {
+            keys.add(borrowedKey);
+            records.add(borrowedRow);
+        }
+        parent.keys.set(sepIdx, newSeparator);
+        storageSystem.writeLeafNode(filePath, this, tableColumns);
+        storageSystem.writeLeafNode(filePath, sibling, tableColumns);
+    }
 
     /**
      * 寻找节点
@@ -158,12 +277,20 @@ public class LeafNode extends BPlusNode<Key> {
      * @return 返回行
      */
     public List<Object> search(Key key) {
+        int index = indexOf(key);
+        return index < 0 ? null : records.get(index);
+    }
+
+    /**
+     * key 在叶子里的下标（即页里的槽位），不存在返回 -1
+     */
+    public int indexOf(Key key) {
         for (int i = 0; i < keys.size(); i++) {
             if (keys.get(i).compareTo(key) == 0) {
-                return records.get(i);
+                return i;
             }
         }
-        return null;
+        return -1;
     }
 
     /**
@@ -193,11 +320,21 @@ public class LeafNode extends BPlusNode<Key> {
      * @return 是否删除成功
      */
     public boolean delete(String pathFile, Key key, List<Column> tableColumns) {
+        if (!remove(key)) {
+            return false;
+        }
+        storageSystem.writeLeafNode(pathFile, this, tableColumns);
+        return true;
+    }
+
+    /**
+     * 只在内存中删掉某行，不落盘（删除后还要再平衡时由调用方统一写）
+     */
+    public boolean remove(Key key) {
         for (int i = 0; i < keys.size(); i++) {
             if (keys.get(i).compareTo(key) == 0) {
                 keys.remove(i);
                 records.remove(i);
-                storageSystem.writeLeafNode(pathFile,this, tableColumns);
                 return true;
             }
         }
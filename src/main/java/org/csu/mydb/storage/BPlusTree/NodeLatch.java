@@ -0,0 +1,87 @@
+package org.csu.mydb.storage.BPlusTree;
+
+import org.csu.mydb.storage.PageManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 节点 latch：按页（GlobalPageId）共享，同一页不管被 loadNode 加载成多少个节点对象，用的都是同一把
+ * - 查找持读 latch，修改持写 latch，加锁顺序固定为自上而下、叶子层从左到右
+ * - Page2（root 页号）的 latch 用来保护 root 指针的切换
+ * - 版本号供乐观读使用：持写 latch 期间为奇数，加写 latch、放写 latch 各 +1；
+ *   读者不加锁，读前记下版本，读完校验没变即可
+ * - 按表空间（一棵树一个）分开存，树关闭时整个放掉；释放的页号会从空闲链表重用，一棵树的 latch 数不超过文件的页数
+ */
+class NodeLatch {
+    private static final ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, NodeLatch>> SPACES =
+            new ConcurrentHashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong version = new AtomicLong();
+
+    static NodeLatch of(PageManager.GlobalPageId gid) {
+        return of(gid.spaceId, gid.pageNo);
+    }
+
+    static NodeLatch of(int spaceId, int pageNo) {
+        return SPACES.computeIfAbsent(spaceId, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(pageNo, k -> new NodeLatch());
+    }
+
+    /**
+     * 树关闭时放掉这个表空间的全部 latch，调用方保证没有还在进行的读写
+     */
+    static void release(int spaceId) {
+        SPACES.remove(spaceId);
+    }
+
+    void readLock() {
+        lock.readLock().lock();
+    }
+
+    void writeLock() {
+        lock.writeLock().lock();
+        version.incrementAndGet();
+    }
+
+    /**
+     * 不等待地加写 latch（逆着加锁顺序时用，拿不到由调用方放掉已有的 latch 重来）
+     */
+    boolean tryWriteLock() {
+        if (!lock.writeLock().tryLock()) {
+            return false;
+        }
+        version.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 释放当前线程持有的 latch（读或写）
+     */
+    void unlock() {
+        if (lock.isWriteLockedByCurrentThread()) {
+            version.incrementAndGet();
+            lock.writeLock().unlock();
+        } else {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 乐观读开始
+     * @return 当前版本号；节点正被修改时返回 -1
+     */
+    long readVersion() {
+        long v = version.get();
+        return (v & 1) == 0 ? v : -1;
+    }
+
+    /**
+     * 乐观读结束：版本没变说明期间没有写者，读到的内容有效
+     */
+    boolean validate(long v) {
+        return version.get() == v;
+    }
+}
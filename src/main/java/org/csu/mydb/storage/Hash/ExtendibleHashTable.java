@@ -0,0 +1,514 @@
+package org.csu.mydb.storage.Hash;
+
+import org.csu.mydb.storage.BPlusTree.BPlusNode;
+import org.csu.mydb.storage.PageManager;
+import org.csu.mydb.storage.StorageSystem;
+import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.Column.RecordCodec;
+import org.csu.mydb.storage.Table.Column.RecordFilter;
+import org.csu.mydb.storage.Table.Column.RecordSerializer;
+import org.csu.mydb.storage.Table.Key;
+import org.csu.mydb.storage.Table.KeyEncoder;
+import org.csu.mydb.storage.Table.PrimaryIndex;
+import org.csu.mydb.storage.storageFiles.page.PageType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 可扩展哈希表（CREATE TABLE ... USING HASH）：只按完整主键等值访问的表用它代替聚簇 B+ 树
+ * - 目录：2^globalDepth 个桶页号，按主键保序编码的哈希低 globalDepth 位定位；常驻内存，改动时写回目录页
+ * - 桶页：存整行（格式同 B+ 树叶子），页头 rightPointer 存局部深度
+ * - 桶放不下时只分裂这一个桶：局部深度 +1，按多出来的那一位把行分到两个桶；
+ *   局部深度已等于全局深度时目录先翻倍（只是把页号复制一份），不会整表重新哈希
+ * - 局部深度到上限还放不下（哈希碰撞）时挂溢出页（nextPage）
+ * - 等值查找：目录在内存里，只读桶页，与表大小无关
+ * - Page2 第 0 条记录：[globalDepth][目录页数][目录页号...]
+ * - 并发：整张表一把读写锁，查找共享、修改独占
+ */
+public class ExtendibleHashTable implements PrimaryIndex {
+    private static final int META_PAGE_NO = 2;
+    private static final int MAX_DEPTH = 20;
+
+    private final int spaceId;
+    private final StorageSystem storageSystem;
+    private final List<Column> tableColumns;
+    private final String filePath;
+    private final int[] keyPositions; // 主键列在行里的下标
+    private final int entriesPerDirectoryPage;
+    private final int maxDepth;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int globalDepth;
+    private int[] directory; // 下标为哈希的低 globalDepth 位，值为桶页号
+    private final List<Integer> directoryPages = new ArrayList<>();
+
+    /**
+     * 桶的内容：主页 + 溢出页里的所有行
+     */
+    private static final class Bucket {
+        final int localDepth;
+        final List<List<Object>> rows = new ArrayList<>();
+        final List<Integer> overflowPages = new ArrayList<>();
+
+        Bucket(int localDepth) {
+            this.localDepth = localDepth;
+        }
+    }
+
+    public ExtendibleHashTable(int spaceId, StorageSystem storageSystem, List<Column> tableColumns, String filePath) throws IOException {
+        this.spaceId = spaceId;
+        this.storageSystem = storageSystem;
+        this.tableColumns = tableColumns;
+        this.filePath = filePath;
+
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < tableColumns.size(); i++) {
+            if (tableColumns.get(i).isPrimaryKey()) positions.add(i);
+        }
+        if (positions.isEmpty()) {
+            throw new IllegalArgumentException("USING HASH requires a primary key");
+        }
+        this.keyPositions = positions.stream().mapToInt(Integer::intValue).toArray();
+
+        int recordBytes = BPlusNode.pageCapacity() - PageManager.SLOT_SIZE;
+        this.entriesPerDirectoryPage = recordBytes / 4;
+        // 目录页号都要放进 Page2 的一条记录
+        long maxEntries = (long) ((recordBytes - 8) / 4) * entriesPerDirectoryPage;
+        this.maxDepth = Math.min(MAX_DEPTH, 63 - Long.numberOfLeadingZeros(maxEntries));
+
+        byte[] meta = StorageSystem.readPage(filePath, spaceId, META_PAGE_NO).getRecord(0);
+        if (meta == null || meta.length < 8) {
+            // 新表：一个局部深度为 0 的空桶
+            int bucketPage = storageSystem.getPageManager().allocatePage(spaceId);
+            writeBucketPage(bucketPage, 0, Collections.emptyList(), -1);
+            globalDepth = 0;
+            directory = new int[]{bucketPage};
+            writeDirectory(0);
+        } else {
+            readDirectory(meta);
+        }
+    }
+
+    @Override
+    public List<Column> getColumns() {
+        return tableColumns;
+    }
+
+    @Override
+    public void addColumn(Column column) {
+        lock.writeLock().lock();
+        try {
+            tableColumns.add(column);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getGlobalDepth() {
+        lock.readLock().lock();
+        try {
+            return globalDepth;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 桶（主页）的个数
+     */
+    public int bucketCount() {
+        lock.readLock().lock();
+        try {
+            Set<Integer> pages = new HashSet<>();
+            for (int pageNo : directory) pages.add(pageNo);
+            return pages.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ======================== 查找 ========================
+    @Override
+    public List<Object> search(Key key) throws IOException {
+        return search(key, null);
+    }
+
+    /**
+     * 桶里每条记录只读主键列来比较，命中的那条再解码要的列
+     * @param positions 要的列在表里的下标，结果按这个顺序排列；null 为整行
+     */
+    @Override
+    public List<Object> search(Key key, int[] positions) throws IOException {
+        byte[] encoded = key.getNormalized();
+        RecordCodec codec = RecordCodec.of(tableColumns);
+        lock.readLock().lock();
+        try {
+            int pageNo = directory[slotOf(KeyEncoder.hash(encoded))];
+            while (pageNo != -1) {
+                PageManager.Page page = StorageSystem.readPage(filePath, spaceId, pageNo);
+                for (int i = 0; i < page.getRecordCount(); i++) {
+                    byte[] record = page.getRecord(i);
+                    if (Arrays.equals(KeyEncoder.encode(codec.decodeColumns(record, keyPositions)), encoded)) {
+                        return positions == null ? codec.decode(record) : codec.decodeColumns(record, positions);
+                    }
+                }
+                pageNo = page.getHeader().nextPage;
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<List<Object>> scan() throws IOException {
+        lock.readLock().lock();
+        try {
+            List<List<Object>> rows = new ArrayList<>();
+            for (int pageNo : new LinkedHashSet<>(asList(directory))) {
+                rows.addAll(readBucket(pageNo).rows);
+            }
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 带过滤条件、只取部分列的全表扫描：逐个桶页在记录的字节上求过滤条件，满足的按偏移只读要的列
+     */
+    @Override
+    public List<List<Object>> scan(int[] positions, RecordFilter filter) throws IOException {
+        RecordCodec codec = RecordCodec.of(tableColumns);
+        lock.readLock().lock();
+        try {
+            List<List<Object>> rows = new ArrayList<>();
+            for (int pageNo : new LinkedHashSet<>(asList(directory))) {
+                while (pageNo != -1) {
+                    PageManager.Page page = StorageSystem.readPage(filePath, spaceId, pageNo);
+                    for (int i = 0; i < page.getRecordCount(); i++) {
+                        byte[] record = page.getRecord(i);
+                        if (filter == null || filter.test(record)) {
+                            rows.add(positions == null ? codec.decode(record) : codec.decodeColumns(record, positions));
+                        }
+                    }
+                    pageNo = page.getHeader().nextPage;
+                }
+            }
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ======================== 修改 ========================
+    @Override
+    public void insert(List<Column> cols, List<Object> rowValues) throws IOException {
+        lock.writeLock().lock();
+        try {
+            // 在锁里按表的列排整行，和加列互斥
+            List<Object> row = PrimaryIndex.rowOf(tableColumns, cols, rowValues);
+            checkRowSize(row);
+            put(row, false, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int insertBatch(List<List<Object>> rows, List<List<Object>> replaced) throws IOException {
+        Set<ByteBuffer> keys = new HashSet<>();
+        lock.writeLock().lock();
+        try {
+            // 先查完整批，有放不下的行就一页都不写
+            for (List<Object> row : rows) {
+                checkRowSize(row);
+            }
+            for (List<Object> row : rows) {
+                // 同一批里前面写进去的行被覆盖不算
+                boolean first = keys.add(ByteBuffer.wrap(encodeKey(row)));
+                put(row, false, first ? replaced : null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return keys.size();
+    }
+
+    /**
+     * 哈希表不需要有序输入，逐行插入即可
+     */
+    @Override
+    public int bulkLoad(Iterator<List<Object>> sortedRows) throws IOException {
+        List<List<Object>> rows = new ArrayList<>();
+        sortedRows.forEachRemaining(rows::add);
+        return insertBatch(rows);
+    }
+
+    @Override
+    public boolean update(Key key, List<Object> newRow) throws IOException {
+        lock.writeLock().lock();
+        try {
+            checkRowSize(newRow);
+            return put(newRow, true, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(Key key) throws IOException {
+        byte[] encoded = key.getNormalized();
+        lock.writeLock().lock();
+        try {
+            int pageNo = directory[slotOf(KeyEncoder.hash(encoded))];
+            Bucket bucket = readBucket(pageNo);
+            for (int i = 0; i < bucket.rows.size(); i++) {
+                if (Arrays.equals(encodeKey(bucket.rows.get(i)), encoded)) {
+                    bucket.rows.remove(i);
+                    writeBucket(pageNo, bucket);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 写入一行（调用方持有写锁）：主键已存在则覆盖；桶放不下就分裂后重来
+     * @param mustExist 为 true 时主键不存在就不写（update 语义）
+     * @param replaced   不为 null 时收集被覆盖的旧行
+     * @return 是否写入
+     */
+    private boolean put(List<Object> row, boolean mustExist, List<List<Object>> replaced) throws IOException {
+        byte[] encoded = encodeKey(row);
+        long hash = KeyEncoder.hash(encoded);
+        while (true) {
+            int pageNo = directory[slotOf(hash)];
+            Bucket bucket = readBucket(pageNo);
+            int pos = -1;
+            for (int i = 0; i < bucket.rows.size() && pos < 0; i++) {
+                if (Arrays.equals(encodeKey(bucket.rows.get(i)), encoded)) pos = i;
+            }
+            if (pos < 0 && mustExist) {
+                return false;
+            }
+
+            List<List<Object>> rows = new ArrayList<>(bucket.rows);
+            if (pos >= 0) rows.set(pos, row); else rows.add(row);
+            // 桶里只有这一行时分裂也分不出空间，不再分
+            if (bucket.localDepth >= maxDepth || rows.size() == 1 || fitsInPage(serialize(rows))) {
+                if (pos >= 0 && replaced != null) replaced.add(bucket.rows.get(pos));
+                bucket.rows.clear();
+                bucket.rows.addAll(rows);
+                writeBucket(pageNo, bucket);
+                return true;
+            }
+            split(pageNo, bucket);
+        }
+    }
+
+    /**
+     * 一行要能放进一页（桶满了可以接溢出页，但一行不能跨页），否则在改任何页之前拒绝
+     */
+    private void checkRowSize(List<Object> row) {
+        int size = RecordSerializer.serializeDataRow(row, tableColumns).length;
+        if (size + PageManager.SLOT_SIZE > BPlusNode.pageCapacity()) {
+            throw new IllegalArgumentException("Row too large for a page: " + size + " bytes");
+        }
+    }
+
+    /**
+     * 分裂一个桶：局部深度 +1，哈希第 localDepth 位为 1 的行搬到新桶，目录里对应的一半改指新桶
+     */
+    private void split(int pageNo, Bucket bucket) throws IOException {
+        int depth = bucket.localDepth;
+        if (depth == globalDepth) {
+            doubleDirectory();
+        }
+
+        int newPageNo = storageSystem.getPageManager().allocatePage(spaceId);
+        List<List<Object>> stay = new ArrayList<>();
+        List<List<Object>> move = new ArrayList<>();
+        for (List<Object> row : bucket.rows) {
+            long hash = KeyEncoder.hash(encodeKey(row));
+            (((hash >>> depth) & 1) == 0 ? stay : move).add(row);
+        }
+        // 分裂前的行放得下一页，两半各自也放得下
+        writeBucketPage(pageNo, depth + 1, serialize(stay), -1);
+        writeBucketPage(newPageNo, depth + 1, serialize(move), -1);
+
+        Set<Integer> changedPages = new TreeSet<>();
+        for (int i = 0; i < directory.length; i++) {
+            if (directory[i] == pageNo && ((i >>> depth) & 1) == 1) {
+                directory[i] = newPageNo;
+                changedPages.add(i / entriesPerDirectoryPage);
+            }
+        }
+        for (int p : changedPages) {
+            writeDirectoryPage(p);
+        }
+    }
+
+    /**
+     * 目录翻倍：新的一半是旧的一半的拷贝，不动任何桶
+     */
+    private void doubleDirectory() throws IOException {
+        int oldSize = directory.length;
+        int[] doubled = Arrays.copyOf(directory, oldSize * 2);
+        System.arraycopy(directory, 0, doubled, oldSize, oldSize);
+        directory = doubled;
+        globalDepth++;
+        writeDirectory(oldSize / entriesPerDirectoryPage);
+    }
+
+    // ======================== 页读写 ========================
+    private Bucket readBucket(int pageNo) {
+        PageManager.Page page = StorageSystem.readPage(filePath, spaceId, pageNo);
+        Bucket bucket = new Bucket(page.getHeader().rightPointer);
+        while (true) {
+            for (int i = 0; i < page.getRecordCount(); i++) {
+                bucket.rows.add(RecordSerializer.deserializeDataRow(page.getRecord(i), tableColumns));
+            }
+            int next = page.getHeader().nextPage;
+            if (next == -1) return bucket;
+            bucket.overflowPages.add(next);
+            page = StorageSystem.readPage(filePath, spaceId, next);
+        }
+    }
+
+    /**
+     * 写回整个桶：依次装满主页和溢出页，溢出页不够就分配，多出来的释放
+     */
+    private void writeBucket(int pageNo, Bucket bucket) throws IOException {
+        List<byte[]> records = serialize(bucket.rows);
+        List<List<byte[]>> pages = new ArrayList<>();
+        List<byte[]> current = new ArrayList<>();
+        int used = 0;
+        for (byte[] record : records) {
+            int size = record.length + PageManager.SLOT_SIZE;
+            if (!current.isEmpty() && used + size > BPlusNode.pageCapacity()) {
+                pages.add(current);
+                current = new ArrayList<>();
+                used = 0;
+            }
+            current.add(record);
+            used += size;
+        }
+        pages.add(current);
+
+        List<Integer> chain = new ArrayList<>();
+        chain.add(pageNo);
+        for (int i = 1; i < pages.size(); i++) {
+            chain.add(i - 1 < bucket.overflowPages.size() ? bucket.overflowPages.get(i - 1)
+                    : storageSystem.getPageManager().allocatePage(spaceId));
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            writeBucketPage(chain.get(i), bucket.localDepth, pages.get(i), i + 1 < chain.size() ? chain.get(i + 1) : -1);
+        }
+        for (int i = pages.size() - 1; i < bucket.overflowPages.size(); i++) {
+            storageSystem.getPageManager().freePage(spaceId, bucket.overflowPages.get(i));
+        }
+    }
+
+    private void writeBucketPage(int pageNo, int localDepth, List<byte[]> records, int nextPage) {
+        PageManager.Page page = new PageManager.Page(pageNo);
+        page.getHeader().pageType = PageType.HASH_BUCKET_PAGE;
+        page.getHeader().rightPointer = localDepth;
+        page.getHeader().nextPage = nextPage;
+        storageSystem.writeRecordsPage(spaceId, page, records);
+    }
+
+    private void readDirectory(byte[] meta) {
+        ByteBuffer buffer = ByteBuffer.wrap(meta);
+        globalDepth = buffer.getInt();
+        int pageCount = buffer.getInt();
+        for (int i = 0; i < pageCount; i++) {
+            directoryPages.add(buffer.getInt());
+        }
+        directory = new int[1 << globalDepth];
+        for (int p = 0; p < pageCount; p++) {
+            ByteBuffer entries = ByteBuffer.wrap(StorageSystem.readPage(filePath, spaceId, directoryPages.get(p)).getRecord(0));
+            for (int i = p * entriesPerDirectoryPage; i < directory.length && entries.remaining() >= 4; i++) {
+                directory[i] = entries.getInt();
+            }
+        }
+    }
+
+    /**
+     * 从第 fromPage 个目录页起全部重写（目录页不够就分配），再写 Page2
+     */
+    private void writeDirectory(int fromPage) throws IOException {
+        int pageCount = (directory.length + entriesPerDirectoryPage - 1) / entriesPerDirectoryPage;
+        while (directoryPages.size() < pageCount) {
+            directoryPages.add(storageSystem.getPageManager().allocatePage(spaceId));
+        }
+        for (int p = fromPage; p < pageCount; p++) {
+            writeDirectoryPage(p);
+        }
+
+        ByteBuffer meta = ByteBuffer.allocate(8 + 4 * directoryPages.size());
+        meta.putInt(globalDepth);
+        meta.putInt(directoryPages.size());
+        for (int pageNo : directoryPages) meta.putInt(pageNo);
+        PageManager.Page old = StorageSystem.readPage(filePath, spaceId, META_PAGE_NO);
+        PageManager.Page page = new PageManager.Page(META_PAGE_NO);
+        page.getHeader().pageType = old.getHeader().pageType;
+        storageSystem.writeRecordsPage(spaceId, page, Collections.singletonList(meta.array()));
+    }
+
+    private void writeDirectoryPage(int p) {
+        int from = p * entriesPerDirectoryPage;
+        int to = Math.min(directory.length, from + entriesPerDirectoryPage);
+        ByteBuffer entries = ByteBuffer.allocate(4 * (to - from));
+        for (int i = from; i < to; i++) entries.putInt(directory[i]);
+
+        PageManager.Page page = new PageManager.Page(directoryPages.get(p));
+        page.getHeader().pageType = PageType.HASH_DIRECTORY_PAGE;
+        storageSystem.writeRecordsPage(spaceId, page, Collections.singletonList(entries.array()));
+    }
+
+    // ======================== 工具 ========================
+    private int slotOf(long hash) {
+        return (int) (hash & ((1L << globalDepth) - 1));
+    }
+
+    private byte[] encodeKey(List<Object> row) {
+        List<Object> values = new ArrayList<>(keyPositions.length);
+        for (int position : keyPositions) values.add(row.get(position));
+        return KeyEncoder.encode(values);
+    }
+
+    private List<byte[]> serialize(List<List<Object>> rows) {
+        List<byte[]> records = new ArrayList<>(rows.size());
+        for (List<Object> row : rows) {
+            records.add(RecordSerializer.serializeDataRow(row, tableColumns));
+        }
+        return records;
+    }
+
+    private static boolean fitsInPage(List<byte[]> records) {
+        int used = 0;
+        for (byte[] record : records) used += record.length + PageManager.SLOT_SIZE;
+        return used <= BPlusNode.pageCapacity();
+    }
+
+    private static List<Integer> asList(int[] values) {
+        List<Integer> list = new ArrayList<>(values.length);
+        for (int value : values) list.add(value);
+        return list;
+    }
+}
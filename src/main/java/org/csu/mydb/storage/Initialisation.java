@@ -18,6 +18,7 @@ import static org.csu.mydb.storage.PageManager.PAGE_SIZE;
 //创建好ibdata1（系统表空间：存放系统表结构）
 //创建好sys_tables.idb(存放所有表信息的文件)
 //创建好sys_columns.idb(存放所有列信息的文件)
+//创建好sys_indexes.idb(存放所有二级索引信息的文件)
 public class Initialisation {
 
     public static void main(String[] args) throws IOException {
@@ -108,6 +109,9 @@ public class Initialisation {
 //            file.createNewFile(); // 再创建文件
 //        }
         storageSystem.getPageManager().openFile(2, "save/repos/sys_columns.idb");
+
+        //创建好sys_indexes.idb(存放所有二级索引信息的文件)
+        storageSystem.getPageManager().openFile(3, "save/repos/sys_indexes.idb");
         storageSystem.getBufferPool().flush();
 //        // 创建文件头页
 //        PageManager.Page headerPage2 = new DataPage(0);
@@ -0,0 +1,571 @@
+package org.csu.mydb.storage.Lsm;
+
+import org.csu.mydb.storage.BPlusTree.BPlusNode;
+import org.csu.mydb.storage.PageManager;
+import org.csu.mydb.storage.StorageSystem;
+import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.Column.RecordCodec;
+import org.csu.mydb.storage.Table.Key;
+import org.csu.mydb.storage.Table.KeyEncoder;
+import org.csu.mydb.storage.Table.PrimaryIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * LSM 树（CREATE TABLE ... ENGINE=LSM）：写多读少的表用它代替原地改页的 B+ 树
+ * - 写：只进内存里的有序 memtable（跳表），删除写墓碑；memtable 满了整个顺序写成 L0 的一个有序段
+ * - 合并（后台线程，leveled）：L0 段数到 L0_COMPACTION_TRIGGER 时和 L1 合成新的 L1；
+ *   第 i 层（i >= 1，每层一个段）页数超过上限时并入第 i+1 层。同一 key 新的覆盖旧的，合到最底层时丢掉墓碑
+ * - 读：memtable → L0（新到旧）→ L1 → ...，第一个找到的为准；每段先问 Bloom filter、再二分 fence 只读一页
+ * - Page2：第 0 条记录 [下一个段号]，之后每段一条 [层][段号][条数][页数][首页]
+ * - 并发：写者之间串行；读者持 versionLock 读锁，换 memtable、装上合并结果、释放旧段的页时持写锁
+ * - memtable 只在内存里，关闭数据库（close）时写成段；异常退出会丢掉还没写出去的部分
+ */
+public class LsmTree implements PrimaryIndex {
+    private static final Logger logger = LoggerFactory.getLogger(LsmTree.class);
+    private static final int META_PAGE_NO = 2;
+    static final int L0_COMPACTION_TRIGGER = 4;
+    private static final int LEVEL_SIZE_RATIO = 10;
+    public static final int DEFAULT_MEMTABLE_PAGES = 64;
+
+    // 所有 LSM 表共用一个后台合并线程
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "lsm-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int spaceId;
+    private final StorageSystem storageSystem;
+    private final List<Column> tableColumns;
+    private final String filePath;
+    private final int[] keyPositions;
+    private final int memtableBytes;
+
+    private final ReentrantLock writerLock = new ReentrantLock();
+    private final ReentrantReadWriteLock versionLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+    private volatile ConcurrentSkipListMap<byte[], byte[]> memtable = newMemtable();
+    private int memtableUsed; // writerLock 保护
+    // levels.get(0) 是 L0（新的在前），之后每层最多一个段；整体替换，不原地改
+    private volatile List<List<SortedRun>> levels = new ArrayList<>();
+    private long nextSeq = 1;
+
+    public LsmTree(int spaceId, StorageSystem storageSystem, List<Column> tableColumns, String filePath) throws IOException {
+        this(spaceId, storageSystem, tableColumns, filePath, DEFAULT_MEMTABLE_PAGES * BPlusNode.pageCapacity());
+    }
+
+    /**
+     * @param memtableBytes memtable 攒到这么多字节就写成一个段
+     */
+    public LsmTree(int spaceId, StorageSystem storageSystem, List<Column> tableColumns, String filePath,
+                   int memtableBytes) throws IOException {
+        this.spaceId = spaceId;
+        this.storageSystem = storageSystem;
+        this.tableColumns = tableColumns;
+        this.filePath = filePath;
+        this.memtableBytes = Math.max(memtableBytes, BPlusNode.pageCapacity());
+
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < tableColumns.size(); i++) {
+            if (tableColumns.get(i).isPrimaryKey()) positions.add(i);
+        }
+        if (positions.isEmpty()) {
+            throw new IllegalArgumentException("ENGINE=LSM requires a primary key");
+        }
+        this.keyPositions = positions.stream().mapToInt(Integer::intValue).toArray();
+
+        levels.add(new ArrayList<>());
+        PageManager.Page meta = StorageSystem.readPage(filePath, spaceId, META_PAGE_NO);
+        byte[] header = meta.getRecord(0);
+        if (header == null || header.length < 8) {
+            writeMeta();
+        } else {
+            readMeta(meta);
+        }
+    }
+
+    private static ConcurrentSkipListMap<byte[], byte[]> newMemtable() {
+        return new ConcurrentSkipListMap<>(Arrays::compareUnsigned);
+    }
+
+    @Override
+    public List<Column> getColumns() {
+        return tableColumns;
+    }
+
+    /**
+     * 写者和读者都挡住：memtable 和各段里的行都按 tableColumns 编解码
+     */
+    @Override
+    public void addColumn(Column column) {
+        writerLock.lock();
+        versionLock.writeLock().lock();
+        try {
+            tableColumns.add(column);
+        } finally {
+            versionLock.writeLock().unlock();
+            writerLock.unlock();
+        }
+    }
+
+    // ======================== 读 ========================
+    /**
+     * 按完整主键查找（LSM 不支持按主键前缀查）
+     */
+    @Override
+    public List<Object> search(Key key) throws IOException {
+        // 解码也在读锁里，和加列互斥
+        versionLock.readLock().lock();
+        try {
+            byte[] record = find(key.getNormalized());
+            return record == null || SortedRun.isTombstone(record) ? null : decodeRow(record);
+        } finally {
+            versionLock.readLock().unlock();
+        }
+    }
+
+    private byte[] find(byte[] key) {
+        versionLock.readLock().lock();
+        try {
+            byte[] record = memtable.get(key);
+            if (record != null) return record;
+            for (List<SortedRun> level : levels) {
+                for (SortedRun run : level) {
+                    record = run.get(key);
+                    if (record != null) return record;
+                }
+            }
+            return null;
+        } finally {
+            versionLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<List<Object>> scan() throws IOException {
+        versionLock.readLock().lock();
+        try {
+            Iterator<byte[]> merged = merge(sources(memtable, levels), true);
+            List<List<Object>> rows = new ArrayList<>();
+            while (merged.hasNext()) {
+                rows.add(decodeRow(merged.next()));
+            }
+            return rows;
+        } finally {
+            versionLock.readLock().unlock();
+        }
+    }
+
+    // ======================== 写 ========================
+    @Override
+    public void insert(List<Column> cols, List<Object> rowValues) throws IOException {
+        writerLock.lock();
+        try {
+            // 在锁里按表的列排整行，和加列互斥
+            List<Object> row = PrimaryIndex.rowOf(tableColumns, cols, rowValues);
+            put(row);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * LSM 的写本来不读旧值；要收集被覆盖的行时才逐行先查一次
+     */
+    @Override
+    public int insertBatch(List<List<Object>> rows, List<List<Object>> replaced) throws IOException {
+        Set<ByteBuffer> keys = new HashSet<>();
+        writerLock.lock();
+        try {
+            for (List<Object> row : rows) {
+                byte[] key = encodeKey(row);
+                // 同一批里前面写进去的行被覆盖不算
+                if (keys.add(ByteBuffer.wrap(key)) && replaced != null) {
+                    byte[] old = find(key);
+                    if (old != null && !SortedRun.isTombstone(old)) replaced.add(decodeRow(old));
+                }
+                put(row);
+            }
+        } finally {
+            writerLock.unlock();
+        }
+        return keys.size();
+    }
+
+    /**
+     * 写入不需要有序，逐行进 memtable
+     */
+    @Override
+    public int bulkLoad(Iterator<List<Object>> sortedRows) throws IOException {
+        List<List<Object>> rows = new ArrayList<>();
+        sortedRows.forEachRemaining(rows::add);
+        return insertBatch(rows);
+    }
+
+    @Override
+    public boolean update(Key key, List<Object> newRow) throws IOException {
+        writerLock.lock();
+        try {
+            if (search(key) == null) {
+                return false;
+            }
+            put(newRow);
+            return true;
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(Key key) throws IOException {
+        writerLock.lock();
+        try {
+            if (search(key) == null) {
+                return false;
+            }
+            write(SortedRun.record(SortedRun.TOMBSTONE, key.getNormalized(), null));
+            return true;
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * 关闭前把 memtable 写成段，并等后台合并做完
+     */
+    @Override
+    public void close() throws IOException {
+        writerLock.lock();
+        try {
+            flush();
+        } finally {
+            writerLock.unlock();
+        }
+        awaitCompaction();
+    }
+
+    /**
+     * @return 行的主键编码
+     */
+    private byte[] put(List<Object> row) throws IOException {
+        byte[] key = encodeKey(row);
+        write(SortedRun.putRecord(key, row, RecordCodec.of(tableColumns)));
+        return key;
+    }
+
+    private void write(byte[] record) throws IOException {
+        if (record.length + PageManager.SLOT_SIZE > BPlusNode.pageCapacity()) {
+            throw new IllegalArgumentException("Row too large for a page: " + record.length + " bytes");
+        }
+        byte[] old = memtable.put(SortedRun.keyOf(record), record);
+        memtableUsed += record.length + PageManager.SLOT_SIZE - (old == null ? 0 : old.length + PageManager.SLOT_SIZE);
+        if (memtableUsed >= memtableBytes) {
+            flush();
+        }
+    }
+
+    /**
+     * memtable 顺序写成 L0 的新段（调用方持有 writerLock）
+     */
+    private void flush() throws IOException {
+        ConcurrentSkipListMap<byte[], byte[]> full = memtable;
+        if (full.isEmpty()) {
+            return;
+        }
+        SortedRun.Writer writer = new SortedRun.Writer(allocateSeq(), 0, full.size(), storageSystem, filePath, spaceId);
+        for (byte[] record : full.values()) {
+            writer.add(record);
+        }
+        SortedRun run = writer.finish();
+
+        versionLock.writeLock().lock();
+        try {
+            List<List<SortedRun>> next = copyLevels();
+            next.get(0).add(0, run);
+            levels = next;
+            memtable = newMemtable();
+            memtableUsed = 0;
+            writeMeta();
+        } finally {
+            versionLock.writeLock().unlock();
+        }
+        scheduleCompaction();
+    }
+
+    // ======================== 合并 ========================
+    private void scheduleCompaction() {
+        if (compactionScheduled.compareAndSet(false, true)) {
+            COMPACTOR.submit(() -> {
+                compactionScheduled.set(false);
+                try {
+                    compact();
+                } catch (IOException | RuntimeException e) {
+                    logger.error("LSM compaction failed: {}", filePath, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * 等已经排上的后台合并做完
+     */
+    public void awaitCompaction() throws IOException {
+        try {
+            // 合并线程只有一个，排在后面的空任务做完说明前面的都做完了
+            COMPACTOR.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * 一直合并到没有层超限（只在合并线程里跑）
+     */
+    private void compact() throws IOException {
+        while (true) {
+            List<List<SortedRun>> snapshot = levels;
+            List<SortedRun> inputs = new ArrayList<>();
+            int target = -1;
+            if (snapshot.get(0).size() >= L0_COMPACTION_TRIGGER) {
+                inputs.addAll(snapshot.get(0));
+                target = 1;
+            } else {
+                for (int i = 1; i < snapshot.size(); i++) {
+                    if (!snapshot.get(i).isEmpty() && snapshot.get(i).get(0).pages.length > maxPages(i)) {
+                        inputs.addAll(snapshot.get(i));
+                        target = i + 1;
+                        break;
+                    }
+                }
+            }
+            if (target < 0) {
+                return;
+            }
+            if (target < snapshot.size()) {
+                inputs.addAll(snapshot.get(target));
+            }
+            // 目标层下面没有数据时墓碑已经没有要盖住的旧值了
+            boolean bottom = true;
+            for (int i = target + 1; i < snapshot.size(); i++) {
+                if (!snapshot.get(i).isEmpty()) bottom = false;
+            }
+
+            List<Iterator<byte[]>> sources = new ArrayList<>();
+            int expected = 0;
+            for (SortedRun run : inputs) {
+                sources.add(run.iterator());
+                expected += run.entryCount;
+            }
+            SortedRun.Writer writer = new SortedRun.Writer(allocateSeq(), target, expected, storageSystem, filePath, spaceId);
+            Iterator<byte[]> merged = merge(sources, bottom);
+            while (merged.hasNext()) {
+                writer.add(merged.next());
+            }
+            SortedRun output = writer.finish();
+
+            versionLock.writeLock().lock();
+            try {
+                List<List<SortedRun>> next = copyLevels();
+                for (List<SortedRun> level : next) {
+                    level.removeAll(inputs);
+                }
+                while (next.size() <= target) {
+                    next.add(new ArrayList<>());
+                }
+                if (output != null) {
+                    next.get(target).add(output);
+                }
+                levels = next;
+                writeMeta();
+                // 持着写锁释放：没有读者还在读这些页
+                for (SortedRun run : inputs) {
+                    run.free(storageSystem);
+                }
+            } finally {
+                versionLock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * 第 level 层（>= 1）段的页数上限
+     */
+    private long maxPages(int level) {
+        long pages = (long) L0_COMPACTION_TRIGGER * Math.max(1, memtableBytes / BPlusNode.pageCapacity());
+        for (int i = 1; i < level; i++) pages *= LEVEL_SIZE_RATIO;
+        return pages;
+    }
+
+    /**
+     * 各层的段数，下标为层号
+     */
+    public List<Integer> levelSizes() {
+        List<Integer> sizes = new ArrayList<>();
+        for (List<SortedRun> level : levels) sizes.add(level.size());
+        return sizes;
+    }
+
+    // ======================== 多路归并 ========================
+    /**
+     * 所有数据源，新的在前：memtable、L0（新到旧）、L1、...
+     */
+    private static List<Iterator<byte[]>> sources(ConcurrentSkipListMap<byte[], byte[]> memtable,
+                                                  List<List<SortedRun>> levels) {
+        List<Iterator<byte[]>> sources = new ArrayList<>();
+        sources.add(memtable.values().iterator());
+        for (List<SortedRun> level : levels) {
+            for (SortedRun run : level) sources.add(run.iterator());
+        }
+        return sources;
+    }
+
+    /**
+     * 按 key 升序归并多个有序源，同一 key 只留最新的（源下标小的）
+     * @param dropTombstones 是否丢掉墓碑
+     */
+    private static Iterator<byte[]> merge(List<Iterator<byte[]>> sources, boolean dropTombstones) {
+        final class Head {
+            final byte[] record;
+            final int source;
+
+            Head(byte[] record, int source) {
+                this.record = record;
+                this.source = source;
+            }
+        }
+        PriorityQueue<Head> heap = new PriorityQueue<>((a, b) -> {
+            int cmp = SortedRun.compareRecords(a.record, b.record);
+            return cmp != 0 ? cmp : Integer.compare(a.source, b.source);
+        });
+        for (int i = 0; i < sources.size(); i++) {
+            if (sources.get(i).hasNext()) heap.add(new Head(sources.get(i).next(), i));
+        }
+
+        return new Iterator<byte[]>() {
+            private byte[] nextRecord = advance();
+
+            private byte[] advance() {
+                while (!heap.isEmpty()) {
+                    Head head = heap.poll();
+                    refill(head.source);
+                    // 同一 key 较旧的版本全部跳过
+                    while (!heap.isEmpty() && SortedRun.compareRecords(heap.peek().record, head.record) == 0) {
+                        refill(heap.poll().source);
+                    }
+                    if (!(dropTombstones && SortedRun.isTombstone(head.record))) {
+                        return head.record;
+                    }
+                }
+                return null;
+            }
+
+            private void refill(int source) {
+                if (sources.get(source).hasNext()) heap.add(new Head(sources.get(source).next(), source));
+            }
+
+            @Override
+            public boolean hasNext() {
+                return nextRecord != null;
+            }
+
+            @Override
+            public byte[] next() {
+                if (nextRecord == null) throw new NoSuchElementException();
+                byte[] record = nextRecord;
+                nextRecord = advance();
+                return record;
+            }
+        };
+    }
+
+    // ======================== Page2 ========================
+    private long allocateSeq() {
+        synchronized (this) {
+            return nextSeq++;
+        }
+    }
+
+    /**
+     * 调用方持有 versionLock 写锁（或在构造函数里）
+     */
+    private void writeMeta() {
+        List<byte[]> records = new ArrayList<>();
+        synchronized (this) {
+            records.add(ByteBuffer.allocate(8).putLong(nextSeq).array());
+        }
+        for (List<SortedRun> level : levels) {
+            for (SortedRun run : level) {
+                records.add(ByteBuffer.allocate(24)
+                        .putInt(run.level).putLong(run.seq).putInt(run.entryCount)
+                        .putInt(run.pages.length).putInt(run.pages[0]).array());
+            }
+        }
+        PageManager.Page old = StorageSystem.readPage(filePath, spaceId, META_PAGE_NO);
+        PageManager.Page page = new PageManager.Page(META_PAGE_NO);
+        page.getHeader().pageType = old.getHeader().pageType;
+        storageSystem.writeRecordsPage(spaceId, page, records);
+    }
+
+    private void readMeta(PageManager.Page meta) {
+        nextSeq = ByteBuffer.wrap(meta.getRecord(0)).getLong();
+        List<SortedRun> runs = new ArrayList<>();
+        for (int i = 1; i < meta.getRecordCount(); i++) {
+            ByteBuffer buffer = ByteBuffer.wrap(meta.getRecord(i));
+            int level = buffer.getInt();
+            long seq = buffer.getLong();
+            int entryCount = buffer.getInt();
+            int pageCount = buffer.getInt();
+            int firstPage = buffer.getInt();
+            runs.add(SortedRun.open(seq, level, entryCount, firstPage, pageCount, filePath, spaceId));
+        }
+        List<List<SortedRun>> loaded = new ArrayList<>();
+        loaded.add(new ArrayList<>());
+        for (SortedRun run : runs) {
+            while (loaded.size() <= run.level) loaded.add(new ArrayList<>());
+            loaded.get(run.level).add(run);
+        }
+        // L0 新的在前
+        loaded.get(0).sort((a, b) -> Long.compare(b.seq, a.seq));
+        levels = loaded;
+    }
+
+    private List<List<SortedRun>> copyLevels() {
+        List<List<SortedRun>> copy = new ArrayList<>();
+        for (List<SortedRun> level : levels) copy.add(new ArrayList<>(level));
+        return copy;
+    }
+
+    // ======================== 工具 ========================
+    private byte[] encodeKey(List<Object> row) {
+        List<Object> values = new ArrayList<>(keyPositions.length);
+        for (int position : keyPositions) values.add(row.get(position));
+        return KeyEncoder.encode(values);
+    }
+
+    private List<Object> decodeRow(byte[] record) {
+        return RecordCodec.of(tableColumns).decode(SortedRun.rowBuffer(record));
+    }
+}
@@ -0,0 +1,259 @@
+package org.csu.mydb.storage.Lsm;
+
+import org.csu.mydb.storage.BPlusTree.BPlusNode;
+import org.csu.mydb.storage.BPlusTree.BloomFilter;
+import org.csu.mydb.storage.PageManager;
+import org.csu.mydb.storage.StorageSystem;
+import org.csu.mydb.storage.Table.Column.RecordCodec;
+import org.csu.mydb.storage.storageFiles.page.PageType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * LSM 树的一个不可变有序段（sorted run）：按 key 升序写满一串页（nextPage 串起来），写完不再修改
+ * - 记录格式：[flag 1][keyLen 2][key][行]，flag 为 TOMBSTONE 时没有行
+ * - 内存里有每页第一个 key（fence）和整段的 Bloom filter：点查先问 Bloom filter，
+ *   再二分 fence 定位到唯一的一页，只读这一页
+ */
+class SortedRun {
+    static final byte PUT = 0;
+    static final byte TOMBSTONE = 1;
+
+    final long seq;
+    final int level;
+    final int entryCount;
+    final int[] pages;
+    private final byte[][] fences;
+    private final BloomFilter bloom;
+    private final String filePath;
+    private final int spaceId;
+
+    private SortedRun(long seq, int level, int entryCount, int[] pages, byte[][] fences, BloomFilter bloom,
+                      String filePath, int spaceId) {
+        this.seq = seq;
+        this.level = level;
+        this.entryCount = entryCount;
+        this.pages = pages;
+        this.fences = fences;
+        this.bloom = bloom;
+        this.filePath = filePath;
+        this.spaceId = spaceId;
+    }
+
+    // ======================== 记录格式 ========================
+    static byte[] record(byte flag, byte[] key, byte[] row) {
+        int rowLength = row == null ? 0 : row.length;
+        byte[] record = new byte[3 + key.length + rowLength];
+        record[0] = flag;
+        record[1] = (byte) (key.length >>> 8);
+        record[2] = (byte) key.length;
+        System.arraycopy(key, 0, record, 3, key.length);
+        if (row != null) System.arraycopy(row, 0, record, 3 + key.length, rowLength);
+        return record;
+    }
+
+    /**
+     * PUT 记录：行直接编码进记录的缓冲区，不先序列化成单独的 byte[] 再拷贝
+     */
+    static byte[] putRecord(byte[] key, List<Object> row, RecordCodec codec) {
+        byte[] record = new byte[3 + key.length + codec.encodedSize(row)];
+        record[0] = PUT;
+        record[1] = (byte) (key.length >>> 8);
+        record[2] = (byte) key.length;
+        System.arraycopy(key, 0, record, 3, key.length);
+        codec.encode(row, ByteBuffer.wrap(record, 3 + key.length, record.length - 3 - key.length));
+        return record;
+    }
+
+    static boolean isTombstone(byte[] record) {
+        return record[0] == TOMBSTONE;
+    }
+
+    private static int keyLength(byte[] record) {
+        return ((record[1] & 0xFF) << 8) | (record[2] & 0xFF);
+    }
+
+    static byte[] keyOf(byte[] record) {
+        return Arrays.copyOfRange(record, 3, 3 + keyLength(record));
+    }
+
+    /**
+     * 记录里的行（不拷贝），position 停在行的开头
+     */
+    static ByteBuffer rowBuffer(byte[] record) {
+        int offset = 3 + keyLength(record);
+        return ByteBuffer.wrap(record, offset, record.length - offset);
+    }
+
+    static int compareKey(byte[] record, byte[] key) {
+        return Arrays.compareUnsigned(record, 3, 3 + keyLength(record), key, 0, key.length);
+    }
+
+    static int compareRecords(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, 3, 3 + keyLength(a), b, 3, 3 + keyLength(b));
+    }
+
+    // ======================== 读 ========================
+    /**
+     * @return key 在本段里的记录（可能是墓碑），不在返回 null
+     */
+    byte[] get(byte[] key) {
+        if (!bloom.mightContain(key)) {
+            return null;
+        }
+        // 最后一个 fence <= key 的页
+        int low = 0, high = fences.length - 1, pageIndex = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (Arrays.compareUnsigned(fences[mid], key) <= 0) {
+                pageIndex = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (pageIndex < 0) {
+            return null;
+        }
+        PageManager.Page page = StorageSystem.readPage(filePath, spaceId, pages[pageIndex]);
+        low = 0;
+        high = page.getRecordCount() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            byte[] record = page.getRecord(mid);
+            int cmp = compareKey(record, key);
+            if (cmp == 0) return record;
+            if (cmp < 0) low = mid + 1; else high = mid - 1;
+        }
+        return null;
+    }
+
+    /**
+     * 按 key 升序逐页读出所有记录
+     */
+    Iterator<byte[]> iterator() {
+        return new Iterator<byte[]>() {
+            private int pageIndex = 0;
+            private PageManager.Page page;
+            private int slot = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (page == null || slot >= page.getRecordCount()) {
+                    if (pageIndex >= pages.length) return false;
+                    page = StorageSystem.readPage(filePath, spaceId, pages[pageIndex++]);
+                    slot = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public byte[] next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return page.getRecord(slot++);
+            }
+        };
+    }
+
+    void free(StorageSystem storageSystem) throws IOException {
+        for (int pageNo : pages) {
+            storageSystem.getPageManager().freePage(spaceId, pageNo);
+        }
+    }
+
+    /**
+     * 重新打开时从第一页顺着 nextPage 读回整段，重建 fence 和 Bloom filter
+     */
+    static SortedRun open(long seq, int level, int entryCount, int firstPage, int pageCount,
+                          String filePath, int spaceId) {
+        int[] pages = new int[pageCount];
+        byte[][] fences = new byte[pageCount][];
+        BloomFilter bloom = new BloomFilter(entryCount);
+        int pageNo = firstPage;
+        for (int i = 0; i < pageCount; i++) {
+            PageManager.Page page = StorageSystem.readPage(filePath, spaceId, pageNo);
+            pages[i] = pageNo;
+            fences[i] = keyOf(page.getRecord(0));
+            for (int slot = 0; slot < page.getRecordCount(); slot++) {
+                bloom.add(keyOf(page.getRecord(slot)));
+            }
+            pageNo = page.getHeader().nextPage;
+        }
+        return new SortedRun(seq, level, entryCount, pages, fences, bloom, filePath, spaceId);
+    }
+
+    // ======================== 写 ========================
+    /**
+     * 顺序写一个新段：记录必须按 key 升序给出，页写满就分配下一页接上
+     */
+    static final class Writer {
+        private final long seq;
+        private final int level;
+        private final StorageSystem storageSystem;
+        private final String filePath;
+        private final int spaceId;
+        private final BloomFilter bloom;
+        private final List<Integer> pages = new ArrayList<>();
+        private final List<byte[]> fences = new ArrayList<>();
+        private List<byte[]> current = new ArrayList<>();
+        private int currentPageNo = -1;
+        private int used = 0;
+        private int entryCount = 0;
+
+        Writer(long seq, int level, int expectedEntries, StorageSystem storageSystem, String filePath, int spaceId) {
+            this.seq = seq;
+            this.level = level;
+            this.storageSystem = storageSystem;
+            this.filePath = filePath;
+            this.spaceId = spaceId;
+            this.bloom = new BloomFilter(expectedEntries);
+        }
+
+        void add(byte[] record) throws IOException {
+            int size = record.length + PageManager.SLOT_SIZE;
+            if (!current.isEmpty() && used + size > BPlusNode.pageCapacity()) {
+                int next = storageSystem.getPageManager().allocatePage(spaceId);
+                writePage(next);
+                current = new ArrayList<>();
+                currentPageNo = next;
+                used = 0;
+            }
+            if (current.isEmpty()) {
+                if (currentPageNo == -1) {
+                    currentPageNo = storageSystem.getPageManager().allocatePage(spaceId);
+                }
+                pages.add(currentPageNo);
+                fences.add(keyOf(record));
+            }
+            current.add(record);
+            used += size;
+            entryCount++;
+            bloom.add(keyOf(record));
+        }
+
+        /**
+         * @return 写好的段；一条记录都没有时返回 null
+         */
+        SortedRun finish() {
+            if (entryCount == 0) {
+                return null;
+            }
+            writePage(-1);
+            return new SortedRun(seq, level, entryCount, pages.stream().mapToInt(Integer::intValue).toArray(),
+                    fences.toArray(new byte[0][]), bloom, filePath, spaceId);
+        }
+
+        private void writePage(int nextPage) {
+            PageManager.Page page = new PageManager.Page(currentPageNo);
+            page.getHeader().pageType = PageType.LSM_RUN_PAGE;
+            page.getHeader().nextPage = nextPage;
+            storageSystem.writeRecordsPage(spaceId, page, current);
+        }
+    }
+}
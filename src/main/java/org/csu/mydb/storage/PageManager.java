@@ -14,11 +14,13 @@ import org.csu.mydb.storage.storageFiles.page.IndexPage;
 import org.csu.mydb.storage.storageFiles.page.PageType;
 import org.csu.mydb.util.Pair.Pair;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
@@ -619,9 +621,10 @@ public class PageManager implements DiskAccessor {
     }
 
     // ====================== 文件管理 ======================
-    private static final Map<Integer, RandomAccessFile> openFiles = new HashMap<>();
-    private static final Map<Integer, String> filePaths = new HashMap<>();
+    private static final Map<Integer, RandomAccessFile> openFiles = new ConcurrentHashMap<>();
+    private static final Map<Integer, String> filePaths = new ConcurrentHashMap<>();
     private static final ReentrantReadWriteLock fileLock = new ReentrantReadWriteLock();
+    private static final Object allocLock = new Object();
 
     // ====================== 页管理 ======================
     private static final Map<Integer, Integer> rootPages = new HashMap<>(); // spaceId -> rootPageNo
@@ -700,6 +703,7 @@ public class PageManager implements DiskAccessor {
             }
             openFiles.clear();
             filePaths.clear();
+            bufferPool.clear();
         } finally {
             fileLock.writeLock().unlock();
         }
@@ -707,25 +711,31 @@ public class PageManager implements DiskAccessor {
 
     /**
      * 分配新页
+     * 用单独的 allocLock 串行化分配；fileLock 只包住文件扩展，不在持有它时进缓冲池
+     * （缓冲池未命中读盘是先缓冲池锁再 fileLock，反过来加锁会死锁）
      */
     public int allocatePage(int spaceId) throws IOException {
-        fileLock.writeLock().lock();
-        try {
+        synchronized (allocLock) {
             // 检查空闲页链表
             if (freePageHeads.containsKey(spaceId) && freePageHeads.get(spaceId) != -1) {
                 int pageNo = freePageHeads.get(spaceId);
                 Page page = getPage(spaceId, pageNo);
                 freePageHeads.put(spaceId, page.header.nextFreePage);
+                updateFreePageHead(spaceId, page.header.nextFreePage);
                 return pageNo;
             }
 
             // 没有空闲页，扩展文件
-            RandomAccessFile raf = openFiles.get(spaceId);
-            long fileSize = raf.length();
-            int newPageNo = (int) (fileSize / PAGE_SIZE);
-
-            // 扩展文件
-            raf.setLength(fileSize + PAGE_SIZE);
+            int newPageNo;
+            fileLock.writeLock().lock();
+            try {
+                RandomAccessFile raf = openFiles.get(spaceId);
+                long fileSize = raf.length();
+                newPageNo = (int) (fileSize / PAGE_SIZE);
+                raf.setLength(fileSize + PAGE_SIZE);
+            } finally {
+                fileLock.writeLock().unlock();
+            }
 
             // 初始化新页
             Page newPage = new Page(newPageNo);
@@ -734,37 +744,38 @@ public class PageManager implements DiskAccessor {
             bufferPool.putPage(newPage, spaceId);
 
             return newPageNo;
-        } finally {
-            fileLock.writeLock().unlock();
         }
     }
 
     /**
-     * 释放页
+     * 空闲链表头写回文件头页（第 2 条记录），否则重新打开文件后会再次分配已用的页
+     */
+    private void updateFreePageHead(int spaceId, int freeHead) throws IOException {
+        Page headerPage = getPage(spaceId, 0);
+        if (headerPage == null || headerPage.getRecord(2) == null) {
+            return;
+        }
+        headerPage.updateRecord(2, ByteBuffer.allocate(4).putInt(freeHead).array());
+        bufferPool.putPage(headerPage, spaceId);
+    }
+
+    /**
+     * 释放页：换成一个空页挂到空闲链表头部，并写回文件头页，下次 allocatePage 优先复用
      */
     public void freePage(int spaceId, int pageNo) throws IOException {
-        fileLock.writeLock().lock();
-        try {
-            Page page = getPage(spaceId, pageNo);
+        synchronized (allocLock) {
+            int currentHead = freePageHeads.getOrDefault(spaceId, -1);
 
             // 重置页内容
-            page.header.recordCount = 0;
-            page.header.freeSpace = (short) (PAGE_SIZE - PAGE_HEADER_SIZE);
+            Page page = new Page(pageNo);
+            page.header.nextFreePage = currentHead;
+
+            bufferPool.deletePage(new GlobalPageId(spaceId, pageNo));
+            bufferPool.putPage(page, spaceId);
 
             // 添加到空闲链表头部
-            int currentHead = freePageHeads.getOrDefault(spaceId, -1);
-            page.header.nextPage = currentHead;
             freePageHeads.put(spaceId, pageNo);
-
-            // 更新文件头页
-            Page headerPage = getPage(spaceId, 0);
-            headerPage.header.nextPage = pageNo;
-            headerPage.header.isDirty = true;
-
-            // TODO: 清除的页直接丢掉
-            bufferPool.putPage(page, spaceId);
-        } finally {
-            fileLock.writeLock().unlock();
+            updateFreePageHead(spaceId, pageNo);
         }
     }
 
@@ -894,11 +905,15 @@ public class PageManager implements DiskAccessor {
                 openFiles.put(spaceId, raf);
             }
 
+            // 按位置读，不动共享的文件指针（读锁下可能有多个线程同时读同一个文件）
             long offset = (long) pageNo * PAGE_SIZE;
-            raf.seek(offset);
-
             byte[] pageData = new byte[PAGE_SIZE];
-            raf.readFully(pageData);
+            ByteBuffer buffer = ByteBuffer.wrap(pageData);
+            while (buffer.hasRemaining()) {
+                if (raf.getChannel().read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException("Page " + pageNo + " is beyond end of file");
+                }
+            }
 
             Page page = Page.fromBytes(pageData);
 
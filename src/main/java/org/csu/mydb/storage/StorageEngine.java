@@ -2,15 +2,26 @@ package org.csu.mydb.storage;
 
 import org.csu.mydb.config.ConfigLoader;
 import org.csu.mydb.storage.BPlusTree.BPlusTree;
+import org.csu.mydb.storage.Hash.ExtendibleHashTable;
+import org.csu.mydb.storage.Lsm.LsmTree;
 import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.Column.RecordFilter;
 import org.csu.mydb.storage.Table.Table;
 import org.csu.mydb.storage.Table.Key;
+import org.csu.mydb.storage.Table.PrimaryIndex;
+import org.csu.mydb.storage.Table.SecondaryIndex;
+import org.csu.mydb.storage.storageFiles.system.sysIndexesStructure;
 import org.csu.mydb.storage.storageFiles.system.sysColumnsStructure;
 import org.csu.mydb.storage.storageFiles.system.sysTablesStructure;
+import org.csu.mydb.util.TypeHandler.TypeHandler;
+import org.csu.mydb.util.TypeHandler.TypeHandlerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * 存储引擎：负责数据库的创建、删除、打开、关闭，以及表的管理。
@@ -81,6 +92,17 @@ public class StorageEngine {
      * 关闭数据库（对应 C++ 的 myCloseDataBase）
      */
     public void myCloseDataBase() {
+        // 存下各表内存里的状态（Bloom filter、LSM 的 memtable），下次打开不用重建
+        for (Table table : tables) {
+            try {
+                table.getPrimaryIndex().close();
+                for (SecondaryIndex index : table.getSecondaryIndexes()) {
+                    index.getTree().close();
+                }
+            } catch (IOException e) {
+                System.out.println("关闭表 " + table.getName() + " 失败：" + e.getMessage());
+            }
+        }
         tables.clear();
         prePath = "";
         isOpen = false;
@@ -134,29 +156,125 @@ public class StorageEngine {
      * @param columns   列名列表（如 ["id", "name"]）
      */
     public void myCreateTable(String tableName, List<Column> columns) {
+        myCreateTable(tableName, columns, ConfigLoader.getInstance().getInt("storage", "fill_factor", 90));
+    }
+
+    /**
+     * 创建表并指定页填充率，是否建主键 Bloom filter 取配置 bloom_filter
+     */
+    public void myCreateTable(String tableName, List<Column> columns, int fillFactor) {
+        myCreateTable(tableName, columns, fillFactor, ConfigLoader.getInstance().getBool("storage", "bloom_filter", false));
+    }
+
+    /**
+     * 创建表并指定页填充率
+     *
+     * @param tableName  表名
+     * @param columns    列名列表
+     * @param fillFactor  页填充率（百分比，1~100），顺序插入分裂和批量装载时每页只填到这个比例
+     * @param bloomFilter 是否给主键建 Bloom filter（点查不存在的主键时不用下降整棵树）
+     */
+    public void myCreateTable(String tableName, List<Column> columns, int fillFactor, boolean bloomFilter) {
+        if (fillFactor <= 0 || fillFactor > 100) {
+            System.out.println("填充率必须在 1~100 之间");
+            return;
+        }
+        createTable(tableName, columns, fillFactor, bloomFilter, PrimaryIndex.BTREE, false, false);
+    }
+
+    /**
+     * 创建叶子按 PAX 格式存放的表（CREATE TABLE ... ROW_FORMAT=PAX）：每页的行按列存成 minipage，
+     * 只查几列的全表扫描只解码这几列，适合列多、按列聚合的分析表；按主键查找要从各列拼出整行
+     *
+     * @param tableName 表名
+     * @param columns   列名列表
+     */
+    public void myCreatePaxTable(String tableName, List<Column> columns) {
+        createTable(tableName, columns, ConfigLoader.getInstance().getInt("storage", "fill_factor", 90),
+                ConfigLoader.getInstance().getBool("storage", "bloom_filter", false), PrimaryIndex.BTREE, true, false);
+    }
+
+    /**
+     * 创建按变长整数格式存放的表（CREATE TABLE ... ROW_FORMAT=VARINT）：行和内部节点条目里的 INT/BIGINT
+     * 存 zigzag 变长整数、VARCHAR 的长度也变长，小的 id、计数多的表行更短、内部节点扇出更大；
+     * 读某一列要跳过前面的列，过滤条件要先解出那一列
+     *
+     * @param tableName 表名
+     * @param columns   列名列表
+     */
+    public void myCreateVarintTable(String tableName, List<Column> columns) {
+        createTable(tableName, columns, ConfigLoader.getInstance().getInt("storage", "fill_factor", 90),
+                ConfigLoader.getInstance().getBool("storage", "bloom_filter", false), PrimaryIndex.BTREE, false, true);
+    }
+
+    /**
+     * 创建以可扩展哈希为主存取方式的表（CREATE TABLE ... USING HASH）：按完整主键等值查找不用下降整棵树，
+     * 但不支持按主键的范围扫描，全表扫描无序
+     *
+     * @param tableName 表名
+     * @param columns   列名列表，必须有主键
+     */
+    public void myCreateHashTable(String tableName, List<Column> columns) {
+        if (columns.stream().noneMatch(Column::isPrimaryKey)) {
+            System.out.println("哈希表必须有主键");
+            return;
+        }
+        createTable(tableName, columns, ConfigLoader.getInstance().getInt("storage", "fill_factor", 90), false, PrimaryIndex.HASH, false, false);
+    }
+
+    /**
+     * 创建以 LSM 树为存储引擎的表（CREATE TABLE ... ENGINE=LSM）：写入只进内存、攒满后顺序写盘，
+     * 适合写多读少的表；按完整主键查找，全表扫描按主键升序
+     *
+     * @param tableName 表名
+     * @param columns   列名列表，必须有主键
+     */
+    public void myCreateLsmTable(String tableName, List<Column> columns) {
+        if (columns.stream().noneMatch(Column::isPrimaryKey)) {
+            System.out.println("LSM 表必须有主键");
+            return;
+        }
+        createTable(tableName, columns, ConfigLoader.getInstance().getInt("storage", "fill_factor", 90), false, PrimaryIndex.LSM, false, false);
+    }
+
+    private void createTable(String tableName, List<Column> columns, int fillFactor, boolean bloomFilter, int accessMethod,
+                             boolean paxLayout, boolean varintFormat) {
+        int order = ConfigLoader.getInstance().getInt("storage", "btree_order", 100);
         int spaceId = StorageSystem.createTable(prePath + tableName, columns);
         try {
-            BPlusTree tree = new BPlusTree(3, spaceId, storageSystem, columns, prePath + tableName);
-            Table table = new Table(tableName, prePath + tableName, columns, spaceId, tree);
+            PrimaryIndex primaryIndex;
+            if (accessMethod == PrimaryIndex.HASH) {
+                primaryIndex = new ExtendibleHashTable(spaceId, storageSystem, columns, prePath + tableName);
+            } else if (accessMethod == PrimaryIndex.LSM) {
+                primaryIndex = new LsmTree(spaceId, storageSystem, columns, prePath + tableName);
+            } else {
+                BPlusTree tree = new BPlusTree(order, fillFactor, spaceId, storageSystem, columns, prePath + tableName);
+                if (bloomFilter) {
+                    tree.enableBloomFilter();
+                }
+                if (paxLayout) {
+                    tree.enablePaxLayout();
+                }
+                if (varintFormat) {
+                    tree.enableVarintFormat();
+                }
+                primaryIndex = tree;
+            }
+            Table table = new Table(tableName, prePath + tableName, columns, spaceId, primaryIndex);
             tables.add(table);
             tableMap.put(tableName, table);
             // TABLE
-            StorageSystem.insertIntoSysTable(new sysTablesStructure(spaceId, tableName, spaceId, 3, 100, dataBase));
+            // 老记录里没有的建表选项用 setter 设
+            sysTablesStructure sysTable = new sysTablesStructure(spaceId, tableName, spaceId, 3, order, dataBase);
+            sysTable.setFillFactor(fillFactor);
+            sysTable.setBloomFilter(bloomFilter);
+            sysTable.setAccessMethod(accessMethod);
+            sysTable.setPaxLayout(paxLayout);
+            sysTable.setVarintFormat(varintFormat);
+            StorageSystem.insertIntoSysTable(sysTable);
             // COLUMN
             for (Column column : columns) {
-                sysColumnsStructure sysColumnsStructure = new sysColumnsStructure();
-                sysColumnsStructure.setColumnId(StorageSystem.allocateNewColumnId());
-                sysColumnsStructure.setTableId(spaceId);
-                sysColumnsStructure.setColumnName(column.getName());
-                sysColumnsStructure.setType(column.getType());
-                sysColumnsStructure.setPosition((short) column.getPosition());
-                sysColumnsStructure.setNullable(column.isNullable());
-                sysColumnsStructure.setPrimaryKey(column.isPrimaryKey());
-                sysColumnsStructure.setLength((short) column.getLength());
-                sysColumnsStructure.setScale((short) column.getScale());
-                sysColumnsStructure.setDefaultValue(column.getDefaultValue());
-
-                StorageSystem.insertIntoSysColumn(sysColumnsStructure);
+                insertIntoSysColumn(spaceId, column);
             }
 
         } catch (IOException e) {
@@ -164,6 +282,78 @@ public class StorageEngine {
         }
     }
 
+    private static void insertIntoSysColumn(int spaceId, Column column) {
+        sysColumnsStructure sysColumnsStructure = new sysColumnsStructure();
+        sysColumnsStructure.setColumnId(StorageSystem.allocateNewColumnId());
+        sysColumnsStructure.setTableId(spaceId);
+        sysColumnsStructure.setColumnName(column.getName());
+        sysColumnsStructure.setType(column.getType());
+        sysColumnsStructure.setPosition((short) column.getPosition());
+        sysColumnsStructure.setNullable(column.isNullable());
+        sysColumnsStructure.setPrimaryKey(column.isPrimaryKey());
+        sysColumnsStructure.setLength((short) column.getLength());
+        sysColumnsStructure.setScale((short) column.getScale());
+        sysColumnsStructure.setDefaultValue(column.getDefaultValue());
+        sysColumnsStructure.setVersion((short) column.getVersion());
+
+        StorageSystem.insertIntoSysColumn(sysColumnsStructure);
+    }
+
+    /**
+     * 加列（ALTER TABLE ... ADD [COLUMN]）：只改 sys_columns 和内存里的表结构，不改写已有的行，大表也是瞬间完成
+     * 新列记下新的表结构版本，之后写的行带上版本号；加列之前写的行按它的版本解码，新列补 DEFAULT（没写为 NULL），
+     * 这些行下次被改写时才按新结构存
+     *
+     * @param tableName 表名
+     * @param column    新列，加在最后
+     */
+    public void myAddColumn(String tableName, Column column) {
+        Table table = tableMap.get(tableName);
+        if (table == null) {
+            System.out.println("该表不存在!");
+            return;
+        }
+        List<Column> columns = table.getColumns();
+        int version = 0;
+        for (Column existing : columns) {
+            if (existing.getName().equalsIgnoreCase(column.getName())) {
+                System.out.println("列 " + column.getName() + " 已存在");
+                return;
+            }
+            version = Math.max(version, existing.getVersion());
+        }
+        if (column.isPrimaryKey()) {
+            System.out.println("不能加主键列");
+            return;
+        }
+        Object defaultValue = null;
+        try {
+            TypeHandler<Object> handler = TypeHandlerFactory.getHandler(column.getType());
+            if (column.getDefaultValue() != null) {
+                defaultValue = handler.parse(new String(column.getDefaultValue(), StandardCharsets.UTF_8));
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("格式错误");
+            return;
+        }
+        if (defaultValue == null && !column.isNullable()) {
+            // 已有的行没有值可补
+            System.out.println("NOT NULL 的新列必须有 DEFAULT");
+            return;
+        }
+
+        column.setPosition(columns.size());
+        column.setVersion(version + 1);
+        try {
+            table.getPrimaryIndex().addColumn(column);
+        } catch (IOException e) {
+            System.out.println("加列失败");
+            return;
+        }
+        insertIntoSysColumn(table.getSpaceId(), column);
+        System.out.println("加列成功");
+    }
+
     /**
      * 删除表（对应 C++ 的 myDropTable）
      *
@@ -223,11 +413,17 @@ public class StorageEngine {
         }
 
         for (int i = 0; i < columns.size(); i++) {
-            if (Objects.equals(columns.get(i).getType(), "INT")) {
-                valuesList.add(Integer.parseInt(values.get(i)));
-            } else if (Objects.equals(columns.get(i).getType(), "VARCHAR")) {
-                valuesList.add(values.get(i));
-            } else {
+            // 按表里这一列的类型解析（INSERT 给的列只有从字面量猜出的类型）
+            Column target = table.getColumns().get(i);
+            for (Column column : table.getColumns()) {
+                if (column.getName().equalsIgnoreCase(columns.get(i).getName())) {
+                    target = column;
+                    break;
+                }
+            }
+            try {
+                valuesList.add(parseValue(target, values.get(i)));
+            } catch (IllegalArgumentException e) {
                 System.out.println("格式错误");
                 return;
             }
@@ -237,13 +433,127 @@ public class StorageEngine {
         }
 
         try {
+            // 按表的列顺序排好的整行（没给的列取 DEFAULT），索引条目按它建
+            List<Object> row = PrimaryIndex.rowOf(table.getColumns(), columns, valuesList);
+            // 主键已存在时是覆盖，要先拿到旧行去掉它的索引条目
+            List<Object> oldRow = table.getSecondaryIndexes().isEmpty() ? null
+                    : table.getPrimaryIndex().search(primaryKeyOf(table, row));
             table.getPrimaryIndex().insert(columns, valuesList);
+            syncIndexes(table, oldRow, row);
             System.out.println("插入成功");
-        } catch (IOException e) {
+        } catch (IOException | IllegalArgumentException e) {
             System.out.println("插入失败");
         }
     }
 
+    /**
+     * 批量装载（建表后的初始导入）：按主键排序后自底向上建树，比逐行 myInsert 少了每行的下降、改页和分裂
+     *
+     * @param tableName 表名
+     * @param rows      每行的值列表，列顺序与建表时一致
+     */
+    public void myBulkLoad(String tableName, List<List<String>> rows) {
+        Table table = tableMap.get(tableName);
+        List<List<Object>> parsed = parseRows(table, rows);
+        if (parsed == null) {
+            return;
+        }
+
+        // 按主键排序
+        List<Column> columns = table.getColumns();
+        List<Column> pkColumns = new ArrayList<>();
+        for (Column column : columns) {
+            if (column.isPrimaryKey()) {
+                pkColumns.add(column);
+            }
+        }
+        List<Key> keys = new ArrayList<>(parsed.size());
+        for (List<Object> row : parsed) {
+            List<Object> keyValues = new ArrayList<>();
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i).isPrimaryKey()) {
+                    keyValues.add(row.get(i));
+                }
+            }
+            keys.add(new Key(keyValues, pkColumns));
+        }
+        Integer[] order = new Integer[parsed.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> keys.get(a).compareTo(keys.get(b)));
+        List<List<Object>> sorted = new ArrayList<>(parsed.size());
+        for (int i : order) sorted.add(parsed.get(i));
+
+        try {
+            // 按建表时的填充率装载
+            int loaded = table.getPrimaryIndex().bulkLoad(sorted.iterator());
+            for (SecondaryIndex index : table.getSecondaryIndexes()) {
+                index.insertAll(sorted);
+            }
+            System.out.println("装载成功，共 " + loaded + " 行");
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            System.out.println("装载失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 多行插入：同一个叶子里的行合并成一次写入，比逐行 myInsert 少了重复的下降和写页
+     *
+     * @param tableName 表名
+     * @param rows      每行的值列表，列顺序与建表时一致
+     */
+    public void myInsertBatch(String tableName, List<List<String>> rows) {
+        Table table = tableMap.get(tableName);
+        List<List<Object>> parsed = parseRows(table, rows);
+        if (parsed == null) {
+            return;
+        }
+
+        try {
+            // 先写主索引，写成功后再按被覆盖的旧行修二级索引
+            boolean hasIndexes = !table.getSecondaryIndexes().isEmpty();
+            List<List<Object>> replaced = hasIndexes ? new ArrayList<>() : null;
+            int inserted = table.getPrimaryIndex().insertBatch(parsed, replaced);
+            if (hasIndexes) {
+                // 同一批内重复的主键只保留最后一行
+                Map<List<Object>, List<Object>> byKey = new LinkedHashMap<>();
+                for (List<Object> row : parsed) {
+                    byKey.put(primaryKeyOf(table, row).getValues(), row);
+                }
+                List<List<Object>> finalRows = new ArrayList<>(byKey.values());
+                for (List<Object> oldRow : replaced) {
+                    syncIndexes(table, oldRow, null);
+                }
+                for (SecondaryIndex index : table.getSecondaryIndexes()) {
+                    index.insertAll(finalRows);
+                }
+            }
+            System.out.println("插入成功，共 " + inserted + " 行");
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("插入失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 把字符串形式的整行值解析成列类型对应的值
+     * @return 解析后的行；有行的列数不对时返回 null
+     */
+    private List<List<Object>> parseRows(Table table, List<List<String>> rows) {
+        List<Column> columns = table.getColumns();
+        List<List<Object>> parsed = new ArrayList<>(rows.size());
+        for (List<String> values : rows) {
+            if (values.size() != columns.size()) {
+                System.out.println("必须插入所有属性");
+                return null;
+            }
+            List<Object> row = new ArrayList<>(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                row.add(parseValue(columns.get(i), values.get(i)));
+            }
+            parsed.add(row);
+        }
+        return parsed;
+    }
+
     /**
      * 删除数据（对应 C++ 的 myDelete）
      *
@@ -272,8 +582,12 @@ public class StorageEngine {
             System.out.println("删除失败");
 
         Key key = new Key(Arrays.asList(parseValue(columns.get(pkIndex), condVal)), columns);
+        Table table = tableMap.get(tableName);
         try {
-            tableMap.get(tableName).getTree().delete(key);
+            List<Object> oldRow = table.getSecondaryIndexes().isEmpty() ? null : table.getTree().search(key);
+            if (table.getTree().delete(key) && oldRow != null) {
+                syncIndexes(table, oldRow, null);
+            }
         } catch (IOException e) {
             System.out.println("删除失败");
         }
@@ -319,8 +633,11 @@ public class StorageEngine {
         } catch (IOException e) {
             System.out.println("更新失败");
         }
-        if (row == null)
+        if (row == null) {
             System.out.println("更新失败");
+            return;
+        }
+        List<Object> oldRow = new ArrayList<>(row);
 
         // 更新列
         int updateIndex = -1;
@@ -330,10 +647,19 @@ public class StorageEngine {
                 break;
             }
         }
-        if (updateIndex == -1)
+        if (updateIndex == -1) {
             System.out.println("更新失败");
+            return;
+        }
 
         row.set(updateIndex, parseValue(columns.get(updateIndex), newValue));
+        Table table = tableMap.get(tableName);
+        try {
+            table.getTree().update(key, row);
+            syncIndexes(table, oldRow, row);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("更新失败");
+        }
     }
     //权限管理
     public void  myGrant(String databaseName, String grantee, List<String> grants){
@@ -349,18 +675,20 @@ public class StorageEngine {
     public void myQuery(String tableName, String columns, String condition) {
         List<Column> cols = tableMap.get(tableName).getColumns();
         List<List<Object>> results = new ArrayList<>();
+        List<String> projection = projectionOf(columns);
+        int[] positions = positionsOf(cols, projection);
 
-        // 简单解析条件 "col = value"
+        // 条件 "col op value [AND col op value ...]"，只有一个等值条件时才可能走主键或二级索引
+        List<String[]> terms = conditionTerms(condition);
         String condCol = null;
         String condValue = null;
-        if (condition != null && !condition.isEmpty() && condition.contains("=")) {
-            String[] parts = condition.split("=");
-            condCol = parts[0].trim();
-            condValue = parts[1].trim();
+        if (terms.size() == 1 && terms.get(0)[1].equals("=")) {
+            condCol = terms.get(0)[0];
+            condValue = terms.get(0)[2];
         }
 
+        boolean answered = false;
         if (condCol != null) {
-            // 只支持主键查询
             int pkIndex = -1;
             for (int i = 0; i < cols.size(); i++) {
                 if (cols.get(i).getName().equalsIgnoreCase(condCol) && cols.get(i).isPrimaryKey()) {
@@ -372,18 +700,52 @@ public class StorageEngine {
                 Key key = new Key(Arrays.asList(parseValue(cols.get(pkIndex), condValue)), cols);
                 List<Object> row = null;
                 try {
-                    row = tableMap.get(tableName).getTree().search(key);
+                    // 只解码要查的列
+                    row = tableMap.get(tableName).getTree().search(key, positions);
                 } catch (IOException e) {
                     System.out.println("更新失败");
                 }
                 if (row != null) results.add(row);
+                cols = projectedColumns(cols, positions);
+                answered = true;
+            } else {
+                // 非主键列：有以它开头的二级索引就查索引
+                Table table = tableMap.get(tableName);
+                SecondaryIndex index = table.findIndexOn(condCol);
+                if (index != null && projection != null && index.covers(projection)) {
+                    // 覆盖索引：要的列都在索引条目里，直接用条目回答，不回表
+                    cols = index.getEntryColumns();
+                    results.addAll(queryIndexEntries(table, index, condCol, condValue));
+                    answered = true;
+                } else if (index != null) {
+                    results.addAll(queryByIndex(table, index, condCol, condValue, positions));
+                    cols = projectedColumns(cols, positions);
+                    answered = true;
+                }
+            }
+        }
+        if (!answered) {
+            // 全表扫描，只取要查的列（PAX 表只解码这几列的 minipage，行格式按偏移只读这几列）；
+            // 有条件时直接在页里记录的字节上求值，只解码满足条件的行
+            Table table = tableMap.get(tableName);
+            RecordFilter filter = null;
+            if (!terms.isEmpty()) {
+                filter = filterOf(cols, terms);
+                if (filter == null) {
+                    return;
+                }
+            }
+            try {
+                results.addAll(table.getTree().scan(positions, filter));
+                cols = projectedColumns(cols, positions);
+            } catch (IOException e) {
+                System.out.println("查询失败");
             }
-        } else {
-            // 条件为空，返回全部（此处简化，实际需遍历叶子节点链表）
-            // 暂时不实现完整扫描
         }
         System.out.println();
-        results.forEach(result -> result.forEach(System.out::print));
+        for (List<Object> result : results) {
+            project(result, cols, projection).forEach(System.out::print);
+        }
     }
 
 
@@ -454,13 +816,244 @@ public class StorageEngine {
         return directory.delete();
     }
 
+    // ===================== 二级索引 =====================
+    /**
+     * 创建二级索引（CREATE INDEX name ON table(col, ...)），已有的行会全部写进索引
+     *
+     * @param indexName   索引名
+     * @param tableName   表名
+     * @param columnNames 索引列
+     */
+    public void myCreateIndex(String indexName, String tableName, List<String> columnNames) {
+        myCreateIndex(indexName, tableName, columnNames, new ArrayList<>());
+    }
+
+    /**
+     * 创建覆盖索引（CREATE INDEX name ON table(col, ...) INCLUDE (col, ...)）
+     *
+     * @param includeColumnNames 额外存在索引条目里的列，不参与排序
+     */
+    public void myCreateIndex(String indexName, String tableName, List<String> columnNames, List<String> includeColumnNames) {
+        Table table = tableMap.get(tableName);
+        if (table == null) {
+            System.out.println("该表不存在!");
+            return;
+        }
+        if (table.getSecondaryIndex(indexName) != null) {
+            System.out.println("该索引已存在");
+            return;
+        }
+        List<String> allColumns = new ArrayList<>(columnNames);
+        allColumns.addAll(includeColumnNames);
+        for (String columnName : allColumns) {
+            if (table.getColumns().stream().noneMatch(c -> c.getName().equalsIgnoreCase(columnName))) {
+                System.out.println("列不存在: " + columnName);
+                return;
+            }
+        }
+
+        PrimaryIndex primary = table.getPrimaryIndex();
+        // 哈希表、LSM 树没有阶数和填充率，二级索引用配置的默认值
+        int order = primary instanceof BPlusTree ? ((BPlusTree) primary).getOrder()
+                : ConfigLoader.getInstance().getInt("storage", "btree_order", 100);
+        int fillFactor = primary instanceof BPlusTree ? ((BPlusTree) primary).getFillFactor()
+                : ConfigLoader.getInstance().getInt("storage", "fill_factor", 90);
+        List<Column> entryColumns = SecondaryIndex.entryColumns(table.getColumns(), columnNames, includeColumnNames);
+        String indexPath = StorageSystem.indexFilePath(dataBase, tableName, indexName);
+        int spaceId = StorageSystem.createTable(indexPath, entryColumns);
+        try {
+            BPlusTree tree = new BPlusTree(order, fillFactor, spaceId, storageSystem, entryColumns, indexPath);
+            SecondaryIndex index = new SecondaryIndex(indexName, columnNames, includeColumnNames, spaceId, tree, table.getColumns());
+            index.insertAll(primary.scan());
+            table.addSecondaryIndex(index);
+            StorageSystem.insertIntoSysIndex(new sysIndexesStructure(indexName, table.getSpaceId(), spaceId, dataBase,
+                    columnNames, includeColumnNames));
+            System.out.println("创建索引成功");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 行变化后同步所有二级索引
+     * @param oldRow 旧行，插入时为 null
+     * @param newRow 新行，删除时为 null
+     */
+    private void syncIndexes(Table table, List<Object> oldRow, List<Object> newRow) throws IOException {
+        for (SecondaryIndex index : table.getSecondaryIndexes()) {
+            if (oldRow == null) {
+                index.insert(newRow);
+            } else if (newRow == null) {
+                index.delete(oldRow);
+            } else {
+                index.update(oldRow, newRow);
+            }
+        }
+    }
+
+    /**
+     * 用以 condCol 开头的二级索引做等值查询，查到的主键逐个回表，回表时只解码要的列
+     * @param positions 要的列在表里的下标，null 为整行
+     */
+    private List<List<Object>> queryByIndex(Table table, SecondaryIndex index, String condCol, String condValue,
+                                            int[] positions) {
+        List<List<Object>> rows = new ArrayList<>();
+        try {
+            for (Key pk : index.lookup(Collections.singletonList(indexValue(table, condCol, condValue)))) {
+                List<Object> row = table.getPrimaryIndex().search(pk, positions);
+                if (row != null) rows.add(row);
+            }
+        } catch (IOException e) {
+            System.out.println("查询失败");
+        }
+        return rows;
+    }
+
+    /**
+     * 只读索引的等值查询：返回匹配的索引条目（列为 index.getEntryColumns()），不回表
+     */
+    private List<List<Object>> queryIndexEntries(Table table, SecondaryIndex index, String condCol, String condValue) {
+        try {
+            return index.lookupEntries(Collections.singletonList(indexValue(table, condCol, condValue)));
+        } catch (IOException e) {
+            System.out.println("查询失败");
+            return new ArrayList<>();
+        }
+    }
+
+    private Object indexValue(Table table, String condCol, String condValue) {
+        Column column = table.getColumns().stream()
+                .filter(c -> c.getName().equalsIgnoreCase(condCol)).findFirst().orElseThrow();
+        return parseValue(column, condValue);
+    }
+
+    /**
+     * 查询列表 "all" / "*" 返回 null（所有列），否则返回列名（去掉 "t." 前缀）
+     */
+    private List<String> projectionOf(String columns) {
+        if (columns == null || columns.isEmpty() || columns.equals("*") || columns.equalsIgnoreCase("all")) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        for (String column : columns.split(",")) {
+            String name = column.trim();
+            names.add(name.substring(name.lastIndexOf('.') + 1));
+        }
+        return names;
+    }
+
+    private static final Pattern CONDITION_TERM = Pattern.compile("\\s*([\\w.]+)\\s*(<=|>=|<>|!=|==|=|<|>)\\s*(.*?)\\s*");
+
+    /**
+     * 把条件拆成 {列名, 运算符, 值}（AND 连接，列名去掉 "t." 前缀）；条件为空返回空列表
+     */
+    private List<String[]> conditionTerms(String condition) {
+        List<String[]> terms = new ArrayList<>();
+        if (condition == null || condition.trim().isEmpty()) {
+            return terms;
+        }
+        for (String term : condition.split("(?i)\\s+AND\\s+")) {
+            Matcher m = CONDITION_TERM.matcher(term);
+            if (!m.matches()) {
+                throw new IllegalArgumentException("Unsupported condition: " + term);
+            }
+            String name = m.group(1);
+            String op = m.group(2).equals("==") ? "=" : m.group(2);
+            terms.add(new String[]{name.substring(name.lastIndexOf('.') + 1), op, m.group(3)});
+        }
+        return terms;
+    }
+
+    /**
+     * 按条件建在记录字节上求值的过滤器；有列不存在时打印提示并返回 null
+     */
+    private RecordFilter filterOf(List<Column> cols, List<String[]> terms) {
+        RecordFilter filter = new RecordFilter(cols);
+        for (String[] term : terms) {
+            int position = -1;
+            for (int i = 0; i < cols.size(); i++) {
+                if (cols.get(i).getName().equalsIgnoreCase(term[0])) {
+                    position = i;
+                    break;
+                }
+            }
+            if (position == -1) {
+                System.out.println("列不存在: " + term[0]);
+                return null;
+            }
+            filter.and(position, term[1], parseValue(cols.get(position), term[2]));
+        }
+        return filter;
+    }
+
+    /**
+     * 查询列表里的列在表里的下标（表里没有的列忽略）；projection 为 null（所有列）时返回 null
+     */
+    private int[] positionsOf(List<Column> cols, List<String> projection) {
+        if (projection == null) {
+            return null;
+        }
+        List<Integer> positions = new ArrayList<>();
+        for (String name : projection) {
+            for (int i = 0; i < cols.size(); i++) {
+                if (cols.get(i).getName().equalsIgnoreCase(name)) {
+                    positions.add(i);
+                    break;
+                }
+            }
+        }
+        return positions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private List<Column> projectedColumns(List<Column> cols, int[] positions) {
+        if (positions == null) {
+            return cols;
+        }
+        List<Column> projected = new ArrayList<>(positions.length);
+        for (int position : positions) projected.add(cols.get(position));
+        return projected;
+    }
+
+    /**
+     * 按查询列表从行里取列；projection 为 null 时原样返回
+     */
+    private List<Object> project(List<Object> row, List<Column> rowColumns, List<String> projection) {
+        if (projection == null) {
+            return row;
+        }
+        List<Object> values = new ArrayList<>(projection.size());
+        for (String name : projection) {
+            for (int i = 0; i < rowColumns.size(); i++) {
+                if (rowColumns.get(i).getName().equalsIgnoreCase(name)) {
+                    values.add(row.get(i));
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
+    private Key primaryKeyOf(Table table, List<Object> row) {
+        List<Object> keyValues = new ArrayList<>();
+        List<Column> pkColumns = new ArrayList<>();
+        for (int i = 0; i < table.getColumns().size(); i++) {
+            if (table.getColumns().get(i).isPrimaryKey()) {
+                keyValues.add(row.get(i));
+                pkColumns.add(table.getColumns().get(i));
+            }
+        }
+        return new Key(keyValues, pkColumns);
+    }
+
     // ===================== 工具 =====================
+    /**
+     * 按列类型解析常量
+     * @throws IllegalArgumentException 常量与列类型不符
+     */
     private Object parseValue(Column col, String val) {
-        switch (col.getType()) {
-            case "INT": return Integer.parseInt(val);
-            case "VARCHAR": return val;
-            default: return val;
-        }
+        // PlanBuilder 给字符串字面量加了 '#' 前缀
+        String literal = val.startsWith("#") ? val.substring(1) : val;
+        return TypeHandlerFactory.getHandler(col.getType()).parse(literal);
     }
 }
 
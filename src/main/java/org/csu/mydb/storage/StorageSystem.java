@@ -2,12 +2,15 @@ package org.csu.mydb.storage;
 
 import org.csu.mydb.storage.BPlusTree.BPlusNode;
 import org.csu.mydb.storage.BPlusTree.InternalNode;
+import org.csu.mydb.storage.BPlusTree.IntInternalNode;
 import org.csu.mydb.storage.BPlusTree.LeafNode;
 import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.Column.PaxSerializer;
 import org.csu.mydb.storage.Table.Column.RecordSerializer;
 import org.csu.mydb.storage.Table.Key;
 import org.csu.mydb.storage.Table.Table;
 import org.csu.mydb.storage.bufferPool.BufferPool;
+import org.csu.mydb.storage.bufferPool.InternalNodeCache;
 import org.csu.mydb.storage.storageFiles.page.*;
 import org.csu.mydb.storage.storageFiles.page.PageSorter;
 import org.csu.mydb.storage.storageFiles.page.SpaceManager;
@@ -15,6 +18,7 @@ import org.csu.mydb.storage.storageFiles.page.record.DataRecord;
 import org.csu.mydb.storage.storageFiles.page.record.IndexRecord;
 import org.csu.mydb.storage.storageFiles.page.record.RecordHead;
 import org.csu.mydb.storage.storageFiles.system.sysColumnsStructure;
+import org.csu.mydb.storage.storageFiles.system.sysIndexesStructure;
 import org.csu.mydb.storage.storageFiles.system.sysTablesStructure;
 import org.csu.mydb.util.Pair.Pair;
 import org.csu.mydb.storage.storageFiles.system.systemFileReader;
@@ -25,6 +29,7 @@ import java.util.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 //组合缓存和页管理（全局只能有一个的东西，比如缓存）
@@ -34,12 +39,17 @@ public class StorageSystem {
     public static final int IBDATA1_SPACE_ID = 0;
     public static final int SYS_TABLES_IDB_SPACE_ID = 1;
     public static final int SYS_COLUMNS_IDB_SPACE_ID = 2;
+    public static final int SYS_INDEXES_IDB_SPACE_ID = 3;
     public static final String path = "save/repos/";
 
     //某张表里面的列信息缓存
     public static Map<Integer, List<Column>> spaceIdToColumns;
     private static final PageManager pageManager = new PageManager();
     private static final BufferPool bufferPool = new BufferPool(150, pageManager);
+    //叶子按 PAX 格式写的表空间 -> 表的列
+    private static final Map<Integer, List<Column>> paxSpaces = new ConcurrentHashMap<>();
+    //行和索引记录按变长整数格式写的表空间
+    private static final Set<Integer> varintSpaces = ConcurrentHashMap.newKeySet();
 
     public StorageSystem() {
 //        this.pageManager = new PageManager();
@@ -79,6 +89,23 @@ public class StorageSystem {
         }
     }
 
+    //往sys_indexes.idb插入数据
+    public static boolean insertIntoSysIndex(sysIndexesStructure e){
+        try {
+            loadSystemTable();
+            return pageManager.addRecord(SYS_INDEXES_IDB_SPACE_ID, 3, e.toBytes());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * 二级索引文件路径：和表文件放在同一个数据库目录下
+     */
+    public static String indexFilePath(String databaseName, String tableName, String indexName) {
+        return path + databaseName + "/" + tableName + "_" + indexName + ".idx";
+    }
+
     //分配columnId
     public static int allocateNewColumnId()  {
         int currentMax = 0;
@@ -310,15 +337,15 @@ public class StorageSystem {
         //找到ibdata1文件//读第五页
         PageManager.Page page ;
         try {
-            page = pageManager.readPage(IBDATA1_SPACE_ID, 5);
+            // 走缓冲池读：上一次分配写回的 maxSpaceId 可能还没刷盘（如建表后紧接着建索引）
+            page = pageManager.getPage(IBDATA1_SPACE_ID, 5);
 
             //只存了一个数据
             DataRecord dataRecord = DataRecord.fromBytes(ByteBuffer.wrap(page.getRecord(0)).array());
             int maxSpaceId = ByteBuffer.wrap(dataRecord.getData()).getInt();
 
-            //新建文件 //初始化文件
+            //新建文件 //初始化文件（root 页由 BPlusTree 首次建树时从空闲链表分配）
             pageManager.openFile(maxSpaceId + 1, filePath);
-            updateRootPageNo(filePath,maxSpaceId + 1, 3);
 
             // 4. 将 newSpaceId 写回原始位置
             // 4.1 构造新的数据（假设原数据只有 maxSpaceId，现在更新它）
@@ -392,6 +419,11 @@ public class StorageSystem {
             if (!pageManager.getOpenFiles().containsKey(SYS_COLUMNS_IDB_SPACE_ID)) {
                 pageManager.openFile(SYS_COLUMNS_IDB_SPACE_ID, path + "sys_columns.idb");
             }
+
+            // 确保文件已打开（老库没有这个文件时会新建）
+            if (!pageManager.getOpenFiles().containsKey(SYS_INDEXES_IDB_SPACE_ID)) {
+                pageManager.openFile(SYS_INDEXES_IDB_SPACE_ID, path + "sys_indexes.idb");
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -433,16 +465,25 @@ public class StorageSystem {
 
         switch (header.pageType) {
             case PageType.DATA_PAGE:
+            case PageType.PAX_DATA_PAGE:
                 LeafNode leaf = new LeafNode(gid, header, this);
                 leaf.parent = parent;
 
-                // 遍历每条记录，反序列化列数据
-                for (int i = 0; i < page.getRecordCount(); i++) {
-                    byte[] recordData = page.getRecord(i);
-                    if (recordData == null) {
-                        throw new IOException("Leaf page " + gid.pageNo + " record " + i + " is null!");
+                // PAX 页一次按列解出整页的行；行格式遍历每条记录，反序列化列数据
+                boolean pax = header.pageType == PageType.PAX_DATA_PAGE;
+                List<List<Object>> paxRows = pax ? PaxSerializer.decodeRows(page, tableColumns) : null;
+                int rowCount = pax ? paxRows.size() : page.getRecordCount();
+                for (int i = 0; i < rowCount; i++) {
+                    List<Object> rowColumns;
+                    if (pax) {
+                        rowColumns = paxRows.get(i);
+                    } else {
+                        byte[] recordData = page.getRecord(i);
+                        if (recordData == null) {
+                            throw new IOException("Leaf page " + gid.pageNo + " record " + i + " is null!");
+                        }
+                        rowColumns = RecordSerializer.deserializeDataRow(recordData, tableColumns);
                     }
-                    List<Object> rowColumns = RecordSerializer.deserializeDataRow(recordData, tableColumns);
                     leaf.records.add(rowColumns);
 
                     // 根据主键列生成 Key，并加入 keys
@@ -465,20 +506,7 @@ public class StorageSystem {
             case PageType.INDEX_PAGE:
                 InternalNode internal = new InternalNode(gid, header, this);
                 internal.parent = parent;
-
-                for (int i = 0; i < page.getRecordCount(); i++) {
-                    byte[] keyData = page.getRecord(i);
-                    Pair<Key, Integer> pair = RecordSerializer.deserializeKeyPtr(keyData, getKeyColumn(tableColumns));
-
-//                    if (i == 0) {
-//                        // 第一条：只有 child
-//                        internal.children.add(pair.getSecond());
-//                    } else {
-                        // 后续：key + child
-                        internal.keys.add(pair.getFirst());
-                        internal.children.add(pair.getSecond());
-                    //}
-                }
+                readInternalEntries(page, getKeyColumn(tableColumns), internal.keys, internal.children);
                 node = internal;
                 break;
 
@@ -491,78 +519,206 @@ public class StorageSystem {
     }
 
     /**
-     * 保存叶子节点
+     * 查找路径上加载节点：内部节点从常驻缓存取，没有再解码后放进去（见 InternalNodeCache），
+     * intKeyed（单列 INT 主键）时解码成 IntInternalNode；叶子同 loadNode
+     * 返回的内部节点是共享的，只能读
      */
-    public void writeLeafNode(String filePath, LeafNode node, List<Column> columns) {
-        final int spaceId = node.gid.spaceId;
-        final int pageNo = node.gid.pageNo;
+    public BPlusNode<Key> loadSearchNode(String filePath, PageManager.GlobalPageId gid, List<Column> tableColumns,
+                                         boolean intKeyed) throws IOException {
+        InternalNodeCache cache = bufferPool.getInternalNodeCache();
+        BPlusNode<Key> cached = cache.get(gid);
+        if (cached != null) {
+            return cached;
+        }
 
-        PageManager.GlobalPageId pageId = new PageManager.GlobalPageId(spaceId, pageNo);
+        long generation = cache.generation(gid);
+        PageManager.Page page = readPage(filePath, gid.spaceId, gid.pageNo);
+        if (page == null || page.getHeader().pageType != PageType.INDEX_PAGE) {
+            return loadNode(filePath, gid, null, tableColumns);
+        }
+        BPlusNode<Key> node = intKeyed ? IntInternalNode.fromPage(gid, page, this) : null;
+        if (node == null) {
+            InternalNode internal = new InternalNode(gid, page.getHeader(), this);
+            readInternalEntries(page, getKeyColumn(tableColumns), internal.keys, internal.children);
+            node = internal;
+        }
+        cache.put(gid, generation, node);
+        return node;
+    }
 
-        // 先删掉旧页
-        bufferPool.deletePage(pageId);
+    /**
+     * 解析索引页：第 0 条记录只有最左 child，之后每条为 key + 右侧 child
+     */
+    public static void readInternalEntries(PageManager.Page page, List<Column> keyColumns,
+                                           List<Key> keys, List<Integer> children) {
+        for (int i = 0; i < page.getRecordCount(); i++) {
+            byte[] keyData = page.getRecord(i);
+            if (i == 0) {
+                // 第一条：只有 child
+                children.add(RecordSerializer.deserializeKeyPtr(keyData, Collections.emptyList()).getSecond());
+            } else {
+                // 后续：key + child
+                Pair<Key, Integer> pair = RecordSerializer.deserializeKeyPtr(keyData, keyColumns);
+                keys.add(pair.getFirst());
+                children.add(pair.getSecond());
+            }
+        }
+    }
 
-        // 新建 DataPage
-        PageManager.Page page = new DataPage(pageNo);
-        page.getHeader().pageNo = pageNo;
-        page.getHeader().isDirty = true;
-        page.getHeader().nextPage = node.header.nextPage;
-        page.getHeader().prevPage = node.header.prevPage;
-        bufferPool.putPage(page, spaceId);
+    /**
+     * 保存叶子节点
+     * 记录已按主键有序，直接按顺序写入新页，整页只放入缓存一次（不再逐条排序/重复包装记录头）
+     */
+    public void writeLeafNode(String filePath, LeafNode node, List<Column> columns) {
+        writeLeafPage(node, serializeLeafRows(node, columns));
+    }
 
-        // 写入所有 records
+    /**
+     * 序列化叶子节点的所有行（分裂前先拿来算字节数，写页时直接复用）
+     */
+    public static List<byte[]> serializeLeafRows(LeafNode node, List<Column> columns) {
+        List<byte[]> rows = new ArrayList<>(node.records.size());
+        boolean varint = isVarintFormat(node.gid.spaceId);
         for (List<Object> row : node.records) {
-            byte[] rowData = RecordSerializer.serializeDataRow(row, columns);
-            StorageSystem.writePage(filePath, spaceId, pageNo, rowData);
+            rows.add(RecordSerializer.serializeDataRow(row, columns, varint));
         }
+        return rows;
+    }
 
-        node.header.isDirty = true;
+    /**
+     * 用已序列化好的行写叶子页（批量装载时复用已经算过大小的字节）
+     * 表空间开了 PAX（setPaxLayout）时按列写成 PAX 页，PAX 编码放不下一页（列多行少时每列的槽位开销）就仍写行格式，
+     * 两种叶子页读的时候都认
+     */
+    public void writeLeafPage(LeafNode node, List<byte[]> rows) {
+        if (writePaxLeafPage(node)) {
+            return;
+        }
+        PageManager.Page page = new DataPage(node.gid.pageNo);
+        writeNodePage(node, page, rows);
     }
 
+    /**
+     * 表空间开了 PAX 且叶子的行按列编码后放得进一页时写成 PAX 页
+     * PAX 页没有每行的记录头、null 标记字节和槽位，行格式放不下的叶子按列可能还放得下
+     * @return 是否写了；没写时调用方按行格式写或分裂
+     */
+    public boolean writePaxLeafPage(LeafNode node) {
+        List<Column> paxColumns = paxSpaces.get(node.gid.spaceId);
+        if (paxColumns == null) {
+            return false;
+        }
+        List<byte[]> minipages = PaxSerializer.encode(node.records, paxColumns);
+        if (!PaxSerializer.fits(minipages, BPlusNode.pageCapacity())) {
+            return false;
+        }
+        PageManager.Page page = new DataPage(node.gid.pageNo);
+        page.getHeader().pageType = PageType.PAX_DATA_PAGE;
+        writeNodePage(node, page, minipages);
+        return true;
+    }
 
     /**
-     * 保存内部节点
+     * 设置表空间之后写的叶子是否用 PAX 格式
+     * @param columns 表的列；null 表示用行格式
      */
-    public void writeInternalNode(String filePath, InternalNode node, List<Column> tableColumns) {
-        final int spaceId = node.gid.spaceId;
-        final int pageNo = node.gid.pageNo;
+    public static void setPaxLayout(int spaceId, List<Column> columns) {
+        if (columns == null) {
+            paxSpaces.remove(spaceId);
+        } else {
+            paxSpaces.put(spaceId, columns);
+        }
+    }
 
-        PageManager.GlobalPageId pageId = new PageManager.GlobalPageId(spaceId, pageNo);
+    public static boolean isPaxLayout(int spaceId) {
+        return paxSpaces.containsKey(spaceId);
+    }
 
-        // 先删掉旧页
-        bufferPool.deletePage(pageId);
+    /**
+     * 设置表空间之后写的行和内部节点条目是否用变长整数格式；已有的记录不改写，读的时候按每条记录的 recordType 认
+     */
+    public static void setVarintFormat(int spaceId, boolean varint) {
+        if (varint) {
+            varintSpaces.add(spaceId);
+        } else {
+            varintSpaces.remove(spaceId);
+        }
+    }
 
-        // 新建 IndexPage
-        PageManager.Page page = new IndexPage(pageNo);
-        page.getHeader().pageNo = pageNo;
-        page.getHeader().isDirty = true;
-        page.getHeader().nextPage = node.header.nextPage;
-        page.getHeader().prevPage = node.header.prevPage;
-        bufferPool.putPage(page, spaceId);
+    public static boolean isVarintFormat(int spaceId) {
+        return varintSpaces.contains(spaceId);
+    }
 
+    /**
+     * 保存内部节点
+     */
+    public void writeInternalNode(String filePath, InternalNode node, List<Column> tableColumns) {
+        writeInternalPage(node, serializeInternalEntries(node));
+    }
+
+    /**
+     * 序列化内部节点：第 0 条只有最左 child，之后每条为 key + 右侧 child
+     */
+    public static List<byte[]> serializeInternalEntries(InternalNode node) {
         if (node.children == null || node.children.isEmpty()) {
-            node.header.isDirty = false;
-            return;
+            return Collections.emptyList();
         }
 
+        List<byte[]> entries = new ArrayList<>(node.children.size());
+        boolean varint = isVarintFormat(node.gid.spaceId);
         // 写最左 child
-        int leftChildPage = node.children.get(0);
-        byte[] leftOnly = RecordSerializer.serializeKeyPtr(
-                Collections.emptyList(), Collections.emptyList(), leftChildPage
-        );
-        StorageSystem.writePage(filePath, spaceId, pageNo, leftOnly);
+        entries.add(RecordSerializer.serializeKeyPtr(
+                Collections.emptyList(), Collections.emptyList(), node.children.get(0), varint
+        ));
 
         // 写 key + right child
         for (int i = 0; i < node.keys.size(); i++) {
             Key key = node.keys.get(i);
-            int rightChildPage = node.children.get(i + 1);
-            byte[] keyPtrData = RecordSerializer.serializeKeyPtr(
-                    key.getValues(), key.getKeyColumns(), rightChildPage
-            );
-            StorageSystem.writePage(filePath, spaceId, pageNo, keyPtrData);
+            entries.add(RecordSerializer.serializeKeyPtr(
+                    key.getValues(), key.getKeyColumns(), node.children.get(i + 1), varint
+            ));
         }
+        return entries;
+    }
 
-        node.header.isDirty = true;
+    /**
+     * 用已序列化好的条目写内部节点页
+     */
+    public void writeInternalPage(InternalNode node, List<byte[]> entries) {
+        PageManager.Page page = new IndexPage(node.gid.pageNo);
+        writeNodePage(node, page, entries);
+    }
+
+    /**
+     * 把节点的记录一次性写入新页并替换缓存中的旧页
+     * 放不下说明分裂判断有误，直接报错，不能悄悄丢记录
+     */
+    private void writeNodePage(BPlusNode<Key> node, PageManager.Page page, List<byte[]> records) {
+        page.getHeader().pageNo = node.gid.pageNo;
+        page.getHeader().nextPage = node.header.nextPage;
+        page.getHeader().prevPage = node.header.prevPage;
+        writeRecordsPage(node.gid.spaceId, page, records);
+
+        // 节点的页头换成新页的，usedBytes 才准
+        node.header = page.getHeader();
+    }
+
+    /**
+     * 把记录一次性写入新页（页号、页头由调用方设好）并替换缓存中的旧页
+     * 放不下说明分裂判断有误，直接报错，不能悄悄丢记录
+     */
+    public void writeRecordsPage(int spaceId, PageManager.Page page, List<byte[]> records) {
+        final int pageNo = page.getHeader().pageNo;
+        for (byte[] record : records) {
+            if (!page.addRecord(record)) {
+                throw new IllegalStateException("Page overflow: page=" + pageNo + " records=" + records.size());
+            }
+        }
+        page.getHeader().isDirty = true;
+
+        // 先删掉旧页，再放入新页
+        bufferPool.deletePage(new PageManager.GlobalPageId(spaceId, pageNo));
+        bufferPool.putPage(page, spaceId);
     }
 
     private List<Column> getKeyColumn(List<Column> columns) {
@@ -576,7 +732,8 @@ public class StorageSystem {
     }
 
     /**
-     * 更新指定 space 的 root pageNo，写入 Page2
+     * 更新指定 space 的 root pageNo，写入 Page2 的第 0 条记录
+     * （页头会在刷盘时覆盖 pageData 前部，因此不能直接写裸字节）
      * @param spaceId 表空间ID
      * @param rootPageNo 新的 root 页号
      */
@@ -590,9 +747,13 @@ public class StorageSystem {
             metaPage = readPage(filePath, spaceId, ROOT_META_PAGE_NO);
         }
 
-        // 2. 更新前 4 字节为 rootPageNo
-        ByteBuffer buffer = ByteBuffer.wrap(metaPage.pageData);
-        buffer.putInt(0, rootPageNo);
+        // 2. 写入 rootPageNo
+        byte[] data = ByteBuffer.allocate(4).putInt(rootPageNo).array();
+        if (metaPage.getRecord(0) == null) {
+            metaPage.addRecord(data);
+        } else {
+            metaPage.updateRecord(0, data);
+        }
 
         // 3. 标记页为脏并写回 bufferPool
         metaPage.header.isDirty = true;
@@ -608,17 +769,15 @@ public class StorageSystem {
                 return -1;
             }
 
-            byte[] data = page2.pageData;
+            byte[] data = page2.getRecord(0);
             if (data == null || data.length < 4) {
                 return -1;
             }
 
-            // 前 4 字节存 rootPageNo (大端)
-            ByteBuffer buffer = ByteBuffer.wrap(data, 0, 4);
-            return buffer.getInt();
+            return ByteBuffer.wrap(data).getInt();
         } catch (IOException e) {
             throw new RuntimeException("Failed to read root page from Page2", e);
         }
     }
 
-}
\ No newline at end of file
+}
@@ -27,6 +27,9 @@ public class Column {
     //默认值
     private byte[] defaultValue;
 
+    //加这一列时的表结构版本（ALTER TABLE ADD COLUMN 一次加 1），建表时的列为 0
+    private int version;
+
     public Column(String name, String type, int length, int scale, int position, boolean isPrimaryKey, boolean isNullable, byte[] defaultValue) {
         this.name = name;
         this.type = type;
@@ -97,6 +100,14 @@ public class Column {
         this.scale = scale;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public int getPosition() {
         return position;
     }
@@ -151,29 +162,30 @@ public class Column {
                 }
             }
         }
-        remaining = remaining.substring(typeMatcher.end()).trim().toUpperCase();  // 剩余约束部分
+        remaining = remaining.substring(typeMatcher.end()).trim();  // 剩余约束部分（默认值保留原来的大小写）
 
         // 步骤3：解析约束条件（主键、非空、默认值等）
         while (!remaining.isEmpty()) {
+            String upper = remaining.toUpperCase();
             // 匹配 PRIMARY KEY（主键约束）
-            if (remaining.startsWith("PRIMARY KEY")) {
+            if (upper.startsWith("PRIMARY KEY")) {
                 isPrimaryKey = true;
                 remaining = remaining.substring("PRIMARY KEY".length()).trim();
             }
             // 匹配 NOT NULL（非空约束）
-            else if (remaining.startsWith("NOT NULL")) {
+            else if (upper.startsWith("NOT NULL")) {
                 isNullable = false;
                 remaining = remaining.substring("NOT NULL".length()).trim();
             }
             // 匹配 DEFAULT（默认值约束）
-            else if (remaining.startsWith("DEFAULT")) {
+            else if (upper.startsWith("DEFAULT")) {
                 remaining = remaining.substring("DEFAULT".length()).trim();
                 if (remaining.isEmpty()) {
                     throw new IllegalArgumentException("DEFAULT约束缺少值: " + columnDefinition);
                 }
                 // 处理字符串默认值（带单引号）
                 if (remaining.startsWith("'") && remaining.endsWith("'")) {
-                    String valueStr = remaining.substring(1, remaining.length() - 1);
+                    String valueStr = remaining.substring(1, remaining.length() - 1).replace("''", "'");
                     defaultValue = valueStr.getBytes(StandardCharsets.UTF_8);
                     remaining = "";
                 }
@@ -182,7 +194,11 @@ public class Column {
                     defaultValue = remaining.getBytes(StandardCharsets.UTF_8);
                     remaining = "";
                 }
-                // 其他类型（如布尔值）可在此扩展
+                // 布尔值
+                else if (remaining.equalsIgnoreCase("TRUE") || remaining.equalsIgnoreCase("FALSE")) {
+                    defaultValue = remaining.toLowerCase().getBytes(StandardCharsets.UTF_8);
+                    remaining = "";
+                }
                 else {
                     throw new IllegalArgumentException("不支持的DEFAULT值格式: " + remaining);
                 }
@@ -0,0 +1,318 @@
+package org.csu.mydb.storage.Table.Column;
+
+import org.csu.mydb.storage.PageManager;
+import org.csu.mydb.util.TypeHandler.TypeHandler;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PAX 页（PageType.PAX_DATA_PAGE）的编解码：一页里的行按列存放，每列一个 minipage
+ * - 第 0 条记录：[行数 4][每列的编码方式 1]（老的页只有行数，各列都是 PLAIN）
+ * - 第 1 + c 条记录：第 c 列的 minipage，开头都是 [null 位图 (行数+7)/8]
+ *   - PLAIN：之后非空值依次排列，值的编码同行格式
+ *   - DICT：之后 [字典项数 2][字典项依次排列，编码同行格式][每个非空值一个 1 字节的编号]
+ * 变长列（VARCHAR/CHAR）在这一页里不同的值不超过 256 个、且按字典存更小时写成 DICT：
+ * 状态、国家这类列每个值只存一次，一页能放更多行；过滤条件在每个字典项上求一次，之后只看编号
+ * 只要其中几列时只解码这几列的 minipage，其余列的字节不碰
+ * 表加列之前写的页没有新列的 minipage，读出来每行都是这一列的默认值（RecordCodec.defaultValue）
+ */
+public class PaxSerializer {
+    public static final byte PLAIN = 0;
+    public static final byte DICT = 1;
+    // 编号 1 字节
+    private static final int MAX_DICT_SIZE = 256;
+
+    /**
+     * 把一页的行编码成 PAX 页的记录（行数 + 每列一个 minipage）
+     */
+    public static List<byte[]> encode(List<List<Object>> rows, List<Column> columns) {
+        RecordCodec codec = RecordCodec.of(columns);
+        int rowCount = rows.size();
+        int bitmapBytes = (rowCount + 7) / 8;
+        List<byte[]> records = new ArrayList<>(columns.size() + 1);
+        ByteBuffer head = ByteBuffer.allocate(4 + columns.size()).putInt(rowCount);
+        records.add(head.array());
+
+        for (int c = 0; c < columns.size(); c++) {
+            TypeHandler<Object> field = codec.field(c);
+            int plainSize = 0;
+            int nonNull = 0;
+            for (List<Object> row : rows) {
+                Object val = row.get(c);
+                if (val != null) {
+                    plainSize += field.getStorageSize(val);
+                    nonNull++;
+                }
+            }
+            Map<Object, Integer> dictionary = field.fixedWidth() < 0 ? dictionaryOf(rows, c, field, plainSize - nonNull - 2) : null;
+            byte encoding = dictionary == null ? PLAIN : DICT;
+            head.put(4 + c, encoding);
+
+            int size = bitmapBytes + plainSize;
+            if (encoding == DICT) {
+                size = bitmapBytes + 2 + nonNull;
+                for (Object entry : dictionary.keySet()) size += field.getStorageSize(entry);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            for (int i = 0; i < rowCount; i++) {
+                if (rows.get(i).get(c) == null) {
+                    buffer.put(i / 8, (byte) (buffer.get(i / 8) | (1 << (i % 8))));
+                }
+            }
+            buffer.position(bitmapBytes);
+            if (encoding == DICT) {
+                buffer.putShort((short) dictionary.size());
+                for (Object entry : dictionary.keySet()) field.write(buffer, entry);
+            }
+            for (List<Object> row : rows) {
+                Object val = row.get(c);
+                if (val == null) continue;
+                if (encoding == DICT) {
+                    buffer.put((byte) (int) dictionary.get(val));
+                } else {
+                    field.write(buffer, val);
+                }
+            }
+            records.add(buffer.array());
+        }
+        return records;
+    }
+
+    /**
+     * 第 c 列的字典（值 -> 编号，按第一次出现的顺序编号，遍历顺序就是编号顺序）
+     * @param budget 字典项总共能占的字节数，超过就不如直接存
+     * @return 不同的值太多或字典不省空间时返回 null
+     */
+    private static Map<Object, Integer> dictionaryOf(List<List<Object>> rows, int c, TypeHandler<Object> field, int budget) {
+        Map<Object, Integer> dictionary = new LinkedHashMap<>();
+        int size = 0;
+        for (List<Object> row : rows) {
+            Object val = row.get(c);
+            if (val == null || dictionary.containsKey(val)) continue;
+            size += field.getStorageSize(val);
+            if (dictionary.size() == MAX_DICT_SIZE || size >= budget) {
+                return null;
+            }
+            dictionary.put(val, dictionary.size());
+        }
+        return dictionary.isEmpty() ? null : dictionary;
+    }
+
+    /**
+     * 这些记录（含槽位）能否放进一页
+     */
+    public static boolean fits(List<byte[]> records, int pageCapacity) {
+        int used = 0;
+        for (byte[] record : records) {
+            used += record.length + PageManager.SLOT_SIZE;
+        }
+        return used <= pageCapacity;
+    }
+
+    public static int rowCount(PageManager.Page page) {
+        return ByteBuffer.wrap(page.getRecord(0)).getInt();
+    }
+
+    /**
+     * 第 c 列 minipage 的编码方式
+     */
+    public static byte encoding(PageManager.Page page, int c) {
+        byte[] head = page.getRecord(0);
+        return head.length > 4 + c ? head[4 + c] : PLAIN;
+    }
+
+    /**
+     * 解码整页的行
+     */
+    public static List<List<Object>> decodeRows(PageManager.Page page, List<Column> columns) {
+        return decodeColumns(page, columns, allPositions(columns), null);
+    }
+
+    /**
+     * 只解码给定的列
+     * @param positions 要的列在表里的下标，结果每行的值按这个顺序排列
+     */
+    public static List<List<Object>> decodeColumns(PageManager.Page page, List<Column> columns, int[] positions) {
+        return decodeColumns(page, columns, positions, null);
+    }
+
+    /**
+     * 先按列求过滤条件，再只解码满足条件的行的给定列：
+     * 每个条件只读它那一列的 minipage，DICT 列在每个字典项上求一次，之后每行只查编号
+     * @param positions 要的列在表里的下标，结果每行的值按这个顺序排列；null 为整行
+     * @param filter    过滤条件，null 为不过滤
+     */
+    public static List<List<Object>> decodeColumns(PageManager.Page page, List<Column> columns, int[] positions,
+                                                   RecordFilter filter) {
+        RecordCodec codec = RecordCodec.of(columns);
+        if (positions == null) {
+            positions = allPositions(columns);
+        }
+        int rowCount = rowCount(page);
+        boolean[] keep = new boolean[rowCount];
+        Arrays.fill(keep, true);
+        int kept = rowCount;
+        for (int t = 0; filter != null && t < filter.termCount() && kept > 0; t++) {
+            int c = filter.termColumn(t);
+            if (!hasColumn(page, c)) {
+                // 写这一页时还没有这一列，每行都是默认值
+                if (!filter.testTerm(t, codec.defaultValue(c))) {
+                    Arrays.fill(keep, false);
+                    kept = 0;
+                }
+                continue;
+            }
+            TypeHandler<Object> field = codec.field(c);
+            ByteBuffer buffer = minipage(page, c, rowCount);
+            boolean[] matches = null;
+            if (encoding(page, c) == DICT) {
+                Object[] dictionary = readDictionary(buffer, field);
+                matches = new boolean[dictionary.length];
+                for (int d = 0; d < dictionary.length; d++) {
+                    matches[d] = filter.testTerm(t, dictionary[d]);
+                }
+            }
+            for (int i = 0; i < rowCount; i++) {
+                if (isNull(buffer, i)) {
+                    if (keep[i]) kept--;
+                    keep[i] = false;
+                    continue;
+                }
+                boolean match;
+                if (matches != null) {
+                    match = matches[buffer.get() & 0xFF];
+                } else if (keep[i]) {
+                    match = filter.testTerm(t, field.deserialize(buffer));
+                } else {
+                    field.skip(buffer);
+                    continue;
+                }
+                if (keep[i] && !match) {
+                    keep[i] = false;
+                    kept--;
+                }
+            }
+        }
+
+        List<List<Object>> rows = new ArrayList<>(kept);
+        for (int i = 0; i < kept; i++) {
+            rows.add(new ArrayList<>(positions.length));
+        }
+        if (kept == 0) {
+            return rows;
+        }
+        for (int c : positions) {
+            if (!hasColumn(page, c)) {
+                for (List<Object> row : rows) row.add(codec.defaultValue(c));
+                continue;
+            }
+            TypeHandler<Object> field = codec.field(c);
+            ByteBuffer buffer = minipage(page, c, rowCount);
+            Object[] dictionary = encoding(page, c) == DICT ? readDictionary(buffer, field) : null;
+            for (int i = 0, out = 0; i < rowCount; i++) {
+                Object val = null;
+                if (!isNull(buffer, i)) {
+                    if (dictionary != null) {
+                        val = dictionary[buffer.get() & 0xFF];
+                    } else if (keep[i]) {
+                        val = field.deserialize(buffer);
+                    } else {
+                        field.skip(buffer);
+                    }
+                }
+                if (keep[i]) {
+                    rows.get(out++).add(val);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 解码第 row 行（每列跳过前面的值）
+     * @return 行；row 越界返回 null
+     */
+    public static List<Object> decodeRow(PageManager.Page page, List<Column> columns, int row) {
+        return decodeRow(page, columns, row, allPositions(columns));
+    }
+
+    /**
+     * 只解码第 row 行的给定列；DICT 列数出前面的非空值个数直接取编号
+     * @param positions 要的列在表里的下标，结果按这个顺序排列
+     * @return 行；row 越界返回 null
+     */
+    public static List<Object> decodeRow(PageManager.Page page, List<Column> columns, int row, int[] positions) {
+        RecordCodec codec = RecordCodec.of(columns);
+        int rowCount = rowCount(page);
+        if (row >= rowCount) {
+            return null;
+        }
+        List<Object> values = new ArrayList<>(positions.length);
+        for (int c : positions) {
+            if (!hasColumn(page, c)) {
+                values.add(codec.defaultValue(c));
+                continue;
+            }
+            TypeHandler<Object> field = codec.field(c);
+            ByteBuffer buffer = minipage(page, c, rowCount);
+            if (isNull(buffer, row)) {
+                values.add(null);
+                continue;
+            }
+            if (encoding(page, c) == DICT) {
+                int entries = buffer.getShort() & 0xFFFF;
+                int dictStart = buffer.position();
+                for (int d = 0; d < entries; d++) field.skip(buffer);
+                int nonNullBefore = 0;
+                for (int i = 0; i < row; i++) {
+                    if (!isNull(buffer, i)) nonNullBefore++;
+                }
+                int code = buffer.get(buffer.position() + nonNullBefore) & 0xFF;
+                buffer.position(dictStart);
+                for (int d = 0; d < code; d++) field.skip(buffer);
+            } else {
+                for (int i = 0; i < row; i++) {
+                    if (!isNull(buffer, i)) field.skip(buffer);
+                }
+            }
+            values.add(field.deserialize(buffer));
+        }
+        return values;
+    }
+
+    // 页里有没有第 c 列的 minipage
+    private static boolean hasColumn(PageManager.Page page, int c) {
+        return 1 + c < page.getRecordCount();
+    }
+
+    // 第 c 列的 minipage，停在 null 位图之后
+    private static ByteBuffer minipage(PageManager.Page page, int c, int rowCount) {
+        ByteBuffer buffer = ByteBuffer.wrap(page.getRecord(1 + c));
+        buffer.position((rowCount + 7) / 8);
+        return buffer;
+    }
+
+    // 读出 DICT minipage 的字典，读完停在编号开始的地方
+    private static Object[] readDictionary(ByteBuffer buffer, TypeHandler<Object> field) {
+        Object[] dictionary = new Object[buffer.getShort() & 0xFFFF];
+        for (int d = 0; d < dictionary.length; d++) {
+            dictionary[d] = field.deserialize(buffer);
+        }
+        return dictionary;
+    }
+
+    private static int[] allPositions(List<Column> columns) {
+        int[] all = new int[columns.size()];
+        for (int c = 0; c < all.length; c++) all[c] = c;
+        return all;
+    }
+
+    private static boolean isNull(ByteBuffer minipage, int row) {
+        return (minipage.get(row / 8) & (1 << (row % 8))) != 0;
+    }
+}
@@ -0,0 +1,457 @@
+package org.csu.mydb.storage.Table.Column;
+
+import org.csu.mydb.storage.storageFiles.page.record.RecordHead;
+import org.csu.mydb.util.TypeHandler.TypeHandler;
+import org.csu.mydb.util.TypeHandler.TypeHandlerFactory;
+import org.csu.mydb.util.TypeHandler.VarWidthTypeHandler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按表结构预先建好的行编解码器：每列的 TypeHandler 和偏移建的时候就算好，先精确算出字节数，
+ * 再直接写进调用方给的缓冲区，没有临时缓冲也没有多次拷贝
+ * 紧凑行格式（RecordHead.recordType = COMPACT_ROW）：
+ *   [RecordHead 4][txnId 4][rollbackPtr 4][null 位图 (列数+7)/8][定长区][变长偏移表 2*变长列数][变长区]
+ * - 定长列（INT/BIGINT/DOUBLE/DECIMAL/BOOLEAN/DATE/TIMESTAMP）按列顺序排在定长区，每列偏移固定，为 null 也占位
+ * - 偏移表第 k 项是第 k 个变长列在变长区里的结束偏移，开始偏移是上一项（第 0 个从 0 开始），null 长度为 0
+ * 所以任何一列（包括主键）都能直接定位读出（decodeColumn），不用先解析前面的列
+ * 变长整数行格式（recordType = VARINT_ROW，ROW_FORMAT=VARINT 的表才写）：
+ *   [RecordHead 4][txnId 4][rollbackPtr 4][null 位图][非空列的值依次排列，编码见 TypeHandler.writeVarint]
+ * - INT/BIGINT 存 zigzag 变长整数，VARCHAR 的长度前缀是变长整数，小的 id、计数只占一两个字节
+ * - 没有固定偏移，读某一列要跳过前面的列
+ * 老的行格式（recordType = 0：每列 [非空标记 1][值]）仍然能读
+ * 读的时候按每行的 recordType 分派，三种格式的行可以混在一页里；写哪种由建 codec 时的 varint 决定
+ * 加过列的表（有 Column.version > 0 的列）写的行在 recordType 上带 VERSIONED，前缀之后多 2 字节的表结构版本；
+ * 读到版本旧的行（没带版本的为 0）按那个版本的列解码，之后加的列补上默认值，所以加列不用改写已有的行
+ * 同一份列定义只建一次（of），列定义变了（比如加列）换一个列表就会建新的
+ */
+public final class RecordCodec {
+    // 记录头 + txnId + rollbackPtr
+    public static final int ROW_PREFIX_SIZE = RecordHead.RECORD_HEADER_SIZE + 8;
+    // RecordHead.recordType：紧凑行格式
+    public static final byte COMPACT_ROW = 2;
+    // RecordHead.recordType：变长整数行格式
+    public static final byte VARINT_ROW = 3;
+    // RecordHead.recordType 上的标记：行带表结构版本
+    public static final byte VERSIONED = 0x40;
+    private static final int MAX_CACHED = 1024;
+    private static final ConcurrentHashMap<List<Column>, RecordCodec> CACHE = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<List<Column>, RecordCodec> VARINT_CACHE = new ConcurrentHashMap<>();
+
+    private final List<Column> columns;
+    private final TypeHandler<Object>[] fields;
+    // 变长列的 handler，定长列为 null
+    private final VarWidthTypeHandler<Object>[] varFields;
+    // 表结构版本（列的最大 version），写的行带这个版本
+    private final int version;
+    // 每列的默认值，老的行里没有这一列时补它；建表时就有的列为 null
+    private final Object[] defaults;
+    // 版本 v 的行用的 codec（只有那时已有的列），用到时再建
+    private final RecordCodec[] older;
+    // 定长列在行里的偏移，变长列为 -1
+    private final int[] fixedOffset;
+    // 变长列是第几个变长列，定长列为 -1
+    private final int[] varIndex;
+    private final int bitmapOffset;
+    private final int varTableOffset;
+    private final int varCount;
+    // 变长区开始的偏移，也是变长列都为空时整行的字节数
+    private final int varDataOffset;
+    // 写变长整数行格式
+    private final boolean varint;
+
+    // 泛型数组只能建成通配符类型再转；数组里只放 TypeHandlerFactory.getHandler 取出的 handler，按列的值读写，
+    // 和 getHandler 本身的 TypeHandler<Object> 一样是按列类型配对的
+    @SuppressWarnings("unchecked")
+    private RecordCodec(List<Column> columns, boolean varint) {
+        int n = columns.size();
+        this.columns = List.copyOf(columns);
+        this.varint = varint;
+        this.fields = (TypeHandler<Object>[]) new TypeHandler<?>[n];
+        this.varFields = (VarWidthTypeHandler<Object>[]) new VarWidthTypeHandler<?>[n];
+        this.defaults = new Object[n];
+        this.fixedOffset = new int[n];
+        this.varIndex = new int[n];
+        int maxVersion = 0;
+        for (Column column : columns) {
+            maxVersion = Math.max(maxVersion, column.getVersion());
+        }
+        this.version = maxVersion;
+        this.older = new RecordCodec[maxVersion];
+        this.bitmapOffset = ROW_PREFIX_SIZE + (maxVersion > 0 ? 2 : 0);
+        int offset = bitmapOffset + (n + 7) / 8;
+        int vars = 0;
+        for (int i = 0; i < n; i++) {
+            fields[i] = TypeHandlerFactory.getHandler(columns.get(i).getType());
+            byte[] defaultValue = columns.get(i).getDefaultValue();
+            if (columns.get(i).getVersion() > 0 && defaultValue != null) {
+                defaults[i] = fields[i].parse(new String(defaultValue, StandardCharsets.UTF_8));
+            }
+            if (fields[i] instanceof VarWidthTypeHandler) {
+                varFields[i] = (VarWidthTypeHandler<Object>) fields[i];
+                fixedOffset[i] = -1;
+                varIndex[i] = vars++;
+            } else {
+                fixedOffset[i] = offset;
+                varIndex[i] = -1;
+                offset += fields[i].fixedWidth();
+            }
+        }
+        this.varTableOffset = offset;
+        this.varCount = vars;
+        this.varDataOffset = offset + 2 * vars;
+    }
+
+    public static RecordCodec of(List<Column> columns) {
+        return of(columns, false);
+    }
+
+    /**
+     * @param varint 写变长整数行格式（读不受影响，哪种格式的行都能读）
+     */
+    public static RecordCodec of(List<Column> columns, boolean varint) {
+        ConcurrentHashMap<List<Column>, RecordCodec> cache = varint ? VARINT_CACHE : CACHE;
+        RecordCodec codec = cache.get(columns);
+        if (codec == null) {
+            if (cache.size() >= MAX_CACHED) {
+                cache.clear();
+            }
+            codec = new RecordCodec(columns, varint);
+            // 拷一份作 key：调用方之后改了自己的列表也不会弄乱缓存
+            cache.putIfAbsent(List.copyOf(columns), codec);
+        }
+        return codec;
+    }
+
+    public int columnCount() {
+        return fields.length;
+    }
+
+    TypeHandler<Object> field(int column) {
+        return fields[column];
+    }
+
+    /**
+     * 表结构版本，没加过列的表为 0
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * 行里没有这一列（加列之前写的行、PAX 页）时的值
+     */
+    public Object defaultValue(int column) {
+        return defaults[column];
+    }
+
+    /**
+     * 行里值之前的固定部分：记录头 + txnId + rollbackPtr，加过列的表再加 2 字节版本号
+     */
+    public int prefixSize() {
+        return bitmapOffset;
+    }
+
+    /**
+     * 一行编码后的精确字节数
+     */
+    public int encodedSize(List<Object> values) {
+        if (varint) {
+            int size = varintDataOffset();
+            for (int i = 0; i < fields.length; i++) {
+                Object val = values.get(i);
+                if (val != null) size += fields[i].varintSize(val);
+            }
+            return size;
+        }
+        int size = varDataOffset;
+        for (int i = 0; i < fields.length; i++) {
+            Object val = values.get(i);
+            if (val != null && varIndex[i] >= 0) size += varFields[i].varSize(val);
+        }
+        return size;
+    }
+
+    /**
+     * 从 out 的当前位置写入一行，out 至少要有 encodedSize 的剩余空间
+     */
+    public void encode(List<Object> values, ByteBuffer out) {
+        if (varint) {
+            encodeVarint(values, out);
+            return;
+        }
+        int start = out.position();
+        // RecordHead(未删除, 紧凑行, nextRecord = -1) + txnId + rollbackPtr [+ 表结构版本]
+        putPrefix(out, COMPACT_ROW);
+
+        // null 位图先清零，定长区按列顺序写（null 也占位，写 0）
+        for (int i = bitmapOffset; i < varTableOffset; i++) out.put((byte) 0);
+        int varData = start + varDataOffset;
+        int varEnd = 0;
+        for (int i = 0; i < fields.length; i++) {
+            Object val = values.get(i);
+            if (val == null) {
+                int bit = start + bitmapOffset + i / 8;
+                out.put(bit, (byte) (out.get(bit) | (1 << (i % 8))));
+            }
+            if (varIndex[i] < 0) {
+                if (val != null) {
+                    out.position(start + fixedOffset[i]);
+                    fields[i].write(out, val);
+                }
+            } else {
+                if (val != null) {
+                    out.position(varData + varEnd);
+                    varFields[i].writeVar(out, val);
+                    varEnd = out.position() - varData;
+                }
+                out.putShort(start + varTableOffset + 2 * varIndex[i], (short) varEnd);
+            }
+        }
+        out.position(varData + varEnd);
+    }
+
+    private void encodeVarint(List<Object> values, ByteBuffer out) {
+        putPrefix(out, VARINT_ROW);
+        byte[] bitmap = new byte[(fields.length + 7) / 8];
+        for (int i = 0; i < fields.length; i++) {
+            if (values.get(i) == null) bitmap[i / 8] |= (byte) (1 << (i % 8));
+        }
+        out.put(bitmap);
+        for (int i = 0; i < fields.length; i++) {
+            Object val = values.get(i);
+            if (val != null) fields[i].writeVarint(out, val);
+        }
+    }
+
+    private void putPrefix(ByteBuffer out, byte type) {
+        out.put((byte) 0).put(version > 0 ? (byte) (type | VERSIONED) : type).putShort((short) -1);
+        out.putInt(0);
+        out.putInt(0);
+        if (version > 0) {
+            out.putShort((short) version);
+        }
+    }
+
+    public byte[] encode(List<Object> values) {
+        byte[] record = new byte[encodedSize(values)];
+        encode(values, ByteBuffer.wrap(record));
+        return record;
+    }
+
+    /**
+     * 从 in 的当前位置读一行，读完 in 停在这行之后
+     */
+    public List<Object> decode(ByteBuffer in) {
+        int start = in.position();
+        int rowVersion = rowVersion(in, start);
+        if (rowVersion != version) {
+            // 加列之前写的行：按它那个版本的列读，之后加的列补默认值
+            List<Object> values = forVersion(rowVersion).decode(in);
+            for (int i = values.size(); i < fields.length; i++) {
+                values.add(defaults[i]);
+            }
+            return values;
+        }
+        int type = format(in.get(start + 1));
+        if (type == VARINT_ROW) {
+            return decodeVarint(in);
+        }
+        if (type != COMPACT_ROW) {
+            return decodeLegacy(in);
+        }
+        byte[] record = in.array();
+        int base = in.arrayOffset() + start;
+        List<Object> values = new ArrayList<>(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            values.add(readColumn(in, record, base, start, i));
+        }
+        in.position(start + varDataOffset + varEnd(in, start, varCount - 1));
+        return values;
+    }
+
+    public List<Object> decode(byte[] record) {
+        return decode(ByteBuffer.wrap(record));
+    }
+
+    /**
+     * 直接读出一列，不解析其他列（老格式的行只能从头解析到这一列）
+     */
+    public Object decodeColumn(byte[] record, int column) {
+        ByteBuffer in = ByteBuffer.wrap(record);
+        int rowVersion = rowVersion(in, 0);
+        if (rowVersion != version) {
+            RecordCodec old = forVersion(rowVersion);
+            return column < old.columnCount() ? old.decodeColumn(record, column) : defaults[column];
+        }
+        if (isVarint(record)) {
+            return readVarintColumn(in, column);
+        }
+        if (!isCompact(record)) {
+            return decodeLegacy(in).get(column);
+        }
+        return readColumn(in, record, 0, 0, column);
+    }
+
+    /**
+     * 只读出给定的列
+     * @param positions 要的列的下标，结果按这个顺序排列
+     */
+    public List<Object> decodeColumns(byte[] record, int[] positions) {
+        List<Object> values = new ArrayList<>(positions.length);
+        int rowVersion = rowVersion(ByteBuffer.wrap(record), 0);
+        if (rowVersion != version) {
+            RecordCodec old = forVersion(rowVersion);
+            for (int position : positions) {
+                values.add(position < old.columnCount() ? old.decodeColumn(record, position) : defaults[position]);
+            }
+            return values;
+        }
+        if (isVarint(record)) {
+            ByteBuffer in = ByteBuffer.wrap(record);
+            for (int position : positions) values.add(readVarintColumn(in, position));
+            return values;
+        }
+        if (!isCompact(record)) {
+            List<Object> row = decodeLegacy(ByteBuffer.wrap(record));
+            for (int position : positions) values.add(row.get(position));
+            return values;
+        }
+        ByteBuffer in = ByteBuffer.wrap(record);
+        for (int position : positions) {
+            values.add(readColumn(in, record, 0, 0, position));
+        }
+        return values;
+    }
+
+    // ---------------- 紧凑行里某列的位置，谓词直接比较这段字节 ----------------
+    boolean isNull(byte[] record, int column) {
+        return (record[bitmapOffset + column / 8] & (1 << (column % 8))) != 0;
+    }
+
+    int valueOffset(byte[] record, int column) {
+        int k = varIndex[column];
+        return k < 0 ? fixedOffset[column] : varDataOffset + (k == 0 ? 0 : varEnd(record, k - 1));
+    }
+
+    int valueLength(byte[] record, int column) {
+        int k = varIndex[column];
+        return k < 0 ? fields[column].fixedWidth() : varEnd(record, k) - (k == 0 ? 0 : varEnd(record, k - 1));
+    }
+
+    private int varEnd(byte[] record, int k) {
+        int at = varTableOffset + 2 * k;
+        return (record[at] & 0xFF) << 8 | (record[at + 1] & 0xFF);
+    }
+
+    public static boolean isCompact(byte[] record) {
+        return record.length > 1 && format(record[1]) == COMPACT_ROW;
+    }
+
+    public static boolean isVarint(byte[] record) {
+        return record.length > 1 && format(record[1]) == VARINT_ROW;
+    }
+
+    /**
+     * 是不是按这个 codec 的表结构写的紧凑行（谓词能直接按偏移比较字节）
+     */
+    boolean isCurrentCompact(byte[] record) {
+        return isCompact(record) && rowVersion(ByteBuffer.wrap(record), 0) == version;
+    }
+
+    // 去掉 VERSIONED 标记后的行格式
+    private static int format(byte type) {
+        return type & ~VERSIONED;
+    }
+
+    // 行的表结构版本，没带版本的行（老格式、加列之前写的行）为 0
+    private static int rowVersion(ByteBuffer in, int start) {
+        return (in.get(start + 1) & VERSIONED) == 0 ? 0 : in.getShort(start + ROW_PREFIX_SIZE) & 0xFFFF;
+    }
+
+    // 版本 v 的行的 codec：那时已有的列（新加的列总在最后）
+    private RecordCodec forVersion(int v) {
+        if (v > version) {
+            throw new IllegalStateException("Row schema version " + v + " is newer than table version " + version);
+        }
+        RecordCodec codec = older[v];
+        if (codec == null) {
+            int count = 0;
+            while (count < columns.size() && columns.get(count).getVersion() <= v) count++;
+            codec = of(columns.subList(0, count), varint);
+            older[v] = codec;
+        }
+        return codec;
+    }
+
+    /**
+     * @param array in 的底层数组
+     * @param base  行开头在 array 里的下标
+     * @param start 行开头在 in 里的位置
+     */
+    private Object readColumn(ByteBuffer in, byte[] array, int base, int start, int column) {
+        if (isNull(in, start, column)) {
+            return null;
+        }
+        int k = varIndex[column];
+        if (k < 0) {
+            in.position(start + fixedOffset[column]);
+            return fields[column].deserialize(in);
+        }
+        int from = k == 0 ? 0 : varEnd(in, start, k - 1);
+        int to = varEnd(in, start, k);
+        return varFields[column].readVar(array, base + varDataOffset + from, to - from);
+    }
+
+    // 第 k 个变长列在变长区里的结束偏移；k < 0（没有变长列）为 0
+    private int varEnd(ByteBuffer in, int start, int k) {
+        return k < 0 ? 0 : in.getShort(start + varTableOffset + 2 * k) & 0xFFFF;
+    }
+
+    // 变长整数格式里 null 位图之后、第一个值开始的偏移
+    private int varintDataOffset() {
+        return bitmapOffset + (fields.length + 7) / 8;
+    }
+
+    private List<Object> decodeVarint(ByteBuffer in) {
+        int start = in.position();
+        in.position(start + varintDataOffset());
+        List<Object> values = new ArrayList<>(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            values.add(isNull(in, start, i) ? null : fields[i].readVarint(in));
+        }
+        return values;
+    }
+
+    // 变长整数格式的行（从 in 的 0 开始）里读一列：跳过它前面的非空列
+    private Object readVarintColumn(ByteBuffer in, int column) {
+        if (isNull(in, 0, column)) {
+            return null;
+        }
+        in.position(varintDataOffset());
+        for (int i = 0; i < column; i++) {
+            if (!isNull(in, 0, i)) fields[i].skipVarint(in);
+        }
+        return fields[column].readVarint(in);
+    }
+
+    private boolean isNull(ByteBuffer in, int start, int column) {
+        return (in.get(start + bitmapOffset + column / 8) & (1 << (column % 8))) != 0;
+    }
+
+    /**
+     * 老的行格式：前缀之后每列 [非空标记 1][值]
+     */
+    private List<Object> decodeLegacy(ByteBuffer in) {
+        in.position(in.position() + ROW_PREFIX_SIZE);
+        List<Object> values = new ArrayList<>(fields.length);
+        for (TypeHandler<Object> field : fields) {
+            values.add(in.get() == 0 ? null : field.deserialize(in));
+        }
+        return values;
+    }
+}
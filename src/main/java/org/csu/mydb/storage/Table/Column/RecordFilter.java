@@ -0,0 +1,119 @@
+package org.csu.mydb.storage.Table.Column;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 行过滤条件（若干个 "列 运算符 常量" 的 AND），直接在页里序列化的记录上求值：
+ * 紧凑行按偏移找到那一列的字节，INT/DECIMAL/DATE 直接读出基本类型比较，VARCHAR 按 UTF-8 字节比较，
+ * 不生成 String 和装箱的值，只有满足条件的行才需要解码
+ * - 列为 NULL 时任何比较都不成立（同 SQL）
+ * - 老格式、变长整数格式、加列之前写的行先解码这一列再比较
+ */
+public class RecordFilter {
+    private enum Op {
+        EQ, NE, LT, LE, GT, GE;
+
+        static Op of(String op) {
+            switch (op) {
+                case "=": case "==": return EQ;
+                case "!=": case "<>": return NE;
+                case "<": return LT;
+                case "<=": return LE;
+                case ">": return GT;
+                case ">=": return GE;
+                default: throw new IllegalArgumentException("Unsupported operator: " + op);
+            }
+        }
+
+        boolean test(int cmp) {
+            switch (this) {
+                case EQ: return cmp == 0;
+                case NE: return cmp != 0;
+                case LT: return cmp < 0;
+                case LE: return cmp <= 0;
+                case GT: return cmp > 0;
+                default: return cmp >= 0;
+            }
+        }
+    }
+
+    private final RecordCodec codec;
+    private final List<Integer> columns = new ArrayList<>();
+    private final List<Op> ops = new ArrayList<>();
+    private final List<Object> operands = new ArrayList<>();
+
+    public RecordFilter(List<Column> tableColumns) {
+        this.codec = RecordCodec.of(tableColumns);
+    }
+
+    /**
+     * 加一个条件（与已有的条件是 AND 关系）
+     * @param column 列在表里的下标
+     * @param op     =、!=、<>、<、<=、>、>=
+     * @param value  常量，类型与列一致；null 表示这个条件永远不成立
+     */
+    public RecordFilter and(int column, String op, Object value) {
+        columns.add(column);
+        ops.add(Op.of(op));
+        operands.add(value == null ? null : codec.field(column).operand(value));
+        return this;
+    }
+
+    /**
+     * 在序列化的记录上求值
+     */
+    public boolean test(byte[] record) {
+        if (!codec.isCurrentCompact(record)) {
+            // 老格式、变长整数格式、加列之前写的行没有（和现在一样的）固定偏移，只解出条件涉及的列
+            for (int i = 0; i < columns.size(); i++) {
+                if (!testTerm(i, codec.decodeColumn(record, columns.get(i)))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            int column = columns.get(i);
+            Object operand = operands.get(i);
+            if (operand == null || codec.isNull(record, column)) {
+                return false;
+            }
+            int cmp = codec.field(column).compareEncoded(record,
+                    codec.valueOffset(record, column), codec.valueLength(record, column), operand);
+            if (!ops.get(i).test(cmp)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 在已解码的整行上求值（内存里的行）
+     */
+    public boolean test(List<Object> row) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (!testTerm(i, row.get(columns.get(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ---------------- 按列逐个求条件（PAX 页一列一列地过，字典项上只求一次） ----------------
+    int termCount() {
+        return columns.size();
+    }
+
+    int termColumn(int term) {
+        return columns.get(term);
+    }
+
+    boolean testTerm(int term, Object val) {
+        Object operand = operands.get(term);
+        if (operand == null || val == null) {
+            return false;
+        }
+        return ops.get(term).test(codec.field(columns.get(term)).compareValue(val, operand));
+    }
+}
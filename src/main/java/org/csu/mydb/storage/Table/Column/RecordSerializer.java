@@ -4,179 +4,184 @@ import org.csu.mydb.storage.Table.Key;
 import org.csu.mydb.storage.storageFiles.page.record.IndexRecord;
 import org.csu.mydb.storage.storageFiles.page.record.RecordHead;
 import org.csu.mydb.util.Pair.Pair;
+import org.csu.mydb.util.TypeHandler.TypeHandler;
+import org.csu.mydb.util.TypeHandler.TypeHandlerFactory;
+import org.csu.mydb.util.TypeHandler.VarInt;
 
 import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.charset.StandardCharsets;
-import java.sql.Date;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * 把 Column 与 Page 对接
+ * 带 varint 参数的方法写变长整数格式（ROW_FORMAT=VARINT 的表），读的时候按记录头里的 recordType 分派，新旧格式都能读
  */
 public class RecordSerializer {
+    // RecordHead.recordType：索引记录，变长整数格式的索引记录
+    public static final byte INDEX_RECORD = 1;
+    public static final byte VARINT_INDEX_RECORD = 4;
+
     // ---------------- 数据页 ----------------
 
     /**
-     * 序列化数据页中的一行记录（含 RecordHead + txnId + rollbackPtr + 列数据）
+     * 序列化数据页中的一行记录（含 RecordHead + txnId + rollbackPtr + 列数据），按表结构用缓存的 RecordCodec 一次写成
      */
-    public static byte[] serializeDataRow(List<Object> values, List<Column> columns
-                                          // int transactionId, int rollbackPointer
-    ) {
-        // 先序列化列数据
-        ByteBuffer rowBuffer = ByteBuffer.allocate(1024); // 临时缓冲，可根据列数动态扩展
-        for (int i = 0; i < columns.size(); i++) {
-            Column col = columns.get(i);
-            Object val = values.get(i);
-
-            if (val == null) rowBuffer.put((byte)0);
-            else {
-                rowBuffer.put((byte)1);
-                switch (col.getType().toUpperCase()) {
-                    case "INT": rowBuffer.putInt((Integer) val); break;
-                    case "VARCHAR":
-                        byte[] strBytes = ((String) val).getBytes(StandardCharsets.UTF_8);
-                        rowBuffer.putShort((short) strBytes.length);
-                        rowBuffer.put(strBytes);
-                        break;
-                    case "DECIMAL": rowBuffer.putDouble((Double) val); break;
-                    case "BOOLEAN": rowBuffer.put((byte)((Boolean) val ? 1 : 0)); break;
-                    case "DATE": rowBuffer.putLong(((Date) val).getTime()); break;
-                    default: throw new UnsupportedOperationException("Unknown type: " + col.getType());
-                }
-            }
-        }
-        rowBuffer.flip();
-        byte[] rowData = new byte[rowBuffer.limit()];
-        rowBuffer.get(rowData);
-
-        // 添加记录头 + 事务ID + rollbackPointer
-        ByteBuffer buffer = ByteBuffer.allocate(RecordHead.RECORD_HEADER_SIZE + 8 + rowData.length);
-        RecordHead head = new RecordHead((byte)0, (byte)0, (short)-1);
-        buffer.put(head.toBytes());
-        buffer.putInt(0);
-        buffer.putInt(0);
-        buffer.put(rowData);
-
-        return buffer.array();
+    public static byte[] serializeDataRow(List<Object> values, List<Column> columns) {
+        return serializeDataRow(values, columns, false);
+    }
+
+    public static byte[] serializeDataRow(List<Object> values, List<Column> columns, boolean varint) {
+        return RecordCodec.of(columns, varint).encode(values);
     }
 
     /**
-     * 反序列化数据页记录，返回完整列值
+     * 一行序列化后的字节数（只算不写，判断页里放不放得下时用）
      */
-    public static List<Object> deserializeDataRow(byte[] recordData, List<Column> columns) {
-        ByteBuffer buffer = ByteBuffer.wrap(recordData);
+    public static int dataRowSize(List<Object> values, List<Column> columns) {
+        return dataRowSize(values, columns, false);
+    }
 
-        // 跳过记录头
-        buffer.position(RecordHead.RECORD_HEADER_SIZE);
+    public static int dataRowSize(List<Object> values, List<Column> columns, boolean varint) {
+        return RecordCodec.of(columns, varint).encodedSize(values);
+    }
 
-        // 跳过事务ID + rollback pointer
-        buffer.getInt(); // transactionId
-        buffer.getInt(); // rollbackPointer
+    /**
+     * 一行数据序列化后的最大字节数（VARCHAR 按每个字符 4 字节 UTF-8 估算）
+     */
+    public static int maxDataRowSize(List<Column> columns) {
+        return maxDataRowSize(columns, false);
+    }
 
-        List<Object> values = new ArrayList<>();
-        for (Column col : columns) {
-            byte isNotNull = buffer.get();
-            if (isNotNull == 0) {
-                values.add(null);
-                continue;
-            }
+    public static int maxDataRowSize(List<Column> columns, boolean varint) {
+        return RecordCodec.of(columns, varint).prefixSize() + maxValuesSize(columns, varint);
+    }
 
-            switch (col.getType().toUpperCase()) {
-                case "INT": values.add(buffer.getInt()); break;
-                case "VARCHAR":
-                    short len = buffer.getShort();
-                    byte[] strBytes = new byte[len];
-                    buffer.get(strBytes);
-                    values.add(new String(strBytes, StandardCharsets.UTF_8));
-                    break;
-                case "DECIMAL": values.add(buffer.getDouble()); break;
-                case "BOOLEAN": values.add(buffer.get() == 1); break;
-                case "DATE": values.add(new Date(buffer.getLong())); break;
-                default: throw new UnsupportedOperationException("Unknown type: " + col.getType());
-            }
+    /**
+     * 一条 key + 子页指针序列化后的最大字节数
+     */
+    public static int maxKeyPtrSize(List<Column> keyColumns) {
+        return maxKeyPtrSize(keyColumns, false);
+    }
+
+    public static int maxKeyPtrSize(List<Column> keyColumns, boolean varint) {
+        // 变长整数格式多一个 key 列数
+        return RecordHead.RECORD_HEADER_SIZE + (varint ? 1 : 0) + maxValuesSize(keyColumns, varint) + 4;
+    }
+
+    private static int maxValuesSize(List<Column> columns, boolean varint) {
+        int size = 0;
+        for (Column col : columns) {
+            // 非空标记 + 值（行里的 null 位图不会比每列一个标记大）
+            TypeHandler<Object> handler = TypeHandlerFactory.getHandler(col.getType());
+            size += 1 + (varint ? handler.maxVarintSize(col.getLength()) : handler.maxStorageSize(col.getLength()));
         }
+        return size;
+    }
 
-        return values;
+    /**
+     * 反序列化数据页记录，返回完整列值
+     */
+    public static List<Object> deserializeDataRow(byte[] recordData, List<Column> columns) {
+        return RecordCodec.of(columns).decode(recordData);
     }
 
     // ---------------- 索引页 ----------------
     /**
-     * 反序列化Key + ptr
-     *
-     * 兼容三种常见布局：
-     *  - 纯 payload（从偏移 0 开始）
-     *  - 带 RecordHead（从 RecordHead.RECORD_HEADER_SIZE 开始）
-     *  - 带 RecordHead + txnId + rollbackPtr（从 RecordHead.RECORD_HEADER_SIZE + 8 开始）
-     *
-     * 如果解析失败会抛出 IOException。
+     * 序列化 key + 子页指针：[RecordHead][每列 非空标记 1 + 值][子页号 4]
      */
     public static byte[] serializeKeyPtr(List<Object> keyValues, List<Column> keyColumns, int childPageNo) {
-        ByteBuffer buffer = ByteBuffer.allocate(256); // 可以动态调整
+        return serializeKeyPtr(keyValues, keyColumns, childPageNo, false);
+    }
+
+    /**
+     * @param varint 写变长整数格式：[RecordHead][key 列数 变长整数][每列 非空标记 1 + 值（writeVarint）][子页号 4]
+     *               子页号仍是 4 字节，条目大小不随页号变，分裂前算的大小和写出来的一致
+     */
+    public static byte[] serializeKeyPtr(List<Object> keyValues, List<Column> keyColumns, int childPageNo, boolean varint) {
+        if (varint) {
+            int size = RecordHead.RECORD_HEADER_SIZE + VarInt.size(keyColumns.size()) + 4;
+            for (int i = 0; i < keyColumns.size(); i++) {
+                Object val = keyValues.get(i);
+                size += 1 + (val == null ? 0 : TypeHandlerFactory.getHandler(keyColumns.get(i).getType()).varintSize(val));
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.put((byte) 0).put(VARINT_INDEX_RECORD).putShort((short) -1);
+            VarInt.put(buffer, keyColumns.size());
+            for (int i = 0; i < keyColumns.size(); i++) {
+                Object val = keyValues.get(i);
+                if (val == null) {
+                    buffer.put((byte) 0);
+                } else {
+                    buffer.put((byte) 1);
+                    TypeHandlerFactory.getHandler(keyColumns.get(i).getType()).writeVarint(buffer, val);
+                }
+            }
+            buffer.putInt(childPageNo);
+            return buffer.array();
+        }
+
+        // 先算出精确长度：非空标记 + 值，最后 4 字节子页指针
+        int size = 4;
+        for (int i = 0; i < keyColumns.size(); i++) {
+            Object val = keyValues.get(i);
+            size += 1 + (val == null ? 0 : TypeHandlerFactory.getHandler(keyColumns.get(i).getType()).getStorageSize(val));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
         for (int i = 0; i < keyColumns.size(); i++) {
-            Column col = keyColumns.get(i);
             Object val = keyValues.get(i);
 
             if (val == null) buffer.put((byte)0);
             else {
                 buffer.put((byte)1);
-                switch (col.getType().toUpperCase()) {
-                    case "INT": buffer.putInt((Integer) val); break;
-                    case "VARCHAR":
-                        byte[] b = ((String) val).getBytes(StandardCharsets.UTF_8);
-                        buffer.putShort((short)b.length);
-                        buffer.put(b);
-                        break;
-                    case "DECIMAL": buffer.putDouble((Double) val); break;
-                    case "BOOLEAN": buffer.put((byte)((Boolean) val ? 1 : 0)); break;
-                    case "DATE": buffer.putLong(((Date) val).getTime()); break;
-                    default: throw new UnsupportedOperationException("Unknown type: " + col.getType());
-                }
+                TypeHandlerFactory.getHandler(keyColumns.get(i).getType()).write(buffer, val);
             }
         }
 
         // 最后写子页指针
         buffer.putInt(childPageNo);
-
-        buffer.flip();
-        byte[] dataWithoutHead = new byte[buffer.limit()];
-        buffer.get(dataWithoutHead);
+        byte[] dataWithoutHead = buffer.array();
 
         // 包装 RecordHead
-        RecordHead head = new RecordHead((byte)0, (byte)1, (short)-1); // recordType=1 表示索引记录
+        RecordHead head = new RecordHead((byte)0, INDEX_RECORD, (short)-1);
         IndexRecord indexRecord = new IndexRecord(head, dataWithoutHead);
         return indexRecord.toBytes();
     }
 
+    /**
+     * 反序列化 key + 子页指针，两种格式按记录头里的 recordType 分派
+     */
     public static Pair<Key, Integer> deserializeKeyPtr(byte[] bytes, List<Column> keyColumns) {
+        if (bytes.length > 1 && bytes[1] == VARINT_INDEX_RECORD) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, RecordHead.RECORD_HEADER_SIZE, bytes.length - RecordHead.RECORD_HEADER_SIZE);
+            // 后缀截断的分隔 key 只存了前几列
+            int count = Math.min(VarInt.getInt(buffer), keyColumns.size());
+            List<Object> keyValues = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                keyValues.add(buffer.get() == 0 ? null
+                        : TypeHandlerFactory.getHandler(keyColumns.get(i).getType()).readVarint(buffer));
+            }
+            int childPageNo = buffer.getInt(bytes.length - 4);
+            Key key = new Key(keyValues, count == keyColumns.size() ? keyColumns : keyColumns.subList(0, count));
+            return new Pair<>(key, childPageNo);
+        }
         IndexRecord record = IndexRecord.fromBytes(bytes);
         ByteBuffer buffer = ByteBuffer.wrap(record.getData()); // 使用 data 部分
 
         List<Object> keyValues = new ArrayList<>();
         for (Column col : keyColumns) {
+            // 后缀截断的分隔 key 只存了前几列，剩下的只有子页指针
+            if (buffer.remaining() <= 4) break;
             byte flag = buffer.get();
             if (flag == 0) { keyValues.add(null); continue; }
 
-            switch (col.getType().toUpperCase()) {
-                case "INT": keyValues.add(buffer.getInt()); break;
-                case "VARCHAR":
-                    short len = buffer.getShort();
-                    byte[] strBytes = new byte[len];
-                    buffer.get(strBytes);
-                    keyValues.add(new String(strBytes, StandardCharsets.UTF_8));
-                    break;
-                case "DECIMAL": keyValues.add(buffer.getDouble()); break;
-                case "BOOLEAN": keyValues.add(buffer.get() == 1); break;
-                case "DATE": keyValues.add(new Date(buffer.getLong())); break;
-                default: throw new UnsupportedOperationException("Unknown type: " + col.getType());
-            }
+            keyValues.add(TypeHandlerFactory.getHandler(col.getType()).deserialize(buffer));
         }
 
         int childPageNo = buffer.getInt();
-        Key key = new Key(keyValues, keyColumns);
+        Key key = new Key(keyValues, keyValues.size() == keyColumns.size() ? keyColumns : keyColumns.subList(0, keyValues.size()));
         return new Pair<>(key, childPageNo);
     }
 }
@@ -2,32 +2,40 @@ package org.csu.mydb.storage.Table;
 
 import org.csu.mydb.storage.Table.Column.Column;
 
+import java.util.Arrays;
 import java.util.List;
 
 public class Key implements Comparable<Key> {
     private final List<Object> values;
     private final List<Column> keyColumns;
+    private final byte[] normalized; // 保序编码，比较时只比字节（见 KeyEncoder）
 
     public Key(List<Object> values, List<Column> keyColumns) {
         this.values = values;
         this.keyColumns = keyColumns;
+        this.normalized = KeyEncoder.encode(values);
     }
 
     @Override
     public int compareTo(Key other) {
-        for (int i = 0; i < keyColumns.size(); i++) {
-            Column col = keyColumns.get(i);
-            Comparable v1 = (Comparable) values.get(i);
-            Comparable v2 = (Comparable) other.values.get(i);
+        return compare(normalized, other.normalized);
+    }
 
-            if (v1 == null && v2 == null) continue;
-            if (v1 == null) return -1;
-            if (v2 == null) return 1;
+    /**
+     * 完整比较：共同长度的字节相同时短的在前。内部节点里截断过的分隔 key 之间要用它排序，
+     * 例如 ("y") 与 ("y", 5) 按 compareTo 相等，但前者应排在前面
+     */
+    public int compareExact(Key other) {
+        return Arrays.compareUnsigned(normalized, other.normalized);
+    }
 
-            int cmp = v1.compareTo(v2);
-            if (cmp != 0) return cmp;
-        }
-        return 0;
+    /**
+     * 比较两个保序编码。查询时构造的 Key 可能只有前几列，只比较双方共同长度的字节，
+     * 等价于只比较双方都有的键值
+     */
+    public static int compare(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        return Arrays.compareUnsigned(a, 0, n, b, 0, n);
     }
 
     @Override
@@ -42,5 +50,8 @@ public class Key implements Comparable<Key> {
     public List<Column> getKeyColumns() {
         return keyColumns;
     }
-}
 
+    public byte[] getNormalized() {
+        return normalized;
+    }
+}
@@ -0,0 +1,56 @@
+package org.csu.mydb.storage.Table;
+
+import org.csu.mydb.util.TypeHandler.TypeHandlerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 键值的保序二进制编码（memcomparable）：编码后按无符号字节比较，结果与按列逐个比较键值一致
+ * - 每个值前一个标记字节：0x00 表示 NULL（排最前），0x01 表示非空
+ * - 值的编码由它的 TypeHandler（按值的 Java 类型找）写：
+ *   INT/BIGINT 大端，符号位取反；DATE/TIMESTAMP 用毫秒数，同理 8 字节
+ *   DOUBLE/DECIMAL：double 的位模式，正数符号位取反，负数全部取反
+ *   BOOLEAN：1 字节 0/1
+ *   VARCHAR：UTF-8 字节，0x00 转义为 0x00 0xFF，以 0x00 0x00 结尾
+ * 每个值的编码都不是另一个值编码的前缀，所以只比较两边共同长度的字节，
+ * 就等价于只比较双方都有的键值（查询时可以只给前几列）
+ */
+public class KeyEncoder {
+    private static final byte NULL_MARKER = 0x00;
+    private static final byte NOT_NULL_MARKER = 0x01;
+
+    public static byte[] encode(List<Object> values) {
+        int size = 0;
+        for (Object value : values) {
+            size += 1 + (value == null ? 0 : TypeHandlerFactory.forValue(value).normalizedSize(value));
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        for (Object value : values) {
+            if (value == null) {
+                out.put(NULL_MARKER);
+                continue;
+            }
+            out.put(NOT_NULL_MARKER);
+            TypeHandlerFactory.forValue(value).writeNormalized(out, value);
+        }
+        return out.array();
+    }
+
+    /**
+     * 编码的 64 位哈希（64 位 FNV-1a 再做一次 murmur3 的 fmix64 打散），Bloom filter 和哈希索引用
+     */
+    public static long hash(byte[] encoded) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : encoded) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,147 @@
+package org.csu.mydb.storage.Table;
+
+import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.Column.RecordFilter;
+
+import org.csu.mydb.util.TypeHandler.TypeHandlerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 表的主存取方式（按主键存整行）：默认是聚簇 B+ 树，只做等值查找的表可以用可扩展哈希（USING HASH），
+ * 写多读少的表可以用 LSM 树（ENGINE=LSM）
+ */
+public interface PrimaryIndex {
+    int BTREE = 0;
+    int HASH = 1;
+    int LSM = 2;
+
+    /**
+     * 按完整主键查找
+     * @return 行，不存在返回 null
+     */
+    List<Object> search(Key key) throws IOException;
+
+    /**
+     * 按完整主键查找，只取部分列；默认查整行后取列，B+ 树、哈希表只解码要的列
+     * @param positions 要的列在表里的下标，结果按这个顺序排列；null 为整行
+     * @return 行，不存在返回 null
+     */
+    default List<Object> search(Key key, int[] positions) throws IOException {
+        List<Object> row = search(key);
+        return row == null || positions == null ? row : project(row, positions);
+    }
+
+    /**
+     * 插入一行，主键已存在时覆盖
+     */
+    void insert(List<Column> cols, List<Object> rowValues) throws IOException;
+
+    /**
+     * 多行插入，主键重复的以后出现的为准
+     * @return 实际写入的行数
+     */
+    default int insertBatch(List<List<Object>> rows) throws IOException {
+        return insertBatch(rows, null);
+    }
+
+    /**
+     * 多行插入，并收集被覆盖掉的旧行（插入前就在表里的行，同一批内互相覆盖的不算）
+     * @param replaced 收集被覆盖的旧行，null 表示不需要
+     * @return 实际写入的行数
+     */
+    int insertBatch(List<List<Object>> rows, List<List<Object>> replaced) throws IOException;
+
+    /**
+     * 空表的批量装载
+     * @param sortedRows 按主键升序的整行数据
+     */
+    int bulkLoad(Iterator<List<Object>> sortedRows) throws IOException;
+
+    boolean update(Key key, List<Object> newRow) throws IOException;
+
+    boolean delete(Key key) throws IOException;
+
+    /**
+     * 全表扫描（B+ 树、LSM 树按主键升序，哈希表无序）
+     */
+    List<List<Object>> scan() throws IOException;
+
+    /**
+     * 只取部分列的全表扫描
+     * @param positions 要的列在表里的下标，结果每行的值按这个顺序排列
+     */
+    default List<List<Object>> scan(int[] positions) throws IOException {
+        return scan(positions, null);
+    }
+
+    /**
+     * 带过滤条件、只取部分列的全表扫描，默认整行扫描后过滤、取列；
+     * B+ 树、哈希表直接在记录的字节上求值，只解码满足条件的行的要的列
+     * @param positions 要的列在表里的下标，结果每行的值按这个顺序排列；null 为整行
+     * @param filter    过滤条件，null 为不过滤
+     */
+    default List<List<Object>> scan(int[] positions, RecordFilter filter) throws IOException {
+        List<List<Object>> result = new ArrayList<>();
+        for (List<Object> row : scan()) {
+            if (filter == null || filter.test(row)) {
+                result.add(positions == null ? row : project(row, positions));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 从整行里按下标取列
+     */
+    static List<Object> project(List<Object> row, int[] positions) {
+        List<Object> values = new ArrayList<>(positions.length);
+        for (int position : positions) values.add(row.get(position));
+        return values;
+    }
+
+    /**
+     * 把 INSERT 给的列和值按表的列顺序排成整行：每列按列名找，没给的列取 DEFAULT（按列类型解析），没有 DEFAULT 为 null
+     * @param cols   INSERT 给的列（顺序任意）
+     * @param values 和 cols 一一对应的值
+     * @throws IllegalArgumentException 没给值的列是 NOT NULL 且没有 DEFAULT
+     */
+    static List<Object> rowOf(List<Column> tableColumns, List<Column> cols, List<Object> values) {
+        List<Object> row = new ArrayList<>(tableColumns.size());
+        for (Column column : tableColumns) {
+            int j = 0;
+            while (j < cols.size() && !cols.get(j).getName().equalsIgnoreCase(column.getName())) j++;
+            if (j < cols.size()) {
+                row.add(values.get(j));
+            } else if (column.getDefaultValue() != null) {
+                row.add(TypeHandlerFactory.getHandler(column.getType())
+                        .parse(new String(column.getDefaultValue(), StandardCharsets.UTF_8)));
+            } else if (column.isNullable()) {
+                row.add(null);
+            } else {
+                throw new IllegalArgumentException("No value for NOT NULL column " + column.getName());
+            }
+        }
+        return row;
+    }
+
+    List<Column> getColumns();
+
+    /**
+     * 加列（ALTER TABLE ... ADD COLUMN）：只把列加到表的列表最后，已有的行不改写，
+     * 读到加列之前写的行时补上这一列的默认值（见 RecordCodec）
+     * 列的列表是和读写共用的，实现要在自己的排它锁下改
+     * @param column 新列，version 已经是新的表结构版本
+     */
+    void addColumn(Column column) throws IOException;
+
+    /**
+     * 关闭数据库前把内存里的状态存盘（Bloom filter、LSM 的 memtable 等），默认没有
+     */
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,212 @@
+package org.csu.mydb.storage.Table;
+
+import org.csu.mydb.storage.BPlusTree.BPlusTree;
+import org.csu.mydb.storage.Table.Column.Column;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 二级索引（非唯一）：独立表空间里的一棵 B+ 树，条目为 (索引列..., 主键列..., INCLUDE 列...)
+ * - 索引列 + 主键列作为 B+ 树的键，索引列相同的行靠主键区分，所以允许重复
+ * - INCLUDE 列只存在叶子条目里，不参与比较
+ * - 查找时只给索引列的值作为前缀，范围扫出所有匹配条目，再取出主键回表；
+ *   查询要的列都在条目里时（覆盖索引）直接用条目回答，不用回表
+ */
+public class SecondaryIndex {
+    private final String name;                // 索引名
+    private final List<String> columnNames;   // 索引列（按定义顺序）
+    private final List<String> includeColumnNames; // INCLUDE 列
+    private final int spaceId;                // 索引所在表空间 ID
+    private final BPlusTree tree;
+    private final List<Column> entryColumns;  // 条目的列：索引列 + 主键列（键），INCLUDE 列（非键）
+    private final List<Column> pkColumns;     // 表的主键列
+    private final int[] entryPositions;       // 条目每一列在表行中的下标
+
+    public SecondaryIndex(String name, List<String> columnNames, int spaceId, BPlusTree tree, List<Column> tableColumns) {
+        this(name, columnNames, new ArrayList<>(), spaceId, tree, tableColumns);
+    }
+
+    public SecondaryIndex(String name, List<String> columnNames, List<String> includeColumnNames,
+                          int spaceId, BPlusTree tree, List<Column> tableColumns) {
+        this.name = name;
+        this.columnNames = columnNames;
+        this.includeColumnNames = includeColumnNames;
+        this.spaceId = spaceId;
+        this.tree = tree;
+        this.entryColumns = entryColumns(tableColumns, columnNames, includeColumnNames);
+        this.pkColumns = new ArrayList<>();
+        for (Column column : tableColumns) {
+            if (column.isPrimaryKey()) {
+                pkColumns.add(column);
+            }
+        }
+
+        this.entryPositions = new int[entryColumns.size()];
+        for (int i = 0; i < entryColumns.size(); i++) {
+            entryPositions[i] = positionOf(tableColumns, entryColumns.get(i).getName());
+        }
+    }
+
+    public static List<Column> entryColumns(List<Column> tableColumns, List<String> columnNames) {
+        return entryColumns(tableColumns, columnNames, new ArrayList<>());
+    }
+
+    /**
+     * 索引 B+ 树的列定义：索引列在前，主键列在后（已在索引列里的主键列不重复），标为键列；
+     * 最后是 INCLUDE 列（已经在条目里的不重复），标为非键列
+     */
+    public static List<Column> entryColumns(List<Column> tableColumns, List<String> columnNames,
+                                            List<String> includeColumnNames) {
+        List<Column> result = new ArrayList<>();
+        for (String columnName : columnNames) {
+            Column column = tableColumns.get(positionOf(tableColumns, columnName));
+            result.add(copyOf(column, result.size(), true));
+        }
+        for (Column column : tableColumns) {
+            if (column.isPrimaryKey() && !containsIgnoreCase(columnNames, column.getName())) {
+                result.add(copyOf(column, result.size(), true));
+            }
+        }
+        for (String columnName : includeColumnNames) {
+            if (result.stream().noneMatch(c -> c.getName().equalsIgnoreCase(columnName))) {
+                Column column = tableColumns.get(positionOf(tableColumns, columnName));
+                result.add(copyOf(column, result.size(), false));
+            }
+        }
+        return result;
+    }
+
+    private static Column copyOf(Column column, int position, boolean isKey) {
+        return new Column(column.getName(), column.getType(), column.getLength(), column.getScale(),
+                position, isKey, column.isNullable(), column.getDefaultValue());
+    }
+
+    private static int positionOf(List<Column> tableColumns, String columnName) {
+        for (int i = 0; i < tableColumns.size(); i++) {
+            if (tableColumns.get(i).getName().equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column: " + columnName);
+    }
+
+    private static boolean containsIgnoreCase(List<String> names, String name) {
+        for (String n : names) {
+            if (n.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getName() { return name; }
+    public List<String> getColumnNames() { return columnNames; }
+    public List<String> getIncludeColumnNames() { return includeColumnNames; }
+    public List<Column> getEntryColumns() { return entryColumns; }
+    public int getSpaceId() { return spaceId; }
+    public BPlusTree getTree() { return tree; }
+
+    /**
+     * 第一个索引列是否为 columnName（只有这时 columnName 上的等值条件能走这个索引）
+     */
+    public boolean isLeadingColumn(String columnName) {
+        return columnNames.get(0).equalsIgnoreCase(columnName);
+    }
+
+    /**
+     * 这些列是否都存在于索引条目里（是的话查询可以只读索引）
+     */
+    public boolean covers(List<String> columns) {
+        for (String column : columns) {
+            if (entryColumns.stream().noneMatch(c -> c.getName().equalsIgnoreCase(column))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 表行对应的索引条目
+     */
+    public List<Object> entryOf(List<Object> row) {
+        List<Object> entry = new ArrayList<>(entryPositions.length);
+        for (int position : entryPositions) {
+            entry.add(row.get(position));
+        }
+        return entry;
+    }
+
+    public void insert(List<Object> row) throws IOException {
+        tree.insert(entryColumns, entryOf(row));
+    }
+
+    /**
+     * 批量插入多行的索引条目
+     */
+    public void insertAll(List<List<Object>> rows) throws IOException {
+        List<List<Object>> entries = new ArrayList<>(rows.size());
+        for (List<Object> row : rows) {
+            entries.add(entryOf(row));
+        }
+        tree.insertBatch(entries);
+    }
+
+    public boolean delete(List<Object> row) throws IOException {
+        return tree.delete(keyOf(entryOf(row)));
+    }
+
+    /**
+     * 行被修改后同步索引：条目没变什么都不做，只有 INCLUDE 列变了原地更新，键变了删旧插新
+     */
+    public void update(List<Object> oldRow, List<Object> newRow) throws IOException {
+        List<Object> oldEntry = entryOf(oldRow);
+        List<Object> newEntry = entryOf(newRow);
+        if (oldEntry.equals(newEntry)) {
+            return;
+        }
+        Key oldKey = keyOf(oldEntry);
+        if (keyOf(newEntry).compareTo(oldKey) == 0) {
+            tree.update(oldKey, newEntry);
+            return;
+        }
+        delete(oldRow);
+        insert(newRow);
+    }
+
+    private Key keyOf(List<Object> entry) {
+        List<Object> keyValues = new ArrayList<>();
+        for (int i = 0; i < entryColumns.size(); i++) {
+            if (entryColumns.get(i).isPrimaryKey()) {
+                keyValues.add(entry.get(i));
+            }
+        }
+        return new Key(keyValues, entryColumns);
+    }
+
+    /**
+     * 按索引列的值（可以只给前几列）查出所有匹配的索引条目，列顺序同 getEntryColumns()
+     */
+    public List<List<Object>> lookupEntries(List<Object> values) throws IOException {
+        Key prefix = new Key(values, entryColumns);
+        return tree.rangeSearch(prefix, prefix);
+    }
+
+    /**
+     * 按索引列的值（可以只给前几列）查出所有匹配行的主键
+     */
+    public List<Key> lookup(List<Object> values) throws IOException {
+        List<List<Object>> entries = lookupEntries(values);
+
+        List<Key> result = new ArrayList<>(entries.size());
+        for (List<Object> entry : entries) {
+            List<Object> pkValues = new ArrayList<>(pkColumns.size());
+            for (Column pk : pkColumns) {
+                pkValues.add(entry.get(positionOf(entryColumns, pk.getName())));
+            }
+            result.add(new Key(pkValues, pkColumns));
+        }
+        return result;
+    }
+}
@@ -1,20 +1,21 @@
 package org.csu.mydb.storage.Table;
 
-import org.csu.mydb.storage.BPlusTree.BPlusTree;
 import org.csu.mydb.storage.Table.Column.Column;
 
 import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Table{
     private final String name;             // 表名
     private final String path;             // 表文件路径
     private final List<Column> columns;    // 列名
     private final int spaceId;             // 表空间 ID
-    private final BPlusTree primaryIndex; // 主键索引
+    private final PrimaryIndex primaryIndex; // 主键索引（B+ 树或哈希表）
+    private final List<SecondaryIndex> secondaryIndexes = new CopyOnWriteArrayList<>(); // 二级索引
 
     public Table(String name, String path, List<Column> columns,
-                 int spaceId, BPlusTree primaryIndex) {
+                 int spaceId, PrimaryIndex primaryIndex) {
         this.name = name;
         this.path = path;
         this.columns = columns;
@@ -25,11 +26,36 @@ public class Table{
     public String getName() { return name; }
     public int getSpaceId() { return spaceId; }
     public List<Column> getColumns() { return columns; }
-    public BPlusTree getPrimaryIndex() { return primaryIndex; }
+    public PrimaryIndex getPrimaryIndex() { return primaryIndex; }
 
-    public BPlusTree getTree() {
+    public PrimaryIndex getTree() {
         return primaryIndex;
     }
+
+    public List<SecondaryIndex> getSecondaryIndexes() { return secondaryIndexes; }
+
+    public void addSecondaryIndex(SecondaryIndex index) { secondaryIndexes.add(index); }
+
+    public SecondaryIndex getSecondaryIndex(String indexName) {
+        for (SecondaryIndex index : secondaryIndexes) {
+            if (index.getName().equalsIgnoreCase(indexName)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 第一个索引列为 columnName 的二级索引，没有返回 null
+     */
+    public SecondaryIndex findIndexOn(String columnName) {
+        for (SecondaryIndex index : secondaryIndexes) {
+            if (index.isLeadingColumn(columnName)) {
+                return index;
+            }
+        }
+        return null;
+    }
     // public int getPrimaryKeyIndex() { return primaryKeyIndex; }
 }
 
@@ -19,6 +19,9 @@ public class BufferPool {
 
     private final DiskAccessor diskAccessor;
 
+    // 解码好的内部节点，页被替换或改写时随之作废
+    private final InternalNodeCache internalNodeCache = new InternalNodeCache();
+
     // 脏页链表
     @Override
     protected void finalize() throws Throwable {
@@ -66,6 +69,7 @@ public class BufferPool {
 
             page = diskAccessor.readPage(pageId.spaceId, pageId.pageNo);
             if (page != null) {
+                makeRoom(pageId);
                 pageCache.put(pageId, page);
             }
             return page;
@@ -79,7 +83,9 @@ public class BufferPool {
         PageManager.GlobalPageId pageId = new PageManager.GlobalPageId(spaceId, page.getHeader().pageNo);
         lock.writeLock().lock();
         try {
+            makeRoom(pageId);
             pageCache.put(pageId, page);
+            internalNodeCache.invalidate(pageId);
 
             if (page.getHeader().isDirty) {
                 markDirty(pageId);
@@ -124,21 +130,39 @@ public class BufferPool {
         try {
             PageManager.GlobalPageId lruPageId = pageCache.getEldestKey();
             if (lruPageId != null) {
-                PageManager.Page page = pageCache.get(lruPageId);
-                if (page != null && dirtyPages.containsKey(lruPageId)) {
+                // 不能用 get：它会改访问顺序
+                PageManager.Page page = pageCache.getEldestValue();
+                DirtyPageNode node = dirtyPages.remove(lruPageId);
+                if (node != null) {
+                    if (page != null) {
 //                    PageManager.writePage(page, lruPageId.spaceId);
-                    diskAccessor.writePage(lruPageId.spaceId, lruPageId.pageNo, page);
-                    dirtyPages.remove(lruPageId);
-                    page.getHeader().isDirty = false;
+                        diskAccessor.writePage(lruPageId.spaceId, lruPageId.pageNo, page);
+                        page.getHeader().isDirty = false;
+                    }
+                    node.prev.next = node.next;
+                    node.next.prev = node.prev;
                     dirtyCount--;
                 }
-                pageCache.evict();
+                pageCache.remove(lruPageId);
             }
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    /**
+     * 放入新页前腾位置：缓存满了先按 LRU 淘汰（脏页先落盘）；
+     * 不能交给 LRUCache 自己淘汰，它直接丢掉最老的页，脏页的修改就丢了
+     */
+    private void makeRoom(PageManager.GlobalPageId pageId) throws IOException {
+        if (pageCache.containsKey(pageId)) {
+            return;
+        }
+        while (pageCache.size() >= pageCache.capacity()) {
+            evictLRUPage();
+        }
+    }
+
     // 标记脏页：移动到链表尾
     protected void markDirty(PageManager.GlobalPageId pageId) {
         DirtyPageNode node = dirtyPages.get(pageId);
@@ -185,6 +209,7 @@ public class BufferPool {
         try {
             // 从缓存移除
             pageCache.remove(pageId);
+            internalNodeCache.invalidate(pageId);
 
             // 如果在脏页链表，移除
             DirtyPageNode node = dirtyPages.remove(pageId);
@@ -199,6 +224,33 @@ public class BufferPool {
     }
 
 
+    // 清空缓存和脏页链表（不落盘），文件关闭后用：同一个 spaceId 重新打开的可能是另一个文件
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            pageCache.clear();
+            internalNodeCache.clear();
+            dirtyPages.clear();
+            dirtyHead.next = dirtyTail;
+            dirtyTail.prev = dirtyHead;
+            dirtyCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 页的版本：页被替换或改写（putPage / deletePage）、clear 时变化；
+     * 记下版本、之后再比一次，就知道期间读到的页还是不是当时的内容（分段计数，别的页改写也可能让它变）
+     */
+    public long pageVersion(PageManager.GlobalPageId pageId) {
+        return internalNodeCache.generation(pageId);
+    }
+
+    public InternalNodeCache getInternalNodeCache() {
+        return internalNodeCache;
+    }
+
     // 设置缓冲池大小
     public void setPoolSize(int poolSize) {
         this.poolSize = poolSize;
@@ -0,0 +1,82 @@
+package org.csu.mydb.storage.bufferPool;
+
+import org.csu.mydb.storage.BPlusTree.BPlusNode;
+import org.csu.mydb.storage.PageManager;
+import org.csu.mydb.storage.Table.Key;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 内部节点常驻缓存：B+ 树查找路径上解码好的内部节点按页常驻内存，不随缓冲池的 LRU 淘汰，
+ * 点查只需解码最后的叶子。内部节点只占数据的很小一部分，全部常驻也不大
+ * - 缓冲池里的页被替换或改写（putPage / deletePage）时作废该页，clear 时全部作废
+ * - 页的代数记在固定大小的分段计数器里（按页号哈希取段），作废时该段 +1；不同页落在同一段只会多作废几次，
+ *   表里只放真正解码好的节点，不会给每个写过的页都留一条
+ * - 读者解码前记下代数，放入时代数已变就不放，不会把旧内容放回去
+ * - 缓存里的节点只读，修改 B+ 树仍然用 loadNode 现解码的节点
+ */
+public class InternalNodeCache {
+    private static final int STRIPES = 4096; // 2 的幂
+
+    private static final class Entry {
+        final long generation;
+        final BPlusNode<Key> node;
+
+        Entry(long generation, BPlusNode<Key> node) {
+            this.generation = generation;
+            this.node = node;
+        }
+    }
+
+    private final ConcurrentHashMap<PageManager.GlobalPageId, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+
+    private static int stripe(PageManager.GlobalPageId pageId) {
+        return pageId.hashCode() & (STRIPES - 1);
+    }
+
+    /**
+     * @return 缓存的节点，没有时返回 null
+     */
+    public BPlusNode<Key> get(PageManager.GlobalPageId pageId) {
+        Entry entry = entries.get(pageId);
+        return entry == null ? null : entry.node;
+    }
+
+    /**
+     * 解码前调用，放入时原样交给 put
+     */
+    public long generation(PageManager.GlobalPageId pageId) {
+        return generations.get(stripe(pageId));
+    }
+
+    /**
+     * 放入解码好的节点；从 generation 到现在该页被作废过则不放
+     */
+    public void put(PageManager.GlobalPageId pageId, long generation, BPlusNode<Key> node) {
+        int stripe = stripe(pageId);
+        // invalidate 先加代数再删条目，同一个 key 的 compute 互斥：这里看到旧代数就一定排在那次删除之前
+        entries.compute(pageId, (id, entry) ->
+                generations.get(stripe) == generation ? new Entry(generation, node) : entry);
+    }
+
+    public void invalidate(PageManager.GlobalPageId pageId) {
+        generations.incrementAndGet(stripe(pageId));
+        entries.remove(pageId);
+    }
+
+    public void clear() {
+        for (int i = 0; i < STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        entries.clear();
+    }
+
+    /**
+     * 常驻的节点数
+     */
+    public int size() {
+        return entries.size();
+    }
+}
@@ -74,6 +74,34 @@ public class LRUCache<K, V> {
         }
     }
 
+    /**
+     * 最久未使用的值，不改变访问顺序（get 会把它挪到最新）
+     */
+    public V getEldestValue() {
+        lock.lock();
+        try {
+            if (lruMap.isEmpty()) {
+                return null;
+            }
+            return lruMap.values().iterator().next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean containsKey(K key) {
+        lock.lock();
+        try {
+            return lruMap.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
     public void remove(K key) {
         lock.lock();
         try {
@@ -82,5 +110,13 @@ public class LRUCache<K, V> {
             lock.unlock();
         }
     }
-}
 
+    public void clear() {
+        lock.lock();
+        try {
+            lruMap.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
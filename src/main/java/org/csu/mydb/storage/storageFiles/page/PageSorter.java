@@ -41,8 +41,8 @@ public class PageSorter {
         // 1. 提取所有有效记录及其主键值
         List<RecordEntry> entries = extractRecordEntries(page, allColumns, primaryKeyColumns);
 
-        // 2. 按主键排序
-        entries.sort(Comparator.comparing(e -> e.key));
+        // 2. 按主键的保序编码排序
+        entries.sort((a, b) -> Key.compare(a.key.getNormalized(), b.key.getNormalized()));
 
         // 3. 更新槽位顺序
         updateSlotOrder(page, entries);
@@ -3,4 +3,15 @@ package org.csu.mydb.storage.storageFiles.page;
 public class PageType {
     public static final byte INDEX_PAGE = 1;  // 索引页（存储B+树节点）
     public static final byte DATA_PAGE = 0;   // 数据页（存储实际行数据）
+    public static final byte HASH_BUCKET_PAGE = 2;    // 可扩展哈希的桶页（存储实际行数据，rightPointer 存局部深度）
+    public static final byte HASH_DIRECTORY_PAGE = 3; // 可扩展哈希的目录页（存储桶页号）
+    public static final byte LSM_RUN_PAGE = 4;        // LSM 树有序段的页（按 key 升序的记录，nextPage 串成一段）
+    public static final byte PAX_DATA_PAGE = 5;       // 按列存放的数据页（B+ 树叶子，每列一个 minipage，见 PaxSerializer）
+
+    /**
+     * B+ 树叶子页（行格式或 PAX）
+     */
+    public static boolean isLeaf(byte pageType) {
+        return pageType == DATA_PAGE || pageType == PAX_DATA_PAGE;
+    }
 }
@@ -10,7 +10,8 @@ public class RecordHead {
     //1字节，是否删除标记（1代表已删除）
     private byte isDeleted;
 
-    //1字节，记录类型（0代表普通数据，1的代表索引记录）
+    //1字节，记录类型（0代表普通数据，1的代表索引记录，2代表紧凑行格式的数据，3代表变长整数格式的数据，见 RecordCodec；
+    //4代表变长整数格式的索引记录，见 RecordSerializer；数据行再或上 0x40 表示带表结构版本，见 RecordCodec.VERSIONED）
     private byte recordType;
 
     //2字节，下一个记录的偏移量
@@ -27,6 +27,10 @@ public class sysColumnsStructure {
 
     //是否主键
     private boolean isPrimaryKey;
+
+    //加这一列时的表结构版本，建表时的列为 0；不为 0 时主键标记字节的最高位置 1，后面跟 2 字节版本号
+    private short version;
+    private static final int VERSIONED = 0x80;
 //    //逻辑删除标记
 //    private boolean isDeleted;
 
@@ -122,6 +126,14 @@ public class sysColumnsStructure {
         return isPrimaryKey;
     }
 
+    public short getVersion() {
+        return version;
+    }
+
+    public void setVersion(short version) {
+        this.version = version;
+    }
+
     public void setPrimaryKey(boolean primaryKey) {
         isPrimaryKey = primaryKey;
     }
@@ -138,8 +150,8 @@ public class sysColumnsStructure {
         // 计算总长度：
         // columnId(4) + tableId(4) + columnName(64) + type(64) +
         // length(2) + scale(2) + position(2) + isNullable(1) +
-        // isPrimaryKey(1) + defaultValue(变长)
-        int fixedLength = 4 + 4 + 64 + 64 + 2 + 2 + 2 + 1 + 1;
+        // isPrimaryKey(1) + [version(2)] + defaultValue(变长)
+        int fixedLength = 4 + 4 + 64 + 64 + 2 + 2 + 2 + 1 + 1 + (version != 0 ? 2 : 0);
         int defaultValueLength = (defaultValue != null) ? defaultValue.length : 0;
         int totalLength = fixedLength + defaultValueLength;
 
@@ -154,7 +166,10 @@ public class sysColumnsStructure {
         buffer.putShort(scale);
         buffer.putShort(position);
         buffer.put((byte) (isNullable ? 1 : 0));
-        buffer.put((byte) (isPrimaryKey ? 1 : 0));  // 新增主键标记
+        buffer.put((byte) ((isPrimaryKey ? 1 : 0) | (version != 0 ? VERSIONED : 0)));  // 新增主键标记
+        if (version != 0) {
+            buffer.putShort(version);
+        }
 
         // 写入变长默认值
         if (defaultValue != null) {
@@ -188,7 +203,11 @@ public class sysColumnsStructure {
         column.scale = buffer.getShort();
         column.position = buffer.getShort();
         column.isNullable = (buffer.get() == 1);
-        column.isPrimaryKey = (buffer.get() == 1);  // 新增主键标记读取
+        byte flags = buffer.get();
+        column.isPrimaryKey = (flags & 1) != 0;  // 新增主键标记读取
+        if ((flags & VERSIONED) != 0) {
+            column.version = buffer.getShort();
+        }
 
         // 读取变长默认值
         int remaining = buffer.remaining();
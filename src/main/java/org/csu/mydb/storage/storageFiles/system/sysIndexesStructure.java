@@ -0,0 +1,160 @@
+package org.csu.mydb.storage.storageFiles.system;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+//系统表sys_indexes结构的硬编码（二级索引）
+public class sysIndexesStructure {
+    private String indexName;
+
+    //所属表（即表的spaceId）
+    private int tableId;
+
+    //索引自己的表空间
+    private int spaceId;
+
+    private String databaseName;
+
+    //索引列名（按定义顺序）
+    private List<String> columnNames = new ArrayList<>();
+
+    //INCLUDE 列名（只存在索引叶子条目里，不参与排序）
+    private List<String> includeColumnNames = new ArrayList<>();
+
+    public sysIndexesStructure(String indexName, int tableId, int spaceId, String databaseName, List<String> columnNames) {
+        this(indexName, tableId, spaceId, databaseName, columnNames, new ArrayList<>());
+    }
+
+    public sysIndexesStructure(String indexName, int tableId, int spaceId, String databaseName,
+                               List<String> columnNames, List<String> includeColumnNames) {
+        this.indexName = indexName;
+        this.tableId = tableId;
+        this.spaceId = spaceId;
+        this.databaseName = databaseName;
+        this.columnNames = columnNames;
+        this.includeColumnNames = includeColumnNames;
+    }
+
+    public sysIndexesStructure() {
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public void setIndexName(String indexName) {
+        this.indexName = indexName;
+    }
+
+    public int getTableId() {
+        return tableId;
+    }
+
+    public void setTableId(int tableId) {
+        this.tableId = tableId;
+    }
+
+    public int getSpaceId() {
+        return spaceId;
+    }
+
+    public void setSpaceId(int spaceId) {
+        this.spaceId = spaceId;
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    public void setDatabaseName(String databaseName) {
+        this.databaseName = databaseName;
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    public void setColumnNames(List<String> columnNames) {
+        this.columnNames = columnNames;
+    }
+
+    public List<String> getIncludeColumnNames() {
+        return includeColumnNames;
+    }
+
+    public void setIncludeColumnNames(List<String> includeColumnNames) {
+        this.includeColumnNames = includeColumnNames;
+    }
+
+    // 序列化方法
+    public byte[] toBytes() {
+        // indexName (64) + tableId (4) + spaceId (4) + databaseName (64) + columnCount (4) + columnName (64) * n
+        // + includeCount (4) + includeColumnName (64) * m
+        int size = 64 + 4 + 4 + 64 + 4 + 64 * columnNames.size() + 4 + 64 * includeColumnNames.size();
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        putString(buffer, indexName, 64);
+        buffer.putInt(tableId);
+        buffer.putInt(spaceId);
+        putString(buffer, databaseName, 64);
+        buffer.putInt(columnNames.size());
+        for (String columnName : columnNames) {
+            putString(buffer, columnName, 64);
+        }
+        buffer.putInt(includeColumnNames.size());
+        for (String columnName : includeColumnNames) {
+            putString(buffer, columnName, 64);
+        }
+
+        return buffer.array();
+    }
+
+    // 辅助方法：写入固定长度的字符串（不足补'\0'，过长截断）
+    private void putString(ByteBuffer buffer, String str, int length) {
+        byte[] strBytes = new byte[length];
+        if (str != null) {
+            byte[] srcBytes = str.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(srcBytes, 0, strBytes, 0, Math.min(srcBytes.length, length));
+        }
+        buffer.put(strBytes);
+    }
+
+    // 反序列化方法
+    public static sysIndexesStructure fromBytes(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        sysIndexesStructure record = new sysIndexesStructure();
+
+        record.indexName = getString(buffer, 64);
+        record.tableId = buffer.getInt();
+        record.spaceId = buffer.getInt();
+        record.databaseName = getString(buffer, 64);
+        int columnCount = buffer.getInt();
+        record.columnNames = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            record.columnNames.add(getString(buffer, 64));
+        }
+        //老记录没有 INCLUDE 列
+        record.includeColumnNames = new ArrayList<>();
+        if (buffer.remaining() >= 4) {
+            int includeCount = buffer.getInt();
+            for (int i = 0; i < includeCount; i++) {
+                record.includeColumnNames.add(getString(buffer, 64));
+            }
+        }
+
+        return record;
+    }
+
+    // 辅助方法：读取固定长度的字符串（去除多余的'\0'）
+    private static String getString(ByteBuffer buffer, int length) {
+        byte[] strBytes = new byte[length];
+        buffer.get(strBytes);
+        int end = 0;
+        while (end < length && strBytes[end] != 0) {
+            end++;
+        }
+        return new String(strBytes, 0, end, StandardCharsets.UTF_8);
+    }
+}
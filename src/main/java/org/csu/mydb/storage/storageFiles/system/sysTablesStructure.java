@@ -1,5 +1,7 @@
 package org.csu.mydb.storage.storageFiles.system;
 
+import org.csu.mydb.storage.Table.PrimaryIndex;
+
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
@@ -13,6 +15,24 @@ public class sysTablesStructure {
     //b+树层数
     private int order;
 
+    //页填充率（百分比）
+    private int fillFactor = DEFAULT_FILL_FACTOR;
+
+    //老版本的记录没有这个字段时使用
+    public static final int DEFAULT_FILL_FACTOR = 100;
+
+    //是否给主键建 Bloom filter（老记录没有，为 false）
+    private boolean bloomFilter;
+
+    //主存取方式 PrimaryIndex.BTREE / HASH / LSM（老记录没有，为 B+ 树）
+    private int accessMethod = PrimaryIndex.BTREE;
+
+    //B+ 树叶子是否按 PAX 格式（按列）存放（老记录没有，为行格式）
+    private boolean paxLayout;
+
+    //行和内部节点条目是否按变长整数格式写（老记录没有，为 false）
+    private boolean varintFormat;
+
     private String databaseName; // 新增字段
 
 //    //逻辑删除标记
@@ -68,6 +88,46 @@ public class sysTablesStructure {
         this.order = order;
     }
 
+    public int getFillFactor() {
+        return fillFactor;
+    }
+
+    public void setFillFactor(int fillFactor) {
+        this.fillFactor = fillFactor;
+    }
+
+    public boolean isBloomFilter() {
+        return bloomFilter;
+    }
+
+    public void setBloomFilter(boolean bloomFilter) {
+        this.bloomFilter = bloomFilter;
+    }
+
+    public int getAccessMethod() {
+        return accessMethod;
+    }
+
+    public void setAccessMethod(int accessMethod) {
+        this.accessMethod = accessMethod;
+    }
+
+    public boolean isPaxLayout() {
+        return paxLayout;
+    }
+
+    public void setPaxLayout(boolean paxLayout) {
+        this.paxLayout = paxLayout;
+    }
+
+    public boolean isVarintFormat() {
+        return varintFormat;
+    }
+
+    public void setVarintFormat(boolean varintFormat) {
+        this.varintFormat = varintFormat;
+    }
+
 //    public boolean isDeleted() {
 //        return isDeleted;
 //    }
@@ -90,8 +150,8 @@ public class sysTablesStructure {
     // 序列化方法
     public byte[] toBytes() {
         // 计算总字节大小：
-        // tableId (4) + tableName (64) + databaseName (64) + spaceId (4) + rootPage (4) + order (4)
-        int size = 4 + 64 + 64 + 4 + 4 + 4;
+        // tableId (4) + tableName (64) + databaseName (64) + spaceId (4) + rootPage (4) + order (4) + fillFactor (4) + bloomFilter (1) + accessMethod (1) + paxLayout (1) + varintFormat (1)
+        int size = 4 + 64 + 64 + 4 + 4 + 4 + 4 + 1 + 1 + 1 + 1;
         ByteBuffer buffer = ByteBuffer.allocate(size);
 
         // 写入字段
@@ -101,6 +161,11 @@ public class sysTablesStructure {
         buffer.putInt(spaceId);                   // 4 bytes
         buffer.putInt(rootPage);                  // 4 bytes
         buffer.putInt(order);                     // 4 bytes (新增)
+        buffer.putInt(fillFactor);                // 4 bytes
+        buffer.put((byte) (bloomFilter ? 1 : 0)); // 1 byte
+        buffer.put((byte) accessMethod);          // 1 byte
+        buffer.put((byte) (paxLayout ? 1 : 0));   // 1 byte
+        buffer.put((byte) (varintFormat ? 1 : 0)); // 1 byte
 
         return buffer.array();
     }
@@ -127,6 +192,16 @@ public class sysTablesStructure {
         record.spaceId = buffer.getInt();                   // 4 bytes
         record.rootPage = buffer.getInt();                  // 4 bytes
         record.order = buffer.getInt();                     // 4 bytes (新增)
+        // 老记录没有 fillFactor
+        record.fillFactor = buffer.remaining() >= 4 ? buffer.getInt() : DEFAULT_FILL_FACTOR;
+        // 老记录没有 bloomFilter
+        record.bloomFilter = buffer.remaining() >= 1 && buffer.get() == 1;
+        // 老记录没有 accessMethod
+        record.accessMethod = buffer.remaining() >= 1 ? buffer.get() : PrimaryIndex.BTREE;
+        // 老记录没有 paxLayout
+        record.paxLayout = buffer.remaining() >= 1 && buffer.get() == 1;
+        // 老记录没有 varintFormat
+        record.varintFormat = buffer.remaining() >= 1 && buffer.get() == 1;
 
         return record;
     }
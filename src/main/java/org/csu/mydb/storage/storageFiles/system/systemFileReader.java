@@ -1,9 +1,13 @@
 package org.csu.mydb.storage.storageFiles.system;
 
 import org.csu.mydb.storage.BPlusTree.BPlusTree;
+import org.csu.mydb.storage.Hash.ExtendibleHashTable;
+import org.csu.mydb.storage.Lsm.LsmTree;
 import org.csu.mydb.storage.PageManager;
 import org.csu.mydb.storage.StorageSystem;
 import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.PrimaryIndex;
+import org.csu.mydb.storage.Table.SecondaryIndex;
 import org.csu.mydb.storage.Table.Table;
 
 import java.io.IOException;
@@ -43,11 +47,30 @@ public class systemFileReader {
             StorageSystem.spaceIdToColumns.put(table.getSpaceId(), columns);
 
             //构造需要的东西
-            BPlusTree bPlusTree = new BPlusTree(table.getOrder(),
-                    table.getSpaceId(),
-                    new StorageSystem(),
-                    columns,
-                    "save/repos/" + databaseName + "/" + table.getTableName());
+            String tablePath = "save/repos/" + databaseName + "/" + table.getTableName();
+            PrimaryIndex primaryIndex;
+            if (table.getAccessMethod() == PrimaryIndex.HASH) {
+                primaryIndex = new ExtendibleHashTable(table.getSpaceId(), new StorageSystem(), columns, tablePath);
+            } else if (table.getAccessMethod() == PrimaryIndex.LSM) {
+                primaryIndex = new LsmTree(table.getSpaceId(), new StorageSystem(), columns, tablePath);
+            } else {
+                BPlusTree bPlusTree = new BPlusTree(table.getOrder(),
+                        table.getFillFactor(),
+                        table.getSpaceId(),
+                        new StorageSystem(),
+                        columns,
+                        tablePath);
+                if (table.isBloomFilter()) {
+                    bPlusTree.enableBloomFilter();
+                }
+                if (table.isPaxLayout()) {
+                    bPlusTree.enablePaxLayout();
+                }
+                if (table.isVarintFormat()) {
+                    bPlusTree.enableVarintFormat();
+                }
+                primaryIndex = bPlusTree;
+            }
 
             List<String> columnNames = new ArrayList<>();
             for(Column column : columns){
@@ -59,15 +82,52 @@ public class systemFileReader {
                     StorageSystem.path + table.getDatabaseName(),
                     columns,
                     table.getSpaceId(),
-                    bPlusTree
+                    primaryIndex
             );
 
+            // 3. 挂上二级索引
+            for (sysIndexesStructure index : queryIndexesByTable(databaseName, table.getTableId())) {
+                String indexPath = StorageSystem.indexFilePath(databaseName, table.getTableName(), index.getIndexName());
+                if (!pageManager.getOpenFiles().containsKey(index.getSpaceId())) {
+                    pageManager.openFile(index.getSpaceId(), indexPath);
+                }
+                BPlusTree indexTree = new BPlusTree(table.getOrder(),
+                        table.getFillFactor(),
+                        index.getSpaceId(),
+                        new StorageSystem(),
+                        SecondaryIndex.entryColumns(columns, index.getColumnNames(), index.getIncludeColumnNames()),
+                        indexPath);
+                returnTable.addSecondaryIndex(new SecondaryIndex(index.getIndexName(), index.getColumnNames(),
+                        index.getIncludeColumnNames(), index.getSpaceId(), indexTree, columns));
+            }
+
             tableList.add(returnTable);
         }
 
         return tableList;
     }
 
+    /**
+     * 查询指定表的所有二级索引
+     */
+    private List<sysIndexesStructure> queryIndexesByTable(String databaseName, int tableId) throws IOException {
+        List<sysIndexesStructure> indexes = new ArrayList<>();
+        PageManager.Page page = pageManager.getPage(StorageSystem.SYS_INDEXES_IDB_SPACE_ID, 3);
+
+        for (int slot = 0; slot < page.header.slotCount; slot++) {
+            //判断槽位是否有效
+            if (page.getSlots().get(slot).getStatus() != 1) {
+                continue;
+            }
+
+            sysIndexesStructure record = sysIndexesStructure.fromBytes(page.getRecord(slot));
+            if (record.getTableId() == tableId && databaseName.equals(record.getDatabaseName())) {
+                indexes.add(record);
+            }
+        }
+        return indexes;
+    }
+
     /**
      * 查询指定数据库的所有表
      */
@@ -206,7 +266,7 @@ public class systemFileReader {
      * 将sys_columns记录转换为Column对象
      */
     private Column convertToColumn(sysColumnsStructure record) {
-        return new Column(
+        Column column = new Column(
                 record.getColumnName(),
                 record.getType(),
                 record.getLength(), // 注意：sysColumnsStructure中是short，Column中是int
@@ -216,5 +276,7 @@ public class systemFileReader {
                 record.isNullable(),
                 record.getDefaultValue()
         );
+        column.setVersion(record.getVersion());
+        return column;
     }
 }
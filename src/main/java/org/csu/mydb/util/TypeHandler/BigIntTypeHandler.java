@@ -0,0 +1,76 @@
+package org.csu.mydb.util.TypeHandler;
+
+import java.nio.ByteBuffer;
+
+// Long类型处理器（BIGINT，8字节大端）
+public class BigIntTypeHandler implements TypeHandler<Long> {
+    @Override
+    public int fixedWidth() {
+        return 8;
+    }
+
+    @Override
+    public Long parse(String literal) {
+        return Long.parseLong(literal.trim());
+    }
+
+    @Override
+    public Long deserialize(ByteBuffer buffer) {
+        return buffer.getLong();
+    }
+
+    @Override
+    public int getStorageSize(Long value) {
+        return 8;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, Long value) {
+        buffer.putLong(value);
+    }
+
+    @Override
+    public int varintSize(Long value) {
+        return VarInt.size(VarInt.zigzag(value));
+    }
+
+    @Override
+    public void writeVarint(ByteBuffer buffer, Long value) {
+        VarInt.put(buffer, VarInt.zigzag(value));
+    }
+
+    @Override
+    public Long readVarint(ByteBuffer buffer) {
+        return VarInt.unzigzag(VarInt.getLong(buffer));
+    }
+
+    @Override
+    public void skipVarint(ByteBuffer buffer) {
+        VarInt.skip(buffer);
+    }
+
+    @Override
+    public int maxVarintSize(int length) {
+        return VarInt.MAX_LONG_SIZE;
+    }
+
+    @Override
+    public int compareEncoded(byte[] record, int offset, int length, Object operand) {
+        return Long.compare(Bytes.getLong(record, offset), (Long) operand);
+    }
+
+    @Override
+    public int compareValue(Long value, Object operand) {
+        return Long.compare(value, (Long) operand);
+    }
+
+    @Override
+    public int normalizedSize(Long value) {
+        return 8;
+    }
+
+    @Override
+    public void writeNormalized(ByteBuffer buffer, Long value) {
+        buffer.putLong(value ^ Long.MIN_VALUE);
+    }
+}
@@ -0,0 +1,54 @@
+package org.csu.mydb.util.TypeHandler;
+
+import java.nio.ByteBuffer;
+
+// Boolean类型处理器（1字节 0/1）
+public class BooleanTypeHandler implements TypeHandler<Boolean> {
+    @Override
+    public int fixedWidth() {
+        return 1;
+    }
+
+    @Override
+    public Boolean parse(String literal) {
+        String s = literal.trim();
+        if (s.equalsIgnoreCase("true") || s.equals("1")) return true;
+        if (s.equalsIgnoreCase("false") || s.equals("0")) return false;
+        throw new IllegalArgumentException("Not a boolean: " + literal);
+    }
+
+    @Override
+    public Boolean deserialize(ByteBuffer buffer) {
+        return buffer.get() == 1;
+    }
+
+    @Override
+    public int getStorageSize(Boolean value) {
+        return 1;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, Boolean value) {
+        buffer.put((byte) (value ? 1 : 0));
+    }
+
+    @Override
+    public int compareEncoded(byte[] record, int offset, int length, Object operand) {
+        return Boolean.compare(record[offset] == 1, (Boolean) operand);
+    }
+
+    @Override
+    public int compareValue(Boolean value, Object operand) {
+        return Boolean.compare(value, (Boolean) operand);
+    }
+
+    @Override
+    public int normalizedSize(Boolean value) {
+        return 1;
+    }
+
+    @Override
+    public void writeNormalized(ByteBuffer buffer, Boolean value) {
+        buffer.put((byte) (value ? 1 : 0));
+    }
+}
@@ -0,0 +1,17 @@
+package org.csu.mydb.util.TypeHandler;
+
+/**
+ * 从字节数组按大端读基本类型（与 ByteBuffer 的默认字节序一致），谓词比较时用，不包装成 ByteBuffer
+ */
+final class Bytes {
+    private Bytes() {
+    }
+
+    static int getInt(byte[] b, int offset) {
+        return (b[offset] & 0xFF) << 24 | (b[offset + 1] & 0xFF) << 16 | (b[offset + 2] & 0xFF) << 8 | (b[offset + 3] & 0xFF);
+    }
+
+    static long getLong(byte[] b, int offset) {
+        return (long) getInt(b, offset) << 32 | (getInt(b, offset + 4) & 0xFFFFFFFFL);
+    }
+}
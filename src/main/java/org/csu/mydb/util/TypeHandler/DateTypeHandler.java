@@ -0,0 +1,58 @@
+package org.csu.mydb.util.TypeHandler;
+
+import java.nio.ByteBuffer;
+import java.sql.Date;
+
+// Date类型处理器（按毫秒数存 8 字节）
+public class DateTypeHandler implements TypeHandler<Date> {
+    @Override
+    public int fixedWidth() {
+        return 8;
+    }
+
+    @Override
+    public Date parse(String literal) {
+        // yyyy-[m]m-[d]d
+        return Date.valueOf(literal.trim());
+    }
+
+    @Override
+    public Date deserialize(ByteBuffer buffer) {
+        return new Date(buffer.getLong());
+    }
+
+    @Override
+    public int getStorageSize(Date value) {
+        return 8;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, Date value) {
+        buffer.putLong(value.getTime());
+    }
+
+    @Override
+    public Object operand(Date value) {
+        return value.getTime();
+    }
+
+    @Override
+    public int compareEncoded(byte[] record, int offset, int length, Object operand) {
+        return Long.compare(Bytes.getLong(record, offset), (Long) operand);
+    }
+
+    @Override
+    public int compareValue(Date value, Object operand) {
+        return Long.compare(value.getTime(), (Long) operand);
+    }
+
+    @Override
+    public int normalizedSize(Date value) {
+        return 8;
+    }
+
+    @Override
+    public void writeNormalized(ByteBuffer buffer, Date value) {
+        buffer.putLong(value.getTime() ^ Long.MIN_VALUE);
+    }
+}
@@ -0,0 +1,53 @@
+package org.csu.mydb.util.TypeHandler;
+
+import java.nio.ByteBuffer;
+
+// Double类型处理器（DOUBLE / DECIMAL，8字节 IEEE 754）
+public class DoubleTypeHandler implements TypeHandler<Double> {
+    @Override
+    public int fixedWidth() {
+        return 8;
+    }
+
+    @Override
+    public Double parse(String literal) {
+        return Double.parseDouble(literal.trim());
+    }
+
+    @Override
+    public Double deserialize(ByteBuffer buffer) {
+        return buffer.getDouble();
+    }
+
+    @Override
+    public int getStorageSize(Double value) {
+        return 8;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, Double value) {
+        buffer.putDouble(value);
+    }
+
+    @Override
+    public int compareEncoded(byte[] record, int offset, int length, Object operand) {
+        return Double.compare(Double.longBitsToDouble(Bytes.getLong(record, offset)), (Double) operand);
+    }
+
+    @Override
+    public int compareValue(Double value, Object operand) {
+        return Double.compare(value, (Double) operand);
+    }
+
+    @Override
+    public int normalizedSize(Double value) {
+        return 8;
+    }
+
+    @Override
+    public void writeNormalized(ByteBuffer buffer, Double value) {
+        // 正数符号位取反，负数全部取反
+        long bits = Double.doubleToLongBits(value);
+        buffer.putLong(bits < 0 ? ~bits : bits ^ Long.MIN_VALUE);
+    }
+}
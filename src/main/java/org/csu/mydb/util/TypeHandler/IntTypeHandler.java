@@ -1,10 +1,19 @@
 package org.csu.mydb.util.TypeHandler;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
 
 // Integer类型处理器（4字节大端）
 public class IntTypeHandler implements TypeHandler<Integer> {
+    @Override
+    public int fixedWidth() {
+        return 4;
+    }
+
+    @Override
+    public Integer parse(String literal) {
+        return Integer.parseInt(literal.trim());
+    }
+
     @Override
     public Integer deserialize(ByteBuffer buffer){
         return buffer.getInt(); // 直接读取4字节大端整数
@@ -16,7 +25,53 @@ public class IntTypeHandler implements TypeHandler<Integer> {
     }
 
     @Override
-    public byte[] serialize(Integer key) {
-        return new byte[0];
+    public void write(ByteBuffer buffer, Integer value) {
+        buffer.putInt(value);
+    }
+
+    @Override
+    public int varintSize(Integer value) {
+        return VarInt.size(VarInt.zigzag(value));
+    }
+
+    @Override
+    public void writeVarint(ByteBuffer buffer, Integer value) {
+        VarInt.put(buffer, VarInt.zigzag(value));
+    }
+
+    @Override
+    public Integer readVarint(ByteBuffer buffer) {
+        return VarInt.unzigzag(VarInt.getInt(buffer));
+    }
+
+    @Override
+    public void skipVarint(ByteBuffer buffer) {
+        VarInt.skip(buffer);
+    }
+
+    @Override
+    public int maxVarintSize(int length) {
+        return VarInt.MAX_INT_SIZE;
+    }
+
+    @Override
+    public int compareEncoded(byte[] record, int offset, int length, Object operand) {
+        return Integer.compare(Bytes.getInt(record, offset), (Integer) operand);
+    }
+
+    @Override
+    public int compareValue(Integer value, Object operand) {
+        return Integer.compare(value, (Integer) operand);
+    }
+
+    @Override
+    public int normalizedSize(Integer value) {
+        return 4;
+    }
+
+    @Override
+    public void writeNormalized(ByteBuffer buffer, Integer value) {
+        // 符号位取反，负数排在正数前
+        buffer.putInt(value ^ Integer.MIN_VALUE);
     }
-}
\ No newline at end of file
+}
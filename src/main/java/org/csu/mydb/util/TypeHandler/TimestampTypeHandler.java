@@ -0,0 +1,58 @@
+package org.csu.mydb.util.TypeHandler;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+
+// Timestamp类型处理器（按毫秒数存 8 字节，毫秒以下的部分不保存）
+public class TimestampTypeHandler implements TypeHandler<Timestamp> {
+    @Override
+    public int fixedWidth() {
+        return 8;
+    }
+
+    @Override
+    public Timestamp parse(String literal) {
+        // yyyy-[m]m-[d]d hh:mm:ss[.f...]
+        return Timestamp.valueOf(literal.trim());
+    }
+
+    @Override
+    public Timestamp deserialize(ByteBuffer buffer) {
+        return new Timestamp(buffer.getLong());
+    }
+
+    @Override
+    public int getStorageSize(Timestamp value) {
+        return 8;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, Timestamp value) {
+        buffer.putLong(value.getTime());
+    }
+
+    @Override
+    public Object operand(Timestamp value) {
+        return value.getTime();
+    }
+
+    @Override
+    public int compareEncoded(byte[] record, int offset, int length, Object operand) {
+        return Long.compare(Bytes.getLong(record, offset), (Long) operand);
+    }
+
+    @Override
+    public int compareValue(Timestamp value, Object operand) {
+        return Long.compare(value.getTime(), (Long) operand);
+    }
+
+    @Override
+    public int normalizedSize(Timestamp value) {
+        return 8;
+    }
+
+    @Override
+    public void writeNormalized(ByteBuffer buffer, Timestamp value) {
+        buffer.putLong(value.getTime() ^ Long.MIN_VALUE);
+    }
+}
@@ -1,15 +1,97 @@
 package org.csu.mydb.util.TypeHandler;
 
 import java.nio.ByteBuffer;
-import java.io.IOException;
 
-public interface TypeHandler<K extends Comparable<K>> {
+/**
+ * 一种列类型的全部编码规则：行格式、PAX 页、索引记录、主键的保序编码、谓词比较、SQL 常量解析都经过它，
+ * 加一种类型只要写一个实现类并在 TypeHandlerFactory 里注册
+ * - 定长类型 fixedWidth() >= 0；变长类型为 -1，带长度前缀的编码是 [长度 2][字节]，
+ *   紧凑行里只存字节（见 VarWidthTypeHandler）
+ * - 读写都直接在调用方的缓冲区上进行，不分配中间数组
+ */
+public interface TypeHandler<K> {
+    // 定长类型的字节数，变长为 -1
+    int fixedWidth();
+
+    /**
+     * 解析 SQL 里的常量
+     * @throws IllegalArgumentException 格式不对
+     */
+    K parse(String literal);
+
+    // ---------------- 带长度前缀的编码（索引记录、PAX minipage、老的行格式） ----------------
     // 从ByteBuffer反序列化为K类型
     K deserialize(ByteBuffer buffer);
 
     // 计算K类型值在页中的存储长度（用于写入时预留空间）
     int getStorageSize(K value);
 
-    byte[] serialize(K key);
+    void write(ByteBuffer buffer, K value);
+
+    default byte[] serialize(K value) {
+        ByteBuffer buffer = ByteBuffer.allocate(getStorageSize(value));
+        write(buffer, value);
+        return buffer.array();
+    }
+
+    /**
+     * 跳过一个值，不解码
+     */
+    default void skip(ByteBuffer buffer) {
+        buffer.position(buffer.position() + fixedWidth());
+    }
+
+    /**
+     * 列定义长度为 length 时一个值最多占的字节数
+     */
+    default int maxStorageSize(int length) {
+        return fixedWidth();
+    }
+
+    // ---------------- 变长整数格式（ROW_FORMAT=VARINT 的行和索引记录）：整数和长度用 VarInt 存 ----------------
+    // 默认与带长度前缀的编码相同，INT/BIGINT 存 zigzag 变长整数，VARCHAR 的长度前缀是变长整数
+    default int varintSize(K value) {
+        return getStorageSize(value);
+    }
+
+    default void writeVarint(ByteBuffer buffer, K value) {
+        write(buffer, value);
+    }
+
+    default K readVarint(ByteBuffer buffer) {
+        return deserialize(buffer);
+    }
+
+    default void skipVarint(ByteBuffer buffer) {
+        skip(buffer);
+    }
+
+    default int maxVarintSize(int length) {
+        return maxStorageSize(length);
+    }
+
+    // ---------------- 谓词：直接拿序列化的字节和常量比较，不解码成对象 ----------------
+    /**
+     * 把比较用的常量转成便于和字节比较的形式（如 VARCHAR 转成 UTF-8 字节），建谓词时做一次
+     */
+    default Object operand(K value) {
+        return value;
+    }
+
+    /**
+     * 紧凑行里从 offset 开始的这个值与常量比较，定长类型读出基本类型比较，VARCHAR 按 UTF-8 字节（即码点）顺序
+     * @param length  值的字节数（只有变长类型用到）
+     * @param operand operand() 转换过的常量
+     */
+    int compareEncoded(byte[] record, int offset, int length, Object operand);
+
+    /**
+     * 已解码的值与常量比较，顺序同 compareEncoded
+     */
+    int compareValue(K value, Object operand);
+
+    // ---------------- 保序编码（KeyEncoder）：按无符号字节比较的结果与按值比较一致 ----------------
+    int normalizedSize(K value);
 
-}
\ No newline at end of file
+    void writeNormalized(ByteBuffer buffer, K value);
+}
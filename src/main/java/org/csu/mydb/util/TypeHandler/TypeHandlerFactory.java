@@ -1,22 +1,62 @@
 package org.csu.mydb.util.TypeHandler;
 
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 // 类型处理器工厂（根据数据类型获取处理器）
 public class TypeHandlerFactory {
-    private static final java.util.Map<String, TypeHandler<?>> handlers = new java.util.HashMap<>();
+    private static final Map<String, TypeHandler<?>> handlers = new ConcurrentHashMap<>();
+    // 按值的 Java 类型找处理器（保序编码时只有值，没有列定义）
+    private static final Map<Class<?>, TypeHandler<?>> valueHandlers = new ConcurrentHashMap<>();
 
     static {
         // 注册内置类型处理器
-        handlers.put("INT", new IntTypeHandler());
-        handlers.put("VARCHAR", new VarcharTypeHandler());
-        // 可扩展其他类型（如LONG、DATE等）
+        register(new IntTypeHandler(), Integer.class, "INT");
+        register(new BigIntTypeHandler(), Long.class, "BIGINT");
+        // DECIMAL 按 double 存
+        register(new DoubleTypeHandler(), Double.class, "DOUBLE", "DECIMAL");
+        register(new BooleanTypeHandler(), Boolean.class, "BOOLEAN");
+        register(new DateTypeHandler(), Date.class, "DATE");
+        register(new TimestampTypeHandler(), Timestamp.class, "TIMESTAMP");
+        register(new VarcharTypeHandler(), String.class, "VARCHAR", "CHAR");
+    }
+
+    /**
+     * 注册一种类型
+     * @param valueClass 这种类型的值在内存里的 Java 类型
+     * @param dataTypes  列定义里的类型名（大写）
+     */
+    public static <K> void register(TypeHandler<K> handler, Class<K> valueClass, String... dataTypes) {
+        for (String dataType : dataTypes) {
+            handlers.put(dataType, handler);
+        }
+        valueHandlers.put(valueClass, handler);
+    }
+
+    public static boolean isSupported(String dataType) {
+        return handlers.containsKey(dataType.toUpperCase());
     }
 
     @SuppressWarnings("unchecked")
-    public static <K extends Comparable<K>> TypeHandler<K> getHandler(String dataType) {
+    public static <K> TypeHandler<K> getHandler(String dataType) {
         TypeHandler<?> handler = handlers.get(dataType.toUpperCase());
         if (handler == null) {
             throw new IllegalArgumentException("Unsupported data type: " + dataType);
         }
         return (TypeHandler<K>) handler;
     }
+
+    /**
+     * 按值的类型找处理器
+     */
+    @SuppressWarnings("unchecked")
+    public static <K> TypeHandler<K> forValue(Object value) {
+        TypeHandler<?> handler = valueHandlers.get(value.getClass());
+        if (handler == null) {
+            throw new IllegalArgumentException("Unsupported value type: " + value.getClass().getName());
+        }
+        return (TypeHandler<K>) handler;
+    }
 }
@@ -0,0 +1,97 @@
+package org.csu.mydb.util.TypeHandler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 变长整数（每字节低 7 位存数据、最高位表示后面还有字节，低位在前）和 zigzag 编码：
+ * 小的非负数（长度、计数）直接存，有符号数先 zigzag 成 0,-1,1,-2,... -> 0,1,2,3,... 再存，
+ * 绝对值小的数都只占一两个字节
+ */
+public final class VarInt {
+    // int 最多 5 字节，long 最多 10 字节
+    public static final int MAX_INT_SIZE = 5;
+    public static final int MAX_LONG_SIZE = 10;
+
+    private VarInt() {
+    }
+
+    public static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    public static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    public static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    public static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * 按无符号数编码后的字节数
+     */
+    public static int size(int v) {
+        int size = 1;
+        while ((v & ~0x7F) != 0) {
+            v >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static int size(long v) {
+        int size = 1;
+        while ((v & ~0x7FL) != 0) {
+            v >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static void put(ByteBuffer buffer, int v) {
+        while ((v & ~0x7F) != 0) {
+            buffer.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buffer.put((byte) v);
+    }
+
+    public static void put(ByteBuffer buffer, long v) {
+        while ((v & ~0x7FL) != 0) {
+            buffer.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buffer.put((byte) v);
+    }
+
+    public static int getInt(ByteBuffer buffer) {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            v |= (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+    }
+
+    public static long getLong(ByteBuffer buffer) {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+    }
+
+    /**
+     * 跳过一个变长整数
+     */
+    public static void skip(ByteBuffer buffer) {
+        while (buffer.get() < 0) {
+            // 最高位为 1 的字节后面还有
+        }
+    }
+}
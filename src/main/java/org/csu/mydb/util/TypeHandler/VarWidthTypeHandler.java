@@ -0,0 +1,15 @@
+package org.csu.mydb.util.TypeHandler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 变长类型（fixedWidth() 为 -1）另外要实现的编码：紧凑行格式里变长列的值没有长度前缀，长度由行的偏移表给出
+ * 定长类型不实现它，RecordCodec 按是不是这个接口区分定长列和变长列
+ */
+public interface VarWidthTypeHandler<K> extends TypeHandler<K> {
+    int varSize(K value);
+
+    void writeVar(ByteBuffer buffer, K value);
+
+    K readVar(byte[] record, int offset, int length);
+}
@@ -1,26 +1,191 @@
 package org.csu.mydb.util.TypeHandler;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// String类型处理器（2字节长度前缀+UTF-8内容），字符直接编码进缓冲区，不生成中间的 byte[]
+public class VarcharTypeHandler implements VarWidthTypeHandler<String> {
+    @Override
+    public int fixedWidth() {
+        return -1;
+    }
+
+    @Override
+    public String parse(String literal) {
+        return literal;
+    }
 
-// String类型处理器（2字节长度前缀+UTF-8内容）
-public class VarcharTypeHandler implements TypeHandler<String> {
     @Override
     public String deserialize(ByteBuffer buffer){
         int length = buffer.getShort() & 0xFFFF; // 读取2字节无符号长度
-        byte[] bytes = new byte[length];
-        buffer.get(bytes);
-        return new String(bytes, java.nio.charset.StandardCharsets.UTF_8);
+        String s;
+        if (buffer.hasArray()) {
+            s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return s;
     }
 
     @Override
     public int getStorageSize(String value) {
-        byte[] bytes = value.getBytes(java.nio.charset.StandardCharsets.UTF_8);
-        return 2 + bytes.length; // 长度前缀2字节 + 内容长度
+        return 2 + utf8Length(value); // 长度前缀2字节 + 内容长度
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, String value) {
+        buffer.putShort((short) utf8Length(value));
+        writeUtf8(buffer, value, false);
+    }
+
+    @Override
+    public void skip(ByteBuffer buffer) {
+        buffer.position(buffer.position() + 2 + (buffer.getShort(buffer.position()) & 0xFFFF));
+    }
+
+    @Override
+    public int maxStorageSize(int length) {
+        // 每个字符按 4 字节 UTF-8 估算
+        return 2 + 4 * length;
+    }
+
+    @Override
+    public int varSize(String value) {
+        return utf8Length(value);
+    }
+
+    @Override
+    public void writeVar(ByteBuffer buffer, String value) {
+        writeUtf8(buffer, value, false);
     }
 
     @Override
-    public byte[] serialize(String key) {
-        return new byte[0];
+    public String readVar(byte[] record, int offset, int length) {
+        return new String(record, offset, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int varintSize(String value) {
+        int length = utf8Length(value);
+        return VarInt.size(length) + length;
+    }
+
+    @Override
+    public void writeVarint(ByteBuffer buffer, String value) {
+        VarInt.put(buffer, utf8Length(value));
+        writeUtf8(buffer, value, false);
+    }
+
+    @Override
+    public String readVarint(ByteBuffer buffer) {
+        int length = VarInt.getInt(buffer);
+        String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return s;
+    }
+
+    @Override
+    public void skipVarint(ByteBuffer buffer) {
+        int length = VarInt.getInt(buffer);
+        buffer.position(buffer.position() + length);
+    }
+
+    @Override
+    public int maxVarintSize(int length) {
+        // 长度不超过 65535，前缀最多 3 字节
+        return 3 + 4 * length;
+    }
+
+    @Override
+    public Object operand(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int compareEncoded(byte[] record, int offset, int length, Object operand) {
+        byte[] bytes = (byte[]) operand;
+        return Arrays.compareUnsigned(record, offset, offset + length, bytes, 0, bytes.length);
+    }
+
+    @Override
+    public int compareValue(String value, Object operand) {
+        return Arrays.compareUnsigned(value.getBytes(StandardCharsets.UTF_8), (byte[]) operand);
+    }
+
+    /**
+     * UTF-8 字节，0x00 转义为 0x00 0xFF，以 0x00 0x00 结尾（任何值的编码都不是另一个值编码的前缀）
+     */
+    @Override
+    public int normalizedSize(String value) {
+        int zeros = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == 0) zeros++;
+        }
+        return utf8Length(value) + zeros + 2;
+    }
+
+    @Override
+    public void writeNormalized(ByteBuffer buffer, String value) {
+        writeUtf8(buffer, value, true);
+        buffer.put((byte) 0).put((byte) 0);
+    }
+
+    /**
+     * UTF-8 字节数，与 String.getBytes(UTF_8) 一致（落单的代理字符按 '?' 算 1 字节）
+     */
+    static int utf8Length(String s) {
+        int n = s.length();
+        int len = n;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) continue;
+            if (c < 0x800) {
+                len += 1;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    // 一对代理字符两个 char 共 4 字节
+                    len += 2;
+                    i++;
+                }
+            } else {
+                len += 2;
+            }
+        }
+        return len;
+    }
+
+    /**
+     * @param escapeZero 0x00 后面多写一个 0xFF（保序编码用）
+     */
+    private static void writeUtf8(ByteBuffer buffer, String s, boolean escapeZero) {
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+                if (c == 0 && escapeZero) buffer.put((byte) 0xFF);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buffer.put((byte) (0xF0 | (cp >> 18)));
+                    buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                    buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                    buffer.put((byte) (0x80 | (cp & 0x3F)));
+                } else {
+                    buffer.put((byte) '?');
+                }
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
     }
 }
@@ -1,41 +1,59 @@
 package com.example.mydb;
 
+import org.csu.mydb.storage.BPlusTree.AdaptiveHashIndex;
+import org.csu.mydb.storage.BPlusTree.BPlusNode;
 import org.csu.mydb.storage.BPlusTree.BPlusTree;
+import org.csu.mydb.storage.BPlusTree.IntInternalNode;
 import org.csu.mydb.storage.Initialisation;
+import org.csu.mydb.storage.PageManager;
 import org.csu.mydb.storage.StorageSystem;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.Column.RecordFilter;
+import org.csu.mydb.storage.Table.Column.RecordSerializer;
 import org.csu.mydb.storage.Table.Key;
+import org.csu.mydb.storage.Table.SecondaryIndex;
+import org.csu.mydb.storage.bufferPool.InternalNodeCache;
 
 import java.util.Arrays;
 
 
 public class BPlusTreeTest {
+    private static final String TABLE_PATH = "G:\\MyDB\\MyDB\\src\\main\\resources\\test\\jb.idb";
     private BPlusTree tree;
+    private StorageSystem storageSystem;
+    private int spaceId;
     List<Column> columns;
 
     @BeforeEach
     public void setUp() throws IOException {
         Initialisation.main(null);
         // 模拟 PageManager (你需要保证有一个能跑的实现)
-        StorageSystem storageSystem = new StorageSystem();
+        storageSystem = new StorageSystem();
+        // 每个用例都从空表开始
+        new File(TABLE_PATH).delete();
 
         // 定义表结构：一个主键 id(int)，一个 name(string)
         Column idCol = new Column("id", "INT", 4,0,0,true, true, null);   // true 表示是主键
         Column nameCol = new Column("name", "VARCHAR", 10, 0,1, false, false, null);
 
         columns = Arrays.asList(idCol, nameCol);
-        int spaceId = StorageSystem.createTable("G:\\MyDB\\MyDB\\src\\main\\resources\\test\\jb.idb", columns);
+        spaceId = StorageSystem.createTable(TABLE_PATH, columns);
         // order = 3
-        tree = new BPlusTree(100, spaceId, storageSystem, columns, "G:\\MyDB\\MyDB\\src\\main\\resources\\test\\jb.idb");
+        tree = new BPlusTree(100, spaceId, storageSystem, columns, TABLE_PATH);
     }
 
     @Test
@@ -77,6 +95,44 @@ public class BPlusTreeTest {
         assertNull(row); // 已经删掉了
     }
 
+    @Test
+    public void testDeleteRebalancesAndReusesPages() throws IOException {
+        // 顺序插入按 50% 封口，和后面插回中间时对半分裂的页数相当
+        tree = new BPlusTree(100, 50, spaceId, storageSystem, columns, TABLE_PATH);
+        List<Column> keyColumns = getKeyColumns(tree.getColumns());
+        for (int i = 1; i <= 2000; i++) {
+            tree.insert(columns, Arrays.asList(i, "Name" + i));
+        }
+        long peakSize = new File(TABLE_PATH).length();
+
+        // 打乱顺序删掉大部分，触发借、合并和 root 降高
+        for (int i = 1; i <= 2000; i++) {
+            int id = i * 7 % 2000 + 1;
+            if (id % 20 != 0) {
+                assertTrue(tree.delete(new Key(List.of(id), keyColumns)), "delete " + id);
+            }
+        }
+        for (int i = 1; i <= 2000; i++) {
+            List<Object> row = tree.search(new Key(List.of(i), keyColumns));
+            if (i % 20 == 0) {
+                assertNotNull(row, "missing key " + i);
+            } else {
+                assertNull(row, "deleted key " + i);
+            }
+        }
+        assertFalse(tree.delete(new Key(List.of(1), keyColumns)));
+
+        // 再插回去：优先复用释放的页，文件不应明显变大
+        for (int i = 1; i <= 2000; i++) {
+            if (i % 20 != 0) {
+                tree.insert(columns, Arrays.asList(i, "Again" + i));
+            }
+        }
+        assertTrue(new File(TABLE_PATH).length() <= peakSize + 4L * 4096);
+        assertEquals("Again1999", tree.search(new Key(List.of(1999), keyColumns)).get(1));
+        assertEquals("Name2000", tree.search(new Key(List.of(2000), keyColumns)).get(1));
+    }
+
     @Test
     public void testBulkInsert() throws IOException {
         for (int i = 1; i <= 50; i++) {
@@ -88,6 +144,808 @@ public class BPlusTreeTest {
         assertEquals("Name25", row.get(1));
     }
 
+    @Test
+    public void testBulkLoad() throws IOException {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 1; i <= 2000; i++) {
+            rows.add(Arrays.asList(i * 2, "Name" + i));
+        }
+
+        int loaded = tree.bulkLoad(rows.iterator(), 0.9);
+        assertEquals(2000, loaded);
+
+        List<Column> keyColumns = getKeyColumns(tree.getColumns());
+        for (int i = 1; i <= 2000; i += 37) {
+            List<Object> row = tree.search(new Key(List.of(i * 2), keyColumns));
+            assertNotNull(row);
+            assertEquals("Name" + i, row.get(1));
+        }
+        assertNull(tree.search(new Key(List.of(3), keyColumns)));
+        assertNull(tree.search(new Key(List.of(4002), keyColumns)));
+
+        // 重新打开：root 页号已持久化
+        BPlusTree reopened = new BPlusTree(100, spaceId, storageSystem, columns, TABLE_PATH);
+        List<Object> row = reopened.search(new Key(List.of(4000), keyColumns));
+        assertNotNull(row);
+        assertEquals("Name2000", row.get(1));
+    }
+
+    @Test
+    public void testBulkLoadRejectsUnsortedInput() {
+        List<List<Object>> rows = Arrays.asList(Arrays.asList(2, "b"), Arrays.asList(1, "a"));
+        assertThrows(IllegalArgumentException.class, () -> tree.bulkLoad(rows.iterator(), 0.9));
+    }
+
+    @Test
+    public void testBulkLoadRequiresEmptyTree() throws IOException {
+        tree.insert(columns, Arrays.asList(1, "Alice"));
+        List<List<Object>> rows = List.of(Arrays.asList(2, "Bob"));
+        assertThrows(IllegalStateException.class, () -> tree.bulkLoad(rows.iterator(), 0.9));
+    }
+
+    @Test
+    public void testInsertSplitsAcrossLevels() throws IOException {
+        // 超过 order 后叶子分裂，分裂继续向上传播
+        for (int i = 1; i <= 500; i++) {
+            tree.insert(columns, Arrays.asList(i, "Name" + i));
+        }
+
+        List<Column> keyColumns = getKeyColumns(tree.getColumns());
+        for (int i = 1; i <= 500; i++) {
+            List<Object> row = tree.search(new Key(List.of(i), keyColumns));
+            assertNotNull(row, "missing key " + i);
+            assertEquals("Name" + i, row.get(1));
+        }
+    }
+
+    @Test
+    public void testInsertBatch() throws IOException {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 3000; i >= 1; i--) {
+            rows.add(Arrays.asList(i * 7 % 3001, "Name" + i));
+        }
+        // 同一批内重复的主键，以后出现的为准
+        rows.add(Arrays.asList(7, "Last"));
+
+        int inserted = tree.insertBatch(rows);
+        assertEquals(3000, inserted);
+
+        List<Column> keyColumns = getKeyColumns(tree.getColumns());
+        for (int i = 1; i <= 3000; i++) {
+            assertNotNull(tree.search(new Key(List.of(i), keyColumns)), "missing key " + i);
+        }
+        assertEquals("Last", tree.search(new Key(List.of(7), keyColumns)).get(1));
+
+        BPlusTree reopened = new BPlusTree(100, spaceId, storageSystem, columns, TABLE_PATH);
+        assertEquals("Last", reopened.search(new Key(List.of(7), keyColumns)).get(1));
+        assertNotNull(reopened.search(new Key(List.of(3000), keyColumns)));
+    }
+
+    @Test
+    public void testInsertBatchCollectsReplacedRows() throws IOException {
+        List<List<Object>> loaded = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            loaded.add(Arrays.asList(i, "Old" + i));
+        }
+        tree.bulkLoad(loaded.iterator(), 0.9);
+
+        // 覆盖 3 行已有的，5 在批内重复只算一次，2000 是新行
+        List<List<Object>> replaced = new ArrayList<>();
+        tree.insertBatch(List.of(Arrays.asList(500, "New500"), Arrays.asList(5, "New5"),
+                Arrays.asList(2000, "New2000"), Arrays.asList(5, "Newer5"), Arrays.asList(999, "New999")), replaced);
+
+        replaced.sort((a, b) -> Integer.compare((Integer) a.get(0), (Integer) b.get(0)));
+        assertEquals(List.of(Arrays.asList(5, "Old5"), Arrays.asList(500, "Old500"), Arrays.asList(999, "Old999")),
+                replaced);
+    }
+
+    @Test
+    public void testRejectRowLargerThanPage() throws IOException {
+        List<Object> big = Arrays.asList(5, "x".repeat(5000));
+        List<Column> keyColumns = getKeyColumns(tree.getColumns());
+
+        // 空树装载遇到放不下一页的行：一页都还没写
+        assertThrows(IllegalArgumentException.class,
+                () -> tree.bulkLoad(List.<List<Object>>of(Arrays.asList(1, "a"), big).iterator(), 0.9));
+        assertTrue(tree.rangeSearch(null, null).isEmpty());
+
+        for (int i = 1; i <= 3; i++) {
+            tree.insert(columns, Arrays.asList(i, "n" + i));
+        }
+        // 插入、批量插入、更新都在改页之前拒绝
+        assertThrows(IllegalArgumentException.class, () -> tree.insert(columns, big));
+        assertThrows(IllegalArgumentException.class,
+                () -> tree.insertBatch(List.<List<Object>>of(Arrays.asList(4, "n4"), big)));
+        assertThrows(IllegalArgumentException.class,
+                () -> tree.update(new Key(List.of(2), keyColumns), Arrays.asList(2, "x".repeat(5000))));
+
+        assertNull(tree.search(new Key(List.of(4), keyColumns)));
+        assertNull(tree.search(new Key(List.of(5), keyColumns)));
+        assertEquals("n2", tree.search(new Key(List.of(2), keyColumns)).get(1));
+        assertEquals(3, tree.rangeSearch(null, null).size());
+    }
+
+    @Test
+    public void testInsertBatchIntoLoadedTree() throws IOException {
+        List<List<Object>> loaded = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            loaded.add(Arrays.asList(i * 2, "Even" + i));
+        }
+        tree.bulkLoad(loaded.iterator(), 0.9);
+
+        // 奇数插到已有叶子中间，后半段追加到最右边
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 1; i <= 3000; i += 2) {
+            rows.add(Arrays.asList(i, "Odd" + i));
+        }
+        assertEquals(1500, tree.insertBatch(rows));
+
+        List<Column> keyColumns = getKeyColumns(tree.getColumns());
+        for (int i = 1; i <= 3000; i += 2) {
+            assertEquals("Odd" + i, tree.search(new Key(List.of(i), keyColumns)).get(1));
+        }
+        for (int i = 1; i <= 1000; i++) {
+            assertEquals("Even" + i, tree.search(new Key(List.of(i * 2), keyColumns)).get(1));
+        }
+    }
+
+    @Test
+    public void testConcurrentInsertAndSearch() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            tree.insert(columns, Arrays.asList(i * 10, "Seed" + i));
+        }
+
+        List<Column> keyColumns = getKeyColumns(tree.getColumns());
+        int writers = 4;
+        int perWriter = 400;
+        ExecutorService pool = Executors.newFixedThreadPool(writers + 2);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            final int offset = w + 1;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    int id = i * 10 + offset;
+                    tree.insert(columns, Arrays.asList(id, "W" + id));
+                }
+                return null;
+            }));
+        }
+        // 读线程和写线程同时跑，已有的数据必须一直查得到
+        for (int r = 0; r < 2; r++) {
+            futures.add(pool.submit(() -> {
+                for (int round = 0; round < 5; round++) {
+                    for (int i = 0; i < 200; i++) {
+                        List<Object> row = tree.search(new Key(List.of(i * 10), keyColumns));
+                        assertNotNull(row, "missing seed " + i * 10);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        for (int w = 1; w <= writers; w++) {
+            for (int i = 0; i < perWriter; i++) {
+                int id = i * 10 + w;
+                List<Object> row = tree.search(new Key(List.of(id), keyColumns));
+                assertNotNull(row, "missing key " + id);
+                assertEquals("W" + id, row.get(1));
+            }
+        }
+    }
+
+    @Test
+    public void testSearchDuringRootSplits() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            tree.insert(columns, Arrays.asList(i * 1000, "Seed" + i));
+        }
+
+        // 读线程不加 latch，写线程不断分裂并换 root
+        List<Column> keyColumns = getKeyColumns(tree.getColumns());
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(pool.submit(() -> {
+            for (int batch = 0; batch < 10; batch++) {
+                List<List<Object>> rows = new ArrayList<>();
+                for (int i = 1; i < 1000; i += 2) {
+                    int id = (i * 37 + batch) % 49000 + 1;
+                    if (id % 1000 != 0) {
+                        rows.add(Arrays.asList(id, "B" + id));
+                    }
+                }
+                tree.insertBatch(rows);
+            }
+            return null;
+        }));
+        for (int r = 0; r < 3; r++) {
+            futures.add(pool.submit(() -> {
+                for (int round = 0; round < 20; round++) {
+                    for (int i = 0; i < 50; i++) {
+                        List<Object> row = tree.search(new Key(List.of(i * 1000), keyColumns));
+                        assertNotNull(row, "missing seed " + i * 1000);
+                        assertEquals("Seed" + i, row.get(1));
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void testConcurrentDeleteAndInsert() throws Exception {
+        List<Column> keyColumns = getKeyColumns(tree.getColumns());
+        for (int i = 0; i < 1600; i++) {
+            tree.insert(columns, Arrays.asList(i * 2, "Even" + i));
+        }
+
+        // 两个线程删偶数，两个线程插奇数，合并/分裂会同时发生
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            final int part = t;
+            futures.add(pool.submit(() -> {
+                for (int i = part; i < 1600; i += 2) {
+                    if (i % 10 != 0) {
+                        assertTrue(tree.delete(new Key(List.of(i * 2), keyColumns)), "delete " + i * 2);
+                    }
+                }
+                return null;
+            }));
+            futures.add(pool.submit(() -> {
+                for (int i = part; i < 800; i += 2) {
+                    tree.insert(columns, Arrays.asList(i * 4 + 1, "Odd" + i));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        for (int i = 0; i < 1600; i++) {
+            List<Object> row = tree.search(new Key(List.of(i * 2), keyColumns));
+            assertEquals(i % 10 == 0, row != null, "key " + i * 2);
+        }
+        for (int i = 0; i < 800; i++) {
+            assertNotNull(tree.search(new Key(List.of(i * 4 + 1), keyColumns)), "missing key " + (i * 4 + 1));
+        }
+    }
+
+    @Test
+    public void testWideRowsSplitByBytes() throws IOException {
+        // 每行约 250 字节，100 行放不进一页：必须按字节数分裂
+        String widePath = TABLE_PATH + ".wide";
+        new File(widePath).delete();
+        List<Column> wideColumns = Arrays.asList(
+                new Column("id", "INT", 4, 0, 0, true, true, null),
+                new Column("payload", "VARCHAR", 300, 0, 1, false, false, null));
+        int wideSpaceId = StorageSystem.createTable(widePath, wideColumns);
+        BPlusTree wide = new BPlusTree(100, wideSpaceId, storageSystem, wideColumns, widePath);
+
+        String pad = "x".repeat(240);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 1; i <= 600; i++) {
+            ids.add(i);
+        }
+        java.util.Collections.shuffle(ids, new java.util.Random(31));
+        for (int id : ids) {
+            wide.insert(wideColumns, Arrays.asList(id, pad + id));
+        }
+        // 变长更新导致叶子分裂
+        for (int i = 1; i <= 600; i += 3) {
+            assertTrue(wide.update(new Key(List.of(i), getKeyColumns(wideColumns)), Arrays.asList(i, pad + pad + i)));
+        }
+
+        List<Column> keyColumns = getKeyColumns(wideColumns);
+        BPlusTree reopened = new BPlusTree(100, wideSpaceId, storageSystem, wideColumns, widePath);
+        for (int i = 1; i <= 600; i++) {
+            List<Object> row = reopened.search(new Key(List.of(i), keyColumns));
+            assertNotNull(row, "missing key " + i);
+            assertEquals(i % 3 == 1 ? pad + pad + i : pad + i, row.get(1));
+        }
+        for (int i = 1; i <= 600; i += 2) {
+            assertTrue(reopened.delete(new Key(List.of(i), keyColumns)));
+        }
+        for (int i = 2; i <= 600; i += 2) {
+            assertNotNull(reopened.search(new Key(List.of(i), keyColumns)), "missing key " + i);
+        }
+    }
+
+    @Test
+    public void testProjectedSearchAndScan() throws IOException {
+        String path = TABLE_PATH + ".wide";
+        new File(path).delete();
+        List<Column> wideColumns = Arrays.asList(
+                new Column("id", "INT", 4, 0, 0, true, false, null),
+                new Column("name", "VARCHAR", 40, 0, 1, false, true, null),
+                new Column("score", "INT", 4, 0, 2, false, true, null),
+                new Column("memo", "VARCHAR", 200, 0, 3, false, true, null));
+        int sid = StorageSystem.createTable(path, wideColumns);
+        BPlusTree wide = new BPlusTree(100, sid, storageSystem, wideColumns, path);
+        for (int i = 0; i < 300; i++) {
+            wide.insert(wideColumns, Arrays.asList(i, "n" + i, i % 5 == 0 ? null : i * 10, "m".repeat(i % 50)));
+        }
+
+        // 反复点查同一个 key：前几次走树，之后走自适应哈希索引，结果都只有要的两列
+        Key hot = new Key(List.of(123), getKeyColumns(wideColumns));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Arrays.asList(1230, 123), wide.search(hot, new int[]{2, 0}));
+        }
+        assertTrue(wide.getAdaptiveHashIndex().hits() > 0);
+        assertEquals(Arrays.asList(null, "n45"), wide.search(new Key(List.of(45), getKeyColumns(wideColumns)), new int[]{2, 1}));
+        assertNull(wide.search(new Key(List.of(999), getKeyColumns(wideColumns)), new int[]{1}));
+
+        List<List<Object>> names = wide.scan(new int[]{1});
+        assertEquals(300, names.size());
+        for (int i = 0; i < 300; i++) {
+            assertEquals(List.of("n" + i), names.get(i));
+        }
+
+        // 过滤条件在记录字节上求值，score 为 NULL 的行不满足
+        List<List<Object>> filtered = wide.scan(new int[]{0, 1}, new RecordFilter(wideColumns).and(2, ">=", 2900).and(3, "<>", ""));
+        assertEquals(Arrays.asList(Arrays.asList(291, "n291"), Arrays.asList(292, "n292"), Arrays.asList(293, "n293"),
+                Arrays.asList(294, "n294"), Arrays.asList(296, "n296"), Arrays.asList(297, "n297"),
+                Arrays.asList(298, "n298"), Arrays.asList(299, "n299")), filtered);
+    }
+
+    @Test
+    public void testSuffixTruncatedSeparators() throws IOException {
+        // 复合主键 (name, seq)，name 有很长的公共后缀：分隔 key 只需 name 的前几个字符，或在同一 name 内分裂时保留 (name, seq)
+        String path = TABLE_PATH + ".sep";
+        new File(path).delete();
+        List<Column> sepColumns = Arrays.asList(
+                new Column("name", "VARCHAR", 100, 0, 0, true, false, null),
+                new Column("seq", "INT", 4, 0, 1, true, false, null));
+        int sid = StorageSystem.createTable(path, sepColumns);
+        BPlusTree sepTree = new BPlusTree(100, sid, storageSystem, sepColumns, path);
+
+        String suffix = "-" + "y".repeat(80);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            ids.add(i);
+        }
+        java.util.Collections.shuffle(ids, new java.util.Random(7));
+        for (int id : ids) {
+            sepTree.insert(sepColumns, Arrays.asList(String.format("u%04d", id / 2) + suffix, id % 2));
+        }
+
+        BPlusTree reopened = new BPlusTree(100, sid, storageSystem, sepColumns, path);
+        List<Column> keyColumns = getKeyColumns(sepColumns);
+        for (int i = 0; i < 2000; i++) {
+            assertNotNull(reopened.search(new Key(Arrays.asList(String.format("u%04d", i / 2) + suffix, i % 2), keyColumns)),
+                    "missing key " + i);
+        }
+        // 只给第一列的前缀查找仍然正确
+        assertEquals(2, reopened.rangeSearch(new Key(List.of("u0017" + suffix), keyColumns),
+                new Key(List.of("u0017" + suffix), keyColumns)).size());
+
+        // root 里的分隔 key 都被截短了
+        BPlusNode<Key> root = storageSystem.loadNode(path,
+                new PageManager.GlobalPageId(sid, storageSystem.getRootPageNo(sid)), null, sepColumns);
+        assertFalse(root.isLeaf);
+        int truncated = 0;
+        for (Key separator : root.keys) {
+            if (separator == null) {
+                continue;
+            }
+            // 在同一个 name 内部分裂时要保留 (name, seq)，否则只保留 name 的最短前缀
+            if (separator.getValues().size() == 1) {
+                assertTrue(((String) separator.getValues().get(0)).length() < suffix.length(), "not truncated: " + separator);
+                truncated++;
+            }
+        }
+        assertTrue(truncated > 0);
+
+        for (int i = 0; i < 2000; i += 2) {
+            assertTrue(reopened.delete(new Key(Arrays.asList(String.format("u%04d", i / 2) + suffix, i % 2), keyColumns)));
+        }
+        for (int i = 1; i < 2000; i += 2) {
+            assertNotNull(reopened.search(new Key(Arrays.asList(String.format("u%04d", i / 2) + suffix, i % 2), keyColumns)),
+                    "missing key " + i);
+        }
+    }
+
+    @Test
+    public void testVarintFormat() throws IOException {
+        String path = TABLE_PATH + ".varint";
+        new File(path).delete();
+        List<Column> varintColumns = Arrays.asList(
+                new Column("id", "INT", 4, 0, 0, true, false, null),
+                new Column("hits", "BIGINT", 8, 0, 1, false, true, null),
+                new Column("name", "VARCHAR", 20, 0, 2, false, true, null));
+        int sid = StorageSystem.createTable(path, varintColumns);
+        BPlusTree varint = new BPlusTree(100, sid, storageSystem, varintColumns, path);
+        varint.enableVarintFormat();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = -1500; i < 1500; i++) {
+            ids.add(i);
+        }
+        java.util.Collections.shuffle(ids, new java.util.Random(7));
+        for (int id : ids) {
+            varint.insert(varintColumns, Arrays.asList(id, (long) (id % 100), id % 9 == 0 ? null : "n" + id));
+        }
+
+        // 小整数的行比紧凑格式短：INT 4 -> 1~2 字节，BIGINT 8 -> 1 字节，没有偏移表
+        List<Object> sample = Arrays.asList(42, 7L, "n42");
+        assertEquals(RecordSerializer.dataRowSize(sample, varintColumns) - 11,
+                RecordSerializer.dataRowSize(sample, varintColumns, true));
+
+        // 内部节点条目是变长整数格式，查找时仍解析成 IntInternalNode
+        int rootPageNo = storageSystem.getRootPageNo(sid);
+        assertEquals(RecordSerializer.VARINT_INDEX_RECORD, StorageSystem.readPage(path, sid, rootPageNo).getRecord(1)[1]);
+        assertInstanceOf(IntInternalNode.class, storageSystem.loadSearchNode(path,
+                new PageManager.GlobalPageId(sid, rootPageNo), varintColumns, true));
+
+        List<Column> keyColumns = getKeyColumns(varintColumns);
+        for (int i = -1500; i < 1500; i += 7) {
+            assertEquals(Arrays.asList(i, (long) (i % 100), i % 9 == 0 ? null : "n" + i), varint.search(new Key(List.of(i), keyColumns)));
+        }
+        List<List<Object>> filtered = varint.scan(new int[]{0}, new RecordFilter(varintColumns).and(1, "=", 7L).and(2, ">=", "n1"));
+        List<List<Object>> expected = new ArrayList<>();
+        for (int i = 7; i < 1500; i += 100) {
+            if (i % 9 != 0) expected.add(List.of(i));
+        }
+        assertEquals(expected, filtered);
+
+        // 不开变长整数格式重新打开：已有的记录照样能读，改写的页里新旧格式混在一起
+        BPlusTree reopened = new BPlusTree(100, sid, storageSystem, varintColumns, path);
+        assertFalse(reopened.isVarintFormat());
+        for (int i = -1500; i < 1500; i += 5) {
+            assertTrue(reopened.update(new Key(List.of(i), keyColumns), Arrays.asList(i, -1L, "u" + i)));
+        }
+        List<List<Object>> rows = reopened.scan();
+        assertEquals(3000, rows.size());
+        for (int k = 0; k < rows.size(); k++) {
+            int i = k - 1500;
+            assertEquals(i % 5 == 0 ? Arrays.asList(i, -1L, "u" + i) : Arrays.asList(i, (long) (i % 100), i % 9 == 0 ? null : "n" + i),
+                    rows.get(k));
+        }
+        assertEquals(600 + countNegativeHits(), reopened.scan(new int[]{2}, new RecordFilter(varintColumns).and(1, "<", 0L)).size());
+    }
+
+    private static Column addedColumn(String name, int position, int version, String defaultValue) {
+        Column column = new Column(name, "INT", 4, 0, position, false, true,
+                defaultValue == null ? null : defaultValue.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        column.setVersion(version);
+        return column;
+    }
+
+    @Test
+    public void testAddColumnWithoutRewrite() throws IOException {
+        String path = TABLE_PATH + ".alter";
+        new File(path).delete();
+        List<Column> altered = new ArrayList<>(Arrays.asList(
+                new Column("id", "INT", 4, 0, 0, true, false, null),
+                new Column("name", "VARCHAR", 10, 0, 1, false, true, null)));
+        int sid = StorageSystem.createTable(path, altered);
+        BPlusTree table = new BPlusTree(100, sid, storageSystem, altered, path);
+        for (int i = 0; i < 2000; i++) {
+            table.insert(altered, Arrays.asList(i, "n" + i));
+        }
+        Key hot = new Key(List.of(1234), getKeyColumns(altered));
+        for (int i = 0; i < 4; i++) table.search(hot);
+
+        // 加列只改表结构：叶子页里的记录一个字节都不动
+        int rootPageNo = storageSystem.getRootPageNo(sid);
+        int leafPageNo = RecordSerializer.deserializeKeyPtr(StorageSystem.readPage(path, sid, rootPageNo).getRecord(1),
+                getKeyColumns(altered)).getSecond();
+        PageManager.Page leaf = StorageSystem.readPage(path, sid, leafPageNo);
+        List<byte[]> before = new ArrayList<>();
+        for (int i = 0; i < leaf.getRecordCount(); i++) before.add(leaf.getRecord(i).clone());
+        table.addColumn(addedColumn("level", 2, 1, "1"));
+        for (int i = 0; i < before.size(); i++) {
+            assertArrayEquals(before.get(i), StorageSystem.readPage(path, sid, leafPageNo).getRecord(i));
+        }
+
+        // 老的行补默认值；AHI 直接读到的行也是
+        assertEquals(Arrays.asList(1234, "n1234", 1), table.search(hot));
+        assertEquals(Arrays.asList(5, "n5", 1), table.search(new Key(List.of(5), getKeyColumns(altered))));
+        assertEquals(2000, table.scan(new int[]{0}, new RecordFilter(altered).and(2, "=", 1)).size());
+
+        // 新写的行带版本，改写过的页里新旧版本的行混在一起
+        for (int i = 2000; i < 2500; i++) {
+            table.insert(altered, Arrays.asList(i, "n" + i, 7));
+        }
+        for (int i = 0; i < 2000; i += 10) {
+            assertTrue(table.update(new Key(List.of(i), getKeyColumns(altered)), Arrays.asList(i, "u" + i, 3)));
+        }
+        table.addColumn(addedColumn("score", 3, 2, null));
+        List<List<Object>> rows = table.scan();
+        assertEquals(2500, rows.size());
+        for (int i = 0; i < 2500; i++) {
+            List<Object> expected = i >= 2000 ? Arrays.asList(i, "n" + i, 7, null)
+                    : i % 10 == 0 ? Arrays.asList(i, "u" + i, 3, null) : Arrays.asList(i, "n" + i, 1, null);
+            assertEquals(expected, rows.get(i));
+        }
+        assertEquals(200, table.scan(new int[]{1}, new RecordFilter(altered).and(2, "=", 3)).size());
+        assertTrue(table.scan(null, new RecordFilter(altered).and(3, ">=", 0)).isEmpty());
+
+        // 按加过列的表结构重新打开
+        BPlusTree reopened = new BPlusTree(100, sid, storageSystem, altered, path);
+        assertEquals(rows, reopened.scan());
+
+        // root 还是叶子的小表：root 里按老结构解码好的行要重新读
+        String smallPath = TABLE_PATH + ".alter.small";
+        new File(smallPath).delete();
+        List<Column> small = new ArrayList<>(Arrays.asList(
+                new Column("id", "INT", 4, 0, 0, true, false, null),
+                new Column("name", "VARCHAR", 10, 0, 1, false, true, null)));
+        int smallId = StorageSystem.createTable(smallPath, small);
+        BPlusTree smallTree = new BPlusTree(100, smallId, storageSystem, small, smallPath);
+        smallTree.insert(small, Arrays.asList(1, "a"));
+        smallTree.insert(small, Arrays.asList(2, "b"));
+        smallTree.addColumn(addedColumn("level", 2, 1, "5"));
+        smallTree.insert(small, Arrays.asList(3, "c", 6));
+        assertEquals(Arrays.asList(Arrays.asList(1, "a", 5), Arrays.asList(2, "b", 5), Arrays.asList(3, "c", 6)),
+                smallTree.scan());
+    }
+
+    // -1500..1499 里 id % 100 为负且不是 5 的倍数的行数
+    private static int countNegativeHits() {
+        int count = 0;
+        for (int i = -1500; i < 1500; i++) {
+            if (i % 5 != 0 && i % 100 < 0) count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testIntKeyedInternalNodes() throws IOException {
+        // 单列 INT 主键：查找路径上的内部节点加载成 IntInternalNode，含负数 key
+        List<Integer> ids = new ArrayList<>();
+        for (int i = -1500; i < 1500; i++) {
+            ids.add(i);
+        }
+        java.util.Collections.shuffle(ids, new java.util.Random(11));
+        for (int id : ids) {
+            tree.insert(columns, Arrays.asList(id, "n" + id));
+        }
+
+        int rootPageNo = storageSystem.getRootPageNo(spaceId);
+        BPlusNode<Key> root = storageSystem.loadSearchNode(TABLE_PATH,
+                new PageManager.GlobalPageId(spaceId, rootPageNo), columns, true);
+        assertInstanceOf(IntInternalNode.class, root);
+
+        BPlusTree reopened = new BPlusTree(100, spaceId, storageSystem, columns, TABLE_PATH);
+        for (int i = -1500; i < 1500; i++) {
+            List<Object> row = reopened.search(new Key(List.of(i), reopened.getColumns()));
+            assertNotNull(row, "missing key " + i);
+            assertEquals("n" + i, row.get(1));
+        }
+        assertNull(reopened.search(new Key(List.of(1500), reopened.getColumns())));
+        assertNull(reopened.search(new Key(List.of(Integer.MIN_VALUE), reopened.getColumns())));
+
+        List<List<Object>> range = reopened.rangeSearch(new Key(List.of(-20), reopened.getColumns()),
+                new Key(List.of(20), reopened.getColumns()));
+        assertEquals(41, range.size());
+        assertEquals(-20, range.get(0).get(0));
+        assertEquals(20, range.get(40).get(0));
+        assertEquals(3000, reopened.rangeSearch(null, null).size());
+    }
+
+    @Test
+    public void testInternalNodesStayResident() throws IOException {
+        for (int i = 0; i < 3000; i++) {
+            tree.insert(columns, Arrays.asList(i, "n" + i));
+        }
+        InternalNodeCache cache = storageSystem.getBufferPool().getInternalNodeCache();
+        PageManager.GlobalPageId rootId = new PageManager.GlobalPageId(spaceId, storageSystem.getRootPageNo(spaceId));
+
+        // 第二次加载拿到的是同一个常驻节点，不再解码
+        BPlusNode<Key> first = storageSystem.loadSearchNode(TABLE_PATH, rootId, columns, true);
+        assertSame(first, storageSystem.loadSearchNode(TABLE_PATH, rootId, columns, true));
+        assertTrue(cache.size() > 0);
+
+        // 再插入一批，分裂改写过的内部节点从缓存作废，查找仍然正确
+        for (int i = 3000; i < 6000; i++) {
+            tree.insert(columns, Arrays.asList(i, "n" + i));
+        }
+        for (int i = 0; i < 6000; i += 7) {
+            List<Object> row = tree.search(new Key(List.of(i), tree.getColumns()));
+            assertNotNull(row, "missing key " + i);
+            assertEquals("n" + i, row.get(1));
+        }
+        for (int i = 0; i < 6000; i += 2) {
+            assertTrue(tree.delete(new Key(List.of(i), tree.getColumns())));
+        }
+        for (int i = 0; i < 6000; i++) {
+            List<Object> row = tree.search(new Key(List.of(i), tree.getColumns()));
+            assertEquals(i % 2 == 1, row != null, "key " + i);
+        }
+
+        // 作废之后读者拿旧代数放不进去
+        long generation = cache.generation(rootId);
+        cache.invalidate(rootId);
+        cache.put(rootId, generation, first);
+        assertNull(cache.get(rootId));
+    }
+
+    @Test
+    public void testAdaptiveHashIndex() throws IOException {
+        for (int i = 0; i < 3000; i++) {
+            tree.insert(columns, Arrays.asList(i, "n" + i));
+        }
+        AdaptiveHashIndex ahi = tree.getAdaptiveHashIndex();
+        Key hot = new Key(List.of(1234), tree.getColumns());
+
+        // 查够次数后建条目，之后直接从条目读
+        for (int i = 0; i < 3; i++) {
+            assertEquals("n1234", tree.search(hot).get(1));
+        }
+        assertEquals(1, ahi.size());
+        long hits = ahi.hits();
+        assertEquals("n1234", tree.search(hot).get(1));
+        assertEquals(hits + 1, ahi.hits());
+
+        // 叶子被改写后条目作废，查到的是新值
+        assertTrue(tree.update(hot, Arrays.asList(1234, "changed")));
+        assertEquals("changed", tree.search(hot).get(1));
+        assertEquals(hits + 1, ahi.hits());
+
+        // 叶子分裂、删除后仍然正确
+        for (int i = 0; i < 3; i++) tree.search(hot);
+        for (int i = 3000; i < 6000; i++) {
+            tree.insert(columns, Arrays.asList(i, "n" + i));
+        }
+        assertEquals("changed", tree.search(hot).get(1));
+        assertTrue(tree.delete(hot));
+        assertNull(tree.search(hot));
+    }
+
+    @Test
+    public void testBloomFilter() throws IOException {
+        File bloomFile = new File(TABLE_PATH + ".bloom");
+        bloomFile.delete();
+        for (int i = 0; i < 500; i++) {
+            tree.insert(columns, Arrays.asList(i * 2, "n" + i));
+        }
+        // 已有数据的表打开 Bloom filter 时扫叶子重建
+        tree.enableBloomFilter();
+        assertTrue(tree.hasBloomFilter());
+        tree.insertBatch(Arrays.asList(Arrays.asList(1001, "a"), Arrays.asList(1003, "b")));
+        tree.insert(columns, Arrays.asList(1005, "c"));
+
+        for (int i = 0; i < 500; i++) {
+            assertNotNull(tree.search(new Key(List.of(i * 2), tree.getColumns())));
+            assertNull(tree.search(new Key(List.of(i * 2 + 1), tree.getColumns())));
+        }
+        assertEquals("c", tree.search(new Key(List.of(1005), tree.getColumns())).get(1));
+
+        // 存盘后重新打开读文件，读完即删
+        tree.saveBloomFilter();
+        assertTrue(bloomFile.exists());
+        BPlusTree reopened = new BPlusTree(100, spaceId, storageSystem, columns, TABLE_PATH);
+        reopened.enableBloomFilter();
+        assertFalse(bloomFile.exists());
+        for (int key : new int[]{0, 998, 1001, 1003, 1005}) {
+            assertNotNull(reopened.search(new Key(List.of(key), reopened.getColumns())), "missing key " + key);
+        }
+        assertNull(reopened.search(new Key(List.of(5000), reopened.getColumns())));
+    }
+
+    @Test
+    public void testFillFactorLeavesRoomOnAppend() throws IOException {
+        // 顺序追加时左边的页按填充率封口：填充率越低，文件越大
+        long[] sizes = new long[2];
+        int[] fillFactors = {100, 50};
+        for (int t = 0; t < 2; t++) {
+            String path = TABLE_PATH + ".fill" + fillFactors[t];
+            new File(path).delete();
+            int sid = StorageSystem.createTable(path, columns);
+            BPlusTree filled = new BPlusTree(100, fillFactors[t], sid, storageSystem, columns, path);
+            assertEquals(fillFactors[t], filled.getFillFactor());
+            for (int i = 1; i <= 3000; i++) {
+                filled.insert(columns, Arrays.asList(i, "Name" + i));
+            }
+            List<Column> keyColumns = getKeyColumns(columns);
+            for (int i = 1; i <= 3000; i += 7) {
+                assertEquals("Name" + i, filled.search(new Key(List.of(i), keyColumns)).get(1));
+            }
+            sizes[t] = new File(path).length();
+        }
+        assertTrue(sizes[1] > sizes[0], "fill 50% should use more pages: " + Arrays.toString(sizes));
+    }
+
+    @Test
+    public void testRangeSearch() throws IOException {
+        for (int i = 1000; i >= 1; i--) {
+            tree.insert(columns, Arrays.asList(i, "Name" + i));
+        }
+        List<Column> keyColumns = getKeyColumns(tree.getColumns());
+
+        List<List<Object>> rows = tree.rangeSearch(new Key(List.of(95), keyColumns), new Key(List.of(420), keyColumns));
+        assertEquals(326, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(95 + i, rows.get(i).get(0));
+        }
+        assertEquals(1000, tree.rangeSearch(null, null).size());
+        assertTrue(tree.rangeSearch(new Key(List.of(1001), keyColumns), null).isEmpty());
+    }
+
+    @Test
+    public void testSecondaryIndex() throws IOException {
+        // 非唯一索引：name 只有 10 种取值
+        String indexPath = TABLE_PATH + ".idx";
+        new File(indexPath).delete();
+        List<String> indexColumns = List.of("name");
+        List<Column> entryColumns = SecondaryIndex.entryColumns(columns, indexColumns);
+        int indexSpaceId = StorageSystem.createTable(indexPath, entryColumns);
+        SecondaryIndex index = new SecondaryIndex("idx_name", indexColumns, indexSpaceId,
+                new BPlusTree(100, indexSpaceId, storageSystem, entryColumns, indexPath), columns);
+
+        for (int i = 1; i <= 2000; i++) {
+            List<Object> row = Arrays.asList(i, "N" + i % 10);
+            tree.insert(columns, row);
+            index.insert(row);
+        }
+
+        List<Key> pks = index.lookup(List.of("N3"));
+        assertEquals(200, pks.size());
+        for (int i = 0; i < pks.size(); i++) {
+            assertEquals(i * 10 + 3, pks.get(i).getValues().get(0));
+            assertEquals("N3", tree.search(pks.get(i)).get(1));
+        }
+
+        // 删除、修改后索引跟着变
+        List<Column> keyColumns = getKeyColumns(columns);
+        for (int i = 3; i <= 2000; i += 10) {
+            if (i % 20 == 3) {
+                List<Object> old = tree.search(new Key(List.of(i), keyColumns));
+                tree.delete(new Key(List.of(i), keyColumns));
+                index.delete(old);
+            } else {
+                List<Object> updated = Arrays.asList(i, "Moved");
+                tree.update(new Key(List.of(i), keyColumns), updated);
+                index.update(Arrays.asList(i, "N3"), updated);
+            }
+        }
+        assertTrue(index.lookup(List.of("N3")).isEmpty());
+        assertEquals(100, index.lookup(List.of("Moved")).size());
+        assertEquals(200, index.lookup(List.of("N4")).size());
+        assertTrue(index.lookup(List.of("Missing")).isEmpty());
+    }
+
+    @Test
+    public void testCoveringIndex() throws IOException {
+        // 索引 status，INCLUDE email：条目里有 status、id、email，查 status 就能拿到 email
+        Column idCol = new Column("id", "INT", 4, 0, 0, true, false, null);
+        Column emailCol = new Column("email", "VARCHAR", 20, 0, 1, false, false, null);
+        Column statusCol = new Column("status", "VARCHAR", 10, 0, 2, false, false, null);
+        List<Column> userColumns = Arrays.asList(idCol, emailCol, statusCol);
+
+        String indexPath = TABLE_PATH + ".idx";
+        new File(indexPath).delete();
+        List<String> indexColumns = List.of("status");
+        List<String> includeColumns = List.of("email");
+        List<Column> entryColumns = SecondaryIndex.entryColumns(userColumns, indexColumns, includeColumns);
+        int indexSpaceId = StorageSystem.createTable(indexPath, entryColumns);
+        SecondaryIndex index = new SecondaryIndex("idx_status", indexColumns, includeColumns, indexSpaceId,
+                new BPlusTree(100, indexSpaceId, storageSystem, entryColumns, indexPath), userColumns);
+
+        for (int i = 1; i <= 500; i++) {
+            index.insert(Arrays.asList(i, "u" + i + "@x", i % 2 == 0 ? "active" : "closed"));
+        }
+        assertTrue(index.covers(List.of("id", "email", "status")));
+        assertFalse(index.covers(List.of("name")));
+
+        List<List<Object>> entries = index.lookupEntries(List.of("active"));
+        assertEquals(250, entries.size());
+        assertEquals(Arrays.asList("active", 2, "u2@x"), entries.get(0));
+
+        // 只改 INCLUDE 列：原地更新条目
+        index.update(Arrays.asList(2, "u2@x", "active"), Arrays.asList(2, "new@x", "active"));
+        assertEquals("new@x", index.lookupEntries(List.of("active")).get(0).get(2));
+        assertEquals(250, index.lookup(List.of("active")).size());
+    }
+
     private List<Column> getKeyColumns(List<Column> columns) {
         List<Column> keyColumns = new ArrayList<Column>();
         for (Column column : columns) {
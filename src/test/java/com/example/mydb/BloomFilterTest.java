@@ -0,0 +1,72 @@
+package com.example.mydb;
+
+import org.csu.mydb.storage.BPlusTree.BloomFilter;
+import org.csu.mydb.storage.Table.Key;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+
+    private static Key key(Object... values) {
+        return new Key(Arrays.asList(values), Collections.emptyList());
+    }
+
+    // 测试 1：加过的 key 一定判为可能在（跨过多次扩容），没加过的误判率在预期内
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter();
+        for (int i = 0; i < 100_000; i++) {
+            filter.add(key(i * 2));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain(key(i * 2)), "false negative " + i * 2);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(key(i * 2 + 1))) falsePositives++;
+        }
+        // 每层约 1% 误判，多层叠加后仍应远低于 10%
+        assertTrue(falsePositives < 10_000, "false positives: " + falsePositives);
+    }
+
+    // 测试 2：复合键、字符串键
+    @Test
+    public void testCompositeKeys() {
+        BloomFilter filter = new BloomFilter();
+        filter.add(key("alice", 1));
+        filter.add(key("bob", 2));
+        assertTrue(filter.mightContain(key("alice", 1)));
+        assertTrue(filter.mightContain(key("bob", 2)));
+        assertFalse(filter.mightContain(key("carol", 3)) && filter.mightContain(key("dave", 4))
+                && filter.mightContain(key("erin", 5)));
+    }
+
+    // 测试 3：存盘再读回，结果一致
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        BloomFilter filter = new BloomFilter();
+        for (int i = 0; i < 5000; i++) {
+            filter.add(key(i));
+        }
+        File file = File.createTempFile("mydb", ".bloom");
+        try {
+            filter.save(file);
+            BloomFilter loaded = BloomFilter.load(file);
+            assertNotNull(loaded);
+            for (int i = 0; i < 10000; i++) {
+                assertEquals(filter.mightContain(key(i)), loaded.mightContain(key(i)));
+            }
+            // 读回后还能继续加
+            loaded.add(key(-1));
+            assertTrue(loaded.mightContain(key(-1)));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.mydb;
 
+import org.csu.mydb.compiler.Lexer;
+import org.csu.mydb.compiler.PlanBuilder;
 import org.csu.mydb.executor.ExecutionPlan;
 import org.csu.mydb.executor.ExecutionResult;
 import org.csu.mydb.executor.Executor;
@@ -8,6 +10,7 @@ import org.csu.mydb.storage.StorageEngine;
 import org.csu.mydb.storage.Table.Column.Column;
 import org.junit.jupiter.api.*;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 
@@ -66,6 +69,35 @@ public class ExecutorTest {
         assertTrue(storageEngine.isDropDatabaseCalled());
     }
 
+    @Test
+    @DisplayName("测试创建索引")
+    public void testCreateIndex() throws ExecutorException {
+        ExecutionPlan plan = new ExecutionPlan(ExecutionPlan.OperationType.CREATE_INDEX);
+        plan.setIndexName("idx_email");
+        plan.setTableName("users");
+        plan.setIndexColumns(Arrays.asList("email"));
+
+        ExecutionResult result = executor.execute(plan);
+        assertTrue(result.isSuccess());
+        assertEquals("索引创建成功: idx_email", result.getMessage());
+        assertTrue(storageEngine.isCreateIndexCalled());
+        assertTrue(storageEngine.getLastIncludeColumns().isEmpty());
+    }
+
+    @Test
+    @DisplayName("测试创建覆盖索引")
+    public void testCreateCoveringIndex() throws ExecutorException {
+        ExecutionPlan plan = new ExecutionPlan(ExecutionPlan.OperationType.CREATE_INDEX);
+        plan.setIndexName("idx_status");
+        plan.setTableName("users");
+        plan.setIndexColumns(Arrays.asList("status"));
+        plan.setIncludeColumns(Arrays.asList("email"));
+
+        ExecutionResult result = executor.execute(plan);
+        assertTrue(result.isSuccess());
+        assertEquals(Arrays.asList("email"), storageEngine.getLastIncludeColumns());
+    }
+
     @Test
     @DisplayName("测试打开数据库")
     public void testOpenDatabase() throws ExecutorException {
@@ -106,6 +138,86 @@ public class ExecutorTest {
         assertTrue(storageEngine.isCreateTableCalled());
     }
 
+    @Test
+    @DisplayName("测试创建哈希表")
+    public void testCreateHashTable() throws ExecutorException {
+        ExecutionPlan plan = new ExecutionPlan(ExecutionPlan.OperationType.CREATE_TABLE);
+        plan.setTableName("sessions");
+        plan.setColumns(Arrays.asList(makeColumn("id", "INT", 11, 0)));
+        plan.setAccessMethod("HASH");
+
+        ExecutionResult result = executor.execute(plan);
+        assertTrue(result.isSuccess());
+        assertTrue(storageEngine.isCreateHashTableCalled());
+        assertFalse(storageEngine.isCreateTableCalled());
+    }
+
+    @Test
+    @DisplayName("测试创建 LSM 表")
+    public void testCreateLsmTable() throws ExecutorException {
+        ExecutionPlan plan = new ExecutionPlan(ExecutionPlan.OperationType.CREATE_TABLE);
+        plan.setTableName("events");
+        plan.setColumns(Arrays.asList(makeColumn("id", "INT", 11, 0)));
+        plan.setAccessMethod("LSM");
+
+        ExecutionResult result = executor.execute(plan);
+        assertTrue(result.isSuccess());
+        assertTrue(storageEngine.isCreateLsmTableCalled());
+        assertFalse(storageEngine.isCreateTableCalled());
+    }
+
+    @Test
+    @DisplayName("测试创建 PAX 表")
+    public void testCreatePaxTable() throws ExecutorException {
+        ExecutionPlan plan = new ExecutionPlan(ExecutionPlan.OperationType.CREATE_TABLE);
+        plan.setTableName("facts");
+        plan.setColumns(Arrays.asList(makeColumn("id", "INT", 11, 0)));
+        plan.setRowFormat("PAX");
+
+        ExecutionResult result = executor.execute(plan);
+        assertTrue(result.isSuccess());
+        assertTrue(storageEngine.isCreatePaxTableCalled());
+        assertFalse(storageEngine.isCreateTableCalled());
+    }
+
+    @Test
+    @DisplayName("测试创建变长整数格式的表")
+    public void testCreateVarintTable() throws ExecutorException {
+        ExecutionPlan plan = new ExecutionPlan(ExecutionPlan.OperationType.CREATE_TABLE);
+        plan.setTableName("counters");
+        plan.setColumns(Arrays.asList(makeColumn("id", "INT", 11, 0)));
+        plan.setRowFormat("VARINT");
+
+        ExecutionResult result = executor.execute(plan);
+        assertTrue(result.isSuccess());
+        assertTrue(storageEngine.isCreateVarintTableCalled());
+        assertFalse(storageEngine.isCreatePaxTableCalled());
+        assertFalse(storageEngine.isCreateTableCalled());
+    }
+
+    @Test
+    @DisplayName("测试加列")
+    public void testAddColumn() throws Exception {
+        List<ExecutionPlan> plans = new PlanBuilder().buildAll(
+                Lexer.tokenize("ALTER TABLE users ADD COLUMN city VARCHAR(20) NOT NULL DEFAULT 'Changsha';"));
+        assertEquals(1, plans.size());
+        assertEquals(ExecutionPlan.OperationType.ADD_COLUMN, plans.get(0).getOperationType());
+
+        ExecutionResult result = executor.execute(plans.get(0));
+        assertTrue(result.isSuccess());
+        Column added = storageEngine.getLastAddedColumn();
+        assertEquals("city", added.getName());
+        assertEquals("VARCHAR", added.getType());
+        assertFalse(added.isNullable());
+        // 默认值保留原来的大小写
+        assertEquals("Changsha", new String(added.getDefaultValue(), StandardCharsets.UTF_8));
+
+        assertEquals("city", new PlanBuilder().buildAll(Lexer.tokenize("ALTER TABLE users ADD city INT;"))
+                .get(0).getColumns().get(0).getName());
+        assertThrows(PlanBuilder.SemanticException.class,
+                () -> new PlanBuilder().buildAll(Lexer.tokenize("ALTER TABLE users DROP COLUMN city;")));
+    }
+
     @Test
     @DisplayName("测试删除表")
     public void testDropTable() throws ExecutorException {
@@ -228,6 +340,13 @@ class StorageEngineMock extends StorageEngine {
     private boolean closeDatabaseCalled = false;
     private boolean createTableCalled = false;
     private boolean dropTableCalled = false;
+    private boolean createIndexCalled = false;
+    private boolean createHashTableCalled = false;
+    private boolean createLsmTableCalled = false;
+    private boolean createPaxTableCalled = false;
+    private boolean createVarintTableCalled = false;
+    private Column lastAddedColumn = null;
+    private List<String> lastIncludeColumns = null;
     private boolean insertCalled = false;
     private boolean deleteCalled = false;
     private boolean updateCalled = false;
@@ -264,6 +383,43 @@ class StorageEngineMock extends StorageEngine {
         System.out.println("模拟创建表: " + tableName + ", 列: " + columns);
     }
 
+    @Override
+    public void myCreateHashTable(String tableName, List<Column> columns) {
+        createHashTableCalled = true;
+        System.out.println("模拟创建哈希表: " + tableName + ", 列: " + columns);
+    }
+
+    @Override
+    public void myCreateLsmTable(String tableName, List<Column> columns) {
+        createLsmTableCalled = true;
+        System.out.println("模拟创建 LSM 表: " + tableName + ", 列: " + columns);
+    }
+
+    @Override
+    public void myCreatePaxTable(String tableName, List<Column> columns) {
+        createPaxTableCalled = true;
+        System.out.println("模拟创建 PAX 表: " + tableName + ", 列: " + columns);
+    }
+
+    @Override
+    public void myCreateVarintTable(String tableName, List<Column> columns) {
+        createVarintTableCalled = true;
+        System.out.println("模拟创建变长整数格式的表: " + tableName + ", 列: " + columns);
+    }
+
+    @Override
+    public void myAddColumn(String tableName, Column column) {
+        lastAddedColumn = column;
+        System.out.println("模拟加列: " + tableName + ", 列: " + column.getName());
+    }
+
+    @Override
+    public void myCreateIndex(String indexName, String tableName, List<String> columnNames, List<String> includeColumnNames) {
+        createIndexCalled = true;
+        lastIncludeColumns = includeColumnNames;
+        System.out.println("模拟创建索引: " + indexName + " ON " + tableName + columnNames + " INCLUDE " + includeColumnNames);
+    }
+
     @Override
     public void myDropTable(String tableName) {
         dropTableCalled = true;
@@ -313,6 +469,13 @@ class StorageEngineMock extends StorageEngine {
     public boolean isCloseDatabaseCalled() { return closeDatabaseCalled; }
     public boolean isCreateTableCalled() { return createTableCalled; }
     public boolean isDropTableCalled() { return dropTableCalled; }
+    public boolean isCreateIndexCalled() { return createIndexCalled; }
+    public boolean isCreateHashTableCalled() { return createHashTableCalled; }
+    public boolean isCreateLsmTableCalled() { return createLsmTableCalled; }
+    public boolean isCreatePaxTableCalled() { return createPaxTableCalled; }
+    public boolean isCreateVarintTableCalled() { return createVarintTableCalled; }
+    public Column getLastAddedColumn() { return lastAddedColumn; }
+    public List<String> getLastIncludeColumns() { return lastIncludeColumns; }
     public boolean isInsertCalled() { return insertCalled; }
     public boolean isDeleteCalled() { return deleteCalled; }
     public boolean isUpdateCalled() { return updateCalled; }
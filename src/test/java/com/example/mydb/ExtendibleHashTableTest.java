@@ -0,0 +1,162 @@
+package com.example.mydb;
+
+import org.csu.mydb.storage.Hash.ExtendibleHashTable;
+import org.csu.mydb.storage.Initialisation;
+import org.csu.mydb.storage.StorageSystem;
+import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.Key;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExtendibleHashTableTest {
+    private static final String TABLE_PATH = "G:\\MyDB\\MyDB\\src\\main\\resources\\test\\jb.idb.hash";
+    private StorageSystem storageSystem;
+    private int spaceId;
+    private List<Column> columns;
+    private ExtendibleHashTable table;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Initialisation.main(null);
+        storageSystem = new StorageSystem();
+        new File(TABLE_PATH).delete();
+
+        Column idCol = new Column("id", "INT", 4, 0, 0, true, true, null);
+        Column nameCol = new Column("name", "VARCHAR", 20, 0, 1, false, false, null);
+        columns = Arrays.asList(idCol, nameCol);
+        spaceId = StorageSystem.createTable(TABLE_PATH, columns);
+        table = new ExtendibleHashTable(spaceId, storageSystem, columns, TABLE_PATH);
+    }
+
+    private Key key(int id) {
+        return new Key(List.of(id), columns);
+    }
+
+    @Test
+    public void testInsertReorderedAndPartialColumns() throws IOException {
+        String path = TABLE_PATH + ".cols";
+        new File(path).delete();
+        List<Column> wide = Arrays.asList(
+                new Column("id", "INT", 4, 0, 0, true, false, null),
+                new Column("qty", "INT", 4, 0, 1, false, false, "5".getBytes(StandardCharsets.UTF_8)),
+                new Column("note", "VARCHAR", 20, 0, 2, false, true, null),
+                new Column("code", "INT", 4, 0, 3, false, false, null));
+        ExtendibleHashTable hash = new ExtendibleHashTable(StorageSystem.createTable(path, wide), storageSystem, wide, path);
+        Column id = wide.get(0), qty = wide.get(1), note = wide.get(2), code = wide.get(3);
+
+        // 列顺序和表不一样：按列名对上
+        hash.insert(Arrays.asList(note, code, id, qty), Arrays.asList("x", 9, 1, 2));
+        assertEquals(Arrays.asList(1, 2, "x", 9), hash.search(new Key(List.of(1), wide)));
+        // 没给的列取按类型解析的 DEFAULT，没有 DEFAULT 的可空列为 null
+        hash.insert(Arrays.asList(code, id), Arrays.asList(8, 2));
+        assertEquals(Arrays.asList(2, 5, null, 8), hash.search(new Key(List.of(2), wide)));
+        // NOT NULL 又没有 DEFAULT 的列不能不给
+        assertThrows(IllegalArgumentException.class, () -> hash.insert(Arrays.asList(id), Arrays.asList(3)));
+        assertNull(hash.search(new Key(List.of(3), wide)));
+    }
+
+    @Test
+    public void testInsertSearchUpdateDelete() throws IOException {
+        table.insert(columns, Arrays.asList(1, "Alice"));
+        table.insert(columns, Arrays.asList(2, "Bob"));
+
+        assertEquals("Bob", table.search(key(2)).get(1));
+        assertNull(table.search(key(3)));
+
+        // 主键重复的插入覆盖
+        table.insert(columns, Arrays.asList(2, "Bobby"));
+        assertEquals("Bobby", table.search(key(2)).get(1));
+        // 只取部分列
+        assertEquals(Arrays.asList("Bobby", 2), table.search(key(2), new int[]{1, 0}));
+        assertNull(table.search(key(3), new int[]{1}));
+
+        assertTrue(table.update(key(1), Arrays.asList(1, "Alicia")));
+        assertEquals("Alicia", table.search(key(1)).get(1));
+        assertFalse(table.update(key(9), Arrays.asList(9, "Nobody")));
+        assertNull(table.search(key(9)));
+
+        assertTrue(table.delete(key(1)));
+        assertFalse(table.delete(key(1)));
+        assertNull(table.search(key(1)));
+        assertEquals(1, table.scan().size());
+        assertEquals(List.of(List.of("Bobby")), table.scan(new int[]{1}));
+    }
+
+    @Test
+    public void testInsertBatchCollectsReplacedRows() throws IOException {
+        table.insertBatch(List.of(Arrays.asList(1, "Alice"), Arrays.asList(2, "Bob")));
+
+        // 2 在批内重复，只报插入前的旧行一次
+        List<List<Object>> replaced = new ArrayList<>();
+        table.insertBatch(List.of(Arrays.asList(2, "Bobby"), Arrays.asList(3, "Carol"), Arrays.asList(2, "Bert")),
+                replaced);
+        assertEquals(List.of(Arrays.asList(2, "Bob")), replaced);
+        assertEquals("Bert", table.search(key(2)).get(1));
+    }
+
+    @Test
+    public void testRejectRowLargerThanPage() throws IOException {
+        table.insert(columns, Arrays.asList(1, "Alice"));
+        int depth = table.getGlobalDepth();
+        int buckets = table.bucketCount();
+
+        // 一行放不下一页：改任何页之前就拒绝，不会一路分裂把目录撑大
+        List<Object> big = Arrays.asList(2, "x".repeat(5000));
+        assertThrows(IllegalArgumentException.class, () -> table.insert(columns, big));
+        assertThrows(IllegalArgumentException.class,
+                () -> table.insertBatch(List.of(Arrays.asList(3, "Carol"), big)));
+        assertEquals(depth, table.getGlobalDepth());
+        assertEquals(buckets, table.bucketCount());
+        assertNull(table.search(key(3)));
+        assertEquals("Alice", table.search(key(1)).get(1));
+    }
+
+    @Test
+    public void testBucketSplitsAndReopen() throws IOException {
+        int n = 20000;
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            rows.add(Arrays.asList(i, "name" + i));
+        }
+        assertEquals(n, table.insertBatch(rows));
+
+        // 一个桶放不下，目录至少翻倍过几次，桶数不超过目录大小
+        assertTrue(table.getGlobalDepth() > 2, "depth=" + table.getGlobalDepth());
+        assertTrue(table.bucketCount() > 4);
+        assertTrue(table.bucketCount() <= (1 << table.getGlobalDepth()));
+
+        for (int i = 0; i < n; i += 7) {
+            List<Object> row = table.search(key(i));
+            assertNotNull(row, "id=" + i);
+            assertEquals("name" + i, row.get(1));
+        }
+        for (int i = n; i < n + 1000; i++) {
+            assertNull(table.search(key(i)));
+        }
+
+        Set<Object> ids = new HashSet<>();
+        for (List<Object> row : table.scan()) ids.add(row.get(0));
+        assertEquals(n, ids.size());
+
+        // 重新打开：目录从 Page2 和目录页读回
+        ExtendibleHashTable reopened = new ExtendibleHashTable(spaceId, storageSystem, columns, TABLE_PATH);
+        assertEquals(table.getGlobalDepth(), reopened.getGlobalDepth());
+        assertEquals(table.bucketCount(), reopened.bucketCount());
+        for (int i = 0; i < n; i += 13) {
+            assertEquals("name" + i, reopened.search(key(i)).get(1));
+        }
+        assertTrue(reopened.delete(key(5)));
+        assertNull(reopened.search(key(5)));
+    }
+}
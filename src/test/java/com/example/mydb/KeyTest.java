@@ -0,0 +1,64 @@
+package com.example.mydb;
+
+import org.csu.mydb.storage.Table.Key;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyTest {
+
+    private static Key key(Object... values) {
+        return new Key(Arrays.asList(values), Collections.emptyList());
+    }
+
+    // 测试 1：INT 编码后的字节序与数值大小一致（含负数和边界值）
+    @Test
+    public void testIntOrder() {
+        int[] ints = {Integer.MIN_VALUE, -1000, -1, 0, 1, 255, 256, 65536, Integer.MAX_VALUE};
+        for (int i = 0; i + 1 < ints.length; i++) {
+            assertTrue(key(ints[i]).compareTo(key(ints[i + 1])) < 0, ints[i] + " < " + ints[i + 1]);
+        }
+        assertEquals(0, key(42).compareTo(key(42)));
+    }
+
+    // 测试 2：VARCHAR 编码后的字节序与字符串顺序一致（前缀、空串、内嵌 \0）
+    @Test
+    public void testStringOrder() {
+        List<String> strings = new ArrayList<>(Arrays.asList("b", "", "a\0", "ab", "a", "a\0b", "abc", "B", "中文"));
+        List<String> expected = new ArrayList<>(strings);
+        Collections.sort(expected);
+
+        strings.sort((x, y) -> key(x).compareTo(key(y)));
+        assertEquals(expected, strings);
+    }
+
+    // 测试 3：NULL 排在最前，DECIMAL 负数、-0.0 与 0.0 的顺序和 Double.compareTo 一致
+    @Test
+    public void testNullAndDoubleOrder() {
+        assertTrue(key((Object) null).compareTo(key(Integer.MIN_VALUE)) < 0);
+        assertEquals(0, key((Object) null).compareTo(key((Object) null)));
+
+        double[] doubles = {Double.NEGATIVE_INFINITY, -2.5, -0.0, 0.0, 1e-9, 3.0, Double.POSITIVE_INFINITY};
+        for (int i = 0; i + 1 < doubles.length; i++) {
+            assertTrue(key(doubles[i]).compareTo(key(doubles[i + 1])) < 0, doubles[i] + " < " + doubles[i + 1]);
+        }
+    }
+
+    // 测试 4：复合键按列逐个比较；只给前几列时只比较双方都有的列
+    @Test
+    public void testCompositeAndPrefix() {
+        assertTrue(key("a", 2).compareTo(key("a", 10)) < 0);
+        assertTrue(key("a", 10).compareTo(key("ab", 1)) < 0);
+        assertTrue(key(1, "z").compareTo(key(2, "a")) < 0);
+
+        assertEquals(0, key("a").compareTo(key("a", 5)));
+        assertEquals(0, key("a", 5).compareTo(key("a")));
+        assertTrue(key("a").compareTo(key("ab", 1)) < 0);
+        assertTrue(key("b").compareTo(key("ab", 1)) > 0);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.mydb;
+
+import org.csu.mydb.storage.BPlusTree.BPlusNode;
+import org.csu.mydb.storage.Initialisation;
+import org.csu.mydb.storage.Lsm.LsmTree;
+import org.csu.mydb.storage.StorageSystem;
+import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.Key;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LsmTreeTest {
+    private static final String TABLE_PATH = "G:\\MyDB\\MyDB\\src\\main\\resources\\test\\jb.idb.lsm";
+    private StorageSystem storageSystem;
+    private int spaceId;
+    private List<Column> columns;
+    private LsmTree tree;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Initialisation.main(null);
+        storageSystem = new StorageSystem();
+        new File(TABLE_PATH).delete();
+
+        Column idCol = new Column("id", "INT", 4, 0, 0, true, true, null);
+        Column nameCol = new Column("name", "VARCHAR", 20, 0, 1, false, false, null);
+        columns = Arrays.asList(idCol, nameCol);
+        spaceId = StorageSystem.createTable(TABLE_PATH, columns);
+        // memtable 只有两页大，很快就会写出段、触发合并
+        tree = new LsmTree(spaceId, storageSystem, columns, TABLE_PATH, 2 * BPlusNode.pageCapacity());
+    }
+
+    private Key key(int id) {
+        return new Key(List.of(id), columns);
+    }
+
+    @Test
+    public void testInsertReorderedAndPartialColumns() throws IOException {
+        // 列顺序和表不一样按列名对上，没给的列取按类型解析的 DEFAULT；写进 memtable、刷成段后都一样
+        Column id = columns.get(0);
+        Column name = columns.get(1);
+        tree.insert(Arrays.asList(name, id), Arrays.asList("Carol", 3));
+        assertEquals(Arrays.asList(3, "Carol"), tree.search(key(3)));
+        assertThrows(IllegalArgumentException.class, () -> tree.insert(List.of(id), List.of(4)));
+
+        String path = TABLE_PATH + ".cols";
+        new File(path).delete();
+        List<Column> wide = Arrays.asList(id,
+                new Column("qty", "INT", 4, 0, 1, false, false, "5".getBytes(StandardCharsets.UTF_8)));
+        LsmTree lsm = new LsmTree(StorageSystem.createTable(path, wide), storageSystem, wide, path);
+        lsm.insert(List.of(id), List.of(1));
+        lsm.close();
+        assertEquals(Arrays.asList(1, 5), lsm.search(new Key(List.of(1), wide)));
+    }
+
+    @Test
+    public void testInsertSearchUpdateDelete() throws IOException {
+        tree.insert(columns, Arrays.asList(1, "Alice"));
+        tree.insert(columns, Arrays.asList(2, "Bob"));
+        assertEquals("Bob", tree.search(key(2)).get(1));
+        assertNull(tree.search(key(3)));
+
+        tree.insert(columns, Arrays.asList(2, "Bobby"));
+        assertEquals("Bobby", tree.search(key(2)).get(1));
+        assertTrue(tree.update(key(1), Arrays.asList(1, "Alicia")));
+        assertFalse(tree.update(key(9), Arrays.asList(9, "Nobody")));
+        assertEquals("Alicia", tree.search(key(1)).get(1));
+
+        assertTrue(tree.delete(key(1)));
+        assertFalse(tree.delete(key(1)));
+        assertNull(tree.search(key(1)));
+        assertEquals(1, tree.scan().size());
+    }
+
+    @Test
+    public void testFlushCompactionAndReopen() throws IOException {
+        int n = 20000;
+        // 乱序写入，之后覆盖一部分、删掉一部分，新旧版本分布在不同的段里
+        for (int i = 0; i < n; i++) {
+            int id = (int) ((i * 7919L) % n);
+            tree.insert(columns, Arrays.asList(id, "v1-" + id));
+        }
+        for (int id = 0; id < n; id += 3) {
+            assertTrue(tree.update(key(id), Arrays.asList(id, "v2-" + id)));
+        }
+        for (int id = 0; id < n; id += 5) {
+            assertTrue(tree.delete(key(id)));
+        }
+        tree.awaitCompaction();
+
+        // 后台合并把 L0 压到了触发线以下，数据进了更深的层
+        List<Integer> levels = tree.levelSizes();
+        assertTrue(levels.get(0) < 4, "levels=" + levels);
+        assertTrue(levels.size() > 1, "levels=" + levels);
+
+        for (int id = 0; id < n; id++) {
+            List<Object> row = tree.search(key(id));
+            if (id % 5 == 0) {
+                assertNull(row, "deleted " + id);
+            } else {
+                assertNotNull(row, "missing " + id);
+                assertEquals((id % 3 == 0 ? "v2-" : "v1-") + id, row.get(1));
+            }
+        }
+
+        // 全表扫描按主键升序、每个 key 只出现一次
+        List<List<Object>> rows = tree.scan();
+        assertEquals(n - n / 5, rows.size());
+        for (int i = 1; i < rows.size(); i++) {
+            assertTrue((Integer) rows.get(i - 1).get(0) < (Integer) rows.get(i).get(0));
+        }
+
+        // close 把 memtable 写出去，重新打开从 Page2 读回各段
+        tree.insert(columns, Arrays.asList(n, "last"));
+        tree.close();
+        LsmTree reopened = new LsmTree(spaceId, storageSystem, columns, TABLE_PATH, 2 * BPlusNode.pageCapacity());
+        assertEquals("last", reopened.search(key(n)).get(1));
+        assertEquals("v2-3", reopened.search(key(3)).get(1));
+        assertNull(reopened.search(key(10)));
+        assertEquals(n - n / 5 + 1, reopened.scan().size());
+    }
+}
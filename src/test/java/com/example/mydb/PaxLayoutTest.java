@@ -0,0 +1,217 @@
+package com.example.mydb;
+
+import org.csu.mydb.storage.BPlusTree.BPlusTree;
+import org.csu.mydb.storage.Initialisation;
+import org.csu.mydb.storage.PageManager;
+import org.csu.mydb.storage.StorageSystem;
+import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.Column.PaxSerializer;
+import org.csu.mydb.storage.Table.Column.RecordFilter;
+import org.csu.mydb.storage.Table.Key;
+import org.csu.mydb.storage.storageFiles.page.PageType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaxLayoutTest {
+    private static final String TABLE_PATH = "G:\\MyDB\\MyDB\\src\\main\\resources\\test\\jb.idb.pax";
+    private StorageSystem storageSystem;
+    private int spaceId;
+    private List<Column> columns;
+    private BPlusTree tree;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Initialisation.main(null);
+        storageSystem = new StorageSystem();
+        new File(TABLE_PATH).delete();
+
+        // 事实表：主键 + 维度 + 两个度量，note 可为空
+        columns = Arrays.asList(
+                new Column("id", "INT", 4, 0, 0, true, true, null),
+                new Column("region", "VARCHAR", 16, 0, 1, false, false, null),
+                new Column("amount", "DECIMAL", 8, 2, 2, false, false, null),
+                new Column("qty", "INT", 4, 0, 3, false, false, null),
+                new Column("note", "VARCHAR", 32, 0, 4, false, true, null));
+        spaceId = StorageSystem.createTable(TABLE_PATH, columns);
+        tree = new BPlusTree(100, spaceId, storageSystem, columns, TABLE_PATH);
+        tree.enablePaxLayout();
+    }
+
+    private List<Object> row(int i) {
+        return Arrays.asList(i, "r" + (i % 7), i * 1.5, i % 10, i % 3 == 0 ? null : "note" + i);
+    }
+
+    @Test
+    public void testMinipageRoundTrip() {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 20; i++) rows.add(row(i));
+        PageManager.Page page = new PageManager.Page(3);
+        page.getHeader().pageType = PageType.PAX_DATA_PAGE;
+        for (byte[] record : PaxSerializer.encode(rows, columns)) {
+            assertTrue(page.addRecord(record));
+        }
+
+        // 行数一条 + 每列一个 minipage
+        assertEquals(1 + columns.size(), page.getRecordCount());
+        assertEquals(20, PaxSerializer.rowCount(page));
+        assertEquals(rows, PaxSerializer.decodeRows(page, columns));
+        assertEquals(row(13), PaxSerializer.decodeRow(page, columns, 13));
+        assertNull(PaxSerializer.decodeRow(page, columns, 20));
+
+        List<List<Object>> projected = PaxSerializer.decodeColumns(page, columns, new int[]{3, 4});
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Arrays.asList(i % 10, i % 3 == 0 ? null : "note" + i), projected.get(i));
+        }
+    }
+
+    private static PageManager.Page paxPage(List<byte[]> records) {
+        PageManager.Page page = new PageManager.Page(3);
+        page.getHeader().pageType = PageType.PAX_DATA_PAGE;
+        for (byte[] record : records) {
+            assertTrue(page.addRecord(record));
+        }
+        return page;
+    }
+
+    @Test
+    public void testDictionaryMinipages() {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 120; i++) rows.add(row(i));
+        List<byte[]> records = PaxSerializer.encode(rows, columns);
+        PageManager.Page page = paxPage(records);
+
+        // region 只有 7 个值，写成字典；note 每行不同，仍按值存；定长列不用字典
+        assertEquals(PaxSerializer.DICT, PaxSerializer.encoding(page, 1));
+        assertEquals(PaxSerializer.PLAIN, PaxSerializer.encoding(page, 4));
+        assertEquals(PaxSerializer.PLAIN, PaxSerializer.encoding(page, 0));
+        int plainRegion = 0;
+        for (List<Object> row : rows) plainRegion += 2 + ((String) row.get(1)).length();
+        assertTrue(records.get(2).length < plainRegion / 2);
+
+        assertEquals(rows, PaxSerializer.decodeRows(page, columns));
+        for (int i = 0; i < 120; i += 13) {
+            assertEquals(rows.get(i), PaxSerializer.decodeRow(page, columns, i));
+        }
+
+        // 条件在字典项上求一次，之后每行只看编号
+        RecordFilter filter = new RecordFilter(columns).and(1, "=", "r3").and(0, ">=", 100);
+        List<List<Object>> matched = PaxSerializer.decodeColumns(page, columns, new int[]{0, 4}, filter);
+        List<List<Object>> expected = new ArrayList<>();
+        for (List<Object> row : rows) {
+            if (filter.test(row)) expected.add(Arrays.asList(row.get(0), row.get(4)));
+        }
+        assertEquals(3, expected.size());
+        assertEquals(expected, matched);
+        assertTrue(PaxSerializer.decodeColumns(page, columns, null,
+                new RecordFilter(columns).and(1, "=", "nowhere")).isEmpty());
+        assertEquals(35, PaxSerializer.decodeColumns(page, columns, new int[]{0},
+                new RecordFilter(columns).and(1, "<", "r2")).size());
+
+        // 老的 PAX 页：第 0 条记录只有行数，各列都是按值存
+        List<byte[]> legacy = new ArrayList<>();
+        legacy.add(Arrays.copyOf(records.get(0), 4));
+        for (int c = 0; c < columns.size(); c++) {
+            legacy.add(c == 1 ? plainRegionMinipage(rows) : records.get(1 + c));
+        }
+        PageManager.Page oldPage = paxPage(legacy);
+        assertEquals(PaxSerializer.PLAIN, PaxSerializer.encoding(oldPage, 1));
+        assertEquals(rows, PaxSerializer.decodeRows(oldPage, columns));
+        assertEquals(rows.get(42), PaxSerializer.decodeRow(oldPage, columns, 42));
+        assertEquals(expected, PaxSerializer.decodeColumns(oldPage, columns, new int[]{0, 4}, filter));
+    }
+
+    @Test
+    public void testPagesWrittenBeforeAddColumn() {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 60; i++) rows.add(row(i));
+        PageManager.Page page = paxPage(PaxSerializer.encode(rows, columns));
+
+        // 页里没有新列的 minipage，每行都是默认值
+        List<Column> altered = new ArrayList<>(columns);
+        Column status = new Column("status", "VARCHAR", 8, 0, 5, false, true, "new".getBytes(StandardCharsets.UTF_8));
+        status.setVersion(1);
+        altered.add(status);
+        List<List<Object>> expected = new ArrayList<>();
+        for (List<Object> row : rows) {
+            List<Object> withStatus = new ArrayList<>(row);
+            withStatus.add("new");
+            expected.add(withStatus);
+        }
+        assertEquals(expected, PaxSerializer.decodeRows(page, altered));
+        assertEquals(expected.get(17), PaxSerializer.decodeRow(page, altered, 17));
+        assertEquals(List.of(List.of("new", 7)),
+                PaxSerializer.decodeColumns(page, altered, new int[]{5, 0}, new RecordFilter(altered).and(0, "=", 7)));
+        assertEquals(60, PaxSerializer.decodeColumns(page, altered, new int[]{0},
+                new RecordFilter(altered).and(5, "=", "new")).size());
+        assertTrue(PaxSerializer.decodeColumns(page, altered, new int[]{0},
+                new RecordFilter(altered).and(5, "=", "old")).isEmpty());
+    }
+
+    // region 列（没有 null）按值存的 minipage：[null 位图][长度 2][UTF-8]...
+    private static byte[] plainRegionMinipage(List<List<Object>> rows) {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        buffer.position((rows.size() + 7) / 8);
+        for (List<Object> row : rows) {
+            byte[] bytes = ((String) row.get(1)).getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) bytes.length).put(bytes);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    @Test
+    public void testPaxTreeReadWriteAndProjectedScan() throws IOException {
+        int n = 5000;
+        for (int i = 0; i < n; i++) {
+            tree.insert(columns, row(i));
+        }
+        assertTrue(tree.isPaxLayout());
+
+        // 点查从各列 minipage 拼出整行；AHI 条目也能指向 PAX 页
+        for (int i = 0; i < n; i += 97) {
+            assertEquals(row(i), tree.search(new Key(List.of(i), columns)));
+        }
+        Key hot = new Key(List.of(4321), columns);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(row(4321), tree.search(hot));
+        }
+        assertTrue(tree.getAdaptiveHashIndex().hits() > 0);
+
+        // 只取 amount 一列
+        List<List<Object>> amounts = tree.scan(new int[]{2});
+        assertEquals(n, amounts.size());
+        double sum = 0;
+        for (List<Object> values : amounts) {
+            assertEquals(1, values.size());
+            sum += (Double) values.get(0);
+        }
+        assertEquals(1.5 * n * (n - 1) / 2, sum, 1e-6);
+
+        assertTrue(tree.update(new Key(List.of(10), columns), Arrays.asList(10, "east", 99.0, 1, null)));
+        assertTrue(tree.delete(new Key(List.of(11), columns)));
+        List<List<Object>> projected = tree.scan(new int[]{1, 0});
+        assertEquals(n - 1, projected.size());
+        assertEquals(Arrays.asList("east", 10), projected.get(10));
+        assertEquals(Arrays.asList("r5", 12), projected.get(11));
+
+        // 按字典编码的 region 过滤
+        List<List<Object>> east = tree.scan(new int[]{0}, new RecordFilter(columns).and(1, "=", "east"));
+        assertEquals(List.of(List.of(10)), east);
+        assertEquals((n - 1 - 6) / 7 + 1, tree.scan(new int[]{0}, new RecordFilter(columns).and(1, "=", "r6")).size());
+
+        // 重新打开：两种叶子页都按页类型读回
+        BPlusTree reopened = new BPlusTree(100, spaceId, storageSystem, columns, TABLE_PATH);
+        reopened.enablePaxLayout();
+        assertEquals(row(4999), reopened.search(new Key(List.of(4999), columns)));
+        assertEquals(tree.scan(), reopened.scan());
+    }
+}
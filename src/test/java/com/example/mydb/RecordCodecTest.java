@@ -0,0 +1,263 @@
+package com.example.mydb;
+
+import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.Column.RecordCodec;
+import org.csu.mydb.storage.Table.Column.RecordFilter;
+import org.csu.mydb.storage.Table.Column.RecordSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordCodecTest {
+    private final List<Column> columns = Arrays.asList(
+            new Column("id", "INT", 4, 0, 0, true, false, null),
+            new Column("name", "VARCHAR", 400, 0, 1, false, true, null),
+            new Column("price", "DECIMAL", 8, 2, 2, false, true, null),
+            new Column("active", "BOOLEAN", 1, 0, 3, false, true, null),
+            new Column("created", "DATE", 8, 0, 4, false, true, null));
+
+    /**
+     * 按原来的行格式（每列 [非空标记 1][值]）逐列拼出来的行
+     */
+    private static byte[] legacyEncode(List<Object> values) {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        buffer.put((byte) 0).put((byte) 0).putShort((short) -1).putInt(0).putInt(0);
+        buffer.put((byte) 1).putInt((Integer) values.get(0));
+        if (values.get(1) == null) {
+            buffer.put((byte) 0);
+        } else {
+            byte[] bytes = ((String) values.get(1)).getBytes(StandardCharsets.UTF_8);
+            buffer.put((byte) 1).putShort((short) bytes.length).put(bytes);
+        }
+        buffer.put((byte) 1).putDouble((Double) values.get(2));
+        buffer.put((byte) 1).put((byte) ((Boolean) values.get(3) ? 1 : 0));
+        buffer.put((byte) 1).putLong(((Date) values.get(4)).getTime());
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    @Test
+    public void testCompactRowRoundTripAndLegacyRows() {
+        String[] names = {"plain", "中文名字", "emoji 😀!", "broken \uD800 surrogate", "é ß ø", null};
+        RecordCodec codec = RecordCodec.of(columns);
+        for (int i = 0; i < names.length; i++) {
+            List<Object> row = Arrays.asList(i, names[i], i * 2.5, i % 2 == 0, new Date(1700000000000L + i));
+            byte[] legacy = legacyEncode(row);
+            byte[] actual = RecordSerializer.serializeDataRow(row, columns);
+            assertEquals(RecordCodec.COMPACT_ROW, actual[1]);
+            assertEquals(actual.length, codec.encodedSize(row));
+            assertEquals(actual.length, RecordSerializer.dataRowSize(row, columns));
+            // 位图 1 字节 + 偏移表 2 字节，省掉 5 个非空标记和 VARCHAR 的长度前缀
+            assertEquals(legacy.length - (names[i] == null ? 2 : 4), actual.length, "name=" + names[i]);
+            assertTrue(actual.length <= RecordSerializer.maxDataRowSize(columns));
+
+            // 落单的代理字符按 UTF-8 的规则存成 '?'
+            Object name = names[i] == null ? null : new String(names[i].getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+            List<Object> expected = Arrays.asList(i, name, i * 2.5, i % 2 == 0, new Date(1700000000000L + i));
+            assertEquals(expected, RecordSerializer.deserializeDataRow(actual, columns));
+            // 老格式的行照样能读
+            assertEquals(expected, RecordSerializer.deserializeDataRow(legacy, columns));
+            assertEquals(expected.get(4), codec.decodeColumn(legacy, 4));
+        }
+    }
+
+    @Test
+    public void testDecodeSingleColumns() {
+        List<Column> wide = new ArrayList<>();
+        List<Object> row = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            boolean text = i % 3 == 1;
+            wide.add(new Column("c" + i, text ? "VARCHAR" : "INT", 16, 0, i, i == 11, i != 11, null));
+            // 第 4、7 列为空，变长列夹在定长列中间
+            row.add(i == 4 || i == 7 ? null : text ? "v" + i : i * 100);
+        }
+        RecordCodec codec = RecordCodec.of(wide);
+        byte[] record = codec.encode(row);
+        for (int i = 0; i < 12; i++) {
+            assertEquals(row.get(i), codec.decodeColumn(record, i), "column " + i);
+        }
+        assertEquals(Arrays.asList(1100, "v10", null), codec.decodeColumns(record, new int[]{11, 10, 7}));
+        assertEquals(row, codec.decode(record));
+    }
+
+    @Test
+    public void testFilterOnEncodedRecords() {
+        RecordCodec codec = RecordCodec.of(columns);
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            rows.add(Arrays.asList(i, i % 4 == 0 ? null : "名字" + (i % 10), i * 0.5, i % 3 == 0, new Date(1000L * i)));
+        }
+        RecordFilter[] filters = {
+                new RecordFilter(columns).and(0, ">", 30),
+                new RecordFilter(columns).and(1, "=", "名字3"),
+                new RecordFilter(columns).and(1, "<>", "名字3"),
+                new RecordFilter(columns).and(2, "<=", 4.0).and(3, "=", true),
+                new RecordFilter(columns).and(4, ">=", new Date(35000L)),
+                new RecordFilter(columns).and(1, ">=", "名字5").and(0, "<", 20),
+        };
+        int[] expected = {9, 4, 26, 3, 5, 8};
+        for (int f = 0; f < filters.length; f++) {
+            int matched = 0;
+            for (List<Object> row : rows) {
+                boolean onBytes = filters[f].test(codec.encode(row));
+                // 老格式的记录、已解码的行结果一致
+                assertEquals(onBytes, filters[f].test(legacyEncode(row)), "filter " + f + " row " + row);
+                assertEquals(onBytes, filters[f].test(row), "filter " + f + " row " + row);
+                if (onBytes) matched++;
+            }
+            assertEquals(expected[f], matched, "filter " + f);
+        }
+    }
+
+    @Test
+    public void testVarintRowsAndKeyPtrs() {
+        List<Column> ints = Arrays.asList(
+                new Column("id", "INT", 4, 0, 0, true, false, null),
+                new Column("total", "BIGINT", 8, 0, 1, false, true, null),
+                new Column("name", "VARCHAR", 400, 0, 2, false, true, null),
+                new Column("price", "DECIMAL", 8, 2, 3, false, true, null));
+        RecordCodec varint = RecordCodec.of(ints, true);
+        Object[][] samples = {
+                {0, 0L, "", 0.0}, {-1, 1L, null, null}, {63, -64L, "中文", 1.5},
+                {Integer.MIN_VALUE, Long.MIN_VALUE, "x".repeat(300), -2.0}, {Integer.MAX_VALUE, Long.MAX_VALUE, "y", null}};
+        for (Object[] sample : samples) {
+            List<Object> row = Arrays.asList(sample);
+            byte[] record = RecordSerializer.serializeDataRow(row, ints, true);
+            assertTrue(RecordCodec.isVarint(record));
+            assertEquals(record.length, RecordSerializer.dataRowSize(row, ints, true));
+            assertTrue(record.length <= RecordSerializer.maxDataRowSize(ints, true));
+            // 不管用哪个 codec 读，都按记录头里的格式解码
+            assertEquals(row, RecordCodec.of(ints).decode(record));
+            assertEquals(row, varint.decode(record));
+            for (int c = 0; c < ints.size(); c++) {
+                assertEquals(row.get(c), varint.decodeColumn(record, c));
+            }
+            assertEquals(Arrays.asList(row.get(3), row.get(0)), varint.decodeColumns(record, new int[]{3, 0}));
+            assertEquals(row.get(1) != null && (Long) row.get(1) >= 0,
+                    new RecordFilter(ints).and(1, ">=", 0L).test(record));
+        }
+        // 小整数只占一个字节：前缀 12 + 位图 1 + 1 + 1 + (1 + 1) + 8
+        assertEquals(25, varint.encodedSize(Arrays.asList(5, -3L, "a", 1.0)));
+
+        // 内部节点条目
+        List<Column> keyColumns = ints.subList(0, 3);
+        for (Object[] sample : samples) {
+            List<Object> key = Arrays.asList(sample).subList(0, 3);
+            byte[] entry = RecordSerializer.serializeKeyPtr(key, keyColumns, 123456, true);
+            assertEquals(RecordSerializer.VARINT_INDEX_RECORD, entry[1]);
+            assertTrue(entry.length <= RecordSerializer.maxKeyPtrSize(keyColumns, true));
+            assertEquals(key, RecordSerializer.deserializeKeyPtr(entry, keyColumns).getFirst().getValues());
+            assertEquals(123456, RecordSerializer.deserializeKeyPtr(entry, keyColumns).getSecond());
+        }
+        // 后缀截断的分隔 key 只存了第一列
+        byte[] truncated = RecordSerializer.serializeKeyPtr(List.of(300), keyColumns.subList(0, 1), 9, true);
+        assertEquals(List.of(300), RecordSerializer.deserializeKeyPtr(truncated, keyColumns).getFirst().getValues());
+        assertEquals(9, RecordSerializer.deserializeKeyPtr(truncated, keyColumns).getSecond());
+        assertEquals(9, RecordSerializer.deserializeKeyPtr(
+                RecordSerializer.serializeKeyPtr(List.of(), List.of(), 9, true), List.of()).getSecond());
+    }
+
+    private static Column added(String name, String type, int version, String defaultValue) {
+        Column column = new Column(name, type, 16, 0, 0, false, true,
+                defaultValue == null ? null : defaultValue.getBytes(StandardCharsets.UTF_8));
+        column.setVersion(version);
+        return column;
+    }
+
+    @Test
+    public void testRowsWrittenBeforeAddColumn() {
+        List<Object> row = Arrays.asList(3, "三", 1.5, true, new Date(1000L));
+        byte[] v0 = RecordCodec.of(columns).encode(row);
+        byte[] legacy = legacyEncode(row);
+        byte[] varint0 = RecordCodec.of(columns, true).encode(row);
+
+        // 加两次列：city 有默认值，score 没有
+        List<Column> v1Columns = new ArrayList<>(columns);
+        v1Columns.add(added("city", "VARCHAR", 1, "长沙"));
+        List<Column> v2Columns = new ArrayList<>(v1Columns);
+        v2Columns.add(added("score", "INT", 2, null));
+        RecordCodec v1 = RecordCodec.of(v1Columns);
+        RecordCodec v2 = RecordCodec.of(v2Columns);
+        assertEquals(2, v2.version());
+
+        List<Object> v1Row = new ArrayList<>(row);
+        v1Row.add("岳麓");
+        byte[] v1Record = v1.encode(v1Row);
+        assertEquals(RecordCodec.COMPACT_ROW | RecordCodec.VERSIONED, v1Record[1]);
+        // 多 2 字节版本号
+        assertEquals(v0.length + 2 + 2 + "岳麓".getBytes(StandardCharsets.UTF_8).length, v1Record.length);
+        assertEquals(v1Record.length, RecordSerializer.dataRowSize(v1Row, v1Columns));
+        assertTrue(v1Record.length <= RecordSerializer.maxDataRowSize(v1Columns));
+
+        // 各个版本的行都按最新的表结构读出来，缺的列补默认值
+        List<Object> expectedV0 = new ArrayList<>(row);
+        expectedV0.add("长沙");
+        expectedV0.add(null);
+        assertEquals(expectedV0, v2.decode(v0));
+        assertEquals(expectedV0, v2.decode(legacy));
+        assertEquals(expectedV0, v2.decode(varint0));
+        List<Object> expectedV1 = new ArrayList<>(v1Row);
+        expectedV1.add(null);
+        assertEquals(expectedV1, v2.decode(v1Record));
+        assertEquals(v1Row, v1.decode(v1Record));
+        assertEquals("长沙", v2.decodeColumn(v0, 5));
+        assertEquals("岳麓", v2.decodeColumn(v1Record, 5));
+        assertNull(v2.decodeColumn(v1Record, 6));
+        assertEquals(Arrays.asList(null, "长沙", 3), v2.decodeColumns(v0, new int[]{6, 5, 0}));
+
+        List<Object> v2Row = new ArrayList<>(v1Row);
+        v2Row.add(99);
+        byte[] v2Record = RecordSerializer.serializeDataRow(v2Row, v2Columns);
+        assertEquals(v2Row, RecordSerializer.deserializeDataRow(v2Record, v2Columns));
+        byte[] v2Varint = RecordCodec.of(v2Columns, true).encode(v2Row);
+        assertEquals(RecordCodec.VARINT_ROW | RecordCodec.VERSIONED, v2Varint[1]);
+        assertEquals(v2Row, v2.decode(v2Varint));
+
+        // 过滤条件在老的行上按默认值求
+        RecordFilter inChangsha = new RecordFilter(v2Columns).and(5, "=", "长沙");
+        assertTrue(inChangsha.test(v0));
+        assertTrue(inChangsha.test(legacy));
+        assertFalse(inChangsha.test(v1Record));
+        assertFalse(new RecordFilter(v2Columns).and(6, ">", 0).test(v0));
+        assertTrue(new RecordFilter(v2Columns).and(6, ">", 0).and(0, "=", 3).test(v2Record));
+    }
+
+    @Test
+    public void testWideRowAndCallerBuffer() {
+        // 超过原来 1024 字节临时缓冲的行
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 400; i++) sb.append("宽");
+        List<Object> row = Arrays.asList(7, sb.toString(), 1.0, true, new Date(0));
+        RecordCodec codec = RecordCodec.of(columns);
+        int size = codec.encodedSize(row);
+        assertTrue(size > 1024);
+
+        // 直接写进调用方的缓冲区，前后还有别的数据
+        ByteBuffer buffer = ByteBuffer.allocate(size + 10);
+        buffer.putInt(0xCAFEBABE);
+        codec.encode(row, buffer);
+        buffer.putShort((short) 42);
+        assertEquals(4 + size + 2, buffer.position());
+
+        buffer.flip();
+        assertEquals(0xCAFEBABE, buffer.getInt());
+        assertEquals(row, codec.decode(buffer));
+        assertEquals(42, buffer.getShort());
+    }
+
+    @Test
+    public void testCodecCachedPerSchema() {
+        List<Column> copy = new ArrayList<>(columns);
+        assertSame(RecordCodec.of(columns), RecordCodec.of(copy));
+        // 加列后是新的表结构
+        copy.add(new Column("extra", "INT", 4, 0, 5, false, true, null));
+        assertNotSame(RecordCodec.of(columns), RecordCodec.of(copy));
+        assertEquals(6, RecordCodec.of(copy).columnCount());
+    }
+}
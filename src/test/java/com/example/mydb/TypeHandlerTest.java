@@ -0,0 +1,114 @@
+package com.example.mydb;
+
+import org.csu.mydb.compiler.Lexer;
+import org.csu.mydb.compiler.PlanBuilder;
+import org.csu.mydb.executor.ExecutionPlan;
+import org.csu.mydb.storage.Table.Column.Column;
+import org.csu.mydb.storage.Table.Column.RecordCodec;
+import org.csu.mydb.storage.Table.Column.RecordFilter;
+import org.csu.mydb.storage.Table.Column.RecordSerializer;
+import org.csu.mydb.storage.Table.Key;
+import org.csu.mydb.util.TypeHandler.TypeHandler;
+import org.csu.mydb.util.TypeHandler.TypeHandlerFactory;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TypeHandlerTest {
+    // 每种类型按升序排好的几个值
+    private static final Object[][] SAMPLES = {
+            {"INT", Integer.MIN_VALUE, -5, 0, 7, Integer.MAX_VALUE},
+            {"BIGINT", Long.MIN_VALUE, -1L, 0L, 1L << 40, Long.MAX_VALUE},
+            {"DOUBLE", -1e300, -0.5, 0.0, 2.25, 1e300},
+            {"DECIMAL", -3.5, 0.0, 3.5},
+            {"BOOLEAN", false, true},
+            {"DATE", Date.valueOf("1969-12-31"), Date.valueOf("2024-02-29"), Date.valueOf("2024-03-01")},
+            {"TIMESTAMP", Timestamp.valueOf("2024-03-01 00:00:00"), Timestamp.valueOf("2024-03-01 12:30:45.123")},
+            {"VARCHAR", "", "a", "a\u0000b", "ab", "中文", "😀"},
+    };
+
+    @Test
+    public void testRoundTripAndOrderPerType() {
+        for (Object[] sample : SAMPLES) {
+            String type = (String) sample[0];
+            TypeHandler<Object> handler = TypeHandlerFactory.getHandler(type);
+            for (int i = 1; i < sample.length; i++) {
+                Object value = sample[i];
+                ByteBuffer buffer = ByteBuffer.allocate(handler.getStorageSize(value) + 1);
+                handler.write(buffer, value);
+                buffer.put((byte) 42);
+                assertEquals(buffer.capacity(), buffer.position(), type);
+                buffer.flip();
+                assertEquals(value, handler.deserialize(buffer), type);
+                assertEquals(42, buffer.get());
+                assertArrayEquals(Arrays.copyOf(buffer.array(), buffer.capacity() - 1), handler.serialize(value));
+
+                // 保序编码、谓词比较与值的顺序一致
+                for (int j = 1; j < sample.length; j++) {
+                    int expected = Integer.signum(Integer.compare(i, j));
+                    Object other = sample[j];
+                    assertEquals(expected, Integer.signum(Key.compare(encode(value), encode(other))), type + " " + value + " vs " + other);
+                    assertEquals(expected, Integer.signum(handler.compareValue(value, handler.operand(other))), type);
+                }
+            }
+        }
+    }
+
+    private static byte[] encode(Object value) {
+        return org.csu.mydb.storage.Table.KeyEncoder.encode(List.of(value));
+    }
+
+    @Test
+    public void testAllTypesInRowsAndFilters() {
+        List<Column> columns = new ArrayList<>();
+        List<Object> row = new ArrayList<>();
+        for (int i = 0; i < SAMPLES.length; i++) {
+            columns.add(new Column("c" + i, (String) SAMPLES[i][0], 20, 0, i, i == 0, i != 0, null));
+            row.add(SAMPLES[i][SAMPLES[i].length - 1]);
+        }
+        RecordCodec codec = RecordCodec.of(columns);
+        byte[] record = codec.encode(row);
+        assertEquals(row, codec.decode(record));
+        assertTrue(record.length <= RecordSerializer.maxDataRowSize(columns));
+        for (int i = 0; i < SAMPLES.length; i++) {
+            assertEquals(row.get(i), codec.decodeColumn(record, i));
+            // 每列都是这一类型里最大的值
+            Object smaller = SAMPLES[i][1];
+            assertTrue(new RecordFilter(columns).and(i, ">", smaller).test(record), (String) SAMPLES[i][0]);
+            assertFalse(new RecordFilter(columns).and(i, "<", smaller).test(record), (String) SAMPLES[i][0]);
+            assertTrue(new RecordFilter(columns).and(i, "=", row.get(i)).test(record), (String) SAMPLES[i][0]);
+        }
+    }
+
+    @Test
+    public void testParseLiterals() {
+        assertEquals(-12, TypeHandlerFactory.getHandler("int").parse(" -12 "));
+        assertEquals(1L << 40, TypeHandlerFactory.getHandler("BIGINT").parse("1099511627776"));
+        assertEquals(2.5, TypeHandlerFactory.getHandler("DECIMAL").parse("2.5"));
+        assertEquals(true, TypeHandlerFactory.getHandler("BOOLEAN").parse("TRUE"));
+        assertEquals(Date.valueOf("2024-02-29"), TypeHandlerFactory.getHandler("DATE").parse("2024-02-29"));
+        assertEquals(Timestamp.valueOf("2024-03-01 12:30:45"), TypeHandlerFactory.getHandler("TIMESTAMP").parse("2024-03-01 12:30:45"));
+        assertThrows(IllegalArgumentException.class, () -> TypeHandlerFactory.getHandler("BOOLEAN").parse("maybe"));
+        assertThrows(IllegalArgumentException.class, () -> TypeHandlerFactory.getHandler("BLOB"));
+    }
+
+    @Test
+    public void testCreateTableWithAllTypes() throws PlanBuilder.SemanticException {
+        List<ExecutionPlan> plans = new PlanBuilder().buildAll(Lexer.tokenize(
+                "CREATE TABLE events (id BIGINT PRIMARY KEY, price DECIMAL, ratio DOUBLE, ok BOOLEAN, "
+                        + "day DATE, at TIMESTAMP, name VARCHAR(20));"));
+        List<String> types = new ArrayList<>();
+        for (Column column : plans.get(0).getColumns()) {
+            types.add(column.getType());
+        }
+        assertEquals(Arrays.asList("BIGINT", "DECIMAL", "DOUBLE", "BOOLEAN", "DATE", "TIMESTAMP", "VARCHAR"), types);
+        assertTrue(plans.get(0).getColumns().get(0).isPrimaryKey());
+    }
+}